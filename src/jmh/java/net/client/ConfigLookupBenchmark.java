@@ -0,0 +1,205 @@
+package net.client;
+
+import net.common.JigProperties;
+import net.config.SyntheticConfig;
+import net.util.PatternHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The ConfigLookup calls that applications make, against a generated config
+ * (see SyntheticConfig) with 1K, 100K and 1M keys in 10 files. Each key count
+ * runs in its own fork, so the static ConfigMap loads the generated config.
+ *
+ * Pattern lookups are cached until the config is reloaded (see LookupCache), so
+ * the '_uncached' benchmarks clear the cache first to measure the key matching.
+ * See ConfigStatisticsBenchmark for statistics under contention.
+ *
+ * ./gradlew jmh -PjmhArgs="ConfigLookupBenchmark -p keyCount=100000 -prof gc"
+ * ./gradlew jmh -PjmhArgs="ConfigLookupBenchmark.*_uncached -p parallelThreshold=0,10000"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigLookupBenchmark {
+
+    private static final int FILE_COUNT = 10;
+    private static final int SAMPLE_SIZE = 1024;
+    /** Keys per request handler, see getAll() */
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"1000", "100000", "1000000"})
+    int keyCount;
+
+    /** See ParallelLookup, 0 matches patterns on the calling thread */
+    @Param({"0"})
+    int parallelThreshold;
+
+    /** See OffHeapConfigMap, 'offheap' or 'mmap' to compare with heap maps */
+    @Param({"heap"})
+    String storage;
+
+    private File _configDir;
+    private ConfigLookup _lookup;
+    private String[] _sampleKeys;
+    private int _next;
+    private List<String> _batchKeys;
+
+    private String _intKey;
+    private ConfigHandle<Integer> _handle;
+    /** A plain text pattern (KeyMatcher.Strategy.CONTAINS) */
+    private Pattern _textPattern;
+    /** A regex pattern across every file */
+    private Pattern _regexPattern;
+    private Map<String, String> _stockShares;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        _configDir = Files.createTempDirectory("ConfigLookupBenchmark").toFile();
+        SyntheticConfig.writeDirectory(_configDir, keyCount, FILE_COUNT, "xml");
+        System.setProperty(JigProperties.JIG_LOCATION.getName(), _configDir.getPath());
+        System.setProperty(JigProperties.JIG_STORAGE.getName(), storage);
+
+        _lookup = new ConfigLookup();
+        _lookup.getParallelLookup().setThreshold(parallelThreshold);
+        Map<String, Map<String, String>> configMaps = _lookup.getConfigMap().getConfig();
+        _sampleKeys = SyntheticConfig.sampleKeys(configMaps, SAMPLE_SIZE);
+
+        _batchKeys = Arrays.asList(_sampleKeys).subList(0, BATCH_SIZE);
+
+        _intKey = "f1key.value1";
+        _handle = _lookup.getHandle(_intKey, Integer.class);
+        _textPattern = PatternHelper.buildPattern("f1key.value1");
+        _regexPattern = PatternHelper.buildPattern("stock", "ticker1");
+        _stockShares = _lookup.get(PatternHelper.buildPattern("shares"));
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        SyntheticConfig.delete(_configDir);
+        System.clearProperty(JigProperties.JIG_LOCATION.getName());
+        System.clearProperty(JigProperties.JIG_STORAGE.getName());
+    }
+
+    @Benchmark
+    public String getByKey() {
+        return _lookup.getByKey(nextKey());
+    }
+
+    /** Same keys as getAll(), one call each */
+    @Benchmark
+    public int getByKey_batch() {
+
+        int found = 0;
+        for ( String key : _batchKeys )
+        {
+            if ( _lookup.getByKey(key) != null )
+            {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public Map<String, String> getAll() {
+        return _lookup.getAll(_batchKeys);
+    }
+
+    @Benchmark
+    public Integer getByKey_Integer() {
+        return _lookup.getByKey(_intKey, Integer.class);
+    }
+
+    @Benchmark
+    public int getInt() {
+        return _lookup.getInt(_intKey, -1);
+    }
+
+    @Benchmark
+    public Integer handle() {
+        return _handle.get();
+    }
+
+    @Benchmark
+    public Map<String, String> getPattern() {
+        return _lookup.get(_regexPattern);
+    }
+
+    @Benchmark
+    public Map<String, String> getPattern_uncached() {
+
+        _lookup.getLookupCache().clear();
+        return _lookup.get(_regexPattern);
+    }
+
+    @Benchmark
+    public Map<String, String> getTextPattern_uncached() {
+
+        _lookup.getLookupCache().clear();
+        return _lookup.get(_textPattern);
+    }
+
+    @Benchmark
+    public Map<String, String> getPatternParams_uncached() {
+
+        _lookup.getLookupCache().clear();
+        return _lookup.get(_regexPattern, "f2");
+    }
+
+    @Benchmark
+    public Map<String, String> getSortedResults() {
+        return _lookup.getSortedResults(null, _regexPattern, "f2");
+    }
+
+    @Benchmark
+    public Map<String, String> reduce() {
+        return _lookup.reduce(_stockShares, "f2", "ticker1");
+    }
+
+    private String nextKey() {
+
+        _next = (_next + 1) & (SAMPLE_SIZE - 1);
+        return _sampleKeys[_next];
+    }
+}
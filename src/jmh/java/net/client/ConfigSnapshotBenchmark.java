@@ -0,0 +1,115 @@
+package net.client;
+
+import net.common.JigProperties;
+import net.config.ConfigLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of a config location with 10 generated files (1K, 10K and 100K
+ * keys in total): parsing every file with ConfigLoader versus reading a
+ * current snapshot (see ConfigSnapshotFile).
+ *
+ * ./gradlew jmh -PjmhArgs="ConfigSnapshotBenchmark -prof gc"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigSnapshotBenchmark {
+
+    private static final int FILE_COUNT = 10;
+
+    @Param({"1000", "10000", "100000"})
+    int keyCount;
+
+    private File _configDir;
+    private File _snapshotFile;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        _configDir = Files.createTempDirectory("ConfigSnapshotBenchmark").toFile();
+        for ( int file = 0; file < FILE_COUNT; file++ )
+        {
+            File configFile = new File(_configDir, "Config" + file + ".xml");
+            try ( PrintWriter writer = new PrintWriter(configFile, StandardCharsets.UTF_8.name()) )
+            {
+                writer.println("<config>");
+                writer.println("  <keyValues>");
+                for ( int i = 0; i < keyCount / FILE_COUNT; i++ )
+                {
+                    writer.println("    <property name=\"file" + file + ".key" + i + "\" value=\"" + i + "\" />");
+                }
+
+                writer.println("  </keyValues>");
+                writer.println("</config>");
+            }
+        }
+
+        System.setProperty(JigProperties.JIG_LOCATION.getName(), _configDir.getPath());
+        _snapshotFile = new File(_configDir, "config.snapshot");
+
+        ConfigLoader loader = new ConfigLoader();
+        Map<String, Map<String, String>> configMaps = loader.loadMapsFromFiles();
+        ConfigSnapshotFile.write(_snapshotFile, configMaps, loader.getSnapshotSourceFiles(),
+                                 loader.getConfigDirectories(), loader.findFileNamePattern());
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        for ( File file : _configDir.listFiles() )
+        {
+            file.delete();
+        }
+
+        _configDir.delete();
+        System.clearProperty(JigProperties.JIG_LOCATION.getName());
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> parseConfigFiles() {
+        return new ConfigLoader().loadMapsFromFiles();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> readSnapshot() {
+        return ConfigSnapshotFile.read(_snapshotFile);
+    }
+}
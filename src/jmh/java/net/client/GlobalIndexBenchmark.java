@@ -0,0 +1,121 @@
+package net.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a single key lookup that checks each file map in turn (the
+ * original ConfigLookup.getConfigValue() approach) against the merged
+ * ConfigMap key index for 10, 100 and 1000 config files.
+ *
+ * ./gradlew jmh -PjmhArgs="GlobalIndexBenchmark"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GlobalIndexBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"10", "100", "1000"})
+    int fileCount;
+
+    @Param({"100"})
+    int keysPerFile;
+
+    private Map<String, Map<String, String>> _configMaps;
+    private Map<String, String> _globalIndex;
+    private String[] _sampleKeys;
+    private int _next;
+
+    @Setup
+    public void setUp() {
+
+        _configMaps = new LinkedHashMap<>();
+        List<String> allKeys = new ArrayList<>(fileCount * keysPerFile);
+
+        for ( int file = 0; file < fileCount; file++ )
+        {
+            Map<String, String> fileMap = new HashMap<>();
+            for ( int key = 0; key < keysPerFile; key++ )
+            {
+                String configKey = "structures.file" + file + ".stock.name.ticker" + key + ".shares";
+                fileMap.put(configKey, String.valueOf(key));
+                allKeys.add(configKey);
+            }
+
+            _configMaps.put("BenchmarkConfig" + file + ".xml", fileMap);
+        }
+
+        _globalIndex = ConfigMap.buildGlobalIndex(_configMaps);
+
+        Collections.shuffle(allKeys, new Random(42));
+        _sampleKeys = new String[SAMPLE_SIZE];
+        for ( int i = 0; i < SAMPLE_SIZE; i++ )
+        {
+            _sampleKeys[i] = allKeys.get(i % allKeys.size());
+        }
+    }
+
+    @Benchmark
+    public String scanFileMaps() {
+
+        String key = nextKey();
+        for ( Map<String, String> configMap : _configMaps.values() )
+        {
+            if ( configMap.containsKey(key) )
+            {
+                return configMap.get(key);
+            }
+        }
+
+        return null;
+    }
+
+    @Benchmark
+    public String globalIndex() {
+        return _globalIndex.get(nextKey());
+    }
+
+    private String nextKey() {
+
+        _next = (_next + 1) & (SAMPLE_SIZE - 1);
+        return _sampleKeys[_next];
+    }
+}
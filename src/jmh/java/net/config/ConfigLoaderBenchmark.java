@@ -0,0 +1,88 @@
+package net.config;
+
+import net.common.JigProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full (not incremental) ConfigLoader.loadMapsFromFiles() of a generated
+ * config directory (see SyntheticConfig) with 1K - 1M keys in 10 XML or JSON
+ * files, using the default flatteners.
+ *
+ * ./gradlew jmh -PjmhArgs="ConfigLoaderBenchmark -p format=xml -prof gc"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigLoaderBenchmark {
+
+    private static final int FILE_COUNT = 10;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int keyCount;
+
+    @Param({"xml", "json"})
+    String format;
+
+    /** See StringPool, 'true' to compare loads with deduping */
+    @Param({"false"})
+    String stringPool;
+
+    private File _configDir;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        _configDir = Files.createTempDirectory("ConfigLoaderBenchmark").toFile();
+        SyntheticConfig.writeDirectory(_configDir, keyCount, FILE_COUNT, format);
+        System.setProperty(JigProperties.JIG_LOCATION.getName(), _configDir.getPath());
+        System.setProperty(JigProperties.JIG_STRING_POOL.getName(), stringPool);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        SyntheticConfig.delete(_configDir);
+        System.clearProperty(JigProperties.JIG_LOCATION.getName());
+        System.clearProperty(JigProperties.JIG_STRING_POOL.getName());
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> loadMapsFromFiles() {
+        return new ConfigLoader().loadMapsFromFiles();
+    }
+}
@@ -0,0 +1,80 @@
+package net.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattens a generated JSON config file with 1K, 10K, 100K and 1M keys using the
+ * JsonSlurper based JsonFlattener and the StreamingJsonFlattener. Run with
+ * -prof gc to compare allocations.
+ *
+ * ./gradlew jmh -PjmhArgs="JsonFlattenerBenchmark -prof gc"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonFlattenerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int keyCount;
+
+    private File _configFile;
+    private String _configUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        _configFile = File.createTempFile("JsonFlattenerBenchmark", ".json");
+        _configUrl = _configFile.toURI().toString();
+
+        SyntheticConfig.writeJson(_configFile, keyCount, "");
+    }
+
+    @TearDown
+    public void tearDown() {
+        _configFile.delete();
+    }
+
+    @Benchmark
+    public Map<String, String> jsonSlurper() {
+        return new JsonFlattener().flatten(_configUrl);
+    }
+
+    @Benchmark
+    public Map<String, String> streaming() {
+        return new StreamingJsonFlattener().flatten(_configUrl);
+    }
+}
@@ -0,0 +1,200 @@
+package net.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes synthetic XML and JSON config files with a given number of leaf keys
+ * (1K - 1M) for the benchmarks. The files are deterministic, so runs on
+ * different builds parse the same config. About 10% of the keys are key:value
+ * properties and the rest are 'structures.stocks' entries, which is the shape
+ * of the test config.
+ *
+ * To write a config directory for a manual run (for example with jig.location):
+ *
+ * java -cp ... net.config.SyntheticConfig /tmp/config 100000 10 xml
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class SyntheticConfig {
+
+    private SyntheticConfig() {}
+
+    /**
+     * Usage: SyntheticConfig <directory> <keyCount> [fileCount] [xml|json]
+     */
+    public static void main(String[] args) throws IOException {
+
+        if ( args.length < 2 )
+        {
+            System.err.println("Usage: SyntheticConfig <directory> <keyCount> [fileCount] [xml|json]");
+            System.exit(1);
+        }
+
+        File directory = new File(args[0]);
+        int keyCount = Integer.parseInt(args[1]);
+        int fileCount = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        String format = args.length > 3 ? args[3] : "xml";
+
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException("Could Not Create: " + directory);
+        }
+
+        writeDirectory(directory, keyCount, fileCount, format);
+        System.out.println("Wrote " + keyCount + " Keys In " + fileCount + " " + format + " Files To " + directory);
+    }
+
+    /**
+     * Split 'keyCount' keys across 'fileCount' files (SyntheticConfig0.xml, ...).
+     * The key names include the file number, so every key is unique.
+     *
+     * @param format "xml" or "json"
+     * @return The config files
+     */
+    public static List<File> writeDirectory(File directory, int keyCount, int fileCount, String format)
+        throws IOException {
+
+        List<File> configFiles = new ArrayList<>(fileCount);
+        for ( int file = 0; file < fileCount; file++ )
+        {
+            File configFile = new File(directory, "SyntheticConfig" + file + "." + format);
+            String prefix = fileCount > 1 ? "f" + file : "";
+
+            if ( "json".equals(format) )
+            {
+                writeJson(configFile, keyCount / fileCount, prefix);
+            }
+            else
+            {
+                writeXml(configFile, keyCount / fileCount, prefix);
+            }
+
+            configFiles.add(configFile);
+        }
+
+        return configFiles;
+    }
+
+    /**
+     * Key:value properties ('key.value' + i) and stocks with 3 keys each, including
+     * duplicate 'broker' keys for the .1, .2 suffixes.
+     *
+     * @param prefix Prepended to the generated names, "" for none
+     */
+    public static void writeXml(File configFile, int keyCount, String prefix) throws IOException {
+
+        try ( PrintWriter writer = new PrintWriter(configFile, StandardCharsets.UTF_8.name()) )
+        {
+            writer.println("<config>");
+            writer.println("  <keyValues>");
+            for ( int i = 0; i < keyCount / 10; i++ )
+            {
+                writer.println("    <property name=\"" + prefix + "key.value" + i + "\" value=\"" + i + "\" />");
+            }
+
+            writer.println("  </keyValues>");
+            writer.println("  <structures>");
+            writer.println("    <stocks>");
+            for ( int i = 0; i < (keyCount - keyCount / 10) / 3; i++ )
+            {
+                writer.println("      <stock name=\"" + prefix + "TICKER" + i + "\">");
+                writer.println("        <shares>" + i + "</shares>");
+                writer.println("        <broker>first</broker>");
+                writer.println("        <broker>second</broker>");
+                writer.println("      </stock>");
+            }
+
+            writer.println("    </stocks>");
+            writer.println("  </structures>");
+            writer.println("</config>");
+        }
+    }
+
+    /**
+     * Stocks with 2 keys each and an array of brokers for the versioned keys.
+     *
+     * @param prefix Prepended to the generated names, "" for none
+     */
+    public static void writeJson(File configFile, int keyCount, String prefix) throws IOException {
+
+        try ( PrintWriter writer = new PrintWriter(configFile, StandardCharsets.UTF_8.name()) )
+        {
+            writer.println("{\"config\": {");
+            writer.println("  \"structures\": {");
+            writer.println("    \"stocks\": {");
+            int stockCount = keyCount / 4;
+            for ( int i = 0; i < stockCount; i++ )
+            {
+                writer.print("      \"" + prefix + "TICKER" + i + "\": {\"shares\": " + i + ", \"price\": " + i
+                             + ".25, ");
+                writer.print("\"brokers\": [{\"name\": \"first\"}, {\"name\": \"second\"}]}");
+                writer.println(i < stockCount - 1 ? "," : "");
+            }
+
+            writer.println("    }");
+            writer.println("  }");
+            writer.println("}}");
+        }
+    }
+
+    /**
+     * @param configMaps Loaded config maps
+     * @param size The number of keys, a power of 2 so callers can cycle with a mask
+     * @return Keys picked at random (with a fixed seed) across 'configMaps'
+     */
+    public static String[] sampleKeys(Map<String, Map<String, String>> configMaps, int size) {
+
+        List<String> allKeys = new ArrayList<>();
+        for ( Map<String, String> configMap : configMaps.values() )
+        {
+            allKeys.addAll(configMap.keySet());
+        }
+
+        Collections.sort(allKeys);
+        Collections.shuffle(allKeys, new Random(42));
+
+        String[] sampleKeys = new String[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            sampleKeys[i] = allKeys.get(i % allKeys.size());
+        }
+
+        return sampleKeys;
+    }
+
+    /** Delete 'directory' and the files in it */
+    public static void delete(File directory) {
+
+        File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+}
@@ -0,0 +1,77 @@
+package net.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattens a generated config file with 1K, 10K, 100K and 1M leaf keys using the
+ * XmlParser based XmlFlattener and the streaming StaxXmlFlattener. Run with
+ * -prof gc to compare allocations.
+ *
+ * ./gradlew jmh -PjmhArgs="XmlFlattenerBenchmark -prof gc"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlFlattenerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int keyCount;
+
+    private File _configFile;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        _configFile = File.createTempFile("XmlFlattenerBenchmark", ".xml");
+        SyntheticConfig.writeXml(_configFile, keyCount, "");
+    }
+
+    @TearDown
+    public void tearDown() {
+        _configFile.delete();
+    }
+
+    @Benchmark
+    public Map<String, String> xmlParser() {
+        return new XmlFlattener().flatten(_configFile.getPath());
+    }
+
+    @Benchmark
+    public Map<String, String> stax() {
+        return new StaxXmlFlattener().flatten(_configFile.getPath());
+    }
+}
@@ -0,0 +1,119 @@
+package net.util;
+
+import groovy.json.JsonSlurper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (-rf json) benchmark by benchmark, for
+ * checking a change or an upgrade for lookup regressions:
+ *
+ * ./gradlew jmh -PjmhArgs="ConfigLookupBenchmark -rf json -rff build/jmh-before.json"
+ * (apply the change)
+ * ./gradlew jmh -PjmhArgs="ConfigLookupBenchmark -rf json -rff build/jmh-after.json"
+ * ./gradlew jmhCompare -Pbefore=build/jmh-before.json -Pafter=build/jmh-after.json
+ *
+ * A change is only flagged when it is larger than the combined score errors.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class BenchmarkComparison {
+
+    private BenchmarkComparison() {}
+
+    /**
+     * Usage: BenchmarkComparison <before.json> <after.json>
+     */
+    public static void main(String[] args) {
+
+        if ( args.length < 2 )
+        {
+            System.err.println("Usage: BenchmarkComparison <before.json> <after.json>");
+            System.exit(1);
+        }
+
+        Map<String, Map<String, Object>> before = readResults(new File(args[0]));
+        Map<String, Map<String, Object>> after = readResults(new File(args[1]));
+
+        System.out.println(String.format("%-80s %14s %14s %9s", "Benchmark", "Before", "After", "Change"));
+        for ( Map.Entry<String, Map<String, Object>> entry : after.entrySet() )
+        {
+            Map<String, Object> afterMetric = entry.getValue();
+            Map<String, Object> beforeMetric = before.get(entry.getKey());
+            String unit = String.valueOf(afterMetric.get("scoreUnit"));
+
+            if ( beforeMetric == null )
+            {
+                System.out.println(String.format("%-80s %14s %14s %9s", entry.getKey(), "-",
+                                                 format(afterMetric) + " " + unit, "new"));
+                continue;
+            }
+
+            double beforeScore = score(beforeMetric, "score");
+            double afterScore = score(afterMetric, "score");
+            double change = beforeScore == 0 ? 0 : (afterScore - beforeScore) * 100.0 / beforeScore;
+            boolean significant = Math.abs(afterScore - beforeScore)
+                                  > score(beforeMetric, "scoreError") + score(afterMetric, "scoreError");
+
+            System.out.println(String.format("%-80s %14s %14s %+8.1f%%%s", entry.getKey(), format(beforeMetric),
+                                             format(afterMetric) + " " + unit, change, significant ? " *" : ""));
+        }
+
+        System.out.println("* The difference is larger than the score errors (check the score unit for direction)");
+    }
+
+    /** Benchmark name with its params --> primary metric */
+    private static Map<String, Map<String, Object>> readResults(File resultFile) {
+
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        List<Map<String, Object>> runs = cast(new JsonSlurper().parse(resultFile));
+
+        for ( Map<String, Object> result : runs )
+        {
+            String name = String.valueOf(result.get("benchmark"));
+            Map<String, Object> params = cast(result.get("params"));
+
+            if ( params != null && !params.isEmpty() )
+            {
+                name += " " + new TreeMap<>(params);
+            }
+
+            results.put(name, cast(result.get("primaryMetric")));
+        }
+
+        return results;
+    }
+
+    /** JSON objects parse to Map<String, Object> and arrays to List, this is the one unchecked cast */
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object json) {
+        return (T) json;
+    }
+
+    private static double score(Map<String, Object> metric, String name) {
+
+        Object value = metric.get(name);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static String format(Map<String, Object> metric) {
+        return String.format("%.3f", score(metric, "score"));
+    }
+}
@@ -0,0 +1,182 @@
+package net.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Statistics collection under contention with 1, 8 and 64 threads recording
+ * lookups for the same small set of keys (the hot config keys). The 'locking'
+ * benchmarks replicate the original ReentrantLock/ReentrantReadWriteLock
+ * implementation for comparison.
+ *
+ * ./gradlew jmh -PjmhArgs="ConfigStatisticsBenchmark"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigStatisticsBenchmark {
+
+    private static final int KEY_COUNT = 16;
+    private static final String PATTERN = "stocks\\.stock.*";
+
+    @State(Scope.Benchmark)
+    public static class Keys {
+
+        final String[] _keys = new String[KEY_COUNT];
+        final ConfigStatistics _statistics = new ConfigStatistics();
+        final LockingStatistics _lockingStatistics = new LockingStatistics();
+
+        @Setup
+        public void setUp() {
+
+            _statistics.clearStatistics();
+            for ( int i = 0; i < KEY_COUNT; i++ )
+            {
+                _keys[i] = "structures.stocks.stock.name.ticker" + i + ".shares";
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int _next;
+
+        String nextKey(Keys keys) {
+
+            _next = (_next + 1) & (KEY_COUNT - 1);
+            return keys._keys[_next];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void lockFree_1(Keys keys, Cursor cursor) {
+        keys._statistics.addKeyLookup(cursor.nextKey(keys), 100, PATTERN);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void lockFree_8(Keys keys, Cursor cursor) {
+        keys._statistics.addKeyLookup(cursor.nextKey(keys), 100, PATTERN);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void lockFree_64(Keys keys, Cursor cursor) {
+        keys._statistics.addKeyLookup(cursor.nextKey(keys), 100, PATTERN);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void locking_1(Keys keys, Cursor cursor) {
+        keys._lockingStatistics.addKeyLookup(cursor.nextKey(keys), 100, PATTERN);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void locking_8(Keys keys, Cursor cursor) {
+        keys._lockingStatistics.addKeyLookup(cursor.nextKey(keys), 100, PATTERN);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void locking_64(Keys keys, Cursor cursor) {
+        keys._lockingStatistics.addKeyLookup(cursor.nextKey(keys), 100, PATTERN);
+    }
+
+    /** The original ConfigStatistics/StatsValue locking approach */
+    static class LockingStatistics {
+
+        private final ReentrantLock _lock = new ReentrantLock();
+        private final Map<String, LockingValue> _stats = new HashMap<>();
+
+        void addKeyLookup(String key, long latency, String pattern) {
+
+            LockingValue storedValue = _stats.get(key);
+            if ( storedValue != null )
+            {
+                storedValue.updateStats(latency, pattern);
+                return;
+            }
+
+            _lock.lock();
+            try
+            {
+                storedValue = _stats.get(key);
+                if ( storedValue == null )
+                {
+                    storedValue = new LockingValue();
+                    _stats.put(key, storedValue);
+                }
+
+                storedValue.updateStats(latency, pattern);
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+    }
+
+    static class LockingValue {
+
+        private final ReentrantReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+        private final Set<String> _associatedPatterns = new HashSet<>();
+        private long _count;
+        private long _totalLatency;
+        private volatile long _lastAccessed;
+
+        void updateStats(long latency, String pattern) {
+
+            _readWriteLock.writeLock().lock();
+            try
+            {
+                _count++;
+                _totalLatency += latency;
+                // The original HashSet add is not thread safe, keep it under the lock here
+                _associatedPatterns.add(pattern);
+            }
+            finally
+            {
+                _readWriteLock.writeLock().unlock();
+            }
+
+            _lastAccessed = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares applying a prefix pattern to every key in a config map (the
+ * original ConfigLookup.findMatchesFromKeyset() approach) against only the
+ * KeyTrie candidates for the pattern's literal prefix.
+ *
+ * ./gradlew jmh -PjmhArgs="KeyTrieBenchmark"
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyTrieBenchmark {
+
+    @Param({"1000", "100000"})
+    int keyCount;
+
+    private Map<String, String> _configMap;
+    private KeyTrie _keyTrie;
+    private Pattern _pattern;
+    private String _literalPrefix;
+
+    @Setup
+    public void setUp() {
+
+        _configMap = new HashMap<>();
+        for ( int i = 0; i < keyCount; i++ )
+        {
+            _configMap.put("structures.group" + (i % 100) + ".stock.name.ticker" + i + ".shares", String.valueOf(i));
+        }
+
+        _keyTrie = new KeyTrie(_configMap);
+        _pattern = PatternHelper.buildPattern("group42.stock");
+        _literalPrefix = PatternHelper.findLiteralPrefix(_pattern);
+    }
+
+    @Benchmark
+    public int scanKeyset() {
+
+        int matches = 0;
+        for ( String key : _configMap.keySet() )
+        {
+            if ( _pattern.matcher(key.toLowerCase()).find() )
+            {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+
+    @Benchmark
+    public int keyTrie() {
+
+        int matches = 0;
+        for ( KeyTrie.Entry entry : _keyTrie.find(_literalPrefix, false) )
+        {
+            if ( _pattern.matcher(entry.getLowerCaseKey()).find() )
+            {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+}
@@ -2,7 +2,20 @@ package net.config
 
 import org.slf4j.LoggerFactory;
 import net.common.JigProperties
+import net.util.OffHeapConfigMap
+import net.util.StringPool
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.regex.Pattern
+import java.util.zip.CRC32
 
 /**
  * Load XML configuration files from "classpath/config" or "jConfigMap.location"
@@ -44,6 +57,26 @@ class ConfigLoader {
     private static def final LOG = LoggerFactory.getLogger(ConfigLoader.class)
     //private final def _supportedFiles = /.*\.xml/ //|json)/
 
+    /** How long each config file took to load (file name --> millis), in load order */
+    private final Map<String, Long> _fileLoadTimes = Collections.synchronizedMap(new LinkedHashMap<String, Long>())
+
+    /** Whether the last loadMapsFromFiles() used url or database configs, see getSnapshotSourceFiles() */
+    private boolean _remoteConfigsLoaded = false
+
+    /** The checksum of every source (file, url or database table) from the previous loads */
+    private final Map<String, LoadedSource> _loadedSources = new ConcurrentHashMap<String, LoadedSource>()
+    /** Sources that were added, changed or removed by the last loadMapsFromFiles() */
+    private final Set<String> _changedSources = Collections.synchronizedSet(new LinkedHashSet<String>())
+    private volatile int _loadCount = 0
+    /** Kept between loads for polling database config tables, see pollDatabaseConfigs() */
+    private final SqlFlattener _sqlFlattener = new SqlFlattener()
+    /** Dedupes keys and values across the files of one load, null unless 'jig.string.pool=true' */
+    private volatile StringPool _stringPool = null
+    /** Each file map of the last load (before overrides) --> the same map after overrides, see applyOverrides() */
+    private Map<Map<String,String>, Map<String,String>> _overriddenMaps = new IdentityHashMap<Map<String,String>, Map<String,String>>()
+    /** The overrides applied by the last load */
+    private Map<String,String> _lastOverrides = Collections.<String,String>emptyMap()
+
 
     /**
      * Load a XML configuration file if that file exists and has the correct
@@ -58,6 +91,11 @@ class ConfigLoader {
 
         if ( file != null && (new File(file)).exists() )
         {
+            if ( useStaxXmlFlattener() )
+            {
+                return new StaxXmlFlattener().flatten(file)
+            }
+
             def xmlFlattener = new XmlFlattener();
             return xmlFlattener.flatten(file)
         }
@@ -66,6 +104,35 @@ class ConfigLoader {
         return null;
     }
 
+    /**
+     * The streaming flattener is used for 'jig.flattener.xml=stax' (see StaxXmlFlattener).
+     */
+    def boolean useStaxXmlFlattener() {
+        return "stax".equalsIgnoreCase(System.getProperty(JigProperties.JIG_XML_FLATTENER.getName())?.trim())
+    }
+
+    /**
+     * The streaming flattener is used for 'jig.flattener.json=streaming' (see StreamingJsonFlattener).
+     */
+    def boolean useStreamingJsonFlattener() {
+        return "streaming".equalsIgnoreCase(System.getProperty(JigProperties.JIG_JSON_FLATTENER.getName())?.trim())
+    }
+
+    /**
+     * Keys and values are pooled with 'jig.string.pool=true' (see StringPool). Pooling
+     * saves heap for configs with many repeated values, but makes each load slower.
+     */
+    def boolean useStringPool() {
+        return "true".equalsIgnoreCase(System.getProperty(JigProperties.JIG_STRING_POOL.getName())?.trim())
+    }
+
+    /**
+     * @return The string pool of the last load (cleared, only its counts remain), null if disabled
+     */
+    def StringPool getStringPool() {
+        return _stringPool
+    }
+
     /**
      * Load a JSON configuration file into a Map. First ensure the
      * file exists before loading it.
@@ -79,6 +146,11 @@ class ConfigLoader {
 
         if ( jsonFileUrl != null && (new File(jsonFileUrl.toString())).exists() )
         {
+            if ( useStreamingJsonFlattener() )
+            {
+                return new StreamingJsonFlattener().flatten(jsonFileUrl)
+            }
+
             def jsonFlattener = new JsonFlattener()
             return jsonFlattener.flatten(jsonFileUrl)
         }
@@ -138,6 +210,223 @@ class ConfigLoader {
         return new HashMap<String,String>()
     }
 
+    /**
+     * Load the independent files of one location (classpath, url or override) at the
+     * same time on a bounded number of threads ('jig.load.threads', default is the
+     * number of processors). The results are in the same order as 'fileNames', so
+     * they can be merged in the usual precedence order.
+     *
+     * @param fileNames The config files for one location
+     * @return The key values for each file (see loadKeyValuesFromFile()), in 'fileNames' order
+     */
+    def List<Map<String,String>> loadKeyValuesFromFiles(List<String> fileNames) {
+
+        int threadCount = Math.min(fileNames.size(), findLoadThreadCount())
+        if ( threadCount <= 1 )
+        {
+            return fileNames.collect { fileName -> timedLoadKeyValuesFromFile(fileName) }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new LoaderThreadFactory())
+        try
+        {
+            List<Future<Map<String,String>>> loads = fileNames.collect { fileName ->
+                executor.submit({ timedLoadKeyValuesFromFile(fileName) } as Callable<Map<String,String>>)
+            }
+
+            return loads.collect { load -> load.get() }
+        }
+        catch ( ExecutionException ee )
+        {
+            // Fail the same way as a sequential load
+            throw ee.getCause()
+        }
+        finally
+        {
+            executor.shutdown()
+        }
+    }
+
+    /**
+     * @return How long each config file took to load (file name --> millis) in load order
+     */
+    def Map<String, Long> getFileLoadTimes() {
+
+        synchronized (_fileLoadTimes)
+        {
+            return new LinkedHashMap<String, Long>(_fileLoadTimes)
+        }
+    }
+
+    private def Map<String,String> timedLoadKeyValuesFromFile(String fileName) {
+
+        long start = System.nanoTime()
+        def keyValues = loadKeyValuesFromChangedFile(fileName)
+        long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        _fileLoadTimes.put(fileName, loadMillis)
+        LOG.info("Loaded ${fileName} In ${loadMillis} ms")
+
+        return keyValues
+    }
+
+    /**
+     * A local file is only parsed if it is new or its size or content hash changed since
+     * the last load (touching a file does not re-parse it). Url configs are always loaded,
+     * their key values are checked for changes instead. With off-heap or compact 'jig.storage'
+     * nothing is kept, so an unchanged file is parsed again (but not reported as changed).
+     *
+     * @return The read-only file key values, the same map as the last load for an unchanged file
+     */
+    private def Map<String,String> loadKeyValuesFromChangedFile(String fileName) {
+
+        def file = fileName == null ? null : new File(fileName)
+        if ( file == null || !file.isFile() )
+        {
+            def keyValues = poolKeyValues(loadKeyValuesFromFile(fileName))
+            if ( fileName != null && keyValues != null )
+            {
+                updateLoadedSource(fileName, checksumKeyValues(keyValues), null)
+            }
+
+            return keyValues
+        }
+
+        long checksum = checksumFile(file)
+        def previous = _loadedSources.get(fileName)
+        if ( previous != null && previous.checksum == checksum && previous.keyValues != null )
+        {
+            if ( _stringPool == null )
+            {
+                previous.loadCount = _loadCount
+                return previous.keyValues
+            }
+
+            // Pooled again so it shares strings with the files parsed in this load, the pooled copy replaces it
+            def pooled = Collections.unmodifiableMap(_stringPool.poolAll(previous.keyValues))
+            updateLoadedSource(fileName, checksum, pooled)
+            return pooled
+        }
+
+        def keyValues = poolKeyValues(loadKeyValuesFromFile(fileName))
+        if ( keyValues == null )
+        {
+            _loadedSources.remove(fileName)
+            _changedSources.add(fileName)
+            return null
+        }
+
+        // Shared with the config snapshot (heap storage wraps it), overrides copy it first
+        keyValues = Collections.unmodifiableMap(keyValues)
+
+        // Off-heap and compact config maps copy it out of the heap, keeping it here would defeat that
+        def retained = OffHeapConfigMap.findStorage() == OffHeapConfigMap.Storage.HEAP ? keyValues : null
+        updateLoadedSource(fileName, checksum, retained)
+        return keyValues
+    }
+
+    /** A copy with pooled keys and values (see StringPool), or 'keyValues' itself when pooling is disabled */
+    private Map<String,String> poolKeyValues(Map<String,String> keyValues) {
+
+        def stringPool = _stringPool
+        return stringPool != null ? stringPool.poolAll(keyValues) : keyValues
+    }
+
+    private void updateLoadedSource(String source, long checksum, Map<String,String> keyValues) {
+
+        def previous = _loadedSources.put(source, new LoadedSource(checksum, keyValues, _loadCount))
+        if ( previous == null || previous.checksum != checksum )
+        {
+            _changedSources.add(source)
+        }
+    }
+
+    /** The CRC32 of the file bytes mixed with the file size */
+    private static long checksumFile(File file) {
+
+        def crc = new CRC32()
+        file.eachByte(1 << 16) { byte[] bytes, int length ->
+            crc.update(bytes, 0, length)
+        }
+
+        return crc.getValue() * 31 + file.length()
+    }
+
+    /** An order independent checksum of the key values, for sources that are not local files */
+    private static long checksumKeyValues(Map<String,String> keyValues) {
+
+        long checksum = keyValues.size()
+        keyValues.each { key, value ->
+            checksum += (key.hashCode() * 31L) ^ (value == null ? 0 : value.hashCode())
+        }
+
+        return checksum
+    }
+
+    /**
+     * The files, urls and database tables that were added, changed or removed by the last
+     * loadMapsFromFiles() on this loader. On the first load every source is new.
+     *
+     * @return Source names in the order they were loaded
+     */
+    def List<String> getChangedSources() {
+
+        synchronized (_changedSources)
+        {
+            return new ArrayList<String>(_changedSources)
+        }
+    }
+
+    /** What a source looked like the last time it was loaded */
+    private static class LoadedSource {
+
+        final long checksum
+        /** The read-only parsed key values for local files (before overrides), otherwise null */
+        final Map<String,String> keyValues
+        volatile int loadCount
+
+        LoadedSource(long checksum, Map<String,String> keyValues, int loadCount) {
+
+            this.checksum = checksum
+            this.keyValues = keyValues
+            this.loadCount = loadCount
+        }
+    }
+
+    private static int findLoadThreadCount() {
+
+        def threads = System.getProperty(JigProperties.JIG_LOAD_THREADS.getName())
+        if ( threads == null || threads.trim().empty )
+        {
+            return Runtime.getRuntime().availableProcessors()
+        }
+
+        try
+        {
+            return Math.max(1, Integer.parseInt(threads.trim()))
+        }
+        catch ( NumberFormatException nfe )
+        {
+            LOG.warn("Invalid ${JigProperties.JIG_LOAD_THREADS.getName()}: '${threads}', Loading One File At A Time")
+            return 1
+        }
+    }
+
+    /** Daemon threads, so a load never holds up JVM shutdown */
+    private static class LoaderThreadFactory
+        implements ThreadFactory {
+
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger()
+
+        @Override
+        Thread newThread(Runnable runnable) {
+
+            def thread = new Thread(runnable, "jig-config-loader-" + THREAD_COUNT.incrementAndGet())
+            thread.setDaemon(true)
+            return thread
+        }
+    }
+
     /**
      * Load more than one file and store in one large map.
      *
@@ -170,6 +459,7 @@ class ConfigLoader {
 
         // todo: databse configs -- for now prefer 'loadMapsFromFiles()'
 
+        _stringPool?.clear()
         return keyValuesMap
     }
 
@@ -198,8 +488,8 @@ class ConfigLoader {
         }
 
         def overrideKeyValues = new HashMap<String, String>()
-        overrideConfigs.each { overrideFile ->
-            overrideKeyValues.putAll(loadKeyValuesFromFile(overrideFile))
+        loadKeyValuesFromFiles(overrideConfigs).each { keyValues ->
+            overrideKeyValues.putAll(keyValues)
         }
 
         LOG.info("Loaded ${overrideConfigs.size()} Override Config Key-Values")
@@ -217,8 +507,8 @@ class ConfigLoader {
         }
 
         def urlConfigMap = new HashMap<String, String>()
-        urlConfigs.each { urlFile ->
-            urlConfigMap.putAll(loadKeyValuesFromFile(urlFile))
+        loadKeyValuesFromFiles(urlConfigs).each { keyValues ->
+            urlConfigMap.putAll(keyValues)
         }
 
         LOG.info("Loaded ${urlConfigMap.size()} From URL Location(s)")
@@ -235,8 +525,8 @@ class ConfigLoader {
             return
         }
 
-        classpathConfigs.each { classpathFile ->
-            keyValuesMap.putAll(loadKeyValuesFromFile(classpathFile))
+        loadKeyValuesFromFiles(classpathConfigs).each { keyValues ->
+            keyValuesMap.putAll(keyValues)
         }
 
         LOG.info("Loaded ${keyValuesMap.size()} Classpath Config Key-Values")
@@ -253,9 +543,10 @@ class ConfigLoader {
         }
 
         LOG.info("Loading Configs From Default Location: classpath/config")
-        classpathFiles.each { classpathFile ->
+        def loadedKeyValues = loadKeyValuesFromFiles(classpathFiles)
+        classpathFiles.eachWithIndex { classpathFile, i ->
 
-            def classpathKeyValues = loadKeyValuesFromFile(classpathFile)
+            def classpathKeyValues = loadedKeyValues[i]
             if ( !classpathKeyValues.isEmpty() )
             {
                 def shortName = shortenFileName(classpathFile)
@@ -274,8 +565,9 @@ class ConfigLoader {
         }
 
         LOG.info("Loading Configs From Remote URL(s)")
-        urlFiles.each { urlFile ->
-            def urlKeyValues = loadKeyValuesFromFile(urlFile)
+        def loadedKeyValues = loadKeyValuesFromFiles(urlFiles)
+        urlFiles.eachWithIndex { urlFile, i ->
+            def urlKeyValues = loadedKeyValues[i]
             if ( !urlKeyValues.isEmpty() )
             {
                 def shortName = shortenFileName(urlFile)
@@ -289,26 +581,54 @@ class ConfigLoader {
      * For example:
      * file1 -> Map<String,String> file1 config map
      * file2 -> Map<String,String> file2 config map
+     * The returned map iterates in load order (classpath, url, override, database), so
+     * later entries take precedence when the same key exists in more than one file.
+     *
      * @return A Map with shortened file name for the key and that files key-values
      * todo: make immutable instead of updating
      */
     def Map<String, Map<String, String>> loadMapsFromFiles() {
 
-        def configMap = new HashMap<String, Map<String,String>>();
+        def configMap = new LinkedHashMap<String, Map<String,String>>();
+        _remoteConfigsLoaded = !loadConfigsFromUrls().isEmpty()
+        _fileLoadTimes.clear()
+        _changedSources.clear()
+        _loadCount++
+        _stringPool = useStringPool() ? new StringPool() : null
 
         updateFilesMapConfigMapWithClasspathConfigs(configMap)
 
         updateFilesMapConfigMapWithUrlConfigs(configMap)
 
-        updateFilesMapWithFileOverrides(configMap)
+        def overrides = new HashMap<String,String>()
+        updateFilesMapWithFileOverrides(configMap, overrides)
 
-        updateFilesMapWithCommandLineOverrides(configMap)
+        updateFilesMapWithCommandLineOverrides(configMap, overrides)
+
+        applyOverrides(configMap, overrides)
 
         configMap = loadDatabaseConfigs(configMap)
+        removeUnloadedSources()
+        _stringPool?.clear()
 
         return configMap
     }
 
+    /** Sources from an earlier load that are gone now count as changed */
+    private void removeUnloadedSources() {
+
+        def iterator = _loadedSources.entrySet().iterator()
+        while ( iterator.hasNext() )
+        {
+            def entry = iterator.next()
+            if ( entry.value.loadCount != _loadCount )
+            {
+                iterator.remove()
+                _changedSources.add(entry.key)
+            }
+        }
+    }
+
     /**
      * Creates a new config map without any db config params (config used to connect to
      * a configuration database).
@@ -318,31 +638,95 @@ class ConfigLoader {
      */
     private def loadDatabaseConfigs(Map<String, Map<String, String>> configMap) {
 
-        SqlFlattener sqlFlattener = new SqlFlattener()
+        SqlFlattener sqlFlattener = _sqlFlattener
+        if ( !sqlFlattener.findDbConfigParams(configMap).isEmpty() )
+        {
+            _remoteConfigsLoaded = true
+        }
+
         Map<String, Map<String, String>> dbConfigs = sqlFlattener.buildMapFromDatabaseTables(configMap)
 
         dbConfigs.each { entry ->
 
             LOG.info("Adding Configuration Values Retrieved From Database")
-            configMap.put(entry.key, entry.value)
+            configMap.put(entry.key, poolKeyValues(entry.value))
+            updateLoadedSource(entry.key, checksumKeyValues(entry.value), null)
         }
 
         return  sqlFlattener.purgeAllDbConfigParams(configMap)
     }
 
-    private def updateFilesMapWithCommandLineOverrides(Map<String, Map<String, String>> configMap) {
+    /**
+     * Read the database config rows that changed since the last load or poll, for
+     * tables with a 'versionColumn' (see SqlFlattener.pollChangedRows()).
+     *
+     * @return Only the changed key:values for each table (table name --> changes), empty if none changed
+     */
+    def Map<String, Map<String, String>> pollDatabaseConfigs() {
+        return _sqlFlattener.pollChangedRows()
+    }
+
+    /**
+     * Close the database connections kept between polls (see SqlFlattener.closePollConnections()).
+     */
+    def void closeDatabaseConnections() {
+        _sqlFlattener.closePollConnections()
+    }
+
+    /**
+     * The local files the last loadMapsFromFiles() read, so a config snapshot can tell
+     * whether they changed (see net.client.ConfigSnapshotFile). Url and database configs
+     * cannot be checked that way.
+     *
+     * @return The loaded config files in load order, or null if url or database configs were loaded
+     */
+    def List<String> getSnapshotSourceFiles() {
+
+        if ( _remoteConfigsLoaded )
+        {
+            return null
+        }
+
+        return new ArrayList<String>(getFileLoadTimes().keySet())
+    }
+
+    /**
+     * The directories searched for config files: the 'jig.location' override directory
+     * and each 'classpath/config' directory with config files. A snapshot records their
+     * listings to detect added or removed files and the file watcher watches them.
+     *
+     * @return Absolute directory paths, without duplicates
+     */
+    def List<String> getConfigDirectories() {
+
+        def directories = new LinkedHashSet<String>()
+        loadConfigFilesFromClasspath().each { classpathFile ->
+            directories.add(new File(classpathFile).getParentFile().getAbsolutePath())
+        }
+
+        def location = System.getProperty(JigProperties.JIG_LOCATION.getName())
+        if ( location != null )
+        {
+            directories.add(new File(location).getAbsolutePath())
+        }
+
+        return new ArrayList<String>(directories)
+    }
+
+    private def updateFilesMapWithCommandLineOverrides(Map<String, Map<String, String>> configMap,
+                                                       Map<String, String> overrides) {
 
         def commandLineOverrides = loadFromCommandLineSystemProperties()
 
         if (!commandLineOverrides.isEmpty())
         {
             LOG.info("Updating All File Maps From Command Line Overrides")
-            updateAllMapsWithOverrides(configMap, commandLineOverrides)
+            overrides.putAll(commandLineOverrides)
         }
     }
 
     // Load from files in override location -- treat as override configs
-    private def updateFilesMapWithFileOverrides(configMap) {
+    private def updateFilesMapWithFileOverrides(configMap, Map<String, String> overrides) {
 
         def overrideFiles = loadConfigFilesFromOverride()
 
@@ -352,16 +736,17 @@ class ConfigLoader {
         }
 
         LOG.info("Loading Configs From Override Location")
-        overrideFiles.each { overrideFile ->
+        def loadedKeyValues = loadKeyValuesFromFiles(overrideFiles)
+        overrideFiles.eachWithIndex { overrideFile, i ->
 
-            def overrideLocationKeyValues = loadKeyValuesFromFile(overrideFile)
+            def overrideLocationKeyValues = loadedKeyValues[i]
             if (!overrideLocationKeyValues.isEmpty())
             {
                 def shortName = shortenFileName(overrideFile)
                 configMap.put(shortName, overrideLocationKeyValues)
 
                 LOG.info("Updating All File Maps From Override Config Location")
-                updateAllMapsWithOverrides(configMap, overrideLocationKeyValues)
+                overrides.putAll(overrideLocationKeyValues)
             }
         }
     }
@@ -389,28 +774,86 @@ class ConfigLoader {
 
     /**
      * Iterates through each file:config-key entry and replaces all key-values that with the
-     * override value. Run this after the override map is finalized.
+     * override value. Run this after the override map is finalized. A later override of the
+     * same key wins, so applying the merged overrides once is the same as applying each
+     * override file (then the command line) in turn.
+     *
+     * Only the work that changed since the last load is done: a file map that was also in
+     * the last load (an unchanged file, see loadKeyValuesFromChangedFile()) starts from its
+     * overridden map of that load and only the keys whose override changed are applied
+     * to it. A file map is copied the first time one of its values is replaced.
      *
      * @param fileMaps Each config map per config file (uses filename as a namespace)
      * @param overrides Overrides from the override file location, url, or command line property.
      *
      * @return The original filename:key-value with updates (note: side effects)
      */
-    private def updateAllMapsWithOverrides(Map<String, Map<String,String>> fileMaps, Map<String,String> overrides) {
+    private def applyOverrides(Map<String, Map<String,String>> fileMaps, Map<String,String> overrides) {
 
-        fileMaps.keySet().each { fileKey ->
+        def changedKeys = new HashSet<String>()
+        overrides.each { key, value ->
+            if ( !_lastOverrides.containsKey(key) || _lastOverrides.get(key) != value )
+            {
+                changedKeys.add(key)
+            }
+        }
+
+        _lastOverrides.keySet().each { key ->
+            if ( !overrides.containsKey(key) )
+            {
+                changedKeys.add(key)
+            }
+        }
+
+        def overriddenMaps = new IdentityHashMap<Map<String,String>, Map<String,String>>()
+        fileMaps.entrySet().each { fileEntry ->
+
+            def keyValues = fileEntry.getValue()
+            def previous = _overriddenMaps.get(keyValues)
+            def overridden = previous != null ?
+                updateMapWithOverrides(fileEntry.getKey(), keyValues, previous, changedKeys, overrides) :
+                updateMapWithOverrides(fileEntry.getKey(), keyValues, keyValues, overrides.keySet(), overrides)
 
-            overrides.entrySet().each { overrideEntry ->
+            overriddenMaps.put(keyValues, overridden)
+            fileEntry.setValue(overridden)
+        }
+
+        _overriddenMaps = overriddenMaps
+        _lastOverrides = overrides
+    }
 
-                String overrideKey = overrideEntry.getKey()
-                if ( fileMaps.get(fileKey).containsKey(overrideKey) )
+    /**
+     * @param keyValues The file key values before overrides
+     * @param overridden 'keyValues' with the overrides of the last load (or 'keyValues' itself)
+     * @param keys The override keys to check, a key without an override gets its file value back
+     * @return 'overridden', or a read-only copy of it when a value was replaced
+     */
+    private def Map<String,String> updateMapWithOverrides(String fileKey, Map<String,String> keyValues,
+                                                         Map<String,String> overridden, Collection<String> keys,
+                                                         Map<String,String> overrides) {
+
+        def updated = overridden
+        keys.each { overrideKey ->
+
+            if ( !keyValues.containsKey(overrideKey) )
+            {
+                return
+            }
+
+            def overrideValue = overrides.containsKey(overrideKey) ? overrides.get(overrideKey) : keyValues.get(overrideKey)
+            if ( updated.get(overrideKey) != overrideValue )
+            {
+                if ( updated.is(overridden) )
                 {
-                    def overrideValue = overrideEntry.getValue()
-                    def oldValue = fileMaps.get(fileKey).put(overrideKey, overrideValue)
-                    LOG.info("Replaced ${fileKey}:${overrideKey} '${oldValue}' With '${overrideValue}'")
+                    updated = new HashMap<String,String>(overridden)
                 }
+
+                def oldValue = updated.put(overrideKey, overrideValue)
+                LOG.info("Replaced ${fileKey}:${overrideKey} '${oldValue}' With '${overrideValue}'")
             }
         }
+
+        return updated.is(overridden) ? overridden : Collections.unmodifiableMap(updated)
     }
 
     /**
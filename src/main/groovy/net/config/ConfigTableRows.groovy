@@ -0,0 +1,86 @@
+package net.config
+
+/**
+ * The key:values read from a polled database config table and the highest
+ * version column value seen, which is the watermark for the next poll
+ * (see SqlRetriever.loadChangedRows()). Rows committed after a poll can have
+ * the watermark version too (timestamps), so the next poll reads that version
+ * again and only keeps the rows it has not read yet.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+class ConfigTableRows {
+
+    private final Map<String, String> _keyValues = new HashMap<String, String>()
+    private final Object _previousWatermark
+    private final Map<String, String> _previousRows
+    private Object _watermark
+    private Map<String, String> _watermarkRows
+
+    /**
+     * @param watermark The highest version read so far, otherwise null
+     * @param watermarkRows The key:values already read with version 'watermark'
+     */
+    ConfigTableRows(Object watermark, Map<String, String> watermarkRows) {
+
+        _previousWatermark = watermark
+        _previousRows = watermarkRows
+        _watermark = watermark
+        _watermarkRows = new HashMap<String, String>(watermarkRows)
+    }
+
+    /** Rows at the previous watermark that were already read (same key and value) are skipped */
+    def void add(String key, String value, Object version) {
+
+        if ( version != null && _previousWatermark != null && ((Comparable) version).compareTo(_previousWatermark) == 0
+             && _previousRows.containsKey(key) && Objects.equals(_previousRows.get(key), value) )
+        {
+            return
+        }
+
+        _keyValues.put(key, value)
+
+        if ( version == null )
+        {
+            return
+        }
+
+        if ( _watermark == null || ((Comparable) version).compareTo(_watermark) > 0 )
+        {
+            _watermark = version
+            _watermarkRows = new HashMap<String, String>()
+        }
+
+        if ( ((Comparable) version).compareTo(_watermark) == 0 )
+        {
+            _watermarkRows.put(key, value)
+        }
+    }
+
+    def Map<String, String> getKeyValues() {
+        return _keyValues
+    }
+
+    /** @return The highest version read, or the previous watermark if no rows changed */
+    def Object getWatermark() {
+        return _watermark
+    }
+
+    /** @return The key:values read with the watermark version, the next poll reads them again */
+    def Map<String, String> getWatermarkRows() {
+        return _watermarkRows
+    }
+}
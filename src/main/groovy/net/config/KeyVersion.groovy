@@ -1,5 +1,7 @@
 package net.config
 
+import groovy.transform.CompileStatic
+
 /**
  * Builds a map with a versioned key if necessary and updates
  * _keyVersion. This should safely allow the following usage:
@@ -31,8 +33,9 @@ package net.config
  */
 class KeyVersion {
 
-    private def keyVersionCount = new HashMap<String,Integer>()
+    private final Map<String,Integer> keyVersionCount = new HashMap<String,Integer>()
 
+    @CompileStatic
     def updateMapWithKeyValue(Map<String,String> originalMap, String key, String value) {
 
         if ( key == null || value == null )
@@ -53,6 +56,7 @@ class KeyVersion {
     }
 
 
+    @CompileStatic
     def updateMapWithKeyValues(Map<String,String> originalMap, Map<String,String> additionalMap) {
 
         additionalMap.entrySet().each { entry ->
@@ -80,6 +84,7 @@ class KeyVersion {
     }
 
 
+    @CompileStatic
     private def String buildIndexedKeyAndUpdateKeyCount(String key) {
 
         def downcaseKey = key.toLowerCase()
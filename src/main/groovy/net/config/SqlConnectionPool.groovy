@@ -0,0 +1,110 @@
+package net.config
+
+import groovy.sql.Sql
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Reuses database connections while SqlFlattener reads the config tables for one
+ * load, or between polls of the tables with a version column. Tables with the same
+ * url, user, password and driver share connections. A connection is only used by
+ * one thread at a time, so concurrent table reads for one database open at most
+ * one connection per reading thread. Every connection is closed with close().
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+class SqlConnectionPool
+    implements Closeable {
+
+    private static final def LOG = LoggerFactory.getLogger(SqlConnectionPool.class)
+
+    private final Map<List<String>, Queue<Sql>> _idle = new ConcurrentHashMap<List<String>, Queue<Sql>>()
+    private final Queue<Sql> _opened = new ConcurrentLinkedQueue<Sql>()
+
+    /**
+     * @param connectionKey The connection params (url, user, password, driver)
+     * @param factory Opens a new connection when there is no idle one for 'connectionKey'
+     * @return An idle or new connection, give it back with release()
+     */
+    def Sql borrow(List<String> connectionKey, Closure<Sql> factory) {
+
+        def sql = findIdle(connectionKey).poll()
+        if ( sql != null )
+        {
+            return sql
+        }
+
+        sql = factory.call()
+        if ( sql != null )
+        {
+            _opened.add(sql)
+        }
+
+        return sql
+    }
+
+    def void release(List<String> connectionKey, Sql sql) {
+
+        if ( sql != null )
+        {
+            findIdle(connectionKey).add(sql)
+        }
+    }
+
+    /** Close a connection that failed instead of giving it back, the next borrow() opens a new one */
+    def void discard(Sql sql) {
+
+        if ( sql != null && _opened.remove(sql) )
+        {
+            closeQuietly(sql)
+        }
+    }
+
+    /** @return How many connections were opened */
+    def int getOpenedCount() {
+        return _opened.size()
+    }
+
+    @Override
+    void close() {
+
+        for ( sql in _opened )
+        {
+            closeQuietly(sql)
+        }
+
+        _opened.clear()
+        _idle.clear()
+    }
+
+    private static void closeQuietly(Sql sql) {
+
+        try
+        {
+            sql.close()
+        }
+        catch ( Exception e )
+        {
+            LOG.warn("Problem Closing Database Config Connection", e)
+        }
+    }
+
+    private def Queue<Sql> findIdle(List<String> connectionKey) {
+        return _idle.computeIfAbsent(connectionKey, { key -> new ConcurrentLinkedQueue<Sql>() })
+    }
+}
@@ -1,11 +1,20 @@
 package net.config
 
 import groovy.sql.Sql
+import net.common.JigProperties
 import net.config.client.ConfigLookup
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map.Entry
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Loads from multiple configuration only databases given the following:
@@ -23,6 +32,8 @@ import java.util.Map.Entry
  *   <userPassword>unencryptedPassword</userPassword>
  *   <url>some://url/with/db/driver</url>
  *   <driver>someJdbcDriver</driver>
+ *   <!-- optional, see pollChangedRows() -->
+ *   <versionColumn>updated</versionColumn>
  * </dbConfigTable>
  * </pre>
  *
@@ -34,6 +45,12 @@ import java.util.Map.Entry
  * structures.dbconfigtable.name.bar.url : some://url/with/db/driver
  * structures.dbconfigtable.name.bar.driver : someJdbcDriver
  *
+ * With a 'versionColumn' (a column that increases when a row is inserted or updated),
+ * a table can be polled for changed rows between loads (see pollChangedRows()). A poll
+ * cannot see deleted rows, they stay in the config until the next full load. Each poll
+ * with changes rebuilds the table's config map (see net.client.ConfigMap), so polling
+ * suits small config tables.
+ *
  * Notes:
  * These databases should be stand alone configuration databases that do not
  * contain sensitive information. Isolating them from the rest of persistent
@@ -67,12 +84,20 @@ class SqlFlattener {
 
     private static final def LOG = LoggerFactory.getLogger(SqlFlattener.class)
 
+    /** Tables with a version column from the last load: table name --> poll state */
+    private final Map<String, PolledTable> _polledTables = new ConcurrentHashMap<String, PolledTable>()
+    /** Connections for pollChangedRows(), kept between polls until the next load or closePollConnections() */
+    private SqlConnectionPool _pollConnections = null
+
     public static final def DB_TABLE_PARAMS = ~/dbconfigtable.*/
     public static final def TABLE = "tablename"
     public static final def USER = "username"
     public static final def PASSWORD = "userpassword"
     public static final def DB_URL = "url"
     public static final def DRIVER = "driver"
+    /** Optional, a column that increases when a row changes (see pollChangedRows()) */
+    public static final def VERSION_COLUMN = "versioncolumn"
+    public static final int DEFAULT_SQL_LOAD_THREADS = 4
 
     /**
      * Loop through previously loaded configurations looking for any entries
@@ -85,7 +110,9 @@ class SqlFlattener {
 
         // Config map with all db config table params
         def dbParams = findDbConfigParams(configs)
+        closePollConnections()
         def dbTableConfigs = groupDbConfigParamsByTable(dbParams)
+        _polledTables.keySet().retainAll(dbTableConfigs.keySet())
 
         return dbTableConfigs
     }
@@ -94,15 +121,18 @@ class SqlFlattener {
      * Not sure I like the code herein that groups -- sigh
      *
      * Responsible for looking up database configuration key:values and storing all
-     * those key:values per table in resulting Map.
+     * those key:values per table in resulting Map. Tables on the same database share
+     * connections (see SqlConnectionPool) and up to 'jig.sql.load.threads' tables
+     * are read at the same time. Later tables take precedence, as before.
      *
      * @param dbConfigParams
      * @return
      */
     protected def Map<String, Map<String, String>> groupDbConfigParamsByTable(Map<String, String> dbConfigParams) {
 
-        // Sorting on natural order should be enough
-        def groupedMap = new TreeMap(dbConfigParams)
+        // Sorting on natural order should be enough, without the optional params
+        def versionColumns = dbConfigParams.findAll { entry -> entry.key.endsWith(VERSION_COLUMN) }
+        def groupedMap = new TreeMap(dbConfigParams.findAll { entry -> !versionColumns.containsKey(entry.key) })
         def allDbConfigs = new HashMap<String, Map<String, String>>()
         def validDbConfigParams = validDbConfigParams(groupedMap)
 
@@ -115,29 +145,247 @@ class SqlFlattener {
         def index = 0
         def increment = 5
         def size = groupedMap.size();
-        def sqlRetriever = new SqlRetriever()
+        def tables = new ArrayList<Map<String, String>>()
 
         while ( index < size )
         {
-            def end = index + increment
             def subMap = extractSubGroup(groupedMap.entrySet(), index, increment)
-            def tableName = extractValue(subMap, TABLE)
+            addVersionColumn(subMap, versionColumns)
+            tables.add(subMap)
+            index += increment
+        }
 
-            def sql = createSqlReader(subMap)
-            def dbConfigs = sqlRetriever.loadFromDatabaseWithSelect(tableName, sql)
-            if ( sql != null ) { sql.close() }
+        def sqlRetriever = new SqlRetriever()
+        def connectionPool = new SqlConnectionPool()
 
-            for ( entry in dbConfigs )
+        try
+        {
+            for ( dbConfigs in loadTables(tables, sqlRetriever, connectionPool) )
             {
-                allDbConfigs.put(entry.key, entry.value)
+                for ( entry in dbConfigs )
+                {
+                    allDbConfigs.put(entry.key, entry.value)
+                }
             }
-
-            index += increment
+        }
+        finally
+        {
+            connectionPool.close()
         }
 
         return allDbConfigs
     }
 
+    /**
+     * Read each table's configs, on a bounded number of threads when there is more
+     * than one table.
+     *
+     * @return The configs for each table, in 'tables' order
+     */
+    protected def List<Map<String, Map<String, String>>> loadTables(List<Map<String, String>> tables,
+                                                                    SqlRetriever sqlRetriever,
+                                                                      SqlConnectionPool connectionPool) {
+
+        int threadCount = Math.min(tables.size(), findSqlLoadThreadCount())
+        if ( threadCount <= 1 )
+        {
+            return tables.collect { subMap -> loadTable(subMap, sqlRetriever, connectionPool) }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new SqlLoaderThreadFactory())
+        try
+        {
+            List<Future<Map<String, Map<String, String>>>> loads = tables.collect { subMap ->
+                executor.submit({ loadTable(subMap, sqlRetriever, connectionPool) } as Callable<Map<String, Map<String, String>>>)
+            }
+
+            return loads.collect { load -> load.get() }
+        }
+        catch ( ExecutionException ee )
+        {
+            // Fail the same way as a sequential load
+            throw ee.getCause()
+        }
+        finally
+        {
+            executor.shutdown()
+        }
+    }
+
+    /**
+     * Read one table with a pooled connection (see extractSubGroup()). A table with a
+     * 'versionColumn' is only read again when its fingerprint changed since the last
+     * load (see SqlRetriever.loadTableFingerprint()), otherwise its last key:values
+     * are reused.
+     */
+    protected def Map<String, Map<String, String>> loadTable(Map<String, String> subMap, SqlRetriever sqlRetriever,
+                                                             SqlConnectionPool connectionPool) {
+
+        def tableName = extractValue(subMap, TABLE)
+        def connectionKey = [extractValue(subMap, DB_URL), extractValue(subMap, USER),
+                             extractValue(subMap, PASSWORD), extractValue(subMap, DRIVER)]
+
+        def versionColumn = extractValue(subMap, VERSION_COLUMN)
+
+        def sql = connectionPool.borrow(connectionKey) { createSqlReader(subMap) }
+        try
+        {
+            if ( versionColumn == null )
+            {
+                _polledTables.remove(tableName)
+                return sqlRetriever.loadFromDatabaseWithSelect(tableName, sql)
+            }
+
+            def tableMap = new HashMap<String, Map<String, String>>()
+            def previous = _polledTables.get(tableName)
+            def fingerprint = sqlRetriever.loadTableFingerprint(tableName, sql, versionColumn)
+
+            if ( previous != null && fingerprint != null && previous.fingerprint == fingerprint &&
+                 previous.tableParams == subMap )
+            {
+                LOG.info("Database Config Table ${tableName} Is Unchanged, Not Reading It Again")
+                tableMap.put(tableName, previous.keyValues)
+                return tableMap
+            }
+
+            // Every row, with the watermark for pollChangedRows()
+            def tableRows = sqlRetriever.loadChangedRows(tableName, sql, versionColumn, null,
+                                                         Collections.<String, String>emptyMap(),
+                                                         SqlRetriever.findFetchSize())
+            if ( tableRows == null )
+            {
+                _polledTables.remove(tableName)
+                return tableMap
+            }
+
+            def keyValues = Collections.unmodifiableMap(tableRows.keyValues)
+            _polledTables.put(tableName, new PolledTable(subMap, tableRows.watermark, tableRows.watermarkRows,
+                                                         fingerprint, keyValues))
+            tableMap.put(tableName, keyValues)
+            return tableMap
+        }
+        finally
+        {
+            connectionPool.release(connectionKey, sql)
+        }
+    }
+
+    /**
+     * Read the rows that changed since the last load or poll, for each table that
+     * has a 'versionColumn'. Each table's watermark only moves forward when it
+     * was read, so a failed poll is retried with the next one. Connections stay
+     * open between polls (see closePollConnections()), a connection that failed
+     * is closed and opened again with the next poll.
+     *
+     * @return Only the changed key:values for each table (table name --> changes), empty if none changed
+     */
+    def synchronized Map<String, Map<String, String>> pollChangedRows() {
+
+        def changedTables = new LinkedHashMap<String, Map<String, String>>()
+        if ( _polledTables.isEmpty() )
+        {
+            return changedTables
+        }
+
+        if ( _pollConnections == null )
+        {
+            _pollConnections = new SqlConnectionPool()
+        }
+
+        def sqlRetriever = new SqlRetriever()
+        for ( entry in _polledTables )
+        {
+            def polledTable = entry.value
+            def subMap = polledTable.tableParams
+            def connectionKey = [extractValue(subMap, DB_URL), extractValue(subMap, USER),
+                                 extractValue(subMap, PASSWORD), extractValue(subMap, DRIVER)]
+
+            def sql = _pollConnections.borrow(connectionKey) { createSqlReader(subMap) }
+            def tableRows = sqlRetriever.loadChangedRows(entry.key, sql, extractValue(subMap, VERSION_COLUMN),
+                                                         polledTable.watermark, polledTable.watermarkRows,
+                                                         SqlRetriever.findFetchSize())
+            if ( tableRows == null )
+            {
+                _pollConnections.discard(sql)
+                continue
+            }
+
+            _pollConnections.release(connectionKey, sql)
+            if ( !tableRows.keyValues.isEmpty() )
+            {
+                changedTables.put(entry.key, tableRows.keyValues)
+                polledTable.watermark = tableRows.watermark
+                polledTable.watermarkRows = tableRows.watermarkRows
+            }
+        }
+
+        return changedTables
+    }
+
+    /**
+     * Close the connections kept for pollChangedRows(), the next poll opens new ones.
+     * Called with each load and when polling stops (see net.client.ConfigTablePoller).
+     */
+    def synchronized void closePollConnections() {
+
+        if ( _pollConnections != null )
+        {
+            _pollConnections.close()
+            _pollConnections = null
+        }
+    }
+
+    /** @return How many connections pollChangedRows() has open */
+    def synchronized int getPollConnectionCount() {
+        return _pollConnections == null ? 0 : _pollConnections.openedCount
+    }
+
+    /** @return true if the last load found tables with a 'versionColumn' */
+    def boolean hasPolledTables() {
+        return !_polledTables.isEmpty()
+    }
+
+    /** Add the optional version column for the table in 'subMap' (same key prefix) */
+    private static void addVersionColumn(Map<String, String> subMap, Map<String, String> versionColumns) {
+
+        if ( subMap.isEmpty() || versionColumns.isEmpty() )
+        {
+            return
+        }
+
+        def tableKey = subMap.keySet().iterator().next()
+        def versionKey = tableKey.substring(0, tableKey.lastIndexOf('.') + 1) + VERSION_COLUMN
+        def versionColumn = versionColumns.get(versionKey)
+
+        if ( versionColumn != null && !versionColumn.trim().empty )
+        {
+            subMap.put(versionKey, versionColumn.trim())
+        }
+    }
+
+    /**
+     * A table's connection params, the highest version read from it and the rows read at
+     * that version. The fingerprint and key:values are from the last full read of the table.
+     */
+    private static class PolledTable {
+
+        final Map<String, String> tableParams
+        volatile Object watermark
+        volatile Map<String, String> watermarkRows
+        final List<Object> fingerprint
+        final Map<String, String> keyValues
+
+        PolledTable(Map<String, String> tableParams, Object watermark, Map<String, String> watermarkRows,
+                    List<Object> fingerprint, Map<String, String> keyValues) {
+
+            this.tableParams = tableParams
+            this.watermark = watermark
+            this.watermarkRows = watermarkRows
+            this.fingerprint = fingerprint
+            this.keyValues = keyValues
+        }
+    }
+
     /**
      *
      * @param entries
@@ -152,12 +400,16 @@ class SqlFlattener {
 
         for ( entry in entries )
         {
-            if ( i == increment )
+            if ( i == currentIndex + increment )
             {
                 break
             }
 
-            subMap.put(entry.key, entry.value)
+            if ( i >= currentIndex )
+            {
+                subMap.put(entry.key, entry.value)
+            }
+
             i++
         }
 
@@ -174,6 +426,40 @@ class SqlFlattener {
         return Sql.newInstance(url, user, password, driver)
     }
 
+    private static int findSqlLoadThreadCount() {
+
+        def threads = System.getProperty(JigProperties.JIG_SQL_LOAD_THREADS.getName())
+        if ( threads == null || threads.trim().empty )
+        {
+            return DEFAULT_SQL_LOAD_THREADS
+        }
+
+        try
+        {
+            return Math.max(1, Integer.parseInt(threads.trim()))
+        }
+        catch ( NumberFormatException nfe )
+        {
+            LOG.warn("Invalid ${JigProperties.JIG_SQL_LOAD_THREADS.getName()}: '${threads}', Loading One Table At A Time")
+            return 1
+        }
+    }
+
+    /** Daemon threads, so a load never holds up JVM shutdown */
+    private static class SqlLoaderThreadFactory
+        implements ThreadFactory {
+
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger()
+
+        @Override
+        Thread newThread(Runnable runnable) {
+
+            def thread = new Thread(runnable, "jig-sql-loader-" + THREAD_COUNT.incrementAndGet())
+            thread.setDaemon(true)
+            return thread
+        }
+    }
+
     /**
      * Pull a specific value for a dbconfig param from a sub-group table.
      * A subgroup consists of 5 values. See "loadFromDatabaseWithSelect()"
@@ -282,16 +568,18 @@ class SqlFlattener {
      * config map from the original config map without the database config parameters.
      *
      * @param allConfigEntries The config map
-     * @return A new map based on 'allConfigEntries' but without any db config parameters
+     * @return A new map (same iteration order) based on 'allConfigEntries' but without any db config
+     * parameters. A config map without db config parameters is kept as is, not copied.
      */
     def Map<String, Map<String, String>> purgeAllDbConfigParams(Map<String, Map<String, String>> allConfigEntries) {
 
         def dbConfigParams = findDbConfigParams(allConfigEntries)
-        def purgedMap = new HashMap<String, Map<String,String>>()
+        def purgedMap = new LinkedHashMap<String, Map<String,String>>()
 
         for ( entry in allConfigEntries.entrySet() )
         {
-            def nonDbConfigs = findNonDbConfigs(entry.value, dbConfigParams)
+            def hasDbConfigs = dbConfigParams.keySet().any { key -> entry.value.containsKey(key) }
+            def nonDbConfigs = hasDbConfigs ? findNonDbConfigs(entry.value, dbConfigParams) : entry.value
             if ( !nonDbConfigs.isEmpty() )
             {
                 purgedMap.put(entry.key, nonDbConfigs)
@@ -1,15 +1,23 @@
 package net.config
 
 import groovy.sql.Sql
+import net.common.JigProperties
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.ResultSet
+import java.sql.ResultSetMetaData
+import java.sql.Statement
+
 /**
- * In order to isolate config retrieval from the database. It performs
- * the following statement:
+ * In order to isolate config retrieval from the database. It reads the column
+ * names from "SELECT * FROM TABLE_FOO" (no rows) and then streams columns 2, 3
+ * to populate key:value pairs in a map (assumes column 1 is the identity column):
+ *
+ * "SELECT KEY, VALUE FROM TABLE_FOO"
  *
- * "SELECT * FROM TABLE_FOO" and grabs columns 2, 3 to populate
- * key:value pairs in a map (assumes column 1 is the identity column).
+ * Rows are read with a cursor ('jig.sql.fetch.size' rows at a time), so a large
+ * config table is not held in memory as rows and as a map at the same time.
  *
  * @author dmillett
  *
@@ -30,14 +38,24 @@ class SqlRetriever {
 
     private static final def LOG = LoggerFactory.getLogger(SqlRetriever.class)
 
+    public static final int DEFAULT_FETCH_SIZE = 1000
+
     /**
      * Look up all the key-value property style configs for each row in the
      * database listed above and load into a map.
      *
-     * @param sqlTableInfos Ordered submap of 5 key-value pairs
+     * @param tableName The config table
+     * @param sql A connection to the config database
      * @return A map of maps where each table name has a corresponding map with key:value pair(s)
      */
     def Map<String, Map<String, String>> loadFromDatabaseWithSelect(String tableName, Sql sql) {
+        return loadFromDatabaseWithSelect(tableName, sql, findFetchSize())
+    }
+
+    /**
+     * Same as above, reading 'fetchSize' rows at a time.
+     */
+    def Map<String, Map<String, String>> loadFromDatabaseWithSelect(String tableName, Sql sql, int fetchSize) {
 
         def tableMap = new HashMap<String, Map<String, String>>()
 
@@ -45,14 +63,13 @@ class SqlRetriever {
         {
             // GString here causes SQL prepared statement path and error with ?
             // instead of the actual table name. Use java.lang.String instead
-            def select = "SELECT * FROM " + tableName.toUpperCase()
+            def table = tableName.toUpperCase()
+            def select = "SELECT " + findColumns(table, sql, null).join(", ") + " FROM " + table
             def dbConfigs = new HashMap<String, String>()
-            def result = sql.rows(select)
 
-            for ( rowResult in result )
-            {
-                // skip the identity column @ 0
-                dbConfigs.put(rowResult.getAt(1), rowResult.getAt(2))
+            sql.withStatement { Statement statement -> statement.setFetchSize(fetchSize) }
+            sql.eachRow(select) { ResultSet row ->
+                dbConfigs.put(row.getString(1), row.getString(2))
             }
 
             tableMap.put(tableName, dbConfigs)
@@ -64,4 +81,139 @@ class SqlRetriever {
 
         return tableMap
     }
+
+    /**
+     * Read the rows whose 'versionColumn' is at or after 'watermark' (every row if
+     * 'watermark' is null), for delta polling (see SqlFlattener.pollChangedRows()).
+     * Rows at the watermark are read again, because a row committed later may have
+     * the same version (a timestamp), and the ones in 'watermarkRows' are skipped.
+     * Deleted rows cannot be seen this way, they are gone with the next full load.
+     *
+     * @param tableName The config table
+     * @param sql A connection to the config database
+     * @param versionColumn A column that does not decrease when a row is inserted or updated
+     * @param watermark The highest version read so far, otherwise null
+     * @param watermarkRows The key:values already read at 'watermark' (see ConfigTableRows)
+     * @param fetchSize Rows to read at a time
+     * @return The changed key:values and the new watermark, null if the table could not be read
+     */
+    def ConfigTableRows loadChangedRows(String tableName, Sql sql, String versionColumn, Object watermark,
+                                        Map<String, String> watermarkRows, int fetchSize) {
+
+        try
+        {
+            def table = tableName.toUpperCase()
+            def columns = findColumns(table, sql, versionColumn)
+            def version = columns.get(2)
+            def select = "SELECT " + columns.join(", ") + " FROM " + table
+            def params = []
+
+            if ( watermark != null )
+            {
+                select += " WHERE " + version + " >= ?"
+                params.add(watermark)
+            }
+
+            def tableRows = new ConfigTableRows(watermark, watermarkRows)
+            sql.withStatement { Statement statement -> statement.setFetchSize(fetchSize) }
+            sql.eachRow(select, params) { ResultSet row ->
+                tableRows.add(row.getString(1), row.getString(2), row.getObject(3))
+            }
+
+            return tableRows
+        }
+        catch ( Exception e )
+        {
+            LOG.error("Problem Polling Database Configurations For: $tableName", e)
+        }
+
+        return null
+    }
+
+    /**
+     * A cheap check before reading a whole table again: the row count and the highest
+     * 'versionColumn'. An insert or update raises the highest version and a delete
+     * lowers the count, so an unchanged fingerprint means the table was not changed.
+     *
+     * @param tableName The config table
+     * @param sql A connection to the config database
+     * @param versionColumn A column that does not decrease when a row is inserted or updated
+     * @return [row count, highest version], null if the table could not be read
+     */
+    def List<Object> loadTableFingerprint(String tableName, Sql sql, String versionColumn) {
+
+        try
+        {
+            def table = tableName.toUpperCase()
+            def version = findColumns(table, sql, versionColumn).get(2)
+            def row = sql.firstRow("SELECT COUNT(*), MAX(" + version + ") FROM " + table)
+
+            return [row.getAt(0), row.getAt(1)]
+        }
+        catch ( Exception e )
+        {
+            LOG.error("Problem Checking Database Configurations For: $tableName", e)
+        }
+
+        return null
+    }
+
+    /**
+     * The (quoted) names of columns 2 and 3, skipping the identity column @ 1, then
+     * 'versionColumn' if there is one. Its name is matched ignoring case, so it is
+     * quoted as the database stores it (PostgreSQL folds to lower case, others to
+     * upper case). An unmatched 'versionColumn' is left unquoted.
+     */
+    private def List<String> findColumns(String table, Sql sql, String versionColumn) {
+
+        def columns = new ArrayList<String>(3)
+
+        sql.eachRow("SELECT * FROM " + table + " WHERE 1 = 0", { ResultSetMetaData metaData ->
+            columns.add(quote(sql, metaData.getColumnName(2)))
+            columns.add(quote(sql, metaData.getColumnName(3)))
+
+            if ( versionColumn != null )
+            {
+                def version = versionColumn
+                for ( int i = 1; i <= metaData.columnCount; i++ )
+                {
+                    if ( metaData.getColumnName(i).equalsIgnoreCase(versionColumn) )
+                    {
+                        version = quote(sql, metaData.getColumnName(i))
+                        break
+                    }
+                }
+
+                columns.add(version)
+            }
+        }, { row -> })
+
+        return columns
+    }
+
+    private static def String quote(Sql sql, String column) {
+
+        def quote = sql.connection?.metaData?.identifierQuoteString?.trim() ?: ""
+        return quote + column + quote
+    }
+
+    /** @return 'jig.sql.fetch.size', otherwise DEFAULT_FETCH_SIZE */
+    static int findFetchSize() {
+
+        def fetchSize = System.getProperty(JigProperties.JIG_SQL_FETCH_SIZE.getName())
+        if ( fetchSize == null || fetchSize.trim().empty )
+        {
+            return DEFAULT_FETCH_SIZE
+        }
+
+        try
+        {
+            return Math.max(0, Integer.parseInt(fetchSize.trim()))
+        }
+        catch ( NumberFormatException nfe )
+        {
+            LOG.warn("Invalid ${JigProperties.JIG_SQL_FETCH_SIZE.getName()}: '${fetchSize}', Using ${DEFAULT_FETCH_SIZE}")
+            return DEFAULT_FETCH_SIZE
+        }
+    }
 }
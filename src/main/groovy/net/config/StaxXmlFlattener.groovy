@@ -0,0 +1,388 @@
+package net.config
+
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+
+/**
+ * A streaming (StAX) alternative to XmlFlattener for large config files. It
+ * makes a single pass over the document without building a node tree, and
+ * builds each key in one reusable buffer that grows and shrinks with the
+ * element depth.
+ *
+ * The flattened keys and values are the same as XmlFlattener.flatten():
+ *
+ * <pre>
+ * keyValues/property          --> name (lower case), value text or @value
+ * structures/a[@x]/b          --> structures.a.x.b
+ * identical leaf keys         --> key, key.1, key.2 (counted per parent node)
+ * elements without text       --> no key
+ * </pre>
+ *
+ * Select it with the 'jig.flattener.xml=stax' system property. Namespaced
+ * element names use their local name and external entities are not resolved.
+ * Text mixed with child elements is skipped, where XmlFlattener fails on it
+ * and drops all of the 'structures' keys.
+ *
+ * This is not thread safe and an instance should not be shared.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@CompileStatic
+class StaxXmlFlattener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StaxXmlFlattener.class)
+    private static final String DELIM = "."
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory()
+
+    private static final int OTHER = 0
+    private static final int KEY_VALUES = 1
+    private static final int PROPERTY = 2
+    private static final int STRUCTURES = 3
+    // Elements nested in a 'property' only contribute their text (like Node.text())
+    private static final int PROPERTY_CONTENT = 4
+
+    // One frame per open element, indexed by depth (root == 0)
+    private int[] _elementIds = new int[16]
+    private int[] _keyLengths = new int[16]
+    private int[] _valueCounts = new int[16]
+    private int[] _duplicateKeyCounts = new int[16]
+    private int[] _regions = new int[16]
+    private String[] _texts = new String[16]
+    private String[] _valueAttributes = new String[16]
+
+    private final StringBuilder _key = new StringBuilder(128)
+    private final StringBuilder _text = new StringBuilder(64)
+    private final StringBuilder _propertyText = new StringBuilder(64)
+
+    /**
+     * Stream 'configFile' into a map of flattened keys and values.
+     *
+     * @param configFile The xml configuration file (a path or URL)
+     * @return A Map (hash) of all the config values for 'keyValues' and 'structures', an empty
+     * map if the structure is not valid or null if the file could not be parsed
+     */
+    Map<String, String> flatten(String configFile) {
+
+        LOG.info("Streaming Xml File To Flatten To Map $configFile")
+        InputStream input = null
+
+        try
+        {
+            def file = new File(configFile)
+            input = file.exists() ? new FileInputStream(file) : new URL(configFile).openStream()
+            return flatten(input, file.exists() ? file.toURI().toString() : configFile)
+        }
+        catch ( Throwable t )
+        {
+            LOG.error("Could Not Parse ${configFile} Due To", t)
+        }
+        finally
+        {
+            input?.close()
+        }
+
+        return null
+    }
+
+    /**
+     * @param input The xml configuration (not closed here)
+     * @param systemId Used to resolve relative references, may be null
+     * @return A Map (hash) of all the config values for 'keyValues' and 'structures'
+     */
+    Map<String, String> flatten(InputStream input, String systemId) {
+
+        def reader = INPUT_FACTORY.createXMLStreamReader(systemId, input)
+        try
+        {
+            return flattenStream(reader)
+        }
+        finally
+        {
+            reader.close()
+        }
+    }
+
+    private Map<String, String> flattenStream(XMLStreamReader reader) {
+
+        def keyValues = new HashMap<String, String>()
+        def structures = new HashMap<String, String>()
+        // The element (level) that last wrote each structure key, see addStructureValue()
+        def keyLevels = new HashMap<String, Integer>()
+
+        int depth = -1
+        int elementCount = 0
+        boolean foundStructures = false
+        boolean validConfig = false
+        _key.setLength(0)
+        _text.setLength(0)
+
+        while ( reader.hasNext() )
+        {
+            int event = reader.next()
+
+            if ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA )
+            {
+                _text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength())
+            }
+            else if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                addTextValue(depth)
+                String name = reader.getLocalName()
+                depth++
+                ensureCapacity(depth)
+
+                int region = OTHER
+                if ( depth == 0 )
+                {
+                    if ( name != "config" )
+                    {
+                        LOG.warn("Skipping: Invalid Configuration Structure For Root Node: ${name}")
+                        return new HashMap<String, String>()
+                    }
+                }
+                else
+                {
+                    _valueCounts[depth - 1]++
+                    region = findRegion(_regions[depth - 1], depth, name, foundStructures)
+                }
+
+                startFrame(depth, ++elementCount, region, reader)
+
+                if ( region == KEY_VALUES || (depth == 1 && region == STRUCTURES) )
+                {
+                    validConfig = true
+                }
+
+                if ( region == STRUCTURES )
+                {
+                    if ( depth == 1 )
+                    {
+                        foundStructures = true
+                        appendName(name, reader, false)
+                    }
+                    else
+                    {
+                        appendName(name, reader, true)
+                    }
+                }
+                else if ( region == PROPERTY )
+                {
+                    _propertyText.setLength(0)
+                    _texts[depth] = reader.getAttributeValue(null, "name")
+                }
+            }
+            else if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                addTextValue(depth)
+                int region = _regions[depth]
+
+                if ( region == STRUCTURES && depth > 1 && isPlainValue(depth) )
+                {
+                    String value = _valueAttributes[depth] != null ? _valueAttributes[depth] : _texts[depth]
+                    addStructureValue(structures, keyLevels, _key.toString(), value, depth - 1)
+                }
+                else if ( region == PROPERTY )
+                {
+                    addKeyValue(keyValues, _texts[depth], _valueAttributes[depth], _propertyText.toString())
+                }
+
+                _key.setLength(_keyLengths[depth])
+                depth--
+            }
+        }
+
+        if ( !validConfig )
+        {
+            LOG.info("Skipping: Missing 'keyValues' Or 'structures' Node(s)")
+            return new HashMap<String, String>()
+        }
+
+        keyValues.putAll(structures)
+        return keyValues
+    }
+
+    /** Only direct 'property' children of 'keyValues' and everything in the first 'structures' */
+    private static int findRegion(int parentRegion, int depth, String name, boolean foundStructures) {
+
+        if ( depth == 1 )
+        {
+            if ( name == "keyValues" )
+            {
+                return KEY_VALUES
+            }
+
+            return name == "structures" && !foundStructures ? STRUCTURES : OTHER
+        }
+
+        if ( parentRegion == KEY_VALUES )
+        {
+            return depth == 2 && name == "property" ? PROPERTY : OTHER
+        }
+
+        if ( parentRegion == PROPERTY )
+        {
+            return PROPERTY_CONTENT
+        }
+
+        return parentRegion
+    }
+
+    private void startFrame(int depth, int elementId, int region, XMLStreamReader reader) {
+
+        _elementIds[depth] = elementId
+        _keyLengths[depth] = _key.length()
+        _valueCounts[depth] = 0
+        _duplicateKeyCounts[depth] = 1
+        _regions[depth] = region
+        _texts[depth] = null
+        _valueAttributes[depth] = region == STRUCTURES || region == PROPERTY ? reader.getAttributeValue(null, "value") : null
+    }
+
+    /** Append '.name.attr1.attr2' (lower case) to the key buffer */
+    private void appendName(String name, XMLStreamReader reader, boolean delimit) {
+
+        if ( delimit )
+        {
+            _key.append(DELIM)
+        }
+
+        _key.append(name.toLowerCase())
+        int attributeCount = reader.getAttributeCount()
+        for ( int i = 0; i < attributeCount; i++ )
+        {
+            _key.append(DELIM).append(reader.getAttributeValue(i).toLowerCase())
+        }
+    }
+
+    /**
+     * XmlParser drops whitespace only text, so only text with content counts
+     * as a value of the current element.
+     */
+    private void addTextValue(int depth) {
+
+        if ( _text.length() == 0 )
+        {
+            return
+        }
+
+        if ( depth >= 0 && !isWhitespace(_text) )
+        {
+            String text = _text.toString()
+            int region = _regions[depth]
+
+            if ( region == PROPERTY || region == PROPERTY_CONTENT )
+            {
+                _propertyText.append(text)
+            }
+            else if ( region == STRUCTURES && _valueCounts[depth] == 0 )
+            {
+                _texts[depth] = text
+            }
+
+            _valueCounts[depth]++
+        }
+
+        _text.setLength(0)
+    }
+
+    /** A single text value, the same as XmlFlattener.isPlainValue() */
+    private boolean isPlainValue(int depth) {
+        return _valueCounts[depth] == 1 && _texts[depth] != null
+    }
+
+    /**
+     * XmlFlattener builds a map per level and appends a count to a leaf key
+     * that is already in that level's map. The level map holds the keys written
+     * by that element or its descendants, which (in document order) are the keys
+     * last written by an element opened at or after it.
+     */
+    private void addStructureValue(Map<String, String> structures, Map<String, Integer> keyLevels, String key,
+                                   String value, int levelDepth) {
+
+        int levelId = _elementIds[levelDepth]
+        String updatedKey = key
+
+        Integer lastLevelId = keyLevels.get(key)
+        if ( lastLevelId != null && lastLevelId >= levelId )
+        {
+            updatedKey = key + DELIM + _duplicateKeyCounts[levelDepth]
+            _duplicateKeyCounts[levelDepth]++
+        }
+
+        structures.put(updatedKey, value)
+        keyLevels.put(updatedKey, levelId)
+    }
+
+    /** The same value precedence as XmlFlattener.checkNodeForValue() */
+    private static void addKeyValue(Map<String, String> keyValues, String name, String valueAttribute, String text) {
+
+        if ( name == null )
+        {
+            throw new IllegalStateException("Missing 'name' Attribute For keyValues Property")
+        }
+
+        String value = valueAttribute
+        if ( value == null && !text.isEmpty() )
+        {
+            value = text
+        }
+
+        keyValues.put(name.toLowerCase(), value)
+    }
+
+    private static boolean isWhitespace(CharSequence text) {
+
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            if ( text.charAt(i) > (char) ' ' )
+            {
+                return false
+            }
+        }
+
+        return true
+    }
+
+    private void ensureCapacity(int depth) {
+
+        if ( depth < _elementIds.length )
+        {
+            return
+        }
+
+        int size = _elementIds.length * 2
+        _elementIds = Arrays.copyOf(_elementIds, size)
+        _keyLengths = Arrays.copyOf(_keyLengths, size)
+        _valueCounts = Arrays.copyOf(_valueCounts, size)
+        _duplicateKeyCounts = Arrays.copyOf(_duplicateKeyCounts, size)
+        _regions = Arrays.copyOf(_regions, size)
+        _texts = Arrays.copyOf(_texts, size)
+        _valueAttributes = Arrays.copyOf(_valueAttributes, size)
+    }
+
+    private static XMLInputFactory createInputFactory() {
+
+        def factory = XMLInputFactory.newFactory()
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE)
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE)
+        return factory
+    }
+}
@@ -0,0 +1,512 @@
+package net.config
+
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.nio.charset.StandardCharsets
+
+/**
+ * A streaming alternative to JsonFlattener for large config files. It reads
+ * JSON tokens from a Reader and writes each flattened key straight into the
+ * destination map using a single path buffer, instead of building the
+ * JsonSlurper maps/lists and merging a new map for every level.
+ *
+ * The flattened keys and values are the same as JsonFlattener.flatten(),
+ * including the KeyVersion indexing of keys repeated in arrays:
+ *
+ * <pre>
+ * {"config": {"a": {"b": 1}}}                   --> config.a.b, 1
+ * {"config": {"a": [{"b": 1}, {"b": 2}]}}       --> config.a.b, 1 and config.a.b.1, 2
+ * </pre>
+ *
+ * Only elements of an array are buffered (in a map per element) so they can
+ * be versioned against the rest of that array. Trailing commas are allowed.
+ * A member name repeated in the same object is flattened for every
+ * occurrence, where JsonSlurper keeps the last value. Integers too big for a
+ * long keep their exact value, where JsonSlurper overflows them.
+ *
+ * Select it with the 'jig.flattener.json=streaming' system property.
+ *
+ * This is not thread safe and an instance should not be shared.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+@CompileStatic
+class StreamingJsonFlattener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingJsonFlattener.class)
+    private static final int EOF = -1
+    private static final char OPEN_OBJECT = '{' as char
+    private static final char CLOSE_OBJECT = '}' as char
+    private static final char OPEN_ARRAY = '[' as char
+    private static final char CLOSE_ARRAY = ']' as char
+    private static final char COMMA = ',' as char
+    private static final char COLON = ':' as char
+    private static final char QUOTE = '"' as char
+    private static final char BACKSLASH = '\\' as char
+    private static final char DOT = '.' as char
+    private static final char MINUS = '-' as char
+    private static final char PLUS = '+' as char
+    private static final char SPACE = ' ' as char
+    private static final char NEW_LINE = '\n' as char
+    private static final char RETURN = '\r' as char
+    private static final char TAB = '\t' as char
+
+    private final KeyVersion _keyVersion = new KeyVersion()
+
+    // One frame per open object or array, indexed by depth (root == 0)
+    private boolean[] _arrays = new boolean[16]
+    private int[] _pathLengths = new int[16]
+    private int[] _memberCounts = new int[16]
+    private Map<String, String>[] _sinks = new Map[16]
+    private int _depth
+
+    private final StringBuilder _path = new StringBuilder(128)
+    private final StringBuilder _token = new StringBuilder(64)
+
+    private Reader _reader
+    private final char[] _buffer = new char[8192]
+    private int _position
+    private int _limit
+
+    /**
+     * @param jsonFileName A URL (file:// or http://) or a local file path
+     * @return A map of <string,string>, empty if there are problems with the file
+     */
+    Map<String, String> flatten(String jsonFileName) {
+
+        try
+        {
+            def reader = new InputStreamReader(toUrl(jsonFileName).openStream(), StandardCharsets.UTF_8)
+            try
+            {
+                def keyValues = flatten(reader)
+                if ( keyValues == null )
+                {
+                    LOG.info("Skipping Invalid JSON Config File $jsonFileName")
+                    return new HashMap<String, String>(0)
+                }
+
+                return keyValues
+            }
+            finally
+            {
+                reader.close()
+            }
+        }
+        catch ( Exception e )
+        {
+            LOG.error("Could Not Load JSON Configuration File", e)
+        }
+
+        return new HashMap<String, String>()
+    }
+
+    /**
+     * The root object (or array) must have a single member, like the
+     * 'config' object in JsonFlattener.
+     *
+     * @param reader The JSON config (not closed here)
+     * @return A map of <string,string>, null if it is not a valid config
+     * @throws IOException If 'reader' fails or it is not valid JSON
+     */
+    Map<String, String> flatten(Reader reader) throws IOException {
+
+        _reader = reader
+        _position = 0
+        _limit = 0
+        _depth = -1
+        _path.setLength(0)
+
+        def keyValues = new HashMap<String, String>()
+        int c = nextNonWhitespace()
+
+        if ( c != OPEN_OBJECT && c != OPEN_ARRAY )
+        {
+            return null
+        }
+
+        openContainer(c == OPEN_ARRAY, keyValues)
+
+        while ( _depth >= 0 )
+        {
+            c = nextNonWhitespace()
+
+            if ( _memberCounts[_depth] > 0 || c == CLOSE_OBJECT || c == CLOSE_ARRAY )
+            {
+                if ( c == COMMA )
+                {
+                    c = nextNonWhitespace()
+                }
+                else if ( c != CLOSE_OBJECT && c != CLOSE_ARRAY )
+                {
+                    throw syntaxError("Expected ',' Or A Closing Bracket", c)
+                }
+
+                // Allows a trailing comma
+                if ( c == CLOSE_OBJECT || c == CLOSE_ARRAY )
+                {
+                    if ( (c == CLOSE_ARRAY) != _arrays[_depth] )
+                    {
+                        throw syntaxError("Mismatched Closing Bracket", c)
+                    }
+
+                    closeContainer()
+                    continue
+                }
+            }
+
+            if ( _depth == 0 && _memberCounts[0] > 0 )
+            {
+                // More than the single 'config' member
+                return null
+            }
+
+            _memberCounts[_depth]++
+            if ( _arrays[_depth] )
+            {
+                readArrayElement(c)
+            }
+            else
+            {
+                readObjectMember(c)
+            }
+        }
+
+        if ( nextNonWhitespace() != EOF )
+        {
+            throw new IOException("Unexpected Content After The Root JSON Value")
+        }
+
+        return _memberCounts[0] == 1 ? keyValues : null
+    }
+
+    /** "name": value, the name is added to the path for this value */
+    private void readObjectMember(int c) {
+
+        if ( c != QUOTE )
+        {
+            throw syntaxError("Expected A Member Name", c)
+        }
+
+        int pathLength = _pathLengths[_depth]
+        readString()
+        _path.setLength(pathLength)
+        if ( pathLength > 0 )
+        {
+            _path.append(DOT)
+        }
+        _path.append(_token)
+
+        int separator = nextNonWhitespace()
+        if ( separator != COLON )
+        {
+            throw syntaxError("Expected ':'", separator)
+        }
+
+        int valueStart = nextNonWhitespace()
+        if ( valueStart == OPEN_OBJECT )
+        {
+            // Objects write straight into the enclosing map (JsonFlattener does a putAll())
+            openContainer(false, _sinks[_depth])
+        }
+        else if ( valueStart == OPEN_ARRAY )
+        {
+            openContainer(true, new HashMap<String, String>())
+        }
+        else
+        {
+            String value = readScalar(valueStart)
+            if ( value != null )
+            {
+                _keyVersion.updateMapWithKeyValue(_sinks[_depth], _path.toString(), value)
+            }
+        }
+    }
+
+    /** Array elements share the array path, nested objects and arrays are versioned on close */
+    private void readArrayElement(int c) {
+
+        _path.setLength(_pathLengths[_depth])
+
+        if ( c == OPEN_OBJECT || c == OPEN_ARRAY )
+        {
+            openContainer(c == OPEN_ARRAY, new HashMap<String, String>())
+            return
+        }
+
+        String value = readScalar(c)
+        if ( value == null )
+        {
+            _sinks[_depth].put(_path.toString(), null)
+        }
+        else
+        {
+            _keyVersion.updateMapWithKeyValue(_sinks[_depth], _path.toString(), value)
+        }
+    }
+
+    private void openContainer(boolean array, Map<String, String> sink) {
+
+        _depth++
+        if ( _depth == _arrays.length )
+        {
+            int size = _depth * 2
+            _arrays = Arrays.copyOf(_arrays, size)
+            _pathLengths = Arrays.copyOf(_pathLengths, size)
+            _memberCounts = Arrays.copyOf(_memberCounts, size)
+            _sinks = (Map<String, String>[]) Arrays.copyOf(_sinks, size)
+        }
+
+        _arrays[_depth] = array
+        _pathLengths[_depth] = _path.length()
+        _memberCounts[_depth] = 0
+        _sinks[_depth] = sink
+    }
+
+    /**
+     * An array's map is added to the enclosing map, and anything closed inside
+     * an array is versioned against the keys already in that array.
+     */
+    private void closeContainer() {
+
+        boolean array = _arrays[_depth]
+        Map<String, String> sink = _sinks[_depth]
+        _sinks[_depth] = null
+        _depth--
+
+        if ( _depth < 0 )
+        {
+            return
+        }
+
+        _path.setLength(_pathLengths[_depth])
+
+        if ( _arrays[_depth] )
+        {
+            _keyVersion.updateMapWithKeyValues(_sinks[_depth], sink)
+        }
+        else if ( array )
+        {
+            _sinks[_depth].putAll(sink)
+        }
+    }
+
+    /** @return The String form of a string, number or boolean (like JsonSlurper values), otherwise null */
+    private String readScalar(int c) {
+
+        if ( c == QUOTE )
+        {
+            readString()
+            return _token.toString()
+        }
+
+        _token.setLength(0)
+        _token.append((char) c)
+        while ( isLiteralPart(peek()) )
+        {
+            _token.append((char) next())
+        }
+
+        String literal = _token.toString()
+        if ( literal == "null" )
+        {
+            return null
+        }
+
+        if ( literal == "true" || literal == "false" )
+        {
+            return literal
+        }
+
+        if ( c == MINUS || Character.isDigit(c) )
+        {
+            return toNumberText(literal)
+        }
+
+        throw syntaxError("Unexpected Value '${literal}'", c)
+    }
+
+    /** The same text as String.valueOf() on the JsonSlurper number */
+    private static String toNumberText(String number) {
+
+        try
+        {
+            if ( number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0 )
+            {
+                return new BigDecimal(number).toString()
+            }
+
+            return new BigInteger(number).toString()
+        }
+        catch ( NumberFormatException nfe )
+        {
+            throw new IOException("Invalid JSON Number '${number}'", nfe)
+        }
+    }
+
+    /** Reads the rest of a quoted string (the opening quote has been read) into _token */
+    private void readString() {
+
+        _token.setLength(0)
+        while ( true )
+        {
+            int c = next()
+            if ( c == QUOTE )
+            {
+                return
+            }
+
+            if ( c == EOF )
+            {
+                throw new IOException("Unterminated JSON String")
+            }
+
+            if ( c != BACKSLASH )
+            {
+                _token.append((char) c)
+                continue
+            }
+
+            int escaped = next()
+            _token.append(unescape(escaped))
+        }
+    }
+
+    private char unescape(int escaped) {
+
+        if ( escaped == QUOTE || escaped == BACKSLASH || escaped == ('/' as char) )
+        {
+            return (char) escaped
+        }
+
+        if ( escaped == ('n' as char) )
+        {
+            return '\n' as char
+        }
+
+        if ( escaped == ('t' as char) )
+        {
+            return '\t' as char
+        }
+
+        if ( escaped == ('r' as char) )
+        {
+            return '\r' as char
+        }
+
+        if ( escaped == ('b' as char) )
+        {
+            return '\b' as char
+        }
+
+        if ( escaped == ('f' as char) )
+        {
+            return '\f' as char
+        }
+
+        if ( escaped == ('u' as char) )
+        {
+            return readUnicode()
+        }
+
+        throw syntaxError("Invalid Escape", escaped)
+    }
+
+    private char readUnicode() {
+
+        int value = 0
+        for ( int i = 0; i < 4; i++ )
+        {
+            int digit = Character.digit(next(), 16)
+            if ( digit < 0 )
+            {
+                throw new IOException("Invalid JSON Unicode Escape")
+            }
+
+            value = (value << 4) + digit
+        }
+
+        return (char) value
+    }
+
+    private static boolean isLiteralPart(int c) {
+        return Character.isLetterOrDigit(c) || c == MINUS || c == PLUS || c == DOT
+    }
+
+    private int nextNonWhitespace() {
+
+        int c = next()
+        while ( c == SPACE || c == NEW_LINE || c == RETURN || c == TAB )
+        {
+            c = next()
+        }
+
+        return c
+    }
+
+    private int next() {
+
+        if ( _position == _limit && !fill() )
+        {
+            return EOF
+        }
+
+        return (int) _buffer[_position++]
+    }
+
+    private int peek() {
+
+        if ( _position == _limit && !fill() )
+        {
+            return EOF
+        }
+
+        return (int) _buffer[_position]
+    }
+
+    private boolean fill() {
+
+        _limit = _reader.read(_buffer, 0, _buffer.length)
+        _position = 0
+
+        if ( _limit <= 0 )
+        {
+            _limit = 0
+            return false
+        }
+
+        return true
+    }
+
+    private static IOException syntaxError(String message, int c) {
+        return new IOException(message + ", Found: " + (c == EOF ? "end of input" : "'" + (char) c + "'"))
+    }
+
+    /** JsonSlurper (JsonFlattener) needs a URL, but local file paths are fine */
+    private static URL toUrl(String jsonFileName) {
+
+        try
+        {
+            return new URL(jsonFileName)
+        }
+        catch ( MalformedURLException ignored )
+        {
+            return new File(jsonFileName).toURI().toURL()
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.config.client
 
 import java.util.regex.Pattern
+import net.util.KeyMatcher
 import net.util.PatternHelper
 
 /**
@@ -13,16 +14,16 @@ class ConfigLookup {
     def findByKeyPattern(configMap, pattern) {
 
         def configMatches = new HashMap<String, String>()
-        def useMatcher = useMatch(pattern)
+        if ( configMap == null || pattern == null )
+        {
+            return configMatches
+        }
 
+        // Same matching as useMatch(), without lower casing or a Matcher per key
+        def keyMatcher = KeyMatcher.compile(pattern)
         configMap.each { entry ->
 
-            String lowerCase = entry.key.toLowerCase()
-            if ( !useMatcher && pattern.matcher(lowerCase).find() )
-            {
-                configMatches.put(entry.key, entry.value)
-            }
-            else if ( pattern.matcher(lowerCase).matches() )
+            if ( keyMatcher.matches(entry.key) )
             {
                 configMatches.put(entry.key, entry.value)
             }
@@ -0,0 +1,159 @@
+package net.client;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The read-only result of ConfigLookup.getAll(). Keys and values are kept in two
+ * arrays (in request order) with a small open addressing index, so a batch of
+ * 20 - 40 keys costs three arrays instead of a HashMap with an entry per key.
+ * Entries are only created while iterating entrySet().
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+final class BatchValues<T>
+    extends AbstractMap<String, T> {
+
+    private final String[] _keys;
+    private final Object[] _values;
+    /** Slot + 1 for each key hash, 0 is empty */
+    private final int[] _index;
+    private final int _mask;
+    private int _size;
+
+    /**
+     * @param capacity The most keys that will be added
+     */
+    BatchValues(int capacity) {
+
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        _keys = new String[capacity];
+        _values = new Object[capacity];
+        _index = new int[tableSize];
+        _mask = tableSize - 1;
+    }
+
+    /**
+     * Only while building the batch, a key that was already added is ignored.
+     */
+    void add(String key, T value) {
+
+        int bucket = bucket(key);
+        while ( _index[bucket] != 0 )
+        {
+            if ( _keys[_index[bucket] - 1].equals(key) )
+            {
+                return;
+            }
+
+            bucket = (bucket + 1) & _mask;
+        }
+
+        _keys[_size] = key;
+        _values[_size] = value;
+        _index[bucket] = ++_size;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(Object key) {
+
+        int slot = find(key);
+        return slot < 0 ? null : (T) _values[slot];
+    }
+
+    @Override
+    public Set<Entry<String, T>> entrySet() {
+
+        return new AbstractSet<Entry<String, T>>() {
+            @Override
+            public Iterator<Entry<String, T>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    private int find(Object key) {
+
+        if ( !(key instanceof String) )
+        {
+            return -1;
+        }
+
+        int bucket = bucket((String) key);
+        while ( _index[bucket] != 0 )
+        {
+            int slot = _index[bucket] - 1;
+            if ( _keys[slot].equals(key) )
+            {
+                return slot;
+            }
+
+            bucket = (bucket + 1) & _mask;
+        }
+
+        return -1;
+    }
+
+    private int bucket(String key) {
+
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & _mask;
+    }
+
+    /** Request order, read-only */
+    private class EntryIterator
+        implements Iterator<Entry<String, T>> {
+
+        private int _next;
+
+        @Override
+        public boolean hasNext() {
+            return _next < _size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<String, T> next() {
+
+            if ( _next >= _size )
+            {
+                throw new NoSuchElementException();
+            }
+
+            int slot = _next++;
+            return new SimpleImmutableEntry<>(_keys[slot], (T) _values[slot]);
+        }
+    }
+}
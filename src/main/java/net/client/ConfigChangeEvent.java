@@ -0,0 +1,74 @@
+package net.client;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The entries that changed for one subscription (see ConfigChangeListener).
+ *
+ * For a subscription to one file, the values come from that file. Otherwise
+ * they are the values a lookup would return (the highest precedence file), so
+ * a change that is hidden by a higher precedence file is not reported.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigChangeEvent {
+
+    private final String _fileName;
+    private final Map<String, String> _changedEntries;
+    private final Set<String> _removedKeys;
+    private final ConfigChangeSet _changeSet;
+
+    ConfigChangeEvent(String fileName, Map<String, String> changedEntries, Set<String> removedKeys,
+                      ConfigChangeSet changeSet) {
+
+        _fileName = fileName;
+        _changedEntries = changedEntries;
+        _removedKeys = removedKeys;
+        _changeSet = changeSet;
+    }
+
+    /** @return The subscribed file name, null for a subscription to all files */
+    public String getFileName() {
+        return _fileName;
+    }
+
+    /** @return New and changed keys with their new values (read-only) */
+    public Map<String, String> getChangedEntries() {
+        return _changedEntries;
+    }
+
+    /** @return Keys that no longer exist (read-only) */
+    public Set<String> getRemovedKeys() {
+        return _removedKeys;
+    }
+
+    /** @return Every change from the reload or revert, not only the subscribed keys */
+    public ConfigChangeSet getChangeSet() {
+        return _changeSet;
+    }
+
+    /** @return The config version with these changes (see ConfigMap.getVersion()) */
+    public long getVersion() {
+        return _changeSet.getToVersion();
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigChangeEvent{file=" + _fileName + ", changed=" + _changedEntries + ", removed=" + _removedKeys
+               + ", version=" + getVersion() + "}";
+    }
+}
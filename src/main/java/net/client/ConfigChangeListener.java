@@ -0,0 +1,29 @@
+package net.client;
+
+/**
+ * Called with the changed entries for a subscription after a reload or revert
+ * (see ConfigLookup.subscribe()). Listeners run on the subscription executor,
+ * never on the thread that publishes the config.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public interface ConfigChangeListener {
+
+    /**
+     * @param event Only the entries that match the subscription, never empty
+     */
+    void configChanged(ConfigChangeEvent event);
+}
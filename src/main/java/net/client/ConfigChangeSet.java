@@ -0,0 +1,212 @@
+package net.client;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The keys that were added, removed or changed between two config snapshots,
+ * grouped by config file, and the sources (files, urls, database tables) the
+ * loader found changed. See ConfigMap.reloadConfigFiles() and getLastChangeSet().
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigChangeSet {
+
+    static final ConfigChangeSet EMPTY = new ConfigChangeSet(0, 0, Collections.<String>emptyList(),
+                                                             Collections.<String, Set<String>>emptyMap(),
+                                                             Collections.<String, Set<String>>emptyMap(),
+                                                             Collections.<String, Set<String>>emptyMap());
+
+    private final long _fromVersion;
+    private final long _toVersion;
+    private final List<String> _changedSources;
+    private final Map<String, Set<String>> _addedKeys;
+    private final Map<String, Set<String>> _removedKeys;
+    private final Map<String, Set<String>> _changedKeys;
+
+    private ConfigChangeSet(long fromVersion, long toVersion, List<String> changedSources,
+                            Map<String, Set<String>> addedKeys, Map<String, Set<String>> removedKeys,
+                            Map<String, Set<String>> changedKeys) {
+
+        _fromVersion = fromVersion;
+        _toVersion = toVersion;
+        _changedSources = changedSources;
+        _addedKeys = addedKeys;
+        _removedKeys = removedKeys;
+        _changedKeys = changedKeys;
+    }
+
+    /**
+     * Compare every file map of two configs. File maps that are the same instance
+     * are skipped, so reusing unchanged maps across snapshots keeps this cheap.
+     *
+     * @param previous The config before (file 1 --> map 1)
+     * @param next The config after (file 1 --> map 1)
+     * @param changedSources The sources the loader found changed (may be empty)
+     * @param fromVersion The version of 'previous'
+     * @param toVersion The version of 'next'
+     * @return The key differences by file name
+     */
+    static ConfigChangeSet compare(Map<String, Map<String, String>> previous, Map<String, Map<String, String>> next,
+                                   List<String> changedSources, long fromVersion, long toVersion) {
+
+        Map<String, Set<String>> addedKeys = new LinkedHashMap<>();
+        Map<String, Set<String>> removedKeys = new LinkedHashMap<>();
+        Map<String, Set<String>> changedKeys = new LinkedHashMap<>();
+
+        for ( Map.Entry<String, Map<String, String>> fileEntry : next.entrySet() )
+        {
+            Map<String, String> before = previous.get(fileEntry.getKey());
+            Map<String, String> after = fileEntry.getValue();
+            if ( before == after )
+            {
+                continue;
+            }
+
+            before = before == null ? Collections.<String, String>emptyMap() : before;
+            after = after == null ? Collections.<String, String>emptyMap() : after;
+
+            for ( Map.Entry<String, String> entry : after.entrySet() )
+            {
+                if ( !before.containsKey(entry.getKey()) )
+                {
+                    addKey(addedKeys, fileEntry.getKey(), entry.getKey());
+                }
+                else if ( !Objects.equals(before.get(entry.getKey()), entry.getValue()) )
+                {
+                    addKey(changedKeys, fileEntry.getKey(), entry.getKey());
+                }
+            }
+
+            for ( String key : before.keySet() )
+            {
+                if ( !after.containsKey(key) )
+                {
+                    addKey(removedKeys, fileEntry.getKey(), key);
+                }
+            }
+        }
+
+        for ( Map.Entry<String, Map<String, String>> fileEntry : previous.entrySet() )
+        {
+            if ( !next.containsKey(fileEntry.getKey()) && fileEntry.getValue() != null )
+            {
+                for ( String key : fileEntry.getValue().keySet() )
+                {
+                    addKey(removedKeys, fileEntry.getKey(), key);
+                }
+            }
+        }
+
+        return new ConfigChangeSet(fromVersion, toVersion, Collections.unmodifiableList(changedSources),
+                                   readOnly(addedKeys), readOnly(removedKeys), readOnly(changedKeys));
+    }
+
+    private static void addKey(Map<String, Set<String>> fileKeys, String fileName, String key) {
+
+        Set<String> keys = fileKeys.get(fileName);
+        if ( keys == null )
+        {
+            keys = new LinkedHashSet<>();
+            fileKeys.put(fileName, keys);
+        }
+
+        keys.add(key);
+    }
+
+    private static Map<String, Set<String>> readOnly(Map<String, Set<String>> fileKeys) {
+
+        for ( Map.Entry<String, Set<String>> entry : fileKeys.entrySet() )
+        {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+
+        return Collections.unmodifiableMap(fileKeys);
+    }
+
+    /** @return The snapshot version before the change */
+    public long getFromVersion() {
+        return _fromVersion;
+    }
+
+    /** @return The snapshot version after the change */
+    public long getToVersion() {
+        return _toVersion;
+    }
+
+    /** @return The files, urls and database tables that were added, changed or removed */
+    public List<String> getChangedSources() {
+        return _changedSources;
+    }
+
+    /** @return New keys by file name */
+    public Map<String, Set<String>> getAddedKeys() {
+        return _addedKeys;
+    }
+
+    /** @return Keys that no longer exist by file name */
+    public Map<String, Set<String>> getRemovedKeys() {
+        return _removedKeys;
+    }
+
+    /** @return Keys with a different value by file name */
+    public Map<String, Set<String>> getChangedKeys() {
+        return _changedKeys;
+    }
+
+    /**
+     * @return Every added, removed or changed key, regardless of file
+     */
+    public Set<String> getKeys() {
+
+        Set<String> keys = new LinkedHashSet<>();
+        addAll(keys, _addedKeys);
+        addAll(keys, _removedKeys);
+        addAll(keys, _changedKeys);
+
+        return keys;
+    }
+
+    private static void addAll(Set<String> keys, Map<String, Set<String>> fileKeys) {
+
+        for ( Set<String> fileKeySet : fileKeys.values() )
+        {
+            keys.addAll(fileKeySet);
+        }
+    }
+
+    /**
+     * @return true if no key was added, removed or changed
+     */
+    public boolean isEmpty() {
+        return _addedKeys.isEmpty() && _removedKeys.isEmpty() && _changedKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+
+        return "ConfigChangeSet{version " + _fromVersion + " -> " + _toVersion
+               + ", changedSources=" + _changedSources
+               + ", added=" + _addedKeys
+               + ", removed=" + _removedKeys
+               + ", changed=" + _changedKeys + "}";
+    }
+}
@@ -0,0 +1,229 @@
+package net.client;
+
+import net.common.JigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Watches the config directories ('jig.location' and exploded 'classpath/config')
+ * and reloads in the background when a config file is created, modified or deleted.
+ * Enable it with 'jig.watch=true'. Only file names that match the config file pattern
+ * (see ConfigLoader.findFileNamePattern()) trigger a reload.
+ *
+ * Editors and deployments usually change several files in a row, so the reload
+ * waits until no config file has changed for 'jig.watch.delay' millis (default 500).
+ * The reload itself publishes a new snapshot atomically (see ConfigMap).
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigFileWatcher
+    implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigFileWatcher.class);
+    private static final long DEFAULT_DELAY_MILLIS = 500;
+
+    private final WatchService _watchService;
+    private final Pattern _fileNamePattern;
+    private final long _delayMillis;
+    private final Runnable _reload;
+    private final Thread _thread;
+    private final AtomicLong _reloadCount = new AtomicLong();
+
+    private volatile boolean _running = true;
+
+    /**
+     * @param directories The config directories to watch (missing directories are skipped)
+     * @param fileNamePattern Only these file names trigger a reload
+     * @param delayMillis How long the files must be unchanged before reloading
+     * @param reload Called on the watcher thread after config files changed
+     * @throws IOException If the directories cannot be watched
+     */
+    public ConfigFileWatcher(List<String> directories, Pattern fileNamePattern, long delayMillis, Runnable reload)
+        throws IOException {
+
+        _watchService = FileSystems.getDefault().newWatchService();
+        _fileNamePattern = fileNamePattern;
+        _delayMillis = delayMillis;
+        _reload = reload;
+
+        for ( String directory : directories )
+        {
+            Path path = Paths.get(directory);
+            if ( path.toFile().isDirectory() )
+            {
+                path.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                              StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                LOG.info("Watching Config Directory " + path);
+            }
+        }
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "jig-config-watcher");
+        _thread.setDaemon(true);
+    }
+
+    /**
+     * @return true if 'jig.watch=true'
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(JigProperties.JIG_WATCH.getName(), "false").trim());
+    }
+
+    /**
+     * @return 'jig.watch.delay' millis, otherwise 500
+     */
+    public static long findDelayMillis() {
+
+        String delay = System.getProperty(JigProperties.JIG_WATCH_DELAY.getName());
+        if ( delay == null || delay.trim().isEmpty() )
+        {
+            return DEFAULT_DELAY_MILLIS;
+        }
+
+        try
+        {
+            return Math.max(0, Long.parseLong(delay.trim()));
+        }
+        catch ( NumberFormatException nfe )
+        {
+            LOG.warn("Invalid " + JigProperties.JIG_WATCH_DELAY.getName() + ": '" + delay + "', Using "
+                     + DEFAULT_DELAY_MILLIS + " ms");
+            return DEFAULT_DELAY_MILLIS;
+        }
+    }
+
+    /**
+     * Start watching on a daemon thread.
+     */
+    public void start() {
+        _thread.start();
+    }
+
+    /**
+     * @return How many reloads the watcher has triggered
+     */
+    public long getReloadCount() {
+        return _reloadCount.get();
+    }
+
+    /**
+     * Stop watching, a reload that is running will finish.
+     */
+    @Override
+    public void close()
+        throws IOException {
+
+        _running = false;
+        _watchService.close();
+    }
+
+    private void watch() {
+
+        try
+        {
+            while ( _running )
+            {
+                if ( !takeConfigFileEvents(_watchService.take()) )
+                {
+                    continue;
+                }
+
+                // Wait for a burst of edits to finish
+                WatchKey key;
+                while ( (key = _watchService.poll(_delayMillis, TimeUnit.MILLISECONDS)) != null )
+                {
+                    takeConfigFileEvents(key);
+                }
+
+                reload();
+            }
+        }
+        catch ( ClosedWatchServiceException cwse )
+        {
+            LOG.info("Stopped Watching Config Directories");
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return true if a config file changed (or events were lost) */
+    private boolean takeConfigFileEvents(WatchKey key) {
+
+        boolean configFileChanged = false;
+        for ( WatchEvent<?> event : key.pollEvents() )
+        {
+            if ( event.kind() == StandardWatchEventKinds.OVERFLOW )
+            {
+                configFileChanged = true;
+            }
+            else if ( _fileNamePattern.matcher(event.context().toString()).matches() )
+            {
+                LOG.info("Config File " + event.kind().name() + ": " + event.context());
+                configFileChanged = true;
+            }
+        }
+
+        if ( !key.reset() )
+        {
+            LOG.warn("Config Directory Is No Longer Watched: " + key.watchable());
+        }
+
+        return configFileChanged;
+    }
+
+    private void reload() {
+
+        if ( !_running )
+        {
+            return;
+        }
+
+        try
+        {
+            LOG.info("Config Files Changed, Reloading");
+            _reload.run();
+        }
+        catch ( RuntimeException e )
+        {
+            LOG.error("Config Reload Failed, Keeping The Current Config", e);
+        }
+        finally
+        {
+            _reloadCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.client;
+
+/**
+ * A config value that is resolved once per config snapshot, for constants that
+ * are read often (see ConfigLookup.getHandle()). Holding a handle instead of the
+ * value means a reload or revert is picked up on the next get(), while a get()
+ * on an unchanged config is only a snapshot check and a field read. Handles do
+ * not gather lookup statistics (see ConfigStatistics).
+ *
+ * A handle is safe to share across threads and may be created before the
+ * config is loaded, for example in an enum constructor.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigHandle<T> {
+
+    private final ConfigMap _configMap;
+    private final String _fileName;
+    private final String _key;
+    private final Class<T> _clazz;
+
+    /** The value for the snapshot version it was resolved from, replaced after a reload */
+    private volatile Resolved<T> _resolved;
+
+    /**
+     * @param fileName The config file, null for the highest precedence value
+     * @param key An exact key name
+     * @param clazz The value type (see GenericsHelper)
+     */
+    ConfigHandle(ConfigMap configMap, String fileName, String key, Class<T> clazz) {
+
+        _configMap = configMap;
+        _fileName = fileName;
+        _key = key;
+        _clazz = clazz;
+    }
+
+    /**
+     * @return The value in the current config, otherwise null
+     */
+    public T get() {
+
+        ConfigSnapshot snapshot = _configMap.getSnapshot();
+        Resolved<T> resolved = _resolved;
+
+        if ( resolved == null || resolved.version != snapshot.getVersion() )
+        {
+            // Another thread may resolve the same snapshot, either result is the same value
+            resolved = new Resolved<>(snapshot.getVersion(), snapshot.getValue(_fileName, _key, _clazz));
+            _resolved = resolved;
+        }
+
+        return resolved.value;
+    }
+
+    /**
+     * @param defaultValue Returned if the key does not exist or could not be converted
+     * @return The value in the current config, otherwise 'defaultValue'
+     */
+    public T get(T defaultValue) {
+
+        T value = get();
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * @return The config file name, null for the highest precedence value
+     */
+    public String getFileName() {
+        return _fileName;
+    }
+
+    public String getKey() {
+        return _key;
+    }
+
+    public Class<T> getType() {
+        return _clazz;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigHandle{file=" + _fileName + ", key=" + _key + ", type=" + _clazz.getSimpleName() + "}";
+    }
+
+    /** Only the version, so an idle handle does not keep an old snapshot reachable */
+    private static final class Resolved<T> {
+
+        private final long version;
+        private final T value;
+
+        private Resolved(long version, T value) {
+
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package net.client;
 
 import net.util.ConfigStatistics;
-import net.util.GenericsHelper;
+import net.util.KeyMatcher;
+import net.util.KeyTrie;
+import net.util.LookupCache;
+import net.util.ParallelLookup;
 import net.util.PatternHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 /**
@@ -28,6 +36,9 @@ import java.util.regex.Pattern;
  * get()
  * getSortedResults()
  *
+ * Pattern lookup results are cached (see LookupCache) until the config is
+ * reloaded or reverted, so the returned maps are read-only.
+ *
  * Given that ConfigMap and ConfigStatistics are both static instances, they can
  * be exported to the MBean whenever the class is first created. For example, create
  * a ConfigLookup bean in Spring, wait for startup, then export it as an MBean. All sub
@@ -55,11 +66,73 @@ public class ConfigLookup {
     // Loads during class initialization on startup.
     private static final ConfigMap CONFIG_MAP = new ConfigMap();
     private static final ConfigStatistics CONFIG_STATISTICS = new ConfigStatistics();
+    private static final LookupCache LOOKUP_CACHE = new LookupCache();
+    private static final ParallelLookup PARALLEL_LOOKUP = new ParallelLookup();
 
     public ConfigStatistics getConfigStatistics() {
         return CONFIG_STATISTICS;
     }
 
+    public LookupCache getLookupCache() {
+        return LOOKUP_CACHE;
+    }
+
+    public ParallelLookup getParallelLookup() {
+        return PARALLEL_LOOKUP;
+    }
+
+    public ConfigMap getConfigMap() {
+        return CONFIG_MAP;
+    }
+
+    /**
+     * Call 'listener' with the new value when 'key' is added, changed or removed by
+     * a reload or revert, instead of polling getByKey().
+     *
+     * @param key An exact key name
+     * @param listener Runs on a shared pool of daemon threads
+     * @return The subscription, cancel() it to stop listening
+     */
+    public ConfigSubscription subscribe(String key, ConfigChangeListener listener) {
+        return subscribe(null, key, null, listener, null);
+    }
+
+    /**
+     * Call 'listener' with only the changed entries whose keys match 'pattern' (the
+     * same matching as get()) after a reload or revert, instead of polling get().
+     *
+     * @param pattern A pattern applied to each changed key
+     * @param listener Runs on a shared pool of daemon threads
+     * @return The subscription, cancel() it to stop listening
+     */
+    public ConfigSubscription subscribe(Pattern pattern, ConfigChangeListener listener) {
+        return subscribe(null, null, pattern, listener, null);
+    }
+
+    /**
+     * Same as subscribe(pattern, listener) for the keys in one config file, with the
+     * listener running on 'executor'. Events for one subscription are delivered one
+     * at a time in version order, and never on the thread that publishes the config.
+     *
+     * @param fileName Only changes in this file, null for all files
+     * @param pattern A pattern applied to each changed key
+     * @param listener Called with the changed entries
+     * @param executor Runs 'listener', null for a shared pool of daemon threads
+     * @return The subscription, cancel() it to stop listening
+     */
+    public ConfigSubscription subscribe(String fileName, Pattern pattern, ConfigChangeListener listener,
+                                        Executor executor) {
+        return subscribe(fileName, null, pattern, listener, executor);
+    }
+
+    /** Load the config first, so the initial load is not reported as changes */
+    private ConfigSubscription subscribe(String fileName, String key, Pattern pattern, ConfigChangeListener listener,
+                                         Executor executor) {
+
+        CONFIG_MAP.getSnapshot();
+        return CONFIG_MAP.subscribe(fileName, key, pattern, listener, executor);
+    }
+
     /**
      * Build a pattern to apply across the keys in a Map. Matches
      * will be retrieved.
@@ -94,7 +167,7 @@ public class ConfigLookup {
             return getByKey(key);
         }
 
-        return CONFIG_MAP.getConfig().get(fileName).get(key);
+        return CONFIG_MAP.getSnapshot().getConfig().get(fileName).get(key);
     }
 
     /**
@@ -102,8 +175,11 @@ public class ConfigLookup {
      * from the Map and try to create its Primitive Object (or List).
      * See GenericsHelper for options.
      *
+     * The value is converted once per config reload, after that the same instance
+     * is returned (a List is read-only).
+     *
      * @param key An exact key name
-     * @param clazz The class to return (Integer, Double, Long, Boolean, List)
+     * @param clazz The class to return (Integer, Double, Long, Boolean, List, etc)
      * @param <T> See 'clazz' for possible types
      * @return Any of the types listed above, or its original String value
      */
@@ -115,9 +191,7 @@ public class ConfigLookup {
             return null;
         }
 
-        GenericsHelper helper = new GenericsHelper();
-        String value = getByKey(key);
-        return helper.get(value, clazz);
+        return getConfigValue(key, clazz);
     }
 
     /**
@@ -130,9 +204,185 @@ public class ConfigLookup {
      */
     public <T> T getByKey(String fileName, String key, Class<T> clazz) {
 
-        String result = getByKey(fileName, key);
-        GenericsHelper helper = new GenericsHelper();
-        return helper.get(result, clazz);
+        if ( key == null )
+        {
+            return null;
+        }
+
+        if ( fileName == null )
+        {
+            LOG.debug("Invalid File Name, Using Slower 'getByKey(key, clazz)'");
+            return getByKey(key, clazz);
+        }
+
+        return CONFIG_MAP.getSnapshot().getValue(fileName, key, clazz);
+    }
+
+    /**
+     * Look up several property style keys at once, for example every key a request
+     * handler needs. All of them come from the same config snapshot, so a reload
+     * in the middle cannot mix old and new values. Statistics are sampled and timed
+     * once for the whole batch (the latency is shared by its keys).
+     *
+     * @param keys Exact key names (null keys are skipped)
+     * @return A read-only map of the keys that exist, in 'keys' order
+     */
+    public Map<String, String> getAll(Collection<String> keys) {
+        return getAll(keys, String.class);
+    }
+
+    /**
+     * Same as above, with each value converted once per config reload (see getByKey(key, clazz)).
+     *
+     * @param keys Exact key names (null keys are skipped)
+     * @param clazz The value type (Integer, Double, Long, Boolean, List, etc)
+     * @param <T> See 'clazz'
+     * @return A read-only map of the keys that exist and convert to 'clazz', in 'keys' order
+     */
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> clazz) {
+
+        if ( keys == null || keys.isEmpty() )
+        {
+            return Collections.emptyMap();
+        }
+
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        long startTime = sampleWeight > 0 ? System.nanoTime() : 0;
+
+        ConfigSnapshot snapshot = CONFIG_MAP.getSnapshot();
+        BatchValues<T> values = new BatchValues<>(keys.size());
+
+        for ( String key : keys )
+        {
+            if ( key == null )
+            {
+                continue;
+            }
+
+            T value = snapshot.getValue(null, key, clazz);
+            if ( value != null )
+            {
+                values.add(key, value);
+            }
+        }
+
+        if ( sampleWeight > 0 && values.size() > 0 )
+        {
+            CONFIG_STATISTICS.addBatchLookup(values.keySet(), System.nanoTime() - startTime, sampleWeight);
+        }
+
+        return values;
+    }
+
+    /**
+     * A handle for a key that is read often, for example from an enum constant.
+     * The value is resolved once per config snapshot and re-resolved after a
+     * reload or revert (see ConfigHandle).
+     *
+     * @param key An exact key name
+     * @param clazz The value type (see GenericsHelper)
+     * @param <T> See 'clazz'
+     * @return A handle for the highest precedence value of 'key'
+     */
+    public <T> ConfigHandle<T> getHandle(String key, Class<T> clazz) {
+        return getHandle(null, key, clazz);
+    }
+
+    /**
+     * @param fileName The config file with 'key', null for the highest precedence value
+     * @param key An exact key name
+     * @param clazz The value type (see GenericsHelper)
+     * @param <T> See 'clazz'
+     * @return A handle for 'key' in 'fileName'
+     */
+    public <T> ConfigHandle<T> getHandle(String fileName, String key, Class<T> clazz) {
+
+        if ( key == null || clazz == null )
+        {
+            throw new IllegalArgumentException("A Key And Class Are Required");
+        }
+
+        return new ConfigHandle<>(CONFIG_MAP, fileName, key, clazz);
+    }
+
+    /**
+     * Primitive value lookups for hot paths. The numbers and booleans are parsed
+     * when the config is loaded (see PrimitiveIndex), so these do not allocate
+     * or box. Statistics are gathered the same way as getByKey(key).
+     *
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not an int
+     * @return The int value for 'key', otherwise 'defaultValue'
+     */
+    public int getInt(String key, int defaultValue) {
+
+        if ( key == null )
+        {
+            return defaultValue;
+        }
+
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        long startTime = sampleWeight > 0 ? System.nanoTime() : 0;
+        int result = CONFIG_MAP.getSnapshot().getInt(key, defaultValue);
+        addKeyLookup(key, startTime, sampleWeight);
+        return result;
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not a long
+     * @return The long value for 'key', otherwise 'defaultValue'
+     */
+    public long getLong(String key, long defaultValue) {
+
+        if ( key == null )
+        {
+            return defaultValue;
+        }
+
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        long startTime = sampleWeight > 0 ? System.nanoTime() : 0;
+        long result = CONFIG_MAP.getSnapshot().getLong(key, defaultValue);
+        addKeyLookup(key, startTime, sampleWeight);
+        return result;
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not a number
+     * @return The double value for 'key', otherwise 'defaultValue'
+     */
+    public double getDouble(String key, double defaultValue) {
+
+        if ( key == null )
+        {
+            return defaultValue;
+        }
+
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        long startTime = sampleWeight > 0 ? System.nanoTime() : 0;
+        double result = CONFIG_MAP.getSnapshot().getDouble(key, defaultValue);
+        addKeyLookup(key, startTime, sampleWeight);
+        return result;
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not "true" or "false"
+     * @return The boolean value for 'key', otherwise 'defaultValue'
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+
+        if ( key == null )
+        {
+            return defaultValue;
+        }
+
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        long startTime = sampleWeight > 0 ? System.nanoTime() : 0;
+        boolean result = CONFIG_MAP.getSnapshot().getBoolean(key, defaultValue);
+        addKeyLookup(key, startTime, sampleWeight);
+        return result;
     }
 
     /**
@@ -140,10 +390,10 @@ public class ConfigLookup {
      * keys.
      *
      * @param pattern A pattern applied to each key
-     * @return A hashmap for all key matches
+     * @return A read-only map for all key matches
      */
     public Map<String,String> get(Pattern pattern) {
-        return getConfigMatches(CONFIG_MAP.getConfig(), pattern);
+        return getCachedMatches(null, pattern);
     }
 
     /**
@@ -152,10 +402,10 @@ public class ConfigLookup {
      *
      * @param pattern For Map key lookup
      * @param params Any additional portions of the key name to help reduce the Map
-     * @return A map of key-value pairs according to 'pattern' and containing 'params'
+     * @return A read-only map of key-value pairs according to 'pattern' and containing 'params'
      */
     public Map<String, String> get(Pattern pattern, String... params) {
-        return getConfigMatches(CONFIG_MAP.getConfig(), pattern, params);
+        return getCachedMatches(null, pattern, params);
     }
 
     /**
@@ -168,7 +418,7 @@ public class ConfigLookup {
      */
     public Map<String, String> getSortedResults(Comparator<String> comparator, Pattern pattern, String... params) {
 
-        Map<String,String> matches = getConfigMatches(CONFIG_MAP.getConfig(), pattern, params);
+        Map<String,String> matches = getCachedMatches(null, pattern, params);
         TreeMap<String, String> treeMap = new TreeMap<>(comparator);
         treeMap.putAll(matches);
         return treeMap;
@@ -180,18 +430,17 @@ public class ConfigLookup {
      * @param fileName The filename that contains the text config (text, xml, json, etc)
      * @param pattern A pattern to apply to the keys
      * @param params Additional parameters that are part of the key names
-     * @return A map of key-value pairs, for a given file, according to key pattern and containing params
+     * @return A read-only map of key-value pairs, for a given file, according to key pattern and containing params
      */
     public Map<String, String> get(String fileName, Pattern pattern, String... params) {
 
         if ( fileName == null || fileName.length() < 1 )
         {
             LOG.info("A Valid File Name Is Required To Lookup Config By File");
-            return getConfigMatches(CONFIG_MAP.getConfig(), pattern, params);
+            return getCachedMatches(null, pattern, params);
         }
 
-        Map<String, String> configsForFile = CONFIG_MAP.getConfig().get(fileName);
-        return findMatches(configsForFile, pattern, params);
+        return getCachedMatches(fileName, pattern, params);
     }
 
     /**
@@ -260,13 +509,64 @@ public class ConfigLookup {
             return null;
         }
 
-        return getConfigValue(key);
+        return getConfigValue(key, String.class);
+    }
+
+    /**
+     * Use a cached result for this config version, otherwise find and cache the
+     * matches for one file (or all files if 'fileName' is null). A cached result
+     * still counts as a lookup for statistics.
+     */
+    private Map<String, String> getCachedMatches(String fileName, Pattern pattern, String... params) {
+
+        // One snapshot for the lookup, so the result always matches the cached version
+        ConfigSnapshot snapshot = CONFIG_MAP.getSnapshot();
+        long version = snapshot.getVersion();
+
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        long start = 0;
+        if ( sampleWeight > 0 )
+        {
+            start = System.nanoTime();
+        }
+
+        Map<String, String> cached = LOOKUP_CACHE.get(version, fileName, pattern, params);
+        if ( cached != null )
+        {
+            if ( sampleWeight > 0 )
+            {
+                long lookupTime = System.nanoTime() - start;
+                updateStats(cached, pattern, lookupTime, sampleWeight, params);
+                updatePatternStats(pattern, lookupTime, sampleWeight, params);
+            }
+
+            return cached;
+        }
+
+        Map<String, String> matches;
+        if ( fileName == null )
+        {
+            matches = getConfigMatches(snapshot, pattern, sampleWeight, params);
+        }
+        else
+        {
+            Map<String, String> configMap = snapshot.getConfig().get(fileName);
+            matches = findMatches(snapshot.getKeyTrie(fileName, configMap), configMap, pattern, sampleWeight, params);
+        }
+
+        if ( sampleWeight > 0 )
+        {
+            updatePatternStats(pattern, System.nanoTime() - start, sampleWeight, params);
+        }
+
+        return LOOKUP_CACHE.put(version, fileName, pattern, matches, params);
     }
 
     /**
      * Loop through a Map of Maps to find the config. If you know the outer map
      * key, then it should be faster for larger config files. The outer map
-     * key is the config file name.
+     * key is the config file name. Each file's key trie (see ConfigMap.getKeyTrie())
+     * limits the pattern to keys that contain its literal prefix.
      *
      * @param configMaps The file specific maps (file 1 --> map 1)
      * @param pattern A pattern to match against file map keysets
@@ -283,9 +583,116 @@ public class ConfigLookup {
             return matches;
         }
 
-        for ( Map<String, String> configMap : configMaps.values() )
+        int sampleWeight = CONFIG_STATISTICS.sample();
+        for ( Map.Entry<String, Map<String, String>> fileEntry : configMaps.entrySet() )
+        {
+            Map<String, String> configMap = fileEntry.getValue();
+            KeyTrie keyTrie = CONFIG_MAP.getKeyTrie(fileEntry.getKey(), configMap);
+            matches.putAll(findMatches(keyTrie, configMap, pattern, sampleWeight, params));
+        }
+
+        return matches;
+    }
+
+    /**
+     * Same as above, but with the key tries from 'snapshot'. Large lookups are
+     * matched in parallel when enabled (see ParallelLookup).
+     */
+    private Map<String, String> getConfigMatches(ConfigSnapshot snapshot, Pattern pattern, int sampleWeight,
+                                                 String... params) {
+
+        if ( PARALLEL_LOOKUP.getThreshold() > 0 )
+        {
+            Map<String, String> parallelMatches = getConfigMatchesInParallel(snapshot, pattern, sampleWeight, params);
+            if ( parallelMatches != null )
+            {
+                return parallelMatches;
+            }
+        }
+
+        Map<String, String> matches = new HashMap<>();
+
+        for ( Map.Entry<String, Map<String, String>> fileEntry : snapshot.getConfig().entrySet() )
         {
-            matches.putAll(findMatches(configMap, pattern, params));
+            Map<String, String> configMap = fileEntry.getValue();
+            KeyTrie keyTrie = snapshot.getKeyTrie(fileEntry.getKey(), configMap);
+            matches.putAll(findMatches(keyTrie, configMap, pattern, sampleWeight, params));
+        }
+
+        return matches;
+    }
+
+    /**
+     * Split the candidate keys (from each file's key trie) into chunks and match
+     * them on the ParallelLookup pool. Every chunk matches into its own map, then
+     * the chunk maps are merged in file order, so later files still take precedence.
+     *
+     * @return The reduced matches, or null when there are too few candidate keys
+     */
+    private Map<String, String> getConfigMatchesInParallel(final ConfigSnapshot snapshot, final Pattern pattern,
+                                                           final int sampleWeight, final String... params) {
+
+        String literalPrefix = PatternHelper.findLiteralPrefix(pattern);
+        boolean anchored = PatternHelper.isAnchored(pattern);
+
+        Map<String, List<KeyTrie.Entry>> candidates = new LinkedHashMap<>();
+        int candidateCount = 0;
+
+        for ( Map.Entry<String, Map<String, String>> fileEntry : snapshot.getConfig().entrySet() )
+        {
+            Map<String, String> configMap = fileEntry.getValue();
+            KeyTrie keyTrie = snapshot.getKeyTrie(fileEntry.getKey(), configMap);
+            List<KeyTrie.Entry> entries = keyTrie == null ? null : keyTrie.find(literalPrefix, anchored);
+
+            candidates.put(fileEntry.getKey(), entries);
+            candidateCount += entries == null ? (configMap == null ? 0 : configMap.size()) : entries.size();
+        }
+
+        if ( !PARALLEL_LOOKUP.isParallel(candidateCount) )
+        {
+            return null;
+        }
+
+        int chunkSize = PARALLEL_LOOKUP.getChunkSize(candidateCount);
+        List<Callable<Map<String, String>>> tasks = new ArrayList<>();
+
+        for ( Map.Entry<String, List<KeyTrie.Entry>> candidate : candidates.entrySet() )
+        {
+            final List<KeyTrie.Entry> entries = candidate.getValue();
+
+            if ( entries == null )
+            {
+                final Map<String, String> configMap = snapshot.getConfig().get(candidate.getKey());
+                tasks.add(new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() {
+                        return findMatches(null, configMap, pattern, sampleWeight, params);
+                    }
+                });
+
+                continue;
+            }
+
+            for ( int i = 0; i < entries.size(); i += chunkSize )
+            {
+                final List<KeyTrie.Entry> chunk = entries.subList(i, Math.min(i + chunkSize, entries.size()));
+                tasks.add(new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() {
+
+                        // KeyMatcher is not thread safe, one per chunk
+                        long start = sampleWeight > 0 ? System.nanoTime() : 0;
+                        Map<String, String> matches = findMatchesFromEntries(chunk, KeyMatcher.compile(pattern));
+                        return reduceAndUpdateStats(matches, pattern, start, sampleWeight, params);
+                    }
+                });
+            }
+        }
+
+        Map<String, String> matches = new HashMap<>();
+        for ( Map<String, String> chunkMatches : PARALLEL_LOOKUP.invokeAll(tasks) )
+        {
+            matches.putAll(chunkMatches);
         }
 
         return matches;
@@ -306,53 +713,93 @@ public class ConfigLookup {
             return new HashMap<>();
         }
 
-        return getConfigValues(configMap, pattern, params);
+        return getConfigValues(configMap, null, pattern, CONFIG_STATISTICS.sample(), params);
     }
 
-    /** Find matches and potentially collect statistics */
-    private Map<String, String> getConfigValues(Map<String, String> configMap, Pattern pattern, String... params) {
+    /** Use the key trie for 'configMap' when there is one (otherwise null) */
+    private Map<String, String> findMatches(KeyTrie keyTrie, Map<String, String> configMap, Pattern pattern,
+                                            int sampleWeight, String... params) {
+
+        if ( configMap == null || configMap.isEmpty() )
+        {
+            return new HashMap<>();
+        }
+
+        return getConfigValues(configMap, keyTrie, pattern, sampleWeight, params);
+    }
+
+    /**
+     * Find matches and potentially collect statistics. The caller decides whether
+     * this lookup is sampled (see ConfigStatistics.sample()), 0 means it is not.
+     */
+    private Map<String, String> getConfigValues(Map<String, String> configMap, KeyTrie keyTrie, Pattern pattern,
+                                                int sampleWeight, String... params) {
 
         long start = 0;
-        if ( CONFIG_STATISTICS.isEnabled() )
+        if ( sampleWeight > 0 )
         {
             start = System.nanoTime();
         }
 
-        Map<String, String> matches = findMatchesFromKeyset(configMap, pattern);
+        Map<String, String> matches = keyTrie == null ? findMatchesFromKeyset(configMap, pattern)
+                                                      : findMatchesFromKeyTrie(keyTrie, pattern);
 
-        if ( !CONFIG_STATISTICS.isEnabled() )
+        return reduceAndUpdateStats(matches, pattern, start, sampleWeight, params);
+    }
+
+    /** Reduce 'matches' by 'params' and update the stats if this lookup is sampled (started at 'start') */
+    private Map<String, String> reduceAndUpdateStats(Map<String, String> matches, Pattern pattern, long start,
+                                                     int sampleWeight, String... params) {
+
+        if ( sampleWeight == 0 )
         {
             return reduce(matches, params);
         }
 
         Map<String, String> reducedMap = reduce(matches, params);
         long lookupTime = System.nanoTime() - start;
-        updateStats(reducedMap, pattern, lookupTime, params);
+        updateStats(reducedMap, pattern, lookupTime, sampleWeight, params);
 
         return reducedMap;
     }
 
-    /** Examine keyset for contains/finds/matches */
+    /** Examine keyset for contains/finds/matches (see KeyMatcher) */
     private Map<String, String> findMatchesFromKeyset(Map<String, String> configMap, Pattern pattern) {
 
-        boolean useFind = PatternHelper.useFind(pattern);
-        boolean useContains = PatternHelper.useContains(pattern);
-
+        KeyMatcher keyMatcher = KeyMatcher.compile(pattern);
         Map<String, String> matches = new HashMap<>();
 
         for ( Map.Entry<String, String> entry : configMap.entrySet() )
         {
-            String lowerCaseKey = entry.getKey().toLowerCase();
-
-            if ( useContains && lowerCaseKey.contains(pattern.pattern()) )
-            {
-                matches.put(entry.getKey(), entry.getValue());
-            }
-            else if ( useFind && pattern.matcher(lowerCaseKey).find() )
+            if ( keyMatcher.matches(entry.getKey()) )
             {
                 matches.put(entry.getKey(), entry.getValue());
             }
-            else if ( pattern.matcher(lowerCaseKey).matches() )
+        }
+
+        return matches;
+    }
+
+    /**
+     * Same as findMatchesFromKeyset(), but only for the keys that contain the
+     * pattern's literal prefix (see PatternHelper.findLiteralPrefix()).
+     */
+    private Map<String, String> findMatchesFromKeyTrie(KeyTrie keyTrie, Pattern pattern) {
+
+        String literalPrefix = PatternHelper.findLiteralPrefix(pattern);
+        boolean anchored = PatternHelper.isAnchored(pattern);
+
+        return findMatchesFromEntries(keyTrie.find(literalPrefix, anchored), KeyMatcher.compile(pattern));
+    }
+
+    /** Match key trie entries (or a chunk of them) with 'keyMatcher' */
+    private Map<String, String> findMatchesFromEntries(List<KeyTrie.Entry> entries, KeyMatcher keyMatcher) {
+
+        Map<String, String> matches = new HashMap<>();
+
+        for ( KeyTrie.Entry entry : entries )
+        {
+            if ( keyMatcher.matchesLowerCase(entry.getLowerCaseKey()) )
             {
                 matches.put(entry.getKey(), entry.getValue());
             }
@@ -362,16 +809,22 @@ public class ConfigLookup {
     }
 
     /** Update the stats for each key match */
-    private void updateStats(Map<String, String> reducedMap, Pattern pattern, long lookupTime, String... params) {
+    private void updateStats(Map<String, String> reducedMap, Pattern pattern, long lookupTime, int sampleWeight,
+                             String... params) {
 
         String reducePattern = buildReducePatternRepresentation(pattern, params);
 
         for ( String key : reducedMap.keySet() )
         {
-            CONFIG_STATISTICS.addKeyLookup(key, lookupTime, reducePattern);
+            CONFIG_STATISTICS.addKeyLookup(key, lookupTime, reducePattern, sampleWeight);
         }
     }
 
+    /** Update the latencies for the whole lookup (across files) once per reduce pattern */
+    private void updatePatternStats(Pattern pattern, long lookupTime, int sampleWeight, String... params) {
+        CONFIG_STATISTICS.addPatternLookup(buildReducePatternRepresentation(pattern, params), lookupTime, sampleWeight);
+    }
+
     /** Generate a text representation of matching key items */
     private String buildReducePatternRepresentation(Pattern pattern, String... reducers) {
 
@@ -392,41 +845,42 @@ public class ConfigLookup {
 
     /**
      * Retrieves a single value from the config map, if it exists. This is
-     * used for property style config (1:1) lookups. If Statistics are
-     * enabled (see ConfigStatistics), then it will add some latency, but
-     * it will gather latency and count information for 'key'.
+     * used for property style config (1:1) lookups and is a single hash lookup
+     * against the ConfigMap key index regardless of the number of config files.
+     * If Statistics are enabled (see ConfigStatistics), then it will add some
+     * latency, but it will gather latency and count information for 'key'.
+     * With a sample rate, only the sampled lookups pay for that.
      *
      * @param key A property style key that should only be used for 1:1 mapping.
+     * @param clazz The value type (see ConfigSnapshot.getValue())
      * @return A single value or null if the key does not exist.
      */
-    private String getConfigValue(String key) {
+    private <T> T getConfigValue(String key, Class<T> clazz) {
 
+        int sampleWeight = CONFIG_STATISTICS.sample();
         long startTime = 0;
 
-        if ( CONFIG_STATISTICS.isEnabled() )
+        if ( sampleWeight > 0 )
         {
             startTime = System.nanoTime();
         }
 
-        String result = null;
-        for ( Map<String, String> configMap : CONFIG_MAP.getConfig().values() )
-        {
-            if ( configMap.containsKey(key) )
-            {
-                result = configMap.get(key);
-                break;
-            }
-        }
+        T result = CONFIG_MAP.getSnapshot().getValue(null, key, clazz);
+        addKeyLookup(key, startTime, sampleWeight);
+        return result;
+    }
+
+    /** Statistics for a sampled 1:1 lookup, nothing if 'sampleWeight' is 0 */
+    private void addKeyLookup(String key, long startTime, int sampleWeight) {
 
-        if ( !CONFIG_STATISTICS.isEnabled() )
+        if ( sampleWeight == 0 )
         {
-            return result;
+            return;
         }
 
         // 1:1 lookup, so the key is the pattern
         long lookupTime = System.nanoTime() - startTime;
-        CONFIG_STATISTICS.addKeyLookup(key, lookupTime, key);
-        return result;
+        CONFIG_STATISTICS.addKeyLookup(key, lookupTime, key, sampleWeight);
     }
 
     /**
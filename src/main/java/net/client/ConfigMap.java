@@ -1,19 +1,34 @@
 package net.client;
 
+import net.util.CompactConfigMap;
 import net.util.JavaGroovyConfigBinder;
+import net.util.KeyTrie;
+import net.util.OffHeapConfigIndex;
+import net.util.OffHeapConfigMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
  * This Config map loads the flattened config files via Groovy and is responsible
  * for providing them to the ConfigLookup utility class. The ConfigLookup can
  * then be used by any POJO or Enum config class.
  *
- * todo: expose some operations via JMX
+ * The config is held as an immutable ConfigSnapshot, so reads never lock and a
+ * reload or revert only swaps the snapshot reference. See JConfig for JMX.
  *
  * @author dmillett
  *
@@ -33,59 +48,216 @@ import java.util.Map;
 public class ConfigMap {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConfigMap.class);
-    private static final Map<String, Map<String, String>> CURRENT_CONFIG = new HashMap<>();
-    private static final Map<String, Map<String, String>> PREVIOUS_CONFIG = new HashMap<>();
+    /** Guards building and publishing snapshots, readers never lock */
+    private static final Object WRITE_LOCK = new Object();
+    /** Every snapshot gets a new version (see getVersion()) */
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    /** The config that readers see, replaced (never modified) on load or revert */
+    private static volatile ConfigSnapshot CURRENT_CONFIG = ConfigSnapshot.EMPTY;
+    /** The snapshot before the last load, which revertConfig() swaps back in */
+    private static volatile ConfigSnapshot PREVIOUS_CONFIG = ConfigSnapshot.EMPTY;
+    private static volatile Date LAST_UPDATED;
+    private static volatile Map<String, Long> FILE_LOAD_TIMES = Collections.emptyMap();
+    private static volatile ConfigChangeSet LAST_CHANGE_SET = ConfigChangeSet.EMPTY;
+    /** Listeners for changed keys, see ConfigLookup.subscribe() */
+    private static final ConfigSubscriptions SUBSCRIPTIONS = new ConfigSubscriptions();
+    /** Kept between loads so a reload only parses changed sources (guarded by WRITE_LOCK) */
+    private static JavaGroovyConfigBinder CONFIG_BINDER;
+    /** Reloads when config files change, if 'jig.watch=true' (guarded by WRITE_LOCK) */
+    private static ConfigFileWatcher FILE_WATCHER;
+    /** Polls database config tables, if 'jig.sql.poll.interval' is set (guarded by WRITE_LOCK) */
+    private static ConfigTablePoller TABLE_POLLER;
 
     private volatile boolean _emptyConfig = true;
-    private Date _lastUpdated;
 
     /**
      * Get or load (first time) the configuration data.
-     * @return A readable Map with configuration data.
+     * @return A read-only Map with configuration data.
      */
     public Map<String, Map<String, String>> getConfig() {
+        return getSnapshot().getConfig();
+    }
+
+    /**
+     * Get or load (first time) the current config snapshot. It will not change,
+     * so use a single snapshot for related lookups.
+     *
+     * @return The current immutable config snapshot
+     */
+    public ConfigSnapshot getSnapshot() {
 
         if ( _emptyConfig )
         {
-            _emptyConfig = false;
-            loadConfigMapFromFiles();
+            synchronized (this)
+            {
+                if ( _emptyConfig )
+                {
+                    loadConfigMapFromFiles();
+                    _emptyConfig = false;
+                }
+            }
         }
 
         return CURRENT_CONFIG;
     }
 
     /**
-     * Re-loading the configuration files.
+     * A single hash lookup across all of the config files instead of checking
+     * each file map in turn. If a key exists in more than one file, then the
+     * value from the file loaded last (highest precedence) is returned.
+     *
+     * @param key An exact key name
+     * @return The value for 'key', otherwise null
+     */
+    public String getValue(String key) {
+        return getSnapshot().getValue(key);
+    }
+
+    /**
+     * The key trie for a config file, which narrows down the keys a pattern
+     * needs to be applied to. It is only returned if it was built from the
+     * 'configMap' instance, otherwise the caller should search 'configMap'.
+     *
+     * @param fileName The config file name
+     * @param configMap The config map being searched for 'fileName'
+     * @return The key trie for 'configMap', otherwise null
+     */
+    public KeyTrie getKeyTrie(String fileName, Map<String, String> configMap) {
+        return CURRENT_CONFIG.getKeyTrie(fileName, configMap);
+    }
+
+    /**
+     * The config version changes each time the config is loaded or reverted, so
+     * anything derived from the config (see LookupCache) can tell when it is stale.
+     *
+     * @return The current config version
+     */
+    public long getVersion() {
+        return CURRENT_CONFIG.getVersion();
+    }
+
+    /**
+     * Re-load the configuration. Only sources that changed since the last load
+     * are parsed again, and unchanged file maps (and their key tries) are reused.
+     *
+     * @return What changed, empty if the load failed or nothing changed
+     */
+    public ConfigChangeSet reloadConfigFiles() {
+        return loadConfigMapFromFiles();
+    }
+
+    /**
+     * Merge the database config rows that changed since the last load or poll into
+     * a new snapshot. Only tables with a 'versionColumn' are polled, and only their
+     * changed rows are read (see ConfigTablePoller and SqlFlattener.pollChangedRows()).
+     *
+     * Changed rows are merged into the table's key:values, so a deleted row stays until
+     * the next reloadConfigFiles(). Each poll with changes copies the whole table map
+     * to merge them and stores it again, which is fine for config sized tables but
+     * grows with the table.
+     *
+     * @return What changed, empty if no rows changed
+     */
+    public ConfigChangeSet pollDatabaseConfigs() {
+
+        synchronized (WRITE_LOCK)
+        {
+            if ( CONFIG_BINDER == null )
+            {
+                return ConfigChangeSet.EMPTY;
+            }
+
+            Map<String, Map<String, String>> changedRows = CONFIG_BINDER.pollDatabaseConfigs();
+            if ( changedRows == null || changedRows.isEmpty() )
+            {
+                return ConfigChangeSet.EMPTY;
+            }
+
+            Map<String, Map<String, String>> nextConfig = new LinkedHashMap<>(CURRENT_CONFIG.getConfig());
+            for ( Map.Entry<String, Map<String, String>> tableEntry : changedRows.entrySet() )
+            {
+                Map<String, String> tableMap = nextConfig.get(tableEntry.getKey());
+                Map<String, String> merged = tableMap == null ? new HashMap<String, String>()
+                                                              : new HashMap<>(tableMap);
+                merged.putAll(tableEntry.getValue());
+                nextConfig.put(tableEntry.getKey(), OffHeapConfigMap.store(merged, OffHeapConfigMap.findStorage()));
+            }
+
+            return publishSnapshot(nextConfig, new ArrayList<>(changedRows.keySet()));
+        }
+    }
+
+    /**
+     * Call 'listener' on 'executor' with the matching keys after each load, reload or
+     * revert that changes them (see ConfigLookup.subscribe()).
+     *
+     * @param fileName Only changes in this file, null for all files
+     * @param key An exact key, otherwise null
+     * @param pattern A key pattern, otherwise null
+     * @param listener Called with the changed entries
+     * @param executor Runs 'listener', null for a shared pool of daemon threads
+     * @return The subscription, cancel() it to stop listening
      */
-    public void reloadConfigFiles() {
-        loadConfigMapFromFiles();
+    public ConfigSubscription subscribe(String fileName, String key, Pattern pattern, ConfigChangeListener listener,
+                                        Executor executor) {
+        return SUBSCRIPTIONS.subscribe(fileName, key, pattern, listener, executor);
     }
 
     /**
-     * A synchronized revert of newly loaded configuration data.
+     * @return What changed with the last load, reload or revert
      */
-    public synchronized void revertConfig() {
+    public ConfigChangeSet getLastChangeSet() {
+        return LAST_CHANGE_SET;
+    }
 
-        CURRENT_CONFIG.clear();
-        CURRENT_CONFIG.putAll(PREVIOUS_CONFIG);
+    /**
+     * Estimate the memory used by the current config (see ConfigMemoryReport), this
+     * visits every entry.
+     *
+     * @return A new report
+     */
+    public ConfigMemoryReport getMemoryReport() {
+        return ConfigMemoryReport.build(CURRENT_CONFIG, CONFIG_BINDER == null ? null : CONFIG_BINDER.getStringPool());
+    }
+
+    /**
+     * Swap the previous snapshot back in. The config and its indexes are reused,
+     * only the version changes.
+     */
+    public void revertConfig() {
+
+        synchronized (WRITE_LOCK)
+        {
+            ConfigSnapshot current = CURRENT_CONFIG;
+            ConfigSnapshot reverted = PREVIOUS_CONFIG.withVersion(VERSION.incrementAndGet());
+            LAST_CHANGE_SET = ConfigChangeSet.compare(current.getConfig(), reverted.getConfig(),
+                                                      Collections.<String>emptyList(), current.getVersion(),
+                                                      reverted.getVersion());
+            CURRENT_CONFIG = reverted;
+            SUBSCRIPTIONS.publish(current, reverted, LAST_CHANGE_SET);
+        }
     }
 
     public void compareAndLogDifferences() {
 
-        logKeyDifferences(CURRENT_CONFIG, PREVIOUS_CONFIG, "Previous Config Missing File");
-        logKeyDifferences(PREVIOUS_CONFIG, CURRENT_CONFIG, "Current Config Missing File");
+        Map<String, Map<String, String>> current = CURRENT_CONFIG.getConfig();
+        Map<String, Map<String, String>> previous = PREVIOUS_CONFIG.getConfig();
 
-        compareConfigMap(CURRENT_CONFIG, PREVIOUS_CONFIG, "Current Config", "Previous Config");
-        compareConfigMap(PREVIOUS_CONFIG, CURRENT_CONFIG, "Previous Config", "Current Config");
+        logKeyDifferences(current, previous, "Previous Config Missing File");
+        logKeyDifferences(previous, current, "Current Config Missing File");
+
+        compareConfigMap(current, previous, "Current Config", "Previous Config");
+        compareConfigMap(previous, current, "Previous Config", "Current Config");
     }
 
     public void dumpCurrentConfig() {
-        logConfigMap(CURRENT_CONFIG, "Current Config");
+        logConfigMap(CURRENT_CONFIG.getConfig(), "Current Config");
     }
 
     public void dumpAllConfig() {
-        logConfigMap(CURRENT_CONFIG, "Current Config");
-        logConfigMap(PREVIOUS_CONFIG, "Previous Config");
+        logConfigMap(CURRENT_CONFIG.getConfig(), "Current Config");
+        logConfigMap(PREVIOUS_CONFIG.getConfig(), "Previous Config");
     }
 
     private void logConfigMap(Map<String, Map<String,String>> map, String text) {
@@ -104,7 +276,14 @@ public class ConfigMap {
      * @return A copy of the Date that indicates the last config load occurrence.
      */
     public Date getLastUpdated() {
-        return new Date(_lastUpdated.getTime());
+        return new Date(LAST_UPDATED.getTime());
+    }
+
+    /**
+     * @return How long each config file took to load during the last load (file name --> millis)
+     */
+    public Map<String, Long> getFileLoadTimes() {
+        return FILE_LOAD_TIMES;
     }
 
     /** Look at config files and their entries */
@@ -157,27 +336,291 @@ public class ConfigMap {
     }
 
     /**
-     * Locks the previous and current config maps for updates. It also
-     * resets the '_lastUpdated' time stamp.
+     * Builds the next snapshot off to the side and then publishes it, keeping
+     * the current snapshot for revertConfig(). Newly loaded files replace the
+     * current files with the same name. It also resets the last updated time stamp.
      *
-     * This should be the only means to update the HashMap configs!
+     * If 'jig.snapshot.file' is set and the snapshot is still current, the config
+     * is read from it instead of the config files (see ConfigSnapshotFile).
+     *
+     * This should be the only means to update the config!
+     *
+     * @return What changed, empty if the load failed
      */
-    private synchronized void loadConfigMapFromFiles() {
+    private ConfigChangeSet loadConfigMapFromFiles() {
 
-        if ( !CURRENT_CONFIG.isEmpty() )
+        synchronized (WRITE_LOCK)
         {
-            PREVIOUS_CONFIG.clear();
-            PREVIOUS_CONFIG.putAll(CURRENT_CONFIG);
+            File snapshotFile = ConfigSnapshotFile.findSnapshotFile();
+            long start = System.nanoTime();
+            Map<String, Map<String, String>> loadedConfig = ConfigSnapshotFile.read(snapshotFile);
+            Map<String, Long> loadTimes;
+            List<String> changedSources;
+            JavaGroovyConfigBinder configBinder = null;
+
+            if ( loadedConfig != null )
+            {
+                long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                loadTimes = Collections.singletonMap(snapshotFile.getPath(), loadMillis);
+                changedSources = Collections.singletonList(snapshotFile.getPath());
+            }
+            else
+            {
+                if ( CONFIG_BINDER == null )
+                {
+                    CONFIG_BINDER = new JavaGroovyConfigBinder();
+                }
+
+                configBinder = CONFIG_BINDER;
+                loadedConfig = configBinder.getFileConfigMap();
+                loadTimes = configBinder.getFileLoadTimes();
+                changedSources = configBinder.getChangedSources();
+            }
+
+            if ( loadedConfig == null )
+            {
+                LOG.error("Config Load Failed, Keeping The Current Config");
+                return ConfigChangeSet.EMPTY;
+            }
+
+            // Only loaded sources (removed ones are dropped), keeping the current instance
+            // of unchanged file maps so their key tries are reused
+            Map<String, Map<String, String>> currentConfig = CURRENT_CONFIG.getConfig();
+            Map<String, Map<String, String>> nextConfig = new LinkedHashMap<>();
+            OffHeapConfigMap.Storage storage = OffHeapConfigMap.findStorage();
+            for ( Map.Entry<String, Map<String, String>> fileEntry : loadedConfig.entrySet() )
+            {
+                Map<String, String> configMap = fileEntry.getValue();
+                Map<String, String> currentMap = currentConfig.get(fileEntry.getKey());
+
+                if ( configMap != null && configMap.equals(currentMap) )
+                {
+                    nextConfig.put(fileEntry.getKey(), currentMap);
+                }
+                else
+                {
+                    nextConfig.put(fileEntry.getKey(), OffHeapConfigMap.store(configMap, storage));
+                }
+            }
+
+            FILE_LOAD_TIMES = Collections.unmodifiableMap(loadTimes);
+            ConfigChangeSet changeSet = publishSnapshot(nextConfig, changedSources);
+
+            if ( snapshotFile != null && configBinder != null )
+            {
+                writeSnapshotFile(snapshotFile, loadedConfig, configBinder);
+            }
+
+            startFileWatcher();
+            startTablePoller();
+            return changeSet;
         }
+    }
 
-        JavaGroovyConfigBinder configBinder = new JavaGroovyConfigBinder();
-        CURRENT_CONFIG.putAll(configBinder.getFileConfigMap());
+    /**
+     * Build the next snapshot and publish it, keeping the current one for revertConfig().
+     * The caller holds WRITE_LOCK.
+     *
+     * @return What changed
+     */
+    private ConfigChangeSet publishSnapshot(Map<String, Map<String, String>> nextConfig, List<String> changedSources) {
+
+        ConfigSnapshot current = CURRENT_CONFIG;
+        ConfigSnapshot next = buildSnapshot(nextConfig, VERSION.incrementAndGet(), current);
+        ConfigChangeSet changeSet = ConfigChangeSet.compare(current.getConfig(), next.getConfig(), changedSources,
+                                                            current.getVersion(), next.getVersion());
+
+        PREVIOUS_CONFIG = current == ConfigSnapshot.EMPTY ? next : current;
+        CURRENT_CONFIG = next;
+        LAST_UPDATED = new Date();
+        LAST_CHANGE_SET = changeSet;
+        SUBSCRIPTIONS.publish(current, next, changeSet);
+        LOG.info("Loaded Config Version " + next.getVersion() + ", " + changedSources.size() + " Changed Sources, "
+                 + changeSet.getKeys().size() + " Changed Keys");
+
+        return changeSet;
+    }
+
+    /**
+     * Start watching the config directories after the first load (see ConfigFileWatcher).
+     */
+    private void startFileWatcher() {
+
+        if ( FILE_WATCHER != null || !ConfigFileWatcher.isEnabled() )
+        {
+            return;
+        }
+
+        if ( CONFIG_BINDER == null )
+        {
+            CONFIG_BINDER = new JavaGroovyConfigBinder();
+        }
 
-        if ( PREVIOUS_CONFIG.isEmpty() )
+        try
+        {
+            FILE_WATCHER = new ConfigFileWatcher(CONFIG_BINDER.getConfigDirectories(), CONFIG_BINDER.getFileNamePattern(),
+                                                 ConfigFileWatcher.findDelayMillis(), new Runnable() {
+                @Override
+                public void run() {
+                    reloadConfigFiles();
+                }
+            });
+
+            FILE_WATCHER.start();
+        }
+        catch ( IOException ioe )
+        {
+            LOG.warn("Cannot Watch Config Directories, Reload Them With reloadConfigFiles()", ioe);
+        }
+    }
+
+    /**
+     * Start polling database config tables after the first load (see ConfigTablePoller).
+     */
+    private void startTablePoller() {
+
+        long intervalMillis = ConfigTablePoller.findIntervalMillis();
+        if ( TABLE_POLLER != null || intervalMillis <= 0 )
+        {
+            return;
+        }
+
+        TABLE_POLLER = new ConfigTablePoller(intervalMillis, new Runnable() {
+            @Override
+            public void run() {
+                pollDatabaseConfigs();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                closeDatabaseConnections();
+            }
+        });
+
+        TABLE_POLLER.start();
+    }
+
+    /** Close the connections kept between table polls when the poller stops, each load closes them too */
+    private static void closeDatabaseConnections() {
+
+        synchronized (WRITE_LOCK)
+        {
+            if ( CONFIG_BINDER != null )
+            {
+                CONFIG_BINDER.closeDatabaseConnections();
+            }
+        }
+    }
+
+    /** A failed snapshot write only costs the next startup a full load */
+    private static void writeSnapshotFile(File snapshotFile, Map<String, Map<String, String>> loadedConfig,
+                                          JavaGroovyConfigBinder configBinder) {
+
+        List<String> sourceFiles = configBinder.getSnapshotSourceFiles();
+        if ( sourceFiles == null )
+        {
+            LOG.info("Not Writing Config Snapshot, Url Or Database Configs Were Loaded");
+            return;
+        }
+
+        try
+        {
+            ConfigSnapshotFile.write(snapshotFile, loadedConfig, sourceFiles,
+                                     configBinder.getConfigDirectories(), configBinder.getFileNamePattern());
+        }
+        catch ( IOException | RuntimeException e )
         {
-            PREVIOUS_CONFIG.putAll(CURRENT_CONFIG);
+            LOG.warn("Could Not Write Config Snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Build the indexes for a snapshot. The key tries are built from the
+     * 'configMaps' instances that readers will see (see KeyTrie.isIndexFor()),
+     * reusing the tries from 'previous' for file maps that are the same instance.
+     *
+     * @param configMaps The read-only file specific maps (file 1 --> map 1)
+     * @param version The snapshot version
+     * @param previous The snapshot being replaced
+     * @return A new immutable snapshot
+     */
+    static ConfigSnapshot buildSnapshot(Map<String, Map<String, String>> configMaps, long version,
+                                        ConfigSnapshot previous) {
+
+        Map<String, Map<String, String>> config = Collections.unmodifiableMap(configMaps);
+        return new ConfigSnapshot(config, buildGlobalIndex(config), buildKeyTries(config, previous), version);
+    }
+
+    /**
+     * Merge every file map into one key-value map. The file maps are applied in
+     * iteration order (load order from ConfigLoader), so a key that appears in
+     * more than one file keeps the value from the last (highest precedence) file.
+     * With 'jig.storage' compact, the index is a compact map. With off-heap storage it
+     * points at the entries of the off-heap file maps (see OffHeapConfigIndex).
+     *
+     * @param configMaps The file specific maps (file 1 --> map 1)
+     * @return A new map with every key from 'configMaps'
+     */
+    static Map<String, String> buildGlobalIndex(Map<String, Map<String, String>> configMaps) {
+
+        OffHeapConfigMap.Storage storage = OffHeapConfigMap.findStorage();
+        if ( storage == OffHeapConfigMap.Storage.COMPACT )
+        {
+            return CompactConfigMap.merge(configMaps.values());
+        }
+
+        if ( storage != OffHeapConfigMap.Storage.HEAP )
+        {
+            try
+            {
+                return OffHeapConfigIndex.build(configMaps.values(), storage);
+            }
+            catch ( IllegalArgumentException iae )
+            {
+                LOG.warn("Config Too Large For One Off-Heap Index, Using A Heap Index: " + iae.getMessage());
+            }
+        }
+
+        int size = 0;
+        for ( Map<String, String> configMap : configMaps.values() )
+        {
+            size += configMap == null ? 0 : configMap.size();
+        }
+
+        Map<String, String> index = new HashMap<>((int) (size / 0.75f) + 1);
+        for ( Map<String, String> configMap : configMaps.values() )
+        {
+            if ( configMap != null )
+            {
+                index.putAll(configMap);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Build a key trie for each config file map that does not have one in 'previous'.
+     * Off-heap and compact file maps do not get one (a trie would hold every key on
+     * the heap), so pattern lookups scan their keys instead.
+     *
+     * @param configMaps The file specific maps (file 1 --> map 1)
+     * @param previous The snapshot being replaced
+     * @return A new map of file name to key trie
+     */
+    static Map<String, KeyTrie> buildKeyTries(Map<String, Map<String, String>> configMaps, ConfigSnapshot previous) {
+
+        Map<String, KeyTrie> keyTries = new HashMap<>();
+        for ( Map.Entry<String, Map<String, String>> fileEntry : configMaps.entrySet() )
+        {
+            Map<String, String> configMap = fileEntry.getValue();
+            if ( configMap != null && !(configMap instanceof OffHeapConfigMap || configMap instanceof CompactConfigMap) )
+            {
+                KeyTrie keyTrie = previous.getKeyTrie(fileEntry.getKey(), configMap);
+                keyTries.put(fileEntry.getKey(), keyTrie != null ? keyTrie : new KeyTrie(configMap));
+            }
         }
 
-        _lastUpdated = new Date();
+        return keyTries;
     }
 }
@@ -0,0 +1,218 @@
+package net.client;
+
+import net.util.CompactConfigMap;
+import net.util.OffHeapConfigIndex;
+import net.util.OffHeapConfigMap;
+import net.util.StringPool;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimated memory use of the current config snapshot (see ConfigMap.getMemoryReport()
+ * and JConfigMBean): the map structures, the distinct key and value strings they
+ * reference, off-heap buffers, and what the load-time StringPool saved. Strings
+ * shared between file maps and the global index are only counted once.
+ *
+ * Building a report visits every entry, so it is meant for occasional use (JMX).
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigMemoryReport {
+
+    /** A HashMap node (32 bytes) and its table slot at the default load factor */
+    private static final int HASH_ENTRY_BYTES = 40;
+
+    private final OffHeapConfigMap.Storage _storage;
+    private final int _fileCount;
+    private final int _keyCount;
+    private final long _fileEntryCount;
+    private final long _mapBytes;
+    private final long _distinctStrings;
+    private final long _stringBytes;
+    private final long _offHeapBytes;
+    private final long _pooledStrings;
+    private final long _poolHits;
+    private final long _poolSavedBytes;
+
+    private ConfigMemoryReport(OffHeapConfigMap.Storage storage, int fileCount, int keyCount, long fileEntryCount,
+                               long mapBytes, long distinctStrings, long stringBytes, long offHeapBytes,
+                               StringPool stringPool) {
+
+        _storage = storage;
+        _fileCount = fileCount;
+        _keyCount = keyCount;
+        _fileEntryCount = fileEntryCount;
+        _mapBytes = mapBytes;
+        _distinctStrings = distinctStrings;
+        _stringBytes = stringBytes;
+        _offHeapBytes = offHeapBytes;
+        _pooledStrings = stringPool == null ? 0 : stringPool.getRequestCount();
+        _poolHits = stringPool == null ? 0 : stringPool.getHitCount();
+        _poolSavedBytes = stringPool == null ? 0 : stringPool.getSavedBytes();
+    }
+
+    /**
+     * @param snapshot The config to measure
+     * @param stringPool The pool of the load that built 'snapshot', null if there was none
+     * @return A new report
+     */
+    static ConfigMemoryReport build(ConfigSnapshot snapshot, StringPool stringPool) {
+
+        long fileEntryCount = 0;
+        for ( Map<String, String> configMap : snapshot.getConfig().values() )
+        {
+            fileEntryCount += configMap == null ? 0 : configMap.size();
+        }
+
+        List<Map<String, String>> maps = new ArrayList<>(snapshot.getConfig().values());
+        maps.add(snapshot.getGlobalIndex());
+
+        Map<String, Boolean> strings = new IdentityHashMap<>();
+        long mapBytes = 0;
+        long offHeapBytes = 0;
+
+        for ( Map<String, String> configMap : maps )
+        {
+            if ( configMap == null )
+            {
+                continue;
+            }
+
+            if ( configMap instanceof OffHeapConfigMap )
+            {
+                offHeapBytes += ((OffHeapConfigMap) configMap).getOffHeapBytes();
+            }
+            else if ( configMap instanceof OffHeapConfigIndex )
+            {
+                // The keys and values are in the file maps
+                offHeapBytes += ((OffHeapConfigIndex) configMap).getOffHeapBytes();
+            }
+            else if ( configMap instanceof CompactConfigMap )
+            {
+                // Keys are built while iterating, only the values are shared strings
+                mapBytes += ((CompactConfigMap) configMap).estimateKeyBytes();
+                for ( String value : configMap.values() )
+                {
+                    add(strings, value);
+                }
+            }
+            else
+            {
+                mapBytes += (long) configMap.size() * HASH_ENTRY_BYTES;
+                for ( Map.Entry<String, String> entry : configMap.entrySet() )
+                {
+                    add(strings, entry.getKey());
+                    add(strings, entry.getValue());
+                }
+            }
+        }
+
+        long stringBytes = 0;
+        for ( String text : strings.keySet() )
+        {
+            stringBytes += StringPool.estimateBytes(text);
+        }
+
+        return new ConfigMemoryReport(OffHeapConfigMap.findStorage(), snapshot.getConfig().size(),
+                                      snapshot.getGlobalIndex().size(), fileEntryCount, mapBytes, strings.size(),
+                                      stringBytes, offHeapBytes, stringPool);
+    }
+
+    private static void add(Map<String, Boolean> strings, String text) {
+
+        if ( text != null )
+        {
+            strings.put(text, Boolean.TRUE);
+        }
+    }
+
+    /** @return Where config maps are stored ('jig.storage') */
+    public OffHeapConfigMap.Storage getStorage() {
+        return _storage;
+    }
+
+    public int getFileCount() {
+        return _fileCount;
+    }
+
+    /** @return The number of distinct keys across every file */
+    public int getKeyCount() {
+        return _keyCount;
+    }
+
+    /** @return The number of entries in the file maps (a key in two files counts twice) */
+    public long getFileEntryCount() {
+        return _fileEntryCount;
+    }
+
+    /** @return The estimated heap bytes of the maps themselves (entries, tables, compact keys) */
+    public long getMapBytes() {
+        return _mapBytes;
+    }
+
+    /** @return The number of distinct key and value String instances on the heap */
+    public long getDistinctStrings() {
+        return _distinctStrings;
+    }
+
+    /** @return The estimated heap bytes of the distinct strings */
+    public long getStringBytes() {
+        return _stringBytes;
+    }
+
+    /** @return The bytes of direct or memory mapped buffers */
+    public long getOffHeapBytes() {
+        return _offHeapBytes;
+    }
+
+    /** @return The estimated heap bytes of the config (maps and strings) */
+    public long getHeapBytes() {
+        return _mapBytes + _stringBytes;
+    }
+
+    /** @return How many keys and values went through the string pool during the last load */
+    public long getPooledStrings() {
+        return _pooledStrings;
+    }
+
+    /** @return How many of them were replaced with an equal pooled string */
+    public long getPoolHits() {
+        return _poolHits;
+    }
+
+    /** @return The estimated heap bytes the string pool saved */
+    public long getPoolSavedBytes() {
+        return _poolSavedBytes;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ConfigMemoryReport{storage=" + _storage
+               + ", files=" + _fileCount
+               + ", keys=" + _keyCount
+               + ", fileEntries=" + _fileEntryCount
+               + ", heapBytes=" + getHeapBytes()
+               + " (maps=" + _mapBytes + ", strings=" + _stringBytes + " in " + _distinctStrings + ")"
+               + ", offHeapBytes=" + _offHeapBytes
+               + ", pooledStrings=" + _pooledStrings
+               + ", poolHits=" + _poolHits
+               + ", poolSavedBytes=" + _poolSavedBytes + "}";
+    }
+}
@@ -0,0 +1,191 @@
+package net.client;
+
+import net.util.CompactConfigMap;
+import net.util.KeyTrie;
+import net.util.OffHeapConfigIndex;
+import net.util.OffHeapConfigMap;
+import net.util.PrimitiveIndex;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One immutable, versioned copy of the loaded configuration along with the
+ * indexes built from it (see ConfigMap.buildGlobalIndex() and buildKeyTries()).
+ *
+ * ConfigMap publishes the current snapshot through a single volatile reference.
+ * Readers should get the snapshot once and do all of their work against it, so
+ * a concurrent reload or revert never shows them a partially updated config.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigSnapshot {
+
+    /** Before the config is loaded */
+    static final ConfigSnapshot EMPTY = new ConfigSnapshot(Collections.<String, Map<String, String>>emptyMap(),
+                                                           Collections.<String, String>emptyMap(),
+                                                           Collections.<String, KeyTrie>emptyMap(), 0);
+
+    private final Map<String, Map<String, String>> _configMaps;
+    private final Map<String, String> _globalIndex;
+    private final Map<String, KeyTrie> _keyTries;
+    private final long _version;
+    /** Numbers and booleans from '_globalIndex', parsed when the snapshot is built (null, see buildPrimitives()) */
+    private final PrimitiveIndex _primitives;
+    /** Converted values, parsed once for this snapshot */
+    private final TypedValues _typedValues;
+
+    /**
+     * @param configMaps Read-only file specific maps (file 1 --> map 1)
+     * @param globalIndex Every key across 'configMaps'
+     * @param keyTries A key trie per file built from the 'configMaps' instances
+     * @param version Unique to this snapshot
+     */
+    ConfigSnapshot(Map<String, Map<String, String>> configMaps, Map<String, String> globalIndex,
+                   Map<String, KeyTrie> keyTries, long version) {
+        this(configMaps, globalIndex, keyTries, version, buildPrimitives(globalIndex), new TypedValues());
+    }
+
+    /**
+     * Off-heap and compact maps hold configs too large for the heap maps, indexing them
+     * would decode every entry and keep the numeric keys on the heap, so their values
+     * are parsed on each access instead.
+     */
+    private static PrimitiveIndex buildPrimitives(Map<String, String> globalIndex) {
+
+        if ( globalIndex instanceof OffHeapConfigIndex || globalIndex instanceof OffHeapConfigMap
+             || globalIndex instanceof CompactConfigMap )
+        {
+            return null;
+        }
+
+        return new PrimitiveIndex(globalIndex);
+    }
+
+    private ConfigSnapshot(Map<String, Map<String, String>> configMaps, Map<String, String> globalIndex,
+                           Map<String, KeyTrie> keyTries, long version, PrimitiveIndex primitives,
+                           TypedValues typedValues) {
+
+        _configMaps = configMaps;
+        _globalIndex = globalIndex;
+        _keyTries = keyTries;
+        _version = version;
+        _primitives = primitives;
+        _typedValues = typedValues;
+    }
+
+    /**
+     * The same config and indexes with a new version, for reverting to this snapshot.
+     */
+    ConfigSnapshot withVersion(long version) {
+        return new ConfigSnapshot(_configMaps, _globalIndex, _keyTries, version, _primitives, _typedValues);
+    }
+
+    /**
+     * @return The read-only file specific maps (file 1 --> map 1)
+     */
+    public Map<String, Map<String, String>> getConfig() {
+        return _configMaps;
+    }
+
+    /**
+     * @return Every key across the file maps, for the memory report
+     */
+    Map<String, String> getGlobalIndex() {
+        return _globalIndex;
+    }
+
+    /**
+     * @param key An exact key name
+     * @return The value for 'key' from the highest precedence file, otherwise null
+     */
+    public String getValue(String key) {
+        return _globalIndex.get(key);
+    }
+
+    /**
+     * The value for 'key' converted by GenericsHelper. It is converted once for this
+     * snapshot and the same instance is returned after that (lists are read-only).
+     *
+     * @param fileName The config file, null for the highest precedence value
+     * @param key An exact key name
+     * @param clazz The value type (see GenericsHelper)
+     * @return The converted value, otherwise null
+     */
+    public <T> T getValue(String fileName, String key, Class<T> clazz) {
+        return _typedValues.get(this, fileName, key, clazz);
+    }
+
+    /**
+     * The primitive accessors read values that were parsed when this snapshot
+     * was built, without allocating (see PrimitiveIndex). With off-heap or compact
+     * storage the value is parsed on each call.
+     *
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not an int
+     * @return The int value for 'key' from the highest precedence file, otherwise 'defaultValue'
+     */
+    public int getInt(String key, int defaultValue) {
+        return _primitives != null ? _primitives.getInt(key, defaultValue)
+                                   : PrimitiveIndex.parseInt(getValue(key), defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return _primitives != null ? _primitives.getLong(key, defaultValue)
+                                   : PrimitiveIndex.parseLong(getValue(key), defaultValue);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        return _primitives != null ? _primitives.getDouble(key, defaultValue)
+                                   : PrimitiveIndex.parseDouble(getValue(key), defaultValue);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return _primitives != null ? _primitives.getBoolean(key, defaultValue)
+                                   : PrimitiveIndex.parseBoolean(getValue(key), defaultValue);
+    }
+
+    /**
+     * @param key An exact key name
+     * @return true if any file has 'key' (its value may be null)
+     */
+    public boolean containsKey(String key) {
+        return _globalIndex.containsKey(key);
+    }
+
+    /**
+     * @param fileName The config file name
+     * @param configMap The config map being searched for 'fileName'
+     * @return The key trie for 'configMap', otherwise null
+     */
+    public KeyTrie getKeyTrie(String fileName, Map<String, String> configMap) {
+
+        KeyTrie keyTrie = _keyTries.get(fileName);
+        if ( keyTrie == null || !keyTrie.isIndexFor(configMap) )
+        {
+            return null;
+        }
+
+        return keyTrie;
+    }
+
+    /**
+     * @return A version that is unique to this snapshot (see ConfigMap.getVersion())
+     */
+    public long getVersion() {
+        return _version;
+    }
+}
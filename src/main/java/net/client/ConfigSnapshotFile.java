@@ -0,0 +1,561 @@
+package net.client;
+
+import net.common.JigProperties;
+import net.util.JavaGroovyConfigBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact binary copy of the flattened config (file --> key values) that can
+ * be memory mapped on startup instead of parsing every config file through
+ * Groovy. Set 'jig.snapshot.file' to the snapshot location, it is written
+ * after a full load and used on later loads while the sources are unchanged.
+ *
+ * The snapshot records what the config was built from and is only used if:
+ *
+ * 1) every source file has the same size and CRC32 hash
+ * 2) the config directories list the same files (for the same file name pattern)
+ * 3) the location, url, environment and command line ('jig.entry') properties match
+ *
+ * Configs that come from a URL or a database cannot be checked, so they are
+ * never written to a snapshot (see ConfigLoader.getSnapshotSourceFiles()).
+ *
+ * Layout (big endian, strings are indexes into the string table, -1 for null):
+ *
+ * int magic ("JIGS"), int format version
+ * int string count, int[count + 1] byte offsets, byte[] UTF-8 strings
+ * int properties fingerprint, int file name pattern, int pattern flags
+ * int source count, (int path, long size, long crc32) per source
+ * int directory count, (int path, int file count, int[] file names) per directory
+ * int config file count, (int name, int entry count or -1, (int key, int value) per entry) per file
+ * long crc32 of everything above
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigSnapshotFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigSnapshotFile.class);
+
+    private static final int MAGIC = 0x4A494753;
+    private static final int FORMAT_VERSION = 1;
+    private static final int NULL_INDEX = -1;
+
+    private ConfigSnapshotFile() {}
+
+    /**
+     * Write a snapshot at build time with the same 'jig.*' properties the application uses:
+     *
+     * java -Djig.location=/app/config net.client.ConfigSnapshotFile /app/config.snapshot
+     */
+    public static void main(String[] args)
+        throws IOException {
+
+        if ( args.length != 1 )
+        {
+            System.err.println("Usage: ConfigSnapshotFile <snapshot file>");
+            System.exit(1);
+        }
+
+        JavaGroovyConfigBinder configBinder = new JavaGroovyConfigBinder();
+        Map<String, Map<String, String>> configMaps = configBinder.getFileConfigMap();
+        List<String> sourceFiles = configBinder.getSnapshotSourceFiles();
+
+        if ( configMaps == null || sourceFiles == null )
+        {
+            System.err.println("Cannot Snapshot This Config (load failed or url/database configs were loaded)");
+            System.exit(1);
+        }
+
+        write(new File(args[0]), configMaps, sourceFiles, configBinder.getConfigDirectories(),
+              configBinder.getFileNamePattern());
+    }
+
+    /**
+     * @return The 'jig.snapshot.file' location, otherwise null (snapshots are disabled)
+     */
+    public static File findSnapshotFile() {
+
+        String snapshotFile = System.getProperty(JigProperties.JIG_SNAPSHOT_FILE.getName());
+        if ( snapshotFile == null || snapshotFile.trim().isEmpty() )
+        {
+            return null;
+        }
+
+        return new File(snapshotFile.trim());
+    }
+
+    /**
+     * Write the config and what it was built from. The snapshot is written to a
+     * temporary file and then moved into place, so readers never see part of it.
+     *
+     * @param snapshotFile Where to write the snapshot
+     * @param configMaps The flattened config (file 1 --> map 1) in load order
+     * @param sourceFiles The config files 'configMaps' was loaded from
+     * @param sourceDirectories The directories that were searched for config files
+     * @param fileNamePattern The config file name pattern used for 'sourceDirectories'
+     * @throws IOException If a source file cannot be read or the snapshot cannot be written
+     */
+    public static void write(File snapshotFile, Map<String, Map<String, String>> configMaps, List<String> sourceFiles,
+                             List<String> sourceDirectories, Pattern fileNamePattern)
+        throws IOException {
+
+        StringTable strings = new StringTable();
+        String fingerprint = buildPropertiesFingerprint();
+        strings.indexOf(fingerprint);
+        strings.indexOf(fileNamePattern.pattern());
+
+        List<long[]> sourceHashes = new ArrayList<>(sourceFiles.size());
+        for ( String sourceFile : sourceFiles )
+        {
+            strings.indexOf(sourceFile);
+            sourceHashes.add(hash(new File(sourceFile)));
+        }
+
+        Map<String, List<String>> directoryListings = new LinkedHashMap<>();
+        for ( String directory : sourceDirectories )
+        {
+            List<String> fileNames = listFiles(new File(directory), fileNamePattern);
+            directoryListings.put(directory, fileNames);
+            strings.indexOf(directory);
+            strings.indexAll(fileNames);
+        }
+
+        for ( Map.Entry<String, Map<String, String>> fileEntry : configMaps.entrySet() )
+        {
+            strings.indexOf(fileEntry.getKey());
+            if ( fileEntry.getValue() == null )
+            {
+                continue;
+            }
+
+            for ( Map.Entry<String, String> entry : fileEntry.getValue().entrySet() )
+            {
+                strings.indexOf(entry.getKey());
+                strings.indexOf(entry.getValue());
+            }
+        }
+
+        File parent = snapshotFile.getAbsoluteFile().getParentFile();
+        if ( parent != null && !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IOException("Cannot Create Snapshot Directory " + parent);
+        }
+
+        File tempFile = File.createTempFile(snapshotFile.getName(), ".tmp", parent);
+        try
+        {
+            CRC32 crc = new CRC32();
+            try ( BufferedOutputStream buffered = new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16) )
+            {
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                strings.write(out);
+
+                out.writeInt(strings.indexOf(fingerprint));
+                out.writeInt(strings.indexOf(fileNamePattern.pattern()));
+                out.writeInt(fileNamePattern.flags());
+
+                out.writeInt(sourceFiles.size());
+                for ( int i = 0; i < sourceFiles.size(); i++ )
+                {
+                    out.writeInt(strings.indexOf(sourceFiles.get(i)));
+                    out.writeLong(sourceHashes.get(i)[0]);
+                    out.writeLong(sourceHashes.get(i)[1]);
+                }
+
+                out.writeInt(directoryListings.size());
+                for ( Map.Entry<String, List<String>> listing : directoryListings.entrySet() )
+                {
+                    out.writeInt(strings.indexOf(listing.getKey()));
+                    out.writeInt(listing.getValue().size());
+                    for ( String fileName : listing.getValue() )
+                    {
+                        out.writeInt(strings.indexOf(fileName));
+                    }
+                }
+
+                out.writeInt(configMaps.size());
+                for ( Map.Entry<String, Map<String, String>> fileEntry : configMaps.entrySet() )
+                {
+                    out.writeInt(strings.indexOf(fileEntry.getKey()));
+                    if ( fileEntry.getValue() == null )
+                    {
+                        out.writeInt(NULL_INDEX);
+                        continue;
+                    }
+
+                    out.writeInt(fileEntry.getValue().size());
+                    for ( Map.Entry<String, String> entry : fileEntry.getValue().entrySet() )
+                    {
+                        out.writeInt(strings.indexOf(entry.getKey()));
+                        out.writeInt(strings.indexOf(entry.getValue()));
+                    }
+                }
+
+                out.flush();
+                new DataOutputStream(buffered).writeLong(crc.getValue());
+            }
+
+            moveIntoPlace(tempFile, snapshotFile);
+        }
+        finally
+        {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        LOG.info("Wrote Config Snapshot " + snapshotFile + " (" + snapshotFile.length() + " bytes, "
+                 + strings.size() + " strings)");
+    }
+
+    /**
+     * Memory map the snapshot and rebuild the config if it is still current.
+     *
+     * @param snapshotFile A snapshot written by write()
+     * @return The flattened config (file 1 --> map 1) in load order, otherwise null
+     * if the snapshot is missing, damaged or out of date
+     */
+    public static Map<String, Map<String, String>> read(File snapshotFile) {
+
+        if ( snapshotFile == null || !snapshotFile.isFile() )
+        {
+            return null;
+        }
+
+        try ( FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ) )
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, snapshotFile);
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            LOG.warn("Could Not Read Config Snapshot " + snapshotFile + ", Loading Config Files", e);
+            return null;
+        }
+    }
+
+    private static Map<String, Map<String, String>> read(ByteBuffer buffer, File snapshotFile)
+        throws IOException {
+
+        if ( buffer.limit() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION )
+        {
+            LOG.info("Ignoring Config Snapshot " + snapshotFile + ", Unknown Format");
+            return null;
+        }
+
+        int bodyLength = buffer.limit() - 8;
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(bodyLength);
+        crc.update(body);
+
+        if ( crc.getValue() != buffer.getLong(bodyLength) )
+        {
+            LOG.info("Ignoring Config Snapshot " + snapshotFile + ", Checksum Mismatch");
+            return null;
+        }
+
+        buffer.position(8);
+        StringTable strings = StringTable.read(buffer);
+
+        if ( !buildPropertiesFingerprint().equals(strings.get(buffer.getInt())) )
+        {
+            LOG.info("Ignoring Config Snapshot " + snapshotFile + ", Config Properties Changed");
+            return null;
+        }
+
+        Pattern fileNamePattern = Pattern.compile(strings.get(buffer.getInt()), buffer.getInt());
+
+        int sourceCount = buffer.getInt();
+        for ( int i = 0; i < sourceCount; i++ )
+        {
+            File sourceFile = new File(strings.get(buffer.getInt()));
+            long size = buffer.getLong();
+            long hash = buffer.getLong();
+
+            if ( !sourceFile.isFile() || sourceFile.length() != size || hash(sourceFile)[1] != hash )
+            {
+                LOG.info("Ignoring Config Snapshot " + snapshotFile + ", Changed Source " + sourceFile);
+                return null;
+            }
+        }
+
+        int directoryCount = buffer.getInt();
+        for ( int i = 0; i < directoryCount; i++ )
+        {
+            File directory = new File(strings.get(buffer.getInt()));
+            List<String> fileNames = new ArrayList<>();
+            int fileCount = buffer.getInt();
+            for ( int j = 0; j < fileCount; j++ )
+            {
+                fileNames.add(strings.get(buffer.getInt()));
+            }
+
+            if ( !fileNames.equals(listFiles(directory, fileNamePattern)) )
+            {
+                LOG.info("Ignoring Config Snapshot " + snapshotFile + ", Config Files Changed In " + directory);
+                return null;
+            }
+        }
+
+        int configFileCount = buffer.getInt();
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        for ( int i = 0; i < configFileCount; i++ )
+        {
+            String fileName = strings.get(buffer.getInt());
+            int entryCount = buffer.getInt();
+            if ( entryCount == NULL_INDEX )
+            {
+                configMaps.put(fileName, null);
+                continue;
+            }
+
+            Map<String, String> configMap = new HashMap<>((int) (entryCount / 0.75f) + 1);
+
+            for ( int j = 0; j < entryCount; j++ )
+            {
+                String key = strings.get(buffer.getInt());
+                configMap.put(key, strings.get(buffer.getInt()));
+            }
+
+            configMaps.put(fileName, configMap);
+        }
+
+        LOG.info("Loaded " + configFileCount + " Config Files From Snapshot " + snapshotFile);
+        return configMaps;
+    }
+
+    /**
+     * The system properties that change which config files are loaded or their values.
+     */
+    static String buildPropertiesFingerprint() {
+
+        String[] prefixes = { JigProperties.JIG_LOCATION.getName(), JigProperties.JIG_URL_LOCATION.getName(),
+                              JigProperties.JIG_FILE_ENVIRONMENT.getName(),
+                              JigProperties.JIG_COMMAND_LINE_PROP.getName() };
+
+        Map<String, String> properties = new TreeMap<>();
+        for ( String name : System.getProperties().stringPropertyNames() )
+        {
+            for ( String prefix : prefixes )
+            {
+                if ( name.startsWith(prefix) )
+                {
+                    properties.put(name, System.getProperty(name));
+                    break;
+                }
+            }
+        }
+
+        StringBuilder fingerprint = new StringBuilder();
+        for ( Map.Entry<String, String> property : properties.entrySet() )
+        {
+            fingerprint.append(property.getKey()).append('=').append(property.getValue()).append('\n');
+        }
+
+        return fingerprint.toString();
+    }
+
+    /** The sorted names in 'directory' that match 'fileNamePattern' (see ConfigLoader.findFileNamePattern()) */
+    private static List<String> listFiles(File directory, Pattern fileNamePattern) {
+
+        String[] names = directory.list();
+        if ( names == null )
+        {
+            return Collections.emptyList();
+        }
+
+        List<String> fileNames = new ArrayList<>();
+        for ( String name : names )
+        {
+            if ( fileNamePattern.matcher(name).matches() )
+            {
+                fileNames.add(name);
+            }
+        }
+
+        Collections.sort(fileNames);
+        return fileNames;
+    }
+
+    /** @return {size, crc32} */
+    private static long[] hash(File file)
+        throws IOException {
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] bytes = new byte[1 << 16];
+
+        try ( InputStream input = new FileInputStream(file) )
+        {
+            int read;
+            while ( (read = input.read(bytes)) > 0 )
+            {
+                crc.update(bytes, 0, read);
+                size += read;
+            }
+        }
+
+        return new long[] { size, crc.getValue() };
+    }
+
+    private static void moveIntoPlace(File tempFile, File snapshotFile)
+        throws IOException {
+
+        try
+        {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch ( IOException ioe )
+        {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Each distinct string is stored once, file names and repeated values share an entry */
+    private static final class StringTable {
+
+        private final Map<String, Integer> _indexes = new HashMap<>();
+        private final List<String> _strings = new ArrayList<>();
+
+        private ByteBuffer _buffer;
+        private int[] _offsets;
+        private int _start;
+        private String[] _decoded;
+
+        int indexOf(String string) {
+
+            if ( string == null )
+            {
+                return NULL_INDEX;
+            }
+
+            Integer index = _indexes.get(string);
+            if ( index == null )
+            {
+                index = _strings.size();
+                _indexes.put(string, index);
+                _strings.add(string);
+            }
+
+            return index;
+        }
+
+        void indexAll(List<String> strings) {
+
+            for ( String string : strings )
+            {
+                indexOf(string);
+            }
+        }
+
+        int size() {
+            return _strings.size();
+        }
+
+        void write(DataOutputStream out)
+            throws IOException {
+
+            List<byte[]> encoded = new ArrayList<>(_strings.size());
+            for ( String string : _strings )
+            {
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+
+            out.writeInt(encoded.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for ( byte[] bytes : encoded )
+            {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+
+            for ( byte[] bytes : encoded )
+            {
+                out.write(bytes);
+            }
+        }
+
+        /** Strings are decoded the first time they are used */
+        static StringTable read(ByteBuffer buffer) {
+
+            StringTable table = new StringTable();
+            int count = buffer.getInt();
+            table._offsets = new int[count + 1];
+            for ( int i = 0; i <= count; i++ )
+            {
+                table._offsets[i] = buffer.getInt();
+            }
+
+            table._buffer = buffer;
+            table._start = buffer.position();
+            table._decoded = new String[count];
+            buffer.position(table._start + table._offsets[count]);
+
+            return table;
+        }
+
+        String get(int index) {
+
+            if ( index == NULL_INDEX )
+            {
+                return null;
+            }
+
+            String string = _decoded[index];
+            if ( string == null )
+            {
+                int length = _offsets[index + 1] - _offsets[index];
+                byte[] bytes = new byte[length];
+                ByteBuffer slice = _buffer.duplicate();
+                slice.position(_start + _offsets[index]);
+                slice.get(bytes);
+
+                string = new String(bytes, StandardCharsets.UTF_8);
+                _decoded[index] = string;
+            }
+
+            return string;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package net.client;
+
+import net.util.KeyMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * A listener for the config keys that match an exact key or a pattern, optionally
+ * in one config file. See ConfigLookup.subscribe().
+ *
+ * Publishing a config only queues the change here. The matching and the listener
+ * call happen on the subscription executor, one change at a time and in version
+ * order, so a slow listener delays only its own events.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigSubscription {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigSubscription.class);
+
+    private final ConfigSubscriptions _subscriptions;
+    private final String _fileName;
+    private final String _key;
+    private final Pattern _pattern;
+    /** Only used by the serial drain() (see KeyMatcher) */
+    private final KeyMatcher _keyMatcher;
+    private final ConfigChangeListener _listener;
+    private final Executor _executor;
+
+    private final Queue<PendingChange> _pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean _scheduled = new AtomicBoolean();
+    private volatile boolean _cancelled;
+
+    /**
+     * @param fileName Only changes in this file, null for all files
+     * @param key An exact key, otherwise null
+     * @param pattern A key pattern (same matching as ConfigLookup.get()), otherwise null
+     */
+    ConfigSubscription(ConfigSubscriptions subscriptions, String fileName, String key, Pattern pattern,
+                       ConfigChangeListener listener, Executor executor) {
+
+        _subscriptions = subscriptions;
+        _fileName = fileName;
+        _key = key;
+        _pattern = pattern;
+        _keyMatcher = pattern != null ? KeyMatcher.compile(pattern) : null;
+        _listener = listener;
+        _executor = executor;
+    }
+
+    /**
+     * Stop calling the listener, an event that is being delivered will finish.
+     */
+    public void cancel() {
+
+        _cancelled = true;
+        _pending.clear();
+        _subscriptions.remove(this);
+    }
+
+    public boolean isCancelled() {
+        return _cancelled;
+    }
+
+    /** Called by the publishing thread, only queues the change */
+    void offer(ConfigSnapshot previous, ConfigSnapshot next, ConfigChangeSet changeSet) {
+
+        if ( _cancelled )
+        {
+            return;
+        }
+
+        _pending.add(new PendingChange(previous, next, changeSet));
+        schedule();
+    }
+
+    private void schedule() {
+
+        if ( !_scheduled.compareAndSet(false, true) )
+        {
+            return;
+        }
+
+        try
+        {
+            _executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+        catch ( RejectedExecutionException ree )
+        {
+            _scheduled.set(false);
+            LOG.warn("Config Listener Executor Rejected A Change For " + this, ree);
+        }
+    }
+
+    private void drain() {
+
+        try
+        {
+            PendingChange change;
+            while ( !_cancelled && (change = _pending.poll()) != null )
+            {
+                deliver(change);
+            }
+        }
+        finally
+        {
+            _scheduled.set(false);
+        }
+
+        // A change queued after the loop ended but before the flag was cleared
+        if ( !_cancelled && !_pending.isEmpty() )
+        {
+            schedule();
+        }
+    }
+
+    private void deliver(PendingChange change) {
+
+        ConfigChangeEvent event = _fileName == null ? buildEvent(change) : buildFileEvent(change);
+        if ( event == null )
+        {
+            return;
+        }
+
+        try
+        {
+            _listener.configChanged(event);
+        }
+        catch ( RuntimeException e )
+        {
+            LOG.error("Config Listener Failed For " + this, e);
+        }
+    }
+
+    /** The effective (highest precedence) values for all files */
+    private ConfigChangeEvent buildEvent(PendingChange change) {
+
+        Map<String, String> changedEntries = new HashMap<>();
+        Set<String> removedKeys = new LinkedHashSet<>();
+
+        for ( String key : change.changeSet.getKeys() )
+        {
+            if ( !matches(key) )
+            {
+                continue;
+            }
+
+            if ( change.next.containsKey(key) )
+            {
+                String value = change.next.getValue(key);
+                if ( !change.previous.containsKey(key) || !Objects.equals(change.previous.getValue(key), value) )
+                {
+                    changedEntries.put(key, value);
+                }
+            }
+            else if ( change.previous.containsKey(key) )
+            {
+                removedKeys.add(key);
+            }
+        }
+
+        return buildEvent(changedEntries, removedKeys, change.changeSet);
+    }
+
+    /** The values from the subscribed file */
+    private ConfigChangeEvent buildFileEvent(PendingChange change) {
+
+        Map<String, String> changedEntries = new HashMap<>();
+        Map<String, String> configMap = change.next.getConfig().get(_fileName);
+
+        for ( String key : matchingKeys(change.changeSet.getAddedKeys()) )
+        {
+            changedEntries.put(key, configMap.get(key));
+        }
+
+        for ( String key : matchingKeys(change.changeSet.getChangedKeys()) )
+        {
+            changedEntries.put(key, configMap.get(key));
+        }
+
+        Set<String> removedKeys = matchingKeys(change.changeSet.getRemovedKeys());
+        return buildEvent(changedEntries, removedKeys, change.changeSet);
+    }
+
+    /** The subscribed file keys from 'fileKeys' (file name --> keys) that match */
+    private Set<String> matchingKeys(Map<String, Set<String>> fileKeys) {
+
+        Set<String> keys = fileKeys.get(_fileName);
+        if ( keys == null )
+        {
+            return Collections.emptySet();
+        }
+
+        Set<String> matchingKeys = new LinkedHashSet<>();
+        for ( String key : keys )
+        {
+            if ( matches(key) )
+            {
+                matchingKeys.add(key);
+            }
+        }
+
+        return matchingKeys;
+    }
+
+    private ConfigChangeEvent buildEvent(Map<String, String> changedEntries, Set<String> removedKeys,
+                                         ConfigChangeSet changeSet) {
+
+        if ( changedEntries.isEmpty() && removedKeys.isEmpty() )
+        {
+            return null;
+        }
+
+        return new ConfigChangeEvent(_fileName, Collections.unmodifiableMap(changedEntries),
+                                     Collections.unmodifiableSet(removedKeys), changeSet);
+    }
+
+    /** The same key matching as a pattern lookup (see ConfigLookup.get()) */
+    private boolean matches(String key) {
+
+        if ( _key != null )
+        {
+            return _key.equals(key);
+        }
+
+        return _keyMatcher.matches(key);
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigSubscription{file=" + _fileName + ", " + (_key != null ? "key=" + _key : "pattern=" + _pattern)
+               + "}";
+    }
+
+    private static final class PendingChange {
+
+        private final ConfigSnapshot previous;
+        private final ConfigSnapshot next;
+        private final ConfigChangeSet changeSet;
+
+        private PendingChange(ConfigSnapshot previous, ConfigSnapshot next, ConfigChangeSet changeSet) {
+
+            this.previous = previous;
+            this.next = next;
+            this.changeSet = changeSet;
+        }
+    }
+}
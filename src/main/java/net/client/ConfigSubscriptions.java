@@ -0,0 +1,97 @@
+package net.client;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * The config change subscriptions for ConfigMap. Publishing hands each
+ * subscription the change and returns, see ConfigSubscription.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+class ConfigSubscriptions {
+
+    /** Daemon threads that are only created while listeners are running */
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ListenerThreadFactory());
+
+    private final List<ConfigSubscription> _subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param fileName Only changes in this file, null for all files
+     * @param key An exact key, otherwise null
+     * @param pattern A key pattern, otherwise null
+     * @param listener Called with the matching changes
+     * @param executor Runs 'listener', null for a shared pool of daemon threads
+     * @return The new subscription
+     */
+    ConfigSubscription subscribe(String fileName, String key, Pattern pattern, ConfigChangeListener listener,
+                                 Executor executor) {
+
+        if ( listener == null || (key == null && pattern == null) )
+        {
+            throw new IllegalArgumentException("A Listener And A Key Or Pattern Are Required");
+        }
+
+        ConfigSubscription subscription = new ConfigSubscription(this, fileName, key, pattern, listener,
+                                                                 executor == null ? DEFAULT_EXECUTOR : executor);
+        _subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void remove(ConfigSubscription subscription) {
+        _subscriptions.remove(subscription);
+    }
+
+    int size() {
+        return _subscriptions.size();
+    }
+
+    /**
+     * Queue the change for every subscription, the listeners run on their executors.
+     */
+    void publish(ConfigSnapshot previous, ConfigSnapshot next, ConfigChangeSet changeSet) {
+
+        if ( changeSet.isEmpty() )
+        {
+            return;
+        }
+
+        for ( ConfigSubscription subscription : _subscriptions )
+        {
+            subscription.offer(previous, next, changeSet);
+        }
+    }
+
+    private static class ListenerThreadFactory
+        implements ThreadFactory {
+
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "jig-config-listener-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.client;
+
+import net.common.JigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls database config tables that declare a 'versionColumn' for changed rows
+ * every 'jig.sql.poll.interval' millis (disabled by default). Only rows with a
+ * version above the last one read are fetched, and they are merged into a new
+ * snapshot (see ConfigMap.pollDatabaseConfigs()). Deleted rows are only removed
+ * by a full reload.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class ConfigTablePoller
+    implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigTablePoller.class);
+
+    private final ScheduledExecutorService _executor;
+    private final long _intervalMillis;
+    private final Runnable _poll;
+    private final Runnable _onClose;
+    private final AtomicLong _pollCount = new AtomicLong();
+
+    /**
+     * @param intervalMillis The delay between the end of one poll and the start of the next
+     * @param poll Called on the poller thread
+     */
+    public ConfigTablePoller(long intervalMillis, Runnable poll) {
+        this(intervalMillis, poll, null);
+    }
+
+    /**
+     * @param intervalMillis The delay between the end of one poll and the start of the next
+     * @param poll Called on the poller thread
+     * @param onClose Called on the poller thread after the last poll (close connections), otherwise null
+     */
+    public ConfigTablePoller(long intervalMillis, Runnable poll, Runnable onClose) {
+
+        _intervalMillis = intervalMillis;
+        _poll = poll;
+        _onClose = onClose;
+        _executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "jig-config-table-poller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return 'jig.sql.poll.interval' millis, 0 (disabled) if it is not set or invalid
+     */
+    public static long findIntervalMillis() {
+
+        String interval = System.getProperty(JigProperties.JIG_SQL_POLL_INTERVAL.getName());
+        if ( interval == null || interval.trim().isEmpty() )
+        {
+            return 0;
+        }
+
+        try
+        {
+            return Math.max(0, Long.parseLong(interval.trim()));
+        }
+        catch ( NumberFormatException nfe )
+        {
+            LOG.warn("Invalid " + JigProperties.JIG_SQL_POLL_INTERVAL.getName() + ": '" + interval
+                     + "', Not Polling Database Configs");
+            return 0;
+        }
+    }
+
+    /**
+     * Start polling on a daemon thread.
+     */
+    public void start() {
+
+        _executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, _intervalMillis, _intervalMillis, TimeUnit.MILLISECONDS);
+
+        LOG.info("Polling Database Configs Every " + _intervalMillis + " ms");
+    }
+
+    /**
+     * @return How many polls have run
+     */
+    public long getPollCount() {
+        return _pollCount.get();
+    }
+
+    /**
+     * Stop polling, a poll that is running will finish before 'onClose' runs.
+     */
+    @Override
+    public synchronized void close() {
+
+        if ( _executor.isShutdown() )
+        {
+            return;
+        }
+
+        if ( _onClose != null )
+        {
+            _executor.execute(_onClose);
+        }
+
+        _executor.shutdown();
+    }
+
+    /** A failed poll must not cancel the schedule */
+    private void poll() {
+
+        try
+        {
+            _poll.run();
+        }
+        catch ( RuntimeException e )
+        {
+            LOG.error("Database Config Poll Failed, Keeping The Current Config", e);
+        }
+        finally
+        {
+            _pollCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.client;
+
+import net.util.GenericsHelper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Converted config values (see GenericsHelper) for one snapshot, so each key is
+ * parsed once per reload instead of on every getByKey(key, Class). A conversion
+ * that fails is cached as null, so it is not retried or logged again until the
+ * next reload. Missing keys and files are not cached, so lookups for arbitrary
+ * keys cannot grow the cache. Lists and sets are read-only because they are shared.
+ *
+ * A lookup for a converted value is three or four hash lookups without allocation.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+final class TypedValues {
+
+    private static final GenericsHelper GENERICS_HELPER = new GenericsHelper();
+    /** Cached for failed conversions, ConcurrentHashMap does not allow null values */
+    private static final Object NO_VALUE = new Object();
+
+    /** type --> key --> value, for values from the highest precedence file */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> _values = new ConcurrentHashMap<>();
+    /** file name --> type --> key --> value */
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, ConcurrentMap<String, Object>>> _fileValues =
+        new ConcurrentHashMap<>();
+
+    /**
+     * @param snapshot The snapshot these values belong to
+     * @param fileName The config file, null for the highest precedence value
+     * @param key An exact key name
+     * @param clazz The value type (see GenericsHelper)
+     * @return The converted value, otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(ConfigSnapshot snapshot, String fileName, String key, Class<T> clazz) {
+
+        if ( clazz.equals(String.class) )
+        {
+            return (T) text(snapshot, fileName, key);
+        }
+
+        Map<String, String> configMap = fileName == null ? null : snapshot.getConfig().get(fileName);
+        boolean exists = fileName == null ? snapshot.containsKey(key) : configMap != null && configMap.containsKey(key);
+        if ( !exists )
+        {
+            Object value = convert(snapshot, fileName, key, clazz);
+            return value == NO_VALUE ? null : (T) value;
+        }
+
+        ConcurrentMap<String, Object> values = valuesFor(fileName == null ? _values : fileValuesFor(fileName), clazz);
+        Object value = values.get(key);
+
+        if ( value == null )
+        {
+            value = convert(snapshot, fileName, key, clazz);
+            Object existing = values.putIfAbsent(key, value);
+            value = existing != null ? existing : value;
+        }
+
+        return value == NO_VALUE ? null : (T) value;
+    }
+
+    private static String text(ConfigSnapshot snapshot, String fileName, String key) {
+
+        if ( fileName == null )
+        {
+            return snapshot.getValue(key);
+        }
+
+        Map<String, String> configMap = snapshot.getConfig().get(fileName);
+        return configMap == null ? null : configMap.get(key);
+    }
+
+    private static Object convert(ConfigSnapshot snapshot, String fileName, String key, Class<?> clazz) {
+
+        String text = text(snapshot, fileName, key);
+        Object value = text == null && !clazz.equals(Boolean.class) ? null : GENERICS_HELPER.get(text, clazz);
+        if ( value instanceof List )
+        {
+            value = Collections.unmodifiableList((List<?>) value);
+        }
+        else if ( value instanceof Set )
+        {
+            value = Collections.unmodifiableSet((Set<?>) value);
+        }
+        else if ( value instanceof Collection )
+        {
+            value = Collections.unmodifiableCollection((Collection<?>) value);
+        }
+
+        return value == null ? NO_VALUE : value;
+    }
+
+    /**
+     * @return The number of cached values, for every type and file
+     */
+    int getCachedCount() {
+
+        int count = 0;
+        for ( ConcurrentMap<String, Object> values : _values.values() )
+        {
+            count += values.size();
+        }
+
+        for ( ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> types : _fileValues.values() )
+        {
+            for ( ConcurrentMap<String, Object> values : types.values() )
+            {
+                count += values.size();
+            }
+        }
+
+        return count;
+    }
+
+    private ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> fileValuesFor(String fileName) {
+
+        ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> values = _fileValues.get(fileName);
+        if ( values == null )
+        {
+            values = new ConcurrentHashMap<>();
+            ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> existing = _fileValues.putIfAbsent(fileName, values);
+            values = existing != null ? existing : values;
+        }
+
+        return values;
+    }
+
+    private static ConcurrentMap<String, Object> valuesFor(ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> types,
+                                                           Class<?> clazz) {
+
+        ConcurrentMap<String, Object> values = types.get(clazz);
+        if ( values == null )
+        {
+            values = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Object> existing = types.putIfAbsent(clazz, values);
+            values = existing != null ? existing : values;
+        }
+
+        return values;
+    }
+}
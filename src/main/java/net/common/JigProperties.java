@@ -28,7 +28,37 @@ public enum JigProperties {
     /** Global overrides entered as JVM args. Ex: jig.entry.foo=bar */
     JIG_COMMAND_LINE_PROP("jig.entry"),
     /** A config file suffix to support environment specific configurations  */
-    JIG_FILE_ENVIRONMENT("jig.file.env")
+    JIG_FILE_ENVIRONMENT("jig.file.env"),
+    /** The maximum number of cached pattern lookup results (0 disables the cache). Default: 1024 */
+    JIG_LOOKUP_CACHE_SIZE("jig.lookup.cache.size"),
+    /** Match pattern lookups with at least N candidate keys in parallel (see ParallelLookup). Default: 0 (disabled) */
+    JIG_LOOKUP_PARALLEL_THRESHOLD("jig.lookup.parallel.threshold"),
+    /** A dedicated pool size for parallel pattern lookups. Default: 0 (the common ForkJoinPool) */
+    JIG_LOOKUP_PARALLEL_THREADS("jig.lookup.parallel.threads"),
+    /** Measure 1 in N lookups when statistics are enabled, counts are extrapolated. Default: 1 (every lookup) */
+    JIG_STATS_SAMPLE_RATE("jig.stats.sample.rate"),
+    /** The XML flattener, 'stax' streams files instead of building a node tree. Default: 'dom' (XmlParser) */
+    JIG_XML_FLATTENER("jig.flattener.xml"),
+    /** The JSON flattener, 'streaming' reads tokens instead of building JsonSlurper maps. Default: 'slurper' */
+    JIG_JSON_FLATTENER("jig.flattener.json"),
+    /** How many config files in one location are loaded at the same time. Default: the number of processors */
+    JIG_LOAD_THREADS("jig.load.threads"),
+    /** How many database config tables are read at the same time (see SqlFlattener). Default: 4 */
+    JIG_SQL_LOAD_THREADS("jig.sql.load.threads"),
+    /** The JDBC fetch size for reading a database config table (see SqlRetriever). Default: 1000 */
+    JIG_SQL_FETCH_SIZE("jig.sql.fetch.size"),
+    /** Poll database config tables with a 'versionColumn' for changed rows every N millis. Default: 0 (disabled) */
+    JIG_SQL_POLL_INTERVAL("jig.sql.poll.interval"),
+    /** Where config maps are kept: 'heap', 'offheap' (direct buffers), 'mmap' (see OffHeapConfigMap) or 'compact'. Default: heap */
+    JIG_STORAGE("jig.storage"),
+    /** Dedupe the keys and values of each config load ('true' to enable, see StringPool). Default: false */
+    JIG_STRING_POOL("jig.string.pool"),
+    /** A binary config snapshot file, used on startup while the config files are unchanged. Default: none */
+    JIG_SNAPSHOT_FILE("jig.snapshot.file"),
+    /** Reload in the background when config files change ('true', see ConfigFileWatcher). Default: false */
+    JIG_WATCH("jig.watch"),
+    /** How long (millis) config files must be unchanged before the watcher reloads. Default: 500 */
+    JIG_WATCH_DELAY("jig.watch.delay")
     ;
 
     private final String _systemPropertyName;
@@ -0,0 +1,191 @@
+package net.jmx;
+
+import net.client.ConfigLookup;
+import net.client.ConfigMap;
+import net.util.ConfigStatistics;
+import net.util.LatencyHistogram;
+import net.util.LookupCache;
+import net.util.StatsValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The JConfigMBean implementation. Since ConfigMap, ConfigStatistics and
+ * LookupCache are static in ConfigLookup, any ConfigLookup instance will do.
+ *
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(new JConfig(), new ObjectName("net.jmx:type=JConfig"));
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class JConfig
+    implements JConfigMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JConfig.class);
+
+    private final ConfigMap _configMap;
+    private final ConfigStatistics _configStatistics;
+    private final LookupCache _lookupCache;
+
+    public JConfig() {
+        this(new ConfigLookup());
+    }
+
+    public JConfig(ConfigLookup configLookup) {
+
+        _configMap = configLookup.getConfigMap();
+        _configStatistics = configLookup.getConfigStatistics();
+        _lookupCache = configLookup.getLookupCache();
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getCurrentConfig() {
+
+        Map<String, Map<String, String>> copy = new HashMap<>();
+        for ( Map.Entry<String, Map<String, String>> fileEntry : _configMap.getConfig().entrySet() )
+        {
+            copy.put(fileEntry.getKey(), new HashMap<>(fileEntry.getValue()));
+        }
+
+        return copy;
+    }
+
+    @Override
+    public void reloadConfig() {
+        _configMap.reloadConfigFiles();
+    }
+
+    @Override
+    public String getLastChanges() {
+        return _configMap.getLastChangeSet().toString();
+    }
+
+    @Override
+    public void revertConfig() {
+        _configMap.revertConfig();
+    }
+
+    @Override
+    public Date getLastUpdate() {
+        return _configMap.getLastUpdated();
+    }
+
+    @Override
+    public Map<String, Long> getFileLoadTimes() {
+        return _configMap.getFileLoadTimes();
+    }
+
+    @Override
+    public String reportMemory() {
+
+        String report = _configMap.getMemoryReport().toString();
+        LOG.info(report);
+        return report;
+    }
+
+    @Override
+    public void compareAndLogConfigVersionDifferences() {
+        _configMap.compareAndLogDifferences();
+    }
+
+    @Override
+    public void dumpCurrentConfig() {
+        _configMap.dumpCurrentConfig();
+    }
+
+    @Override
+    public void dumpAllConfig() {
+        _configMap.dumpAllConfig();
+    }
+
+    @Override
+    public void areStatisticsEnabled() {
+        LOG.info("Config Statistics Enabled: " + _configStatistics.isEnabled());
+    }
+
+    @Override
+    public void enableStatistics() {
+        _configStatistics.enableStatsCollection();
+    }
+
+    @Override
+    public void disableStatistics() {
+        _configStatistics.disableStatsCollection();
+    }
+
+    @Override
+    public void dumpStatistics() {
+        _configStatistics.logOutput();
+    }
+
+    @Override
+    public void clearStatistics() {
+        _configStatistics.clearStatistics();
+    }
+
+    @Override
+    public Map<String, StatsValue> getStatistics() {
+        return _configStatistics.getStats();
+    }
+
+    @Override
+    public StatsValue getStatisticsFor(String key) {
+        return _configStatistics.getStatsFor(key);
+    }
+
+    @Override
+    public LatencyHistogram getPatternLatencyFor(String reducePattern) {
+        return _configStatistics.getPatternLatencyFor(reducePattern);
+    }
+
+    @Override
+    public int getStatisticsSampleRate() {
+        return _configStatistics.getSampleRate();
+    }
+
+    @Override
+    public void setStatisticsSampleRate(int sampleRate) {
+        _configStatistics.setSampleRate(sampleRate);
+    }
+
+    @Override
+    public long getLookupCacheHits() {
+        return _lookupCache.getHitCount();
+    }
+
+    @Override
+    public long getLookupCacheMisses() {
+        return _lookupCache.getMissCount();
+    }
+
+    @Override
+    public long getLookupCacheEvictions() {
+        return _lookupCache.getEvictionCount();
+    }
+
+    @Override
+    public int getLookupCacheSize() {
+        return _lookupCache.size();
+    }
+
+    @Override
+    public void clearLookupCache() {
+        _lookupCache.clear();
+    }
+}
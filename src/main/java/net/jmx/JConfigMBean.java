@@ -1,12 +1,13 @@
 package net.jmx;
 
+import net.util.LatencyHistogram;
 import net.util.StatsValue;
 
 import java.util.Date;
 import java.util.Map;
 
 /**
- * todo: an impl
+ * See JConfig for an implementation.
  * This could be exported via Spring when including reference to any ConfigLookup bean.
  *
  * @author dmillett
@@ -33,10 +34,15 @@ public interface JConfigMBean {
     public Map<String, Map<String, String>> getCurrentConfig();
 
     /**
-     * Reload the configuration from all sources.
+     * Reload the configuration from all sources, only changed sources are parsed again.
      */
     public void reloadConfig();
 
+    /**
+     * The keys that were added, removed or changed by the last load, reload or revert
+     */
+    public String getLastChanges();
+
     /**
      * Revert the current config version to the previously deployed version.
      */
@@ -48,6 +54,18 @@ public interface JConfigMBean {
      */
     public Date getLastUpdate();
 
+    /**
+     * How long each config file took to load during the last load (file name --> millis)
+     */
+    public Map<String, Long> getFileLoadTimes();
+
+    /**
+     * Log and return the estimated heap and off-heap bytes of the current config and what the
+     * string pool saved (see ConfigMemoryReport). An operation, not an attribute, because it
+     * visits every entry.
+     */
+    public String reportMemory();
+
     /**
      * Compare and log all differences between current and previous config versions.
      */
@@ -77,6 +95,25 @@ public interface JConfigMBean {
     public void clearStatistics();
     /** Return a copy of current statistics */
     public Map<String, StatsValue> getStatistics();
-    /** Get the statistics for a specific config key */
+    /** Get the statistics (including latency percentiles) for a specific config key */
     public StatsValue getStatisticsFor(String key);
+    /** Get the latency percentiles for a reduce pattern (pattern:param1:param2) */
+    public LatencyHistogram getPatternLatencyFor(String reducePattern);
+    /** Statistics measure 1 in N lookups */
+    public int getStatisticsSampleRate();
+    /** Measure 1 in 'sampleRate' lookups, counts are extrapolated (1 measures every lookup) */
+    public void setStatisticsSampleRate(int sampleRate);
+
+    // *********** Lookup cache
+
+    /** How many pattern lookups were served from the cache */
+    public long getLookupCacheHits();
+    /** How many pattern lookups were not in the cache */
+    public long getLookupCacheMisses();
+    /** How many cached results were removed to stay within the maximum size */
+    public long getLookupCacheEvictions();
+    /** The number of cached results for the current config version */
+    public int getLookupCacheSize();
+    /** Remove all cached results */
+    public void clearLookupCache();
 }
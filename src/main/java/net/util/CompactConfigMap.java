@@ -0,0 +1,484 @@
+package net.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only config map ('jig.storage=compact') that stores keys as a tree of '.'
+ * separated segments, so the long shared prefixes of flattened keys
+ * ('structures.stocks.stock.name.AMD.shares') are stored once instead of in every key.
+ * Each segment is a node (parent, segment, value) in parallel arrays, and equal
+ * segments are one String.
+ *
+ * A get() finds the key's last node with an open addressing index on the whole
+ * key hash (String caches it), then compares the segments back to the root, which
+ * are shared by many keys. Keys are only built while iterating, so pattern lookups
+ * over these maps cost more than over heap maps (they do not get a KeyTrie, see
+ * ConfigMap.buildKeyTries()).
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class CompactConfigMap
+    extends AbstractMap<String, String> {
+
+    private static final char SEPARATOR = '.';
+    private static final int ROOT = -1;
+
+    /** Parents are always added before their children */
+    private final int[] _parents;
+    private final String[] _segments;
+    private final String[] _values;
+    /** Nodes that are a key (a prefix node is not) */
+    private final BitSet _keys;
+    /** Pairs of (key hash, node + 1) for each key, node 0 is empty */
+    private final int[] _keyIndex;
+    private final int _mask;
+    private final int _size;
+
+    private CompactConfigMap(Builder builder) {
+
+        int nodeCount = builder._nodeCount;
+        _parents = Arrays.copyOf(builder._parents, nodeCount);
+        _segments = Arrays.copyOf(builder._segments, nodeCount);
+        _values = Arrays.copyOf(builder._values, nodeCount);
+        _keys = builder._keys;
+        _size = builder._keyCount;
+
+        int capacity = Integer.highestOneBit(Math.max(1, _size * 3 / 2)) << 1;
+        _keyIndex = new int[capacity * 2];
+        _mask = capacity - 1;
+
+        // String.hashCode() of each node's whole key, parents come first
+        int[] hashes = new int[nodeCount];
+        for ( int node = 0; node < nodeCount; node++ )
+        {
+            String segment = _segments[node];
+            int parent = _parents[node];
+            hashes[node] = parent == ROOT ? segment.hashCode()
+                                          : (hashes[parent] * 31 + SEPARATOR) * pow31(segment.length()) + segment.hashCode();
+
+            if ( _keys.get(node) )
+            {
+                int bucket = spread(hashes[node]) & _mask;
+                while ( _keyIndex[bucket * 2 + 1] != 0 )
+                {
+                    bucket = (bucket + 1) & _mask;
+                }
+
+                _keyIndex[bucket * 2] = hashes[node];
+                _keyIndex[bucket * 2 + 1] = node + 1;
+            }
+        }
+    }
+
+    /**
+     * @param configMap The key-values for one config file
+     * @return A compact copy of 'configMap', null for null
+     */
+    public static CompactConfigMap copyOf(Map<String, String> configMap) {
+
+        if ( configMap == null )
+        {
+            return null;
+        }
+
+        return merge(Collections.singletonList(configMap));
+    }
+
+    /**
+     * Copy several maps into one, a key in a later map replaces the same key in an
+     * earlier map (the same precedence as HashMap.putAll() in order). The segment
+     * strings of CompactConfigMaps are shared with the copy.
+     *
+     * @param configMaps The maps in precedence order (null maps are skipped)
+     * @return A read-only compact map
+     */
+    public static CompactConfigMap merge(Collection<Map<String, String>> configMaps) {
+
+        Builder builder = new Builder();
+        for ( Map<String, String> configMap : configMaps )
+        {
+            if ( configMap instanceof CompactConfigMap )
+            {
+                builder.putAll((CompactConfigMap) configMap);
+            }
+            else if ( configMap != null )
+            {
+                for ( Map.Entry<String, String> entry : configMap.entrySet() )
+                {
+                    if ( entry.getKey() != null )
+                    {
+                        builder.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+
+        return new CompactConfigMap(builder);
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && find((String) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+
+        if ( !(key instanceof String) )
+        {
+            return null;
+        }
+
+        int node = find((String) key);
+        return node < 0 ? null : _values[node];
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * @return The number of segment nodes, at most one per key segment
+     */
+    public int getNodeCount() {
+        return _parents.length;
+    }
+
+    /**
+     * The arrays (4 bytes per reference) and each distinct segment string, values are
+     * not included (they are shared with the other config maps).
+     *
+     * @return The estimated heap bytes of this map's keys
+     */
+    public long estimateKeyBytes() {
+
+        long bytes = 16L * 5 + _parents.length * 12L + _keyIndex.length * 4L + _keys.size() / 8;
+        Map<String, Boolean> segments = new IdentityHashMap<>();
+        for ( String segment : _segments )
+        {
+            if ( segments.put(segment, Boolean.TRUE) == null )
+            {
+                bytes += StringPool.estimateBytes(segment);
+            }
+        }
+
+        return bytes;
+    }
+
+    /** @return The node for the whole 'key' if it is a key, otherwise -1 */
+    private int find(String key) {
+
+        int hash = key.hashCode();
+        int bucket = spread(hash) & _mask;
+        int node;
+
+        while ( (node = _keyIndex[bucket * 2 + 1]) != 0 )
+        {
+            if ( _keyIndex[bucket * 2] == hash && matches(node - 1, key) )
+            {
+                return node - 1;
+            }
+
+            bucket = (bucket + 1) & _mask;
+        }
+
+        return -1;
+    }
+
+    /** Compare the segments from 'node' back to the root with the end of 'key' */
+    private boolean matches(int node, String key) {
+
+        int end = key.length();
+        while ( true )
+        {
+            String segment = _segments[node];
+            int start = end - segment.length();
+            if ( start < 0 || !key.regionMatches(start, segment, 0, segment.length()) )
+            {
+                return false;
+            }
+
+            node = _parents[node];
+            if ( node == ROOT )
+            {
+                return start == 0;
+            }
+
+            if ( start == 0 || key.charAt(start - 1) != SEPARATOR )
+            {
+                return false;
+            }
+
+            end = start - 1;
+        }
+    }
+
+    private static int pow31(int exponent) {
+
+        int power = 1;
+        for ( int i = 0; i < exponent; i++ )
+        {
+            power *= 31;
+        }
+
+        return power;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /** @return The node for 'key' chars 'start' to 'end' under 'parent', otherwise -1 */
+    private static int findNode(int[] index, int[] parents, String[] segments, int parent, String key,
+                                int start, int end) {
+
+        int mask = index.length - 1;
+        int bucket = hash(parent, segmentHash(key, start, end)) & mask;
+        int length = end - start;
+
+        while ( index[bucket] != 0 )
+        {
+            int node = index[bucket] - 1;
+            String segment = segments[node];
+            if ( parents[node] == parent && segment.length() == length && key.regionMatches(start, segment, 0, length) )
+            {
+                return node;
+            }
+
+            bucket = (bucket + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /** The same as String.hashCode() for the substring, without creating it */
+    private static int segmentHash(String key, int start, int end) {
+
+        int hash = 0;
+        for ( int i = start; i < end; i++ )
+        {
+            hash = 31 * hash + key.charAt(i);
+        }
+
+        return hash;
+    }
+
+    private static int hash(int parent, int segmentHash) {
+        return spread(segmentHash * 31 + parent);
+    }
+
+    /**
+     * Grows while adding keys, with an index on (parent, segment) that is only
+     * needed until the map is built. The map trims the node arrays.
+     */
+    private static final class Builder {
+
+        private int[] _parents = new int[64];
+        private String[] _segments = new String[64];
+        private String[] _values = new String[64];
+        private final BitSet _keys = new BitSet();
+        private int[] _index = new int[128];
+        private int _nodeCount;
+        private int _keyCount;
+        /** Segments created from keys, so equal segments are one String */
+        private final Map<String, String> _segmentPool = new HashMap<>();
+
+        private void put(String key, String value) {
+
+            int parent = ROOT;
+            int start = 0;
+
+            while ( true )
+            {
+                int end = key.indexOf(SEPARATOR, start);
+                if ( end < 0 )
+                {
+                    end = key.length();
+                }
+
+                int node = findNode(_index, _parents, _segments, parent, key, start, end);
+                if ( node < 0 )
+                {
+                    node = addNode(parent, poolSegment(key.substring(start, end)));
+                }
+
+                if ( end == key.length() )
+                {
+                    setValue(node, value);
+                    return;
+                }
+
+                parent = node;
+                start = end + 1;
+            }
+        }
+
+        /** Node by node, every parent is copied before its children */
+        private void putAll(CompactConfigMap configMap) {
+
+            int[] nodes = new int[configMap._parents.length];
+            for ( int source = 0; source < nodes.length; source++ )
+            {
+                int parent = configMap._parents[source] == ROOT ? ROOT : nodes[configMap._parents[source]];
+                String segment = configMap._segments[source];
+
+                int node = findNode(_index, _parents, _segments, parent, segment, 0, segment.length());
+                nodes[source] = node < 0 ? addNode(parent, segment) : node;
+
+                if ( configMap._keys.get(source) )
+                {
+                    setValue(nodes[source], configMap._values[source]);
+                }
+            }
+        }
+
+        private String poolSegment(String segment) {
+
+            String pooled = _segmentPool.get(segment);
+            if ( pooled == null )
+            {
+                _segmentPool.put(segment, segment);
+                return segment;
+            }
+
+            return pooled;
+        }
+
+        private void setValue(int node, String value) {
+
+            if ( !_keys.get(node) )
+            {
+                _keys.set(node);
+                _keyCount++;
+            }
+
+            _values[node] = value;
+        }
+
+        private int addNode(int parent, String segment) {
+
+            if ( _nodeCount == _parents.length )
+            {
+                int capacity = _parents.length * 2;
+                _parents = Arrays.copyOf(_parents, capacity);
+                _segments = Arrays.copyOf(_segments, capacity);
+                _values = Arrays.copyOf(_values, capacity);
+            }
+
+            if ( (_nodeCount + 1) * 2 > _index.length )
+            {
+                rehash(_index.length * 2);
+            }
+
+            int node = _nodeCount++;
+            _parents[node] = parent;
+            _segments[node] = segment;
+            insert(_index, node, parent, segment);
+            return node;
+        }
+
+        private void rehash(int capacity) {
+
+            int[] index = new int[capacity];
+            for ( int node = 0; node < _nodeCount; node++ )
+            {
+                insert(index, node, _parents[node], _segments[node]);
+            }
+
+            _index = index;
+        }
+
+        private static void insert(int[] index, int node, int parent, String segment) {
+
+            int mask = index.length - 1;
+            int bucket = hash(parent, segment.hashCode()) & mask;
+            while ( index[bucket] != 0 )
+            {
+                bucket = (bucket + 1) & mask;
+            }
+
+            index[bucket] = node + 1;
+        }
+    }
+
+    /** Builds each key from its segments, in the order keys were first added */
+    private class EntryIterator
+        implements Iterator<Entry<String, String>> {
+
+        private int _next = _keys.nextSetBit(0);
+        private final StringBuilder _key = new StringBuilder();
+
+        @Override
+        public boolean hasNext() {
+            return _next >= 0;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+
+            if ( _next < 0 )
+            {
+                throw new NoSuchElementException();
+            }
+
+            int node = _next;
+            _next = _keys.nextSetBit(node + 1);
+
+            _key.setLength(0);
+            appendKey(node);
+            return new SimpleImmutableEntry<>(_key.toString(), _values[node]);
+        }
+
+        private void appendKey(int node) {
+
+            if ( _parents[node] != ROOT )
+            {
+                appendKey(_parents[node]);
+                _key.append(SEPARATOR);
+            }
+
+            _key.append(_segments[node]);
+        }
+    }
+}
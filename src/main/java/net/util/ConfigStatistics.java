@@ -1,27 +1,33 @@
 package net.util;
 
+import net.common.JigProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This gathers statistics for ConfigMap use. It will track things like:
  * 1) count
- * 2) performance
+ * 2) performance (average and percentiles per key and per reduce pattern)
  * 3) last accessed
  *
  * Statistic collection is optional, since collecting data will adversely
  * affect performance. It is currently set a static variable in ConfigLookup
  * and
  *
- * Using this for now
- * Approach 1: use a HashMap with thread locking on specific StatsValue when updating.
+ * The StatsValue for each key lives in a ConcurrentHashMap and is updated with
+ * striped counters (see StatsValue), so concurrent lookups never block each other.
  *
- * Maybe later
- * Approach 2: use a ConcurrentHashMap with immutable values, but more garbage collection
+ * To reduce the cost further, only 1 in N lookups can be measured (see
+ * sample() and 'jig.stats.sample.rate'). Each sampled lookup is recorded with
+ * a weight of N, so counts are extrapolated and averages/percentiles come
+ * from the sampled latencies.
  *
  * @author dmillett
  *
@@ -41,59 +47,152 @@ import java.util.concurrent.locks.ReentrantLock;
 public class ConfigStatistics {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConfigStatistics.class);
-    private static final ReentrantLock LOCK = new ReentrantLock();
-    /** Where the values are thread aware (volatile) mutable objects */
-    private static final Map<String, StatsValue> STATS = new HashMap<>();
+    /** The pattern batch lookups record their latency under (see addBatchLookup()) */
+    public static final String BATCH_PATTERN = "getAll()";
+    /** Where the values are thread safe mutable objects */
+    private static final ConcurrentMap<String, StatsValue> STATS = new ConcurrentHashMap<>();
+    /** Latencies per reduce pattern (see ConfigLookup), recorded once per lookup */
+    private static final ConcurrentMap<String, LatencyHistogram> PATTERN_LATENCIES = new ConcurrentHashMap<>();
     /** To capture or not to capture */
-    private static boolean _statsCaptureEnabled;
+    private static volatile boolean _statsCaptureEnabled;
+    /** Measure 1 in '_sampleRate' lookups (1 is every lookup) */
+    private static volatile int _sampleRate = readSampleRate();
+
+    /**
+     * Decide whether to measure the current lookup. Call this once per lookup and
+     * pass the result to addKeyLookup()/addPatternLookup().
+     *
+     * @return 0 if the lookup should not be measured, otherwise the number of lookups it represents
+     */
+    public int sample() {
+
+        if ( !_statsCaptureEnabled )
+        {
+            return 0;
+        }
+
+        int sampleRate = _sampleRate;
+        if ( sampleRate <= 1 )
+        {
+            return 1;
+        }
+
+        return ThreadLocalRandom.current().nextInt(sampleRate) == 0 ? sampleRate : 0;
+    }
 
     /**
      * Add or update statistics for a Key. Note that the value 'StatsValue'
-     * object is mutable and holds the updating state. There is a Lock
-     * placed whenever a key is inserted into STATS, otherwise, it relies
-     * on StatsValue to maintain thread safe consistent data.
+     * object is mutable and holds the updating state. A new key is added
+     * with putIfAbsent(), otherwise it relies on StatsValue to maintain
+     * thread safe consistent data without locking.
      *
      * @param key The key in the map returned by the keyset pattern query
      * @param latency How long to retrieve the result
      * @param pattern The pattern the resulted in this 'key' lookup
      */
     public void addKeyLookup(String key, long latency, String pattern) {
+        addKeyLookup(key, latency, pattern, 1);
+    }
 
-        StatsValue storedValue = STATS.get(key);
+    /**
+     * Add or update statistics for a sampled key lookup (see sample()).
+     *
+     * @param key The key in the map returned by the keyset pattern query
+     * @param latency How long to retrieve the result
+     * @param pattern The pattern the resulted in this 'key' lookup
+     * @param weight How many lookups this one represents
+     */
+    public void addKeyLookup(String key, long latency, String pattern, int weight) {
+        findStats(key).updateStats(latency, pattern, weight);
+    }
 
-        if ( STATS.get(key) != null )
+    /**
+     * Record one batch lookup (see ConfigLookup.getAll()): the latency of the whole
+     * call under BATCH_PATTERN, and a batch count for each key without a latency of
+     * its own.
+     *
+     * @param keys The keys the batch lookup found
+     * @param latency How long the whole batch lookup took
+     * @param weight How many lookups this one represents (see sample())
+     */
+    public void addBatchLookup(Collection<String> keys, long latency, int weight) {
+
+        addPatternLookup(BATCH_PATTERN, latency, weight);
+        for ( String key : keys )
         {
-            storedValue.updateStats(latency, pattern);
+            findStats(key).addBatchLookup(BATCH_PATTERN, weight);
         }
-        else
+    }
+
+    /**
+     * Record the latency for a single pattern lookup, regardless of how many
+     * keys matched.
+     *
+     * @param pattern The reduce pattern representation (pattern and params)
+     * @param latency How long the lookup took
+     * @param weight How many lookups this one represents (see sample())
+     */
+    public void addPatternLookup(String pattern, long latency, int weight) {
+
+        LatencyHistogram histogram = PATTERN_LATENCIES.get(pattern);
+
+        if ( histogram == null )
         {
-            LOCK.lock();
-            try
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = PATTERN_LATENCIES.putIfAbsent(pattern, newHistogram);
+
+            if ( histogram == null )
             {
-                storedValue = STATS.get(key);
-
-                if ( storedValue == null )
-                {
-                    storedValue = new StatsValue(key);
-                    storedValue.updateStats(latency, pattern);
-                    STATS.put(key, storedValue);
-                }
-                else
-                {
-                    storedValue.updateStats(latency, pattern);
-                }
+                histogram = newHistogram;
             }
-            finally
+        }
+
+        histogram.record(latency, weight);
+    }
+
+    /** A new key is added with putIfAbsent() */
+    private static StatsValue findStats(String key) {
+
+        StatsValue storedValue = STATS.get(key);
+
+        if ( storedValue == null )
+        {
+            StatsValue newValue = new StatsValue(key);
+            storedValue = STATS.putIfAbsent(key, newValue);
+
+            if ( storedValue == null )
             {
-                LOCK.unlock();
+                storedValue = newValue;
             }
         }
+
+        return storedValue;
     }
 
     public Map<String, StatsValue> getStats() {
         return new HashMap<>(STATS);
     }
 
+    /**
+     * @param key A config key
+     * @return The statistics for 'key', otherwise null
+     */
+    public StatsValue getStatsFor(String key) {
+        return STATS.get(key);
+    }
+
+    public Map<String, LatencyHistogram> getPatternLatencies() {
+        return new HashMap<>(PATTERN_LATENCIES);
+    }
+
+    /**
+     * @param pattern A reduce pattern representation (pattern and params)
+     * @return The latencies for 'pattern', otherwise null
+     */
+    public LatencyHistogram getPatternLatencyFor(String pattern) {
+        return PATTERN_LATENCIES.get(pattern);
+    }
+
     public boolean isEnabled() {
         return _statsCaptureEnabled;
     }
@@ -105,18 +204,55 @@ public class ConfigStatistics {
         {
             sb.append(entry.getKey()).append(":").append(entry.getValue()).append("|");
         }
+
+        for (Map.Entry<String, LatencyHistogram> entry : PATTERN_LATENCIES.entrySet())
+        {
+            sb.append(entry.getKey()).append(":").append(entry.getValue()).append("|");
+        }
+
         LOG.info(sb.toString());
     }
 
-    public synchronized void clearStatistics() {
+    public void clearStatistics() {
         STATS.clear();
+        PATTERN_LATENCIES.clear();
     }
 
-    public synchronized void disableStatsCollection() {
+    public void disableStatsCollection() {
         _statsCaptureEnabled = false;
     }
 
-    public synchronized void enableStatsCollection() {
+    public void enableStatsCollection() {
         _statsCaptureEnabled = true;
     }
+
+    public int getSampleRate() {
+        return _sampleRate;
+    }
+
+    /**
+     * @param sampleRate Measure 1 in 'sampleRate' lookups (values below 1 measure every lookup)
+     */
+    public void setSampleRate(int sampleRate) {
+        _sampleRate = Math.max(1, sampleRate);
+    }
+
+    private static int readSampleRate() {
+
+        String sampleRate = System.getProperty(JigProperties.JIG_STATS_SAMPLE_RATE.getName());
+        if ( sampleRate == null )
+        {
+            return 1;
+        }
+
+        try
+        {
+            return Math.max(1, Integer.parseInt(sampleRate.trim()));
+        }
+        catch (NumberFormatException nfe)
+        {
+            LOG.warn("Invalid " + JigProperties.JIG_STATS_SAMPLE_RATE.getName() + ": '" + sampleRate + "', Using 1");
+            return 1;
+        }
+    }
 }
@@ -3,8 +3,12 @@ package net.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A useful tool (or not) to help with generic Objects and return types.
@@ -63,11 +67,32 @@ public class GenericsHelper {
             {
                 return (T) Long.valueOf(value);
             }
+            else if ( clazz.equals(Float.class) )
+            {
+                return (T) Float.valueOf(value);
+            }
+            else if ( clazz.equals(Short.class) )
+            {
+                return (T) Short.valueOf(value);
+            }
+            else if ( clazz.equals(BigDecimal.class) )
+            {
+                return (T) new BigDecimal(value.trim());
+            }
+            else if ( clazz.equals(BigInteger.class) )
+            {
+                return (T) new BigInteger(value.trim());
+            }
             else if ( clazz.equals(List.class) )
             {
                 List<String> results = Arrays.asList(value.split(","));
                 return (T) results;
             }
+            else if ( clazz.equals(Set.class) )
+            {
+                Set<String> results = new LinkedHashSet<>(Arrays.asList(value.split(",")));
+                return (T) results;
+            }
         }
         catch ( Exception e )
         {
@@ -6,7 +6,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Bind a Groovy object to load configuration files. See ConfigLoader.groovy.
@@ -64,6 +67,123 @@ public class JavaGroovyConfigBinder {
         return configKeyValues;
     }
 
+    /**
+     * How long each config file took to load during getFileConfigMap().
+     *
+     * @return file name --> millis in load order, empty if nothing was loaded
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> getFileLoadTimes() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return Collections.emptyMap();
+        }
+
+        return (Map<String, Long>) _groovyConfigLoader.invokeMethod("getFileLoadTimes", new Object[] {});
+    }
+
+    /**
+     * The sources that were added, changed or removed by the last getFileConfigMap() call
+     * on this binder (see ConfigLoader.getChangedSources()).
+     *
+     * @return Source names in load order, empty if nothing was loaded
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getChangedSources() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return (List<String>) _groovyConfigLoader.invokeMethod("getChangedSources", new Object[] {});
+    }
+
+    /**
+     * The local config files read during getFileConfigMap() (see ConfigLoader.getSnapshotSourceFiles()).
+     *
+     * @return The config files in load order, null if url or database configs were loaded
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getSnapshotSourceFiles() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return null;
+        }
+
+        return (List<String>) _groovyConfigLoader.invokeMethod("getSnapshotSourceFiles", new Object[] {});
+    }
+
+    /**
+     * The database config rows that changed since the last load or poll
+     * (see ConfigLoader.pollDatabaseConfigs()).
+     *
+     * @return table name --> changed key:values, empty if nothing changed
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Map<String, String>> pollDatabaseConfigs() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return Collections.emptyMap();
+        }
+
+        return (Map<String, Map<String, String>>) _groovyConfigLoader.invokeMethod("pollDatabaseConfigs", new Object[] {});
+    }
+
+    /**
+     * Close the database connections kept between polls (see ConfigLoader.closeDatabaseConnections()).
+     */
+    public void closeDatabaseConnections() {
+
+        if ( _groovyConfigLoader != null )
+        {
+            _groovyConfigLoader.invokeMethod("closeDatabaseConnections", new Object[] {});
+        }
+    }
+
+    /**
+     * @return The string pool of the last load (see ConfigLoader.getStringPool()), null if disabled
+     */
+    public StringPool getStringPool() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return null;
+        }
+
+        return (StringPool) _groovyConfigLoader.invokeMethod("getStringPool", new Object[] {});
+    }
+
+    /**
+     * @return The directories searched for config files (see ConfigLoader.getConfigDirectories())
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getConfigDirectories() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return (List<String>) _groovyConfigLoader.invokeMethod("getConfigDirectories", new Object[] {});
+    }
+
+    /**
+     * @return The config file name pattern (see ConfigLoader.findFileNamePattern())
+     */
+    public Pattern getFileNamePattern() {
+
+        if ( _groovyConfigLoader == null )
+        {
+            return null;
+        }
+
+        return (Pattern) _groovyConfigLoader.invokeMethod("findFileNamePattern", new Object[] {});
+    }
+
     /**
      * Look this up from the Classloader (it better be in there).
      * @return A useable Groovy object
@@ -0,0 +1,274 @@
+package net.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A key pattern compiled to the cheapest way of applying it to lower cased
+ * config keys. Patterns that start with ".*" must match the whole key and the
+ * others only need to be found in it (see PatternHelper.useFind()), so plain
+ * text patterns become String comparisons:
+ *
+ * "^stocks\\.amd$"  --> EXACT     "stocks.amd"
+ * "^stocks\\.amd"   --> PREFIX    "stocks.amd"
+ * ".*\\.shares"     --> SUFFIX    ".shares"
+ * "stocks" or ".*stocks.*" --> CONTAINS  "stocks"
+ *
+ * Anything else is a regex, which reuses one Matcher instead of creating one
+ * per key. Keys that are already lower case (most loaders lower case them) are
+ * not copied, so matching a key does not allocate.
+ *
+ * A KeyMatcher is cheap to compile, but not thread safe since it holds the
+ * Matcher. Compile one per lookup (or per thread).
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class KeyMatcher {
+
+    public enum Strategy {
+        EXACT, PREFIX, SUFFIX, CONTAINS,
+        /** Plain text with upper case characters never matches a lower cased key */
+        NONE,
+        /** Pattern.matcher().find() */
+        FIND,
+        /** Pattern.matcher().matches() */
+        MATCH
+    }
+
+    private static final String WILDCARD = ".*";
+    private static final String REGEX_CHARACTERS = ".[](){}^$|?*+";
+
+    private final Pattern _pattern;
+    private final Strategy _strategy;
+    private final String _literal;
+    private Matcher _matcher;
+
+    private KeyMatcher(Pattern pattern, Strategy strategy, String literal) {
+
+        _pattern = pattern;
+        _strategy = strategy;
+        _literal = literal;
+    }
+
+    /**
+     * @param pattern A key pattern (see ConfigLookup.get())
+     * @return A matcher for 'pattern'
+     */
+    public static KeyMatcher compile(Pattern pattern) {
+
+        String patternText = pattern.pattern();
+        boolean useMatches = !PatternHelper.useFind(pattern);
+        int flags = pattern.flags();
+
+        if ( flags != 0 && flags != Pattern.CASE_INSENSITIVE )
+        {
+            return regex(pattern, useMatches);
+        }
+
+        int start = 0;
+        int end = patternText.length();
+        boolean anchoredStart = !useMatches;
+        boolean anchoredEnd = useMatches;
+
+        if ( useMatches )
+        {
+            while ( patternText.startsWith(WILDCARD, start) )
+            {
+                start += 2;
+            }
+        }
+        else if ( patternText.startsWith("^") )
+        {
+            start = 1;
+        }
+        else
+        {
+            anchoredStart = false;
+        }
+
+        if ( !useMatches && end > start && patternText.charAt(end - 1) == '$' && !isEscaped(patternText, end - 1) )
+        {
+            end--;
+            anchoredEnd = true;
+        }
+
+        // A trailing wildcard matches the rest of the key
+        while ( end - 2 >= start && patternText.startsWith(WILDCARD, end - 2) && !isEscaped(patternText, end - 2) )
+        {
+            end -= 2;
+            anchoredEnd = false;
+        }
+
+        String literal = findLiteral(patternText, start, end);
+        if ( literal == null )
+        {
+            return regex(pattern, useMatches);
+        }
+
+        if ( flags == Pattern.CASE_INSENSITIVE )
+        {
+            literal = literal.toLowerCase();
+        }
+        else if ( !literal.equals(literal.toLowerCase()) )
+        {
+            return new KeyMatcher(pattern, Strategy.NONE, literal);
+        }
+
+        Strategy strategy;
+        if ( anchoredStart && anchoredEnd )
+        {
+            strategy = Strategy.EXACT;
+        }
+        else if ( anchoredStart )
+        {
+            strategy = Strategy.PREFIX;
+        }
+        else if ( anchoredEnd )
+        {
+            strategy = Strategy.SUFFIX;
+        }
+        else
+        {
+            strategy = Strategy.CONTAINS;
+        }
+
+        return new KeyMatcher(pattern, strategy, literal);
+    }
+
+    /**
+     * @param key A config key, it is lower cased if necessary
+     * @return true if 'key' matches the pattern
+     */
+    public boolean matches(String key) {
+        return matchesLowerCase(toLowerCase(key));
+    }
+
+    /**
+     * @param lowerCaseKey A lower cased config key (see KeyTrie.Entry)
+     * @return true if 'lowerCaseKey' matches the pattern
+     */
+    public boolean matchesLowerCase(String lowerCaseKey) {
+
+        switch ( _strategy )
+        {
+            case EXACT:
+                return lowerCaseKey.equals(_literal);
+            case PREFIX:
+                return lowerCaseKey.startsWith(_literal);
+            case SUFFIX:
+                return lowerCaseKey.endsWith(_literal);
+            case CONTAINS:
+                return lowerCaseKey.contains(_literal);
+            case NONE:
+                return false;
+            case FIND:
+                return matcher(lowerCaseKey).find();
+            default:
+                return matcher(lowerCaseKey).matches();
+        }
+    }
+
+    public Strategy getStrategy() {
+        return _strategy;
+    }
+
+    public Pattern getPattern() {
+        return _pattern;
+    }
+
+    /**
+     * @param key Any key
+     * @return 'key' if it is lower case ASCII, otherwise key.toLowerCase()
+     */
+    public static String toLowerCase(String key) {
+
+        for ( int i = 0; i < key.length(); i++ )
+        {
+            char c = key.charAt(i);
+            if ( (c >= 'A' && c <= 'Z') || c > 0x7F )
+            {
+                return key.toLowerCase();
+            }
+        }
+
+        return key;
+    }
+
+    private Matcher matcher(String lowerCaseKey) {
+
+        if ( _matcher == null )
+        {
+            _matcher = _pattern.matcher(lowerCaseKey);
+            return _matcher;
+        }
+
+        return _matcher.reset(lowerCaseKey);
+    }
+
+    private static KeyMatcher regex(Pattern pattern, boolean useMatches) {
+        return new KeyMatcher(pattern, useMatches ? Strategy.MATCH : Strategy.FIND, null);
+    }
+
+    /**
+     * @return The plain ASCII text in 'patternText' from 'start' to 'end' (with escapes
+     * removed), otherwise null if it has any regex constructs
+     */
+    private static String findLiteral(String patternText, int start, int end) {
+
+        StringBuilder literal = new StringBuilder(end - start);
+        for ( int i = start; i < end; i++ )
+        {
+            char c = patternText.charAt(i);
+            if ( c > 0x7F )
+            {
+                return null;
+            }
+
+            if ( c == '\\' )
+            {
+                if ( i + 1 >= end || patternText.charAt(i + 1) > 0x7F
+                     || Character.isLetterOrDigit(patternText.charAt(i + 1)) )
+                {
+                    return null;
+                }
+
+                literal.append(patternText.charAt(++i));
+            }
+            else if ( REGEX_CHARACTERS.indexOf(c) > -1 )
+            {
+                return null;
+            }
+            else
+            {
+                literal.append(c);
+            }
+        }
+
+        return literal.toString();
+    }
+
+    /** An odd number of preceding back slashes */
+    private static boolean isEscaped(String patternText, int index) {
+
+        int slashes = 0;
+        for ( int i = index - 1; i >= 0 && patternText.charAt(i) == '\\'; i-- )
+        {
+            slashes++;
+        }
+
+        return slashes % 2 == 1;
+    }
+}
@@ -0,0 +1,423 @@
+package net.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A segment trie over the lower cased keys of a single config file map, where
+ * each dotted key segment is a node. For example, these keys:
+ *
+ * structures.stocks.stock.name.amd.shares
+ * structures.stocks.stock.name.intc.shares
+ *
+ * share the nodes "structures" -> "stocks" -> "stock" -> "name". A pattern
+ * lookup can use the literal text every match must contain (see
+ * PatternHelper.findLiteralPrefix()) to jump to the matching sub-trees and only
+ * test those keys against the pattern instead of the whole key set.
+ *
+ * Since unanchored patterns may match anywhere in a key, the distinct segment
+ * names are also kept sorted by their reversed text so the segments that end
+ * with part of the literal can be found with a binary search.
+ *
+ * The trie is built once per config load and is read-only afterwards, so it
+ * is safe to share across threads.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class KeyTrie {
+
+    private static final char DELIM = '.';
+
+    private final Map<String, String> _source;
+    private final Node _root = new Node(null, "");
+    private final List<Entry> _entries;
+    /** Distinct segment names along with every node for each name */
+    private final String[] _segments;
+    private final Node[][] _segmentNodes;
+    /** Reversed segment names (sorted) with their '_segments' index, for segment suffix lookups */
+    private final String[] _reversedSegments;
+    private final int[] _reversedSegmentIndex;
+
+    /**
+     * @param configMap The key-values for one config file
+     */
+    public KeyTrie(Map<String, String> configMap) {
+
+        _source = configMap;
+        List<Entry> entries = new ArrayList<>(configMap.size());
+        Map<String, List<Node>> nodesBySegment = new HashMap<>();
+
+        for ( Map.Entry<String, String> configEntry : configMap.entrySet() )
+        {
+            if ( configEntry.getKey() == null )
+            {
+                continue;
+            }
+
+            Entry entry = new Entry(configEntry.getKey(), configEntry.getValue());
+            addEntry(entry, nodesBySegment);
+            entries.add(entry);
+        }
+
+        _entries = Collections.unmodifiableList(entries);
+
+        _segments = nodesBySegment.keySet().toArray(new String[nodesBySegment.size()]);
+        _segmentNodes = new Node[_segments.length][];
+
+        final String[] reversed = new String[_segments.length];
+        Integer[] order = new Integer[_segments.length];
+
+        for ( int i = 0; i < _segments.length; i++ )
+        {
+            List<Node> nodes = nodesBySegment.get(_segments[i]);
+            _segmentNodes[i] = nodes.toArray(new Node[nodes.size()]);
+            reversed[i] = new StringBuilder(_segments[i]).reverse().toString();
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return reversed[i1].compareTo(reversed[i2]);
+            }
+        });
+
+        _reversedSegments = new String[order.length];
+        _reversedSegmentIndex = new int[order.length];
+
+        for ( int i = 0; i < order.length; i++ )
+        {
+            _reversedSegments[i] = reversed[order[i]];
+            _reversedSegmentIndex[i] = order[i];
+        }
+    }
+
+    /**
+     * @param configMap Any config map
+     * @return true if this trie was built from the 'configMap' instance
+     */
+    public boolean isIndexFor(Map<String, String> configMap) {
+        return _source == configMap;
+    }
+
+    /**
+     * @return Every key-value in the trie
+     */
+    public List<Entry> getEntries() {
+        return _entries;
+    }
+
+    /**
+     * Find every key that could contain 'literal' (a superset of the keys that
+     * match a pattern with this literal prefix). Callers still need to apply
+     * the pattern to each candidate.
+     *
+     * If 'anchored', then the key must start with 'literal', otherwise 'literal'
+     * may appear anywhere in the key.
+     *
+     * @param literal Lower case text that every matching key contains (see PatternHelper.findLiteralPrefix())
+     * @param anchored Whether the key must start with 'literal'
+     * @return The candidate entries, or every entry if 'literal' is null or empty
+     */
+    public List<Entry> find(String literal, boolean anchored) {
+
+        if ( literal == null || literal.isEmpty() )
+        {
+            return _entries;
+        }
+
+        List<Node> candidates = findCandidateNodes(literal, anchored);
+        if ( candidates.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        Set<Node> candidateSet = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        candidateSet.addAll(candidates);
+
+        List<Entry> entries = new ArrayList<>();
+        for ( Node candidate : candidateSet )
+        {
+            // A nested candidate is already included by its ancestor
+            if ( !hasCandidateAncestor(candidate, candidateSet) )
+            {
+                candidate.collectEntries(entries);
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * A literal without a '.' lies within one segment. Otherwise, its first part
+     * ends a segment, any middle parts are whole segments and the last part
+     * starts a segment.
+     */
+    private List<Node> findCandidateNodes(String literal, boolean anchored) {
+
+        List<Node> candidates = new ArrayList<>();
+        int firstDelim = literal.indexOf(DELIM);
+
+        if ( firstDelim < 0 )
+        {
+            if ( anchored )
+            {
+                addChildrenStartingWith(_root, literal, candidates);
+            }
+            else
+            {
+                addSegmentsContaining(literal, candidates);
+            }
+
+            return candidates;
+        }
+
+        String first = literal.substring(0, firstDelim);
+        List<Node> current = new ArrayList<>();
+
+        if ( anchored )
+        {
+            Node node = _root.getChild(first);
+            if ( node != null )
+            {
+                current.add(node);
+            }
+        }
+        else
+        {
+            addSegmentsEndingWith(first, current);
+        }
+
+        int start = firstDelim + 1;
+        int nextDelim = literal.indexOf(DELIM, start);
+
+        while ( nextDelim > -1 && !current.isEmpty() )
+        {
+            String middle = literal.substring(start, nextDelim);
+            List<Node> next = new ArrayList<>(current.size());
+
+            for ( Node node : current )
+            {
+                Node child = node.getChild(middle);
+                if ( child != null )
+                {
+                    next.add(child);
+                }
+            }
+
+            current = next;
+            start = nextDelim + 1;
+            nextDelim = literal.indexOf(DELIM, start);
+        }
+
+        String last = literal.substring(start);
+        for ( Node node : current )
+        {
+            addChildrenStartingWith(node, last, candidates);
+        }
+
+        return candidates;
+    }
+
+    /** A contains() check has to look at every distinct segment name */
+    private void addSegmentsContaining(String text, List<Node> nodes) {
+
+        for ( int i = 0; i < _segments.length; i++ )
+        {
+            if ( _segments[i].contains(text) )
+            {
+                nodes.addAll(Arrays.asList(_segmentNodes[i]));
+            }
+        }
+    }
+
+    /** Reversed segment names that start with the reversed 'suffix' are adjacent */
+    private void addSegmentsEndingWith(String suffix, List<Node> nodes) {
+
+        String reversedSuffix = new StringBuilder(suffix).reverse().toString();
+        int i = Arrays.binarySearch(_reversedSegments, reversedSuffix);
+        i = i < 0 ? -(i + 1) : i;
+
+        while ( i < _reversedSegments.length && _reversedSegments[i].startsWith(reversedSuffix) )
+        {
+            nodes.addAll(Arrays.asList(_segmentNodes[_reversedSegmentIndex[i]]));
+            i++;
+        }
+    }
+
+    private void addChildrenStartingWith(Node parent, String prefix, List<Node> nodes) {
+
+        for ( Node child : parent.getChildren() )
+        {
+            if ( child._segment.startsWith(prefix) )
+            {
+                nodes.add(child);
+            }
+        }
+    }
+
+    private static boolean hasCandidateAncestor(Node node, Set<Node> candidates) {
+
+        for ( Node parent = node._parent; parent != null; parent = parent._parent )
+        {
+            if ( candidates.contains(parent) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void addEntry(Entry entry, Map<String, List<Node>> nodesBySegment) {
+
+        String lowerCaseKey = entry.getLowerCaseKey();
+        Node node = _root;
+        int start = 0;
+
+        while ( true )
+        {
+            int end = lowerCaseKey.indexOf(DELIM, start);
+            String segment = end < 0 ? lowerCaseKey.substring(start) : lowerCaseKey.substring(start, end);
+            node = getOrAddChild(node, segment, nodesBySegment);
+
+            if ( end < 0 )
+            {
+                break;
+            }
+
+            start = end + 1;
+        }
+
+        node.addEntry(entry);
+    }
+
+    private Node getOrAddChild(Node parent, String segment, Map<String, List<Node>> nodesBySegment) {
+
+        Node child = parent.getChild(segment);
+        if ( child != null )
+        {
+            return child;
+        }
+
+        child = new Node(parent, segment);
+        parent.addChild(child);
+
+        List<Node> segmentNodes = nodesBySegment.get(segment);
+        if ( segmentNodes == null )
+        {
+            segmentNodes = new ArrayList<>(1);
+            nodesBySegment.put(segment, segmentNodes);
+        }
+
+        segmentNodes.add(child);
+        return child;
+    }
+
+    /**
+     * A config key-value along with its lower cased key, which is what patterns
+     * are applied to.
+     */
+    public static final class Entry {
+
+        private final String _key;
+        private final String _lowerCaseKey;
+        private final String _value;
+
+        Entry(String key, String value) {
+
+            _key = key;
+            _lowerCaseKey = key.toLowerCase();
+            _value = value;
+        }
+
+        public String getKey() {
+            return _key;
+        }
+
+        public String getLowerCaseKey() {
+            return _lowerCaseKey;
+        }
+
+        public String getValue() {
+            return _value;
+        }
+    }
+
+    /** One key segment */
+    private static final class Node {
+
+        private final Node _parent;
+        private final String _segment;
+        private Map<String, Node> _children;
+        /** Keys ending at this node (more than one if keys only differ by case) */
+        private List<Entry> _entries;
+
+        private Node(Node parent, String segment) {
+
+            _parent = parent;
+            _segment = segment;
+        }
+
+        private Node getChild(String segment) {
+            return _children == null ? null : _children.get(segment);
+        }
+
+        private Iterable<Node> getChildren() {
+            return _children == null ? Collections.<Node>emptyList() : _children.values();
+        }
+
+        private void addChild(Node child) {
+
+            if ( _children == null )
+            {
+                _children = new HashMap<>(4);
+            }
+
+            _children.put(child._segment, child);
+        }
+
+        private void addEntry(Entry entry) {
+
+            if ( _entries == null )
+            {
+                _entries = new ArrayList<>(1);
+            }
+
+            _entries.add(entry);
+        }
+
+        private void collectEntries(List<Entry> entries) {
+
+            if ( _entries != null )
+            {
+                entries.addAll(_entries);
+            }
+
+            for ( Node child : getChildren() )
+            {
+                child.collectEntries(entries);
+            }
+        }
+    }
+}
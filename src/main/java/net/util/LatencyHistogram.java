@@ -0,0 +1,275 @@
+package net.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A fixed size, log bucketed (HDR style) histogram of lookup latencies in nano
+ * seconds. Each power of two range is split into 8 linear sub-buckets, so a
+ * reported percentile is within 12.5% of the recorded value:
+ *
+ * 0 - 7 ns     --> 1 ns buckets
+ * 8 - 15 ns    --> 1 ns buckets
+ * 16 - 31 ns   --> 2 ns buckets
+ * ...
+ * 2^n - 2^n+1  --> 2^(n-3) ns buckets
+ *
+ * Latencies of 2^41 ns (~36 minutes) or more go in the last bucket. Recording is
+ * lock and allocation free (one bucket increment plus a max update), so it
+ * can sit on the lookup path. Percentiles are approximate while lookups are
+ * being recorded.
+ *
+ * Hot keys are recorded from many threads at once, so the buckets are striped
+ * like a LongAdder: there is one set of buckets until an increment is contended,
+ * then threads spread over more sets (up to the number of processors), which
+ * reads add together. A histogram that is not contended keeps one set (~2.5KB).
+ * There is one histogram per looked up key (see StatsValue), so those are not
+ * striped and stay at one set each; only the per-pattern histograms are striped.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /** A power of two, at least the number of processors */
+    private static final int MAX_STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    /** One set of buckets per stripe, only grows (see grow()) */
+    private volatile AtomicLongArray[] _stripes = { new AtomicLongArray(BUCKET_COUNT) };
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0L);
+    /** MAX_STRIPES, or 1 for a histogram that is not striped */
+    private final int _maxStripes;
+
+    /** A striped histogram */
+    public LatencyHistogram() {
+        this(true);
+    }
+
+    /**
+     * @param striped false to always keep one set of buckets, contended records share it
+     */
+    public LatencyHistogram(boolean striped) {
+        _maxStripes = striped ? MAX_STRIPES : 1;
+    }
+
+    /**
+     * @param latency A lookup latency in nano seconds (negative values count as 0)
+     */
+    public void record(long latency) {
+        record(latency, 1);
+    }
+
+    /**
+     * @param latency A lookup latency in nano seconds (negative values count as 0)
+     * @param count How many lookups this latency represents (see ConfigStatistics.sample())
+     */
+    public void record(long latency, int count) {
+
+        long value = Math.max(0L, latency);
+        int bucket = bucketIndex(value);
+        AtomicLongArray[] stripes = _stripes;
+        AtomicLongArray buckets = stripes[stripeIndex(stripes.length)];
+
+        long current = buckets.get(bucket);
+        if ( !buckets.compareAndSet(bucket, current, current + count) )
+        {
+            // Another thread is on this stripe, later records spread over more stripes
+            if ( stripes.length < _maxStripes )
+            {
+                grow(stripes);
+            }
+
+            buckets.addAndGet(bucket, count);
+        }
+
+        _max.accumulate(value);
+    }
+
+    /**
+     * @return The number of recorded latencies
+     */
+    public long getCount() {
+
+        long count = 0;
+        for ( AtomicLongArray buckets : _stripes )
+        {
+            for ( int i = 0; i < BUCKET_COUNT; i++ )
+            {
+                count += buckets.get(i);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The largest recorded latency
+     */
+    public long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * The latency that 'percentile' percent of lookups were at or below. This is
+     * the upper bound of the bucket holding that rank, capped at the max.
+     *
+     * @param percentile 0.0 - 100.0
+     * @return The latency in nano seconds, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for ( AtomicLongArray buckets : _stripes )
+        {
+            for ( int i = 0; i < BUCKET_COUNT; i++ )
+            {
+                long count = buckets.get(i);
+                counts[i] += count;
+                total += count;
+            }
+        }
+
+        if ( total == 0 )
+        {
+            return 0;
+        }
+
+        double boundedPercentile = Math.min(100.0, Math.max(0.0, percentile));
+        long rank = Math.max(1L, (long) Math.ceil(boundedPercentile / 100.0 * total));
+        long cumulative = 0;
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            cumulative += counts[i];
+            if ( cumulative >= rank )
+            {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    public long getP50() {
+        return getValueAtPercentile(50.0);
+    }
+
+    public long getP90() {
+        return getValueAtPercentile(90.0);
+    }
+
+    public long getP99() {
+        return getValueAtPercentile(99.0);
+    }
+
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    public void clear() {
+
+        for ( AtomicLongArray buckets : _stripes )
+        {
+            for ( int i = 0; i < BUCKET_COUNT; i++ )
+            {
+                buckets.set(i, 0);
+            }
+        }
+
+        _max.reset();
+    }
+
+    /**
+     * @return The number of bucket sets, more than one once recording was contended
+     */
+    int getStripeCount() {
+        return _stripes.length;
+    }
+
+    /** Double the stripes, unless another thread already did or there are '_maxStripes' */
+    private synchronized void grow(AtomicLongArray[] stripes) {
+
+        if ( _stripes != stripes || stripes.length >= _maxStripes )
+        {
+            return;
+        }
+
+        AtomicLongArray[] grown = Arrays.copyOf(stripes, stripes.length * 2);
+        for ( int i = stripes.length; i < grown.length; i++ )
+        {
+            grown[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+
+        _stripes = grown;
+    }
+
+    /** Thread ids are sequential, so consecutive threads get different stripes */
+    private static int stripeIndex(int stripeCount) {
+        return (int) Thread.currentThread().getId() & (stripeCount - 1);
+    }
+
+    /** Values below SUB_BUCKETS are exact, otherwise the magnitude and the next 3 bits pick the bucket */
+    static int bucketIndex(long value) {
+
+        if ( value < SUB_BUCKETS )
+        {
+            return (int) value;
+        }
+
+        int magnitude = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_MAGNITUDE);
+        if ( magnitude == MAX_MAGNITUDE && value >= (1L << (MAX_MAGNITUDE + 1)) )
+        {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) ((value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** The largest value that maps to bucket 'index' */
+    static long bucketUpperBound(int index) {
+
+        if ( index < SUB_BUCKETS )
+        {
+            return index;
+        }
+
+        int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long bucketWidth = 1L << (magnitude - SUB_BUCKET_BITS);
+
+        return (1L << magnitude) + (subBucket + 1) * bucketWidth - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", p50=" + getP50() +
+                ", p90=" + getP90() +
+                ", p99=" + getP99() +
+                ", p999=" + getP999() +
+                ", max=" + getMax() +
+                '}';
+    }
+}
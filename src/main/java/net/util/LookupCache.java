@@ -0,0 +1,274 @@
+package net.util;
+
+import net.common.JigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded cache of pattern lookup results for ConfigLookup, keyed by
+ * (file name, pattern, reduce params). The results are read-only maps that
+ * can be shared by every caller.
+ *
+ * Each cache generation belongs to a single config version (see
+ * ConfigMap.getVersion()). When the config is reloaded or reverted, the first
+ * lookup with the new version swaps in an empty generation, so results from
+ * the previous config are never returned.
+ *
+ * The size is bounded by 'jig.lookup.cache.size' (default 1024, 0 disables it).
+ * When full, an arbitrary entry is evicted to make room.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class LookupCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LookupCache.class);
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final int _maxSize;
+    private final AtomicReference<Generation> _generation = new AtomicReference<>(new Generation(Long.MIN_VALUE));
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+
+    /** Uses 'jig.lookup.cache.size' for the maximum number of cached results */
+    public LookupCache() {
+        this(readMaxSize());
+    }
+
+    /**
+     * @param maxSize The maximum number of cached results (0 disables caching)
+     */
+    public LookupCache(int maxSize) {
+        _maxSize = Math.max(0, maxSize);
+    }
+
+    /**
+     * Retrieve a cached lookup result for this config version.
+     *
+     * @param version The config version the result must belong to
+     * @param fileName The config file name (null for all files)
+     * @param pattern The pattern applied to the keys
+     * @param params Any reduce params
+     * @return A read-only map of matches, or null if it is not cached
+     */
+    public Map<String, String> get(long version, String fileName, Pattern pattern, String... params) {
+
+        Generation generation = generationFor(version);
+        Map<String, String> matches = null;
+
+        if ( generation != null && _maxSize > 0 )
+        {
+            matches = generation._results.get(new CacheKey(fileName, pattern, params));
+        }
+
+        if ( matches == null )
+        {
+            _misses.incrementAndGet();
+        }
+        else
+        {
+            _hits.incrementAndGet();
+        }
+
+        return matches;
+    }
+
+    /**
+     * Cache a lookup result for this config version. If the config has
+     * already changed, then the result is returned but not cached.
+     *
+     * @param version The config version 'matches' was found with
+     * @param fileName The config file name (null for all files)
+     * @param pattern The pattern applied to the keys
+     * @param matches The lookup result
+     * @param params Any reduce params
+     * @return A read-only view of 'matches'
+     */
+    public Map<String, String> put(long version, String fileName, Pattern pattern, Map<String, String> matches,
+                                   String... params) {
+
+        Map<String, String> readOnlyMatches = Collections.unmodifiableMap(matches);
+        Generation generation = generationFor(version);
+
+        if ( generation == null || _maxSize == 0 )
+        {
+            return readOnlyMatches;
+        }
+
+        Map<CacheKey, Map<String, String>> results = generation._results;
+        if ( results.size() >= _maxSize )
+        {
+            evictOne(results);
+        }
+
+        Map<String, String> existing = results.putIfAbsent(new CacheKey(fileName, pattern, params), readOnlyMatches);
+        return existing != null ? existing : readOnlyMatches;
+    }
+
+    /** Remove every cached result */
+    public void clear() {
+
+        Generation generation = _generation.get();
+        _generation.compareAndSet(generation, new Generation(generation._version));
+    }
+
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    public long getEvictionCount() {
+        return _evictions.get();
+    }
+
+    /** @return The number of cached results for the current config version */
+    public int size() {
+        return _generation.get()._results.size();
+    }
+
+    public int getMaxSize() {
+        return _maxSize;
+    }
+
+    /** Newer config versions replace the current generation, older versions are not cached */
+    private Generation generationFor(long version) {
+
+        Generation generation = _generation.get();
+        while ( generation._version < version )
+        {
+            Generation next = new Generation(version);
+            if ( _generation.compareAndSet(generation, next) )
+            {
+                return next;
+            }
+
+            generation = _generation.get();
+        }
+
+        return generation._version == version ? generation : null;
+    }
+
+    private void evictOne(Map<CacheKey, Map<String, String>> results) {
+
+        Iterator<CacheKey> keys = results.keySet().iterator();
+        if ( keys.hasNext() )
+        {
+            keys.next();
+            keys.remove();
+            _evictions.incrementAndGet();
+        }
+    }
+
+    private static int readMaxSize() {
+
+        String maxSize = System.getProperty(JigProperties.JIG_LOOKUP_CACHE_SIZE.getName());
+        if ( maxSize == null )
+        {
+            return DEFAULT_MAX_SIZE;
+        }
+
+        try
+        {
+            return Integer.parseInt(maxSize.trim());
+        }
+        catch (NumberFormatException nfe)
+        {
+            LOG.warn("Invalid " + JigProperties.JIG_LOOKUP_CACHE_SIZE.getName() + ": '" + maxSize + "', Using "
+                     + DEFAULT_MAX_SIZE);
+            return DEFAULT_MAX_SIZE;
+        }
+    }
+
+    /** The cached results for one config version */
+    private static final class Generation {
+
+        private final long _version;
+        private final Map<CacheKey, Map<String, String>> _results = new ConcurrentHashMap<>();
+
+        private Generation(long version) {
+            _version = version;
+        }
+    }
+
+    /** (file name, pattern text and flags, params) */
+    private static final class CacheKey {
+
+        private final String _fileName;
+        private final String _pattern;
+        private final int _flags;
+        private final String[] _params;
+        private final int _hashCode;
+
+        private CacheKey(String fileName, Pattern pattern, String[] params) {
+
+            _fileName = fileName;
+            _pattern = pattern.pattern();
+            _flags = pattern.flags();
+            _params = params == null ? null : params.clone();
+
+            int result = _fileName != null ? _fileName.hashCode() : 0;
+            result = 31 * result + _pattern.hashCode();
+            result = 31 * result + _flags;
+            result = 31 * result + Arrays.hashCode(_params);
+            _hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if ( this == o )
+            {
+                return true;
+            }
+
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            CacheKey that = (CacheKey) o;
+
+            if ( _flags != that._flags || !_pattern.equals(that._pattern) )
+            {
+                return false;
+            }
+
+            if ( _fileName != null ? !_fileName.equals(that._fileName) : that._fileName != null )
+            {
+                return false;
+            }
+
+            return Arrays.equals(_params, that._params);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package net.util;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The global index ('jig.storage=offheap' or 'mmap') over the off-heap file maps,
+ * without a second copy of their entries. Each slot of an off-heap hash index points
+ * at the entry in the file map that wins for that key (the same precedence as
+ * HashMap.putAll() in order), so the keys and values are only stored once, in the
+ * file maps' arenas.
+ *
+ * Index slots: key hash (int), file map (int), entry offset + 1 (int), 0 is an empty
+ * slot. File maps that are not off-heap are copied off-heap for the index.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class OffHeapConfigIndex
+    extends AbstractMap<String, String> {
+
+    private static final int SLOT_BYTES = 12;
+
+    private final OffHeapConfigMap[] _maps;
+    /** The bytes of the maps that were copied off-heap for this index */
+    private final long _copiedBytes;
+    private final ByteBuffer _index;
+    private final int _mask;
+    private int _size;
+
+    private OffHeapConfigIndex(OffHeapConfigMap[] maps, long copiedBytes, int capacity, OffHeapConfigMap.Storage storage) {
+
+        _maps = maps;
+        _copiedBytes = copiedBytes;
+        _index = OffHeapConfigMap.allocate(capacity * SLOT_BYTES, storage);
+        _mask = capacity - 1;
+    }
+
+    /**
+     * @param configMaps The file maps in precedence order (null maps are skipped)
+     * @param storage OFFHEAP or MMAP
+     * @return A read-only index over 'configMaps'
+     * @throws IllegalArgumentException If the index (or a copied map) needs more than 2GB
+     */
+    public static OffHeapConfigIndex build(Collection<Map<String, String>> configMaps, OffHeapConfigMap.Storage storage) {
+
+        List<OffHeapConfigMap> maps = new ArrayList<>(configMaps.size());
+        long copiedBytes = 0;
+        long entryCount = 0;
+
+        for ( Map<String, String> configMap : configMaps )
+        {
+            if ( configMap == null )
+            {
+                continue;
+            }
+
+            OffHeapConfigMap offHeapMap;
+            if ( configMap instanceof OffHeapConfigMap )
+            {
+                offHeapMap = (OffHeapConfigMap) configMap;
+            }
+            else
+            {
+                offHeapMap = OffHeapConfigMap.merge(Collections.singletonList(configMap), storage);
+                copiedBytes += offHeapMap.getOffHeapBytes();
+            }
+
+            maps.add(offHeapMap);
+            entryCount += offHeapMap.size();
+        }
+
+        int capacity = OffHeapConfigMap.findCapacity(entryCount, SLOT_BYTES);
+        OffHeapConfigIndex index = new OffHeapConfigIndex(maps.toArray(new OffHeapConfigMap[maps.size()]), copiedBytes,
+                                                          capacity, storage);
+
+        // Highest precedence first, so a key that is already indexed wins
+        for ( int map = index._maps.length - 1; map >= 0; map-- )
+        {
+            OffHeapConfigMap offHeapMap = index._maps[map];
+            for ( int slot = 0; slot < offHeapMap.getSlotCount(); slot++ )
+            {
+                int offset = offHeapMap.getSlotEntry(slot);
+                if ( offset >= 0 )
+                {
+                    index.add(offHeapMap.getSlotHash(slot), map, offset);
+                }
+            }
+        }
+
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && find((String) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+
+        if ( !(key instanceof String) )
+        {
+            return null;
+        }
+
+        int slot = find((String) key);
+        return slot < 0 ? null : _maps[mapAt(slot)].valueAt(offsetAt(slot));
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * @return The bytes used outside of the heap by the index (and maps copied for it)
+     */
+    public long getOffHeapBytes() {
+        return _index.capacity() + _copiedBytes;
+    }
+
+    /** Only while building, an entry with the same key as an indexed one is skipped */
+    private void add(int hash, int map, int offset) {
+
+        int slot = hash & _mask;
+        while ( _index.getInt(slot * SLOT_BYTES + 8) != 0 )
+        {
+            if ( _index.getInt(slot * SLOT_BYTES) == hash && _maps[map].sameKey(offset, _maps[mapAt(slot)], offsetAt(slot)) )
+            {
+                return;
+            }
+
+            slot = (slot + 1) & _mask;
+        }
+
+        _index.putInt(slot * SLOT_BYTES, hash);
+        _index.putInt(slot * SLOT_BYTES + 4, map);
+        _index.putInt(slot * SLOT_BYTES + 8, offset + 1);
+        _size++;
+    }
+
+    /** @return The slot for 'key', otherwise -1 */
+    private int find(String key) {
+
+        int hash = OffHeapConfigMap.spread(key.hashCode());
+        int slot = hash & _mask;
+
+        while ( _index.getInt(slot * SLOT_BYTES + 8) != 0 )
+        {
+            if ( _index.getInt(slot * SLOT_BYTES) == hash && _maps[mapAt(slot)].keyEquals(offsetAt(slot), key) )
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & _mask;
+        }
+
+        return -1;
+    }
+
+    private int mapAt(int slot) {
+        return _index.getInt(slot * SLOT_BYTES + 4);
+    }
+
+    private int offsetAt(int slot) {
+        return _index.getInt(slot * SLOT_BYTES + 8) - 1;
+    }
+
+    /** Decodes each indexed entry in slot order */
+    private class EntryIterator
+        implements Iterator<Entry<String, String>> {
+
+        private int _slot = -1;
+        private int _returned;
+
+        @Override
+        public boolean hasNext() {
+            return _returned < _size;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+
+            if ( _returned >= _size )
+            {
+                throw new NoSuchElementException();
+            }
+
+            do
+            {
+                _slot++;
+            }
+            while ( _index.getInt(_slot * SLOT_BYTES + 8) == 0 );
+
+            _returned++;
+            OffHeapConfigMap map = _maps[mapAt(_slot)];
+            int offset = offsetAt(_slot);
+            return new SimpleImmutableEntry<>(map.keyAt(offset), map.valueAt(offset));
+        }
+    }
+}
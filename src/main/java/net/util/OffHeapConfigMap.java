@@ -0,0 +1,515 @@
+package net.util;
+
+import net.common.JigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only config map stored outside of the Java heap, for very large flattened
+ * configs ('jig.storage=offheap' or 'mmap'). Keys and values are UTF-8 in one byte
+ * arena (a direct or memory-mapped ByteBuffer) with an open addressing hash index
+ * in a second buffer, so millions of entries cost two objects on the heap instead
+ * of a HashMap entry and two Strings each.
+ *
+ * A get() compares ASCII keys in place and only decodes the value it returns.
+ * Iterating decodes every entry, so pattern lookups over these maps cost more than
+ * over heap maps (they do not get a KeyTrie, see ConfigMap.buildKeyTries()).
+ *
+ * Arena layout, one entry after another: key length (int), key bytes, value length
+ * (int, -1 for null), value bytes. Index slots: key hash (int), entry offset + 1 (int),
+ * 0 is an empty slot. One arena holds up to 2GB.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class OffHeapConfigMap
+    extends AbstractMap<String, String> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapConfigMap.class);
+    private static final int NULL_LENGTH = -1;
+    private static final int SLOT_BYTES = 8;
+
+    /** Where config maps are stored, see 'jig.storage' */
+    public enum Storage {
+        /** HashMaps (the default) */
+        HEAP,
+        /** Direct ByteBuffers */
+        OFFHEAP,
+        /** ByteBuffers mapped from temporary files, the OS pages them in and out */
+        MMAP,
+        /** Heap maps with keys that share prefix segments (see CompactConfigMap) */
+        COMPACT
+    }
+
+    private final ByteBuffer _arena;
+    private final ByteBuffer _index;
+    private final int _mask;
+    private int _arenaSize;
+    private int _size;
+
+    private OffHeapConfigMap(int arenaBytes, long entryCount, Storage storage) {
+
+        int capacity = findCapacity(entryCount, SLOT_BYTES);
+        _arena = allocate(arenaBytes, storage);
+        _index = allocate(capacity * SLOT_BYTES, storage);
+        _mask = capacity - 1;
+    }
+
+    /**
+     * @return The 'jig.storage' setting, HEAP if it is not set or unknown
+     */
+    public static Storage findStorage() {
+
+        String storage = System.getProperty(JigProperties.JIG_STORAGE.getName());
+        if ( storage == null || storage.trim().isEmpty() )
+        {
+            return Storage.HEAP;
+        }
+
+        try
+        {
+            return Storage.valueOf(storage.trim().toUpperCase());
+        }
+        catch ( IllegalArgumentException iae )
+        {
+            LOG.warn("Invalid " + JigProperties.JIG_STORAGE.getName() + ": '" + storage + "', Using heap");
+            return Storage.HEAP;
+        }
+    }
+
+    /**
+     * A map too large for one off-heap arena (2GB) stays on the heap.
+     *
+     * @param configMap The key-values for one config file
+     * @param storage Where to store them
+     * @return A read-only view of 'configMap' for HEAP, otherwise a read-only off-heap (or compact) copy
+     */
+    public static Map<String, String> store(Map<String, String> configMap, Storage storage) {
+
+        if ( configMap == null )
+        {
+            return null;
+        }
+
+        if ( storage == Storage.HEAP )
+        {
+            return Collections.unmodifiableMap(configMap);
+        }
+
+        if ( storage == Storage.COMPACT )
+        {
+            return CompactConfigMap.copyOf(configMap);
+        }
+
+        try
+        {
+            return merge(Collections.singletonList(configMap), storage);
+        }
+        catch ( IllegalArgumentException iae )
+        {
+            LOG.warn("Config Map Too Large For Off-Heap Storage, Keeping It On The Heap: " + iae.getMessage());
+            return Collections.unmodifiableMap(configMap);
+        }
+    }
+
+    /**
+     * Copy several maps into one, a key in a later map replaces the same key in an
+     * earlier map (the same precedence as HashMap.putAll() in order).
+     * The arena is sized for every entry, so a key in several maps is counted once
+     * per map. The global index does not copy the file maps (see OffHeapConfigIndex).
+     *
+     * @param configMaps The maps in precedence order (null maps are skipped)
+     * @param storage OFFHEAP or MMAP
+     * @return A read-only off-heap map
+     * @throws IllegalArgumentException If the maps need more than 2GB
+     */
+    public static OffHeapConfigMap merge(Collection<Map<String, String>> configMaps, Storage storage) {
+
+        List<Map<String, String>> maps = new ArrayList<>(configMaps);
+        long arenaBytes = 0;
+        long entryCount = 0;
+
+        for ( Map<String, String> configMap : maps )
+        {
+            if ( configMap == null )
+            {
+                continue;
+            }
+
+            for ( Map.Entry<String, String> entry : configMap.entrySet() )
+            {
+                arenaBytes += 8L + utf8Length(entry.getKey()) + utf8Length(entry.getValue());
+            }
+
+            entryCount += configMap.size();
+        }
+
+        if ( arenaBytes > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException("Config Maps Need " + arenaBytes + " Bytes, One Off-Heap Map Holds 2GB");
+        }
+
+        // Highest precedence first, so a key that is already stored wins
+        OffHeapConfigMap offHeapMap = new OffHeapConfigMap((int) arenaBytes, entryCount, storage);
+        for ( int i = maps.size() - 1; i >= 0; i-- )
+        {
+            Map<String, String> configMap = maps.get(i);
+            if ( configMap == null )
+            {
+                continue;
+            }
+
+            for ( Map.Entry<String, String> entry : configMap.entrySet() )
+            {
+                if ( entry.getKey() != null )
+                {
+                    offHeapMap.add(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        return offHeapMap;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && find((String) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+
+        if ( !(key instanceof String) )
+        {
+            return null;
+        }
+
+        int offset = find((String) key);
+        if ( offset < 0 )
+        {
+            return null;
+        }
+
+        return valueAt(offset);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * @return The bytes used outside of the heap (arena and index capacity)
+     */
+    public long getOffHeapBytes() {
+        return (long) _arena.capacity() + _index.capacity();
+    }
+
+    /** @return The number of index slots, see getSlotHash() and getSlotEntry() */
+    int getSlotCount() {
+        return _mask + 1;
+    }
+
+    /** @return The spread key hash in 'slot' */
+    int getSlotHash(int slot) {
+        return _index.getInt(slot * SLOT_BYTES);
+    }
+
+    /** @return The arena offset of the entry in 'slot', -1 for an empty slot */
+    int getSlotEntry(int slot) {
+        return _index.getInt(slot * SLOT_BYTES + 4) - 1;
+    }
+
+    /** @return The key of the entry at 'offset' */
+    String keyAt(int offset) {
+        return decode(offset);
+    }
+
+    /** @return The value of the entry at 'offset' */
+    String valueAt(int offset) {
+        return decode(offset + 4 + _arena.getInt(offset));
+    }
+
+    /** @return true if the entry at 'offset' and the entry at 'otherOffset' in 'other' have the same key bytes */
+    boolean sameKey(int offset, OffHeapConfigMap other, int otherOffset) {
+
+        int length = _arena.getInt(offset);
+        if ( length != other._arena.getInt(otherOffset) )
+        {
+            return false;
+        }
+
+        for ( int i = 4; i < length + 4; i++ )
+        {
+            if ( _arena.get(offset + i) != other._arena.get(otherOffset + i) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /** Only while building, 'key' must not be stored yet for it to be added */
+    private void add(String key, String value) {
+
+        int hash = spread(key.hashCode());
+        int slot = hash & _mask;
+
+        while ( _index.getInt(slot * SLOT_BYTES + 4) != 0 )
+        {
+            int offset = _index.getInt(slot * SLOT_BYTES + 4) - 1;
+            if ( _index.getInt(slot * SLOT_BYTES) == hash && keyEquals(offset, key) )
+            {
+                return;
+            }
+
+            slot = (slot + 1) & _mask;
+        }
+
+        int offset = _arenaSize;
+        _arenaSize = put(put(offset, key), value);
+        _index.putInt(slot * SLOT_BYTES, hash);
+        _index.putInt(slot * SLOT_BYTES + 4, offset + 1);
+        _size++;
+    }
+
+    /** @return The arena offset of the entry for 'key', otherwise -1 */
+    int find(String key) {
+
+        int hash = spread(key.hashCode());
+        int slot = hash & _mask;
+        int entry;
+
+        while ( (entry = _index.getInt(slot * SLOT_BYTES + 4)) != 0 )
+        {
+            if ( _index.getInt(slot * SLOT_BYTES) == hash && keyEquals(entry - 1, key) )
+            {
+                return entry - 1;
+            }
+
+            slot = (slot + 1) & _mask;
+        }
+
+        return -1;
+    }
+
+    /** Compare ASCII keys byte by char without decoding, decode anything else */
+    boolean keyEquals(int offset, String key) {
+
+        int length = _arena.getInt(offset);
+        if ( length < key.length() )
+        {
+            return false;
+        }
+
+        int start = offset + 4;
+        for ( int i = 0; i < length; i++ )
+        {
+            byte b = _arena.get(start + i);
+            if ( b < 0 )
+            {
+                return key.equals(decode(offset));
+            }
+
+            if ( i >= key.length() || key.charAt(i) != b )
+            {
+                return false;
+            }
+        }
+
+        return length == key.length();
+    }
+
+    /** @return The text at 'offset' (its length), null for NULL_LENGTH */
+    private String decode(int offset) {
+
+        int length = _arena.getInt(offset);
+        if ( length == NULL_LENGTH )
+        {
+            return null;
+        }
+
+        // A duplicate for a bulk get, the shared buffer position is never moved
+        byte[] bytes = new byte[length];
+        ByteBuffer view = _arena.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @return The offset after 'text' */
+    private int put(int offset, String text) {
+
+        if ( text == null )
+        {
+            _arena.putInt(offset, NULL_LENGTH);
+            return offset + 4;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        _arena.putInt(offset, bytes.length);
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            _arena.put(offset + 4 + i, bytes[i]);
+        }
+
+        return offset + 4 + bytes.length;
+    }
+
+    /**
+     * @param entryCount The entries to index
+     * @param slotBytes The bytes of one index slot
+     * @return A power of two slot count, at most half full
+     * @throws IllegalArgumentException If the slots need more than 2GB
+     */
+    static int findCapacity(long entryCount, int slotBytes) {
+
+        long capacity = Long.highestOneBit(Math.max(entryCount, 1L) * 2) << 1;
+        if ( capacity * slotBytes > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException(entryCount + " Config Entries Need " + capacity * slotBytes
+                                               + " Index Bytes, One Off-Heap Index Holds 2GB");
+        }
+
+        return (int) capacity;
+    }
+
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int utf8Length(String text) {
+
+        if ( text == null )
+        {
+            return 0;
+        }
+
+        int length = 0;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt(i);
+            if ( c < 0x80 )
+            {
+                length++;
+            }
+            else if ( c < 0x800 )
+            {
+                length += 2;
+            }
+            else if ( Character.isHighSurrogate(c) )
+            {
+                length += 4;
+                i++;
+            }
+            else
+            {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    static ByteBuffer allocate(int bytes, Storage storage) {
+
+        if ( storage != Storage.MMAP )
+        {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+
+        try
+        {
+            // The mapping stays valid after the channel closes, the file is deleted then
+            File file = File.createTempFile("jig-config", ".map");
+            try ( FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                                                         StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE) )
+            {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            }
+        }
+        catch ( IOException ioe )
+        {
+            LOG.warn("Cannot Map A Config File, Using A Direct Buffer", ioe);
+            return ByteBuffer.allocateDirect(bytes);
+        }
+    }
+
+    /** Decodes each entry in arena order */
+    private class EntryIterator
+        implements Iterator<Entry<String, String>> {
+
+        private int _offset;
+        private int _returned;
+
+        @Override
+        public boolean hasNext() {
+            return _returned < _size;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+
+            if ( _returned >= _size )
+            {
+                throw new NoSuchElementException();
+            }
+
+            String key = decode(_offset);
+            int valueOffset = _offset + 4 + _arena.getInt(_offset);
+            String value = decode(valueOffset);
+            int valueLength = _arena.getInt(valueOffset);
+
+            _offset = valueOffset + 4 + (valueLength == NULL_LENGTH ? 0 : valueLength);
+            _returned++;
+            return new SimpleImmutableEntry<>(key, value);
+        }
+    }
+}
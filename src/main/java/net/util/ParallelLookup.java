@@ -0,0 +1,167 @@
+package net.util;
+
+import net.common.JigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in parallel pattern matching for large configs. When a pattern lookup has
+ * at least 'jig.lookup.parallel.threshold' candidate keys (across all files), the
+ * keys are split into chunks (per file, and within large files) that are matched
+ * on a ForkJoinPool. Each chunk builds its own map and the chunks are merged in
+ * file order afterwards, so there is no contention and file precedence is kept.
+ *
+ * The common ForkJoinPool is used unless 'jig.lookup.parallel.threads' asks for
+ * a dedicated pool. The threshold can be changed at runtime (see setThreshold()).
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class ParallelLookup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelLookup.class);
+    /** Smaller chunks cost more to schedule than they save */
+    public static final int MIN_CHUNK_SIZE = 256;
+    /** Chunks per pool thread, so uneven chunks still balance */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool _pool;
+    private volatile int _threshold;
+
+    /** Uses 'jig.lookup.parallel.threshold' (default 0, disabled) and 'jig.lookup.parallel.threads' */
+    public ParallelLookup() {
+        this(readInt(JigProperties.JIG_LOOKUP_PARALLEL_THRESHOLD, 0), readInt(JigProperties.JIG_LOOKUP_PARALLEL_THREADS, 0));
+    }
+
+    /**
+     * @param threshold The minimum number of candidate keys for parallel matching, 0 disables it
+     * @param threads A dedicated pool size, 0 for the common ForkJoinPool
+     */
+    public ParallelLookup(int threshold, int threads) {
+
+        _threshold = Math.max(0, threshold);
+        _pool = threads > 0 ? new ForkJoinPool(threads, new LookupThreadFactory(), null, false)
+                            : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @param keyCount The number of keys a pattern will be applied to
+     * @return true if matching 'keyCount' keys should be split across threads
+     */
+    public boolean isParallel(int keyCount) {
+
+        int threshold = _threshold;
+        return threshold > 0 && keyCount >= threshold && _pool.getParallelism() > 1;
+    }
+
+    /**
+     * @param keyCount The number of keys a pattern will be applied to
+     * @return The number of keys per chunk
+     */
+    public int getChunkSize(int keyCount) {
+
+        int chunks = _pool.getParallelism() * CHUNKS_PER_THREAD;
+        return Math.max(MIN_CHUNK_SIZE, (keyCount + chunks - 1) / chunks);
+    }
+
+    /**
+     * Run the tasks on the pool and wait for all of them.
+     *
+     * @param tasks Independent tasks
+     * @return The results in 'tasks' order
+     * @throws IllegalStateException If a task failed or the caller was interrupted
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+
+        List<T> results = new ArrayList<>(tasks.size());
+        try
+        {
+            for ( Future<T> future : _pool.invokeAll(tasks) )
+            {
+                results.add(future.get());
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted During A Parallel Lookup", ie);
+        }
+        catch ( ExecutionException ee )
+        {
+            throw new IllegalStateException("Parallel Lookup Failed", ee.getCause());
+        }
+
+        return results;
+    }
+
+    public int getThreshold() {
+        return _threshold;
+    }
+
+    /**
+     * @param threshold The minimum number of candidate keys for parallel matching, 0 disables it
+     */
+    public void setThreshold(int threshold) {
+        _threshold = Math.max(0, threshold);
+    }
+
+    public int getParallelism() {
+        return _pool.getParallelism();
+    }
+
+    private static int readInt(JigProperties property, int defaultValue) {
+
+        String value = System.getProperty(property.getName());
+        if ( value == null )
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException nfe)
+        {
+            LOG.warn("Invalid " + property.getName() + ": '" + value + "', Using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /** Daemon threads, so a dedicated pool never keeps the JVM running */
+    private static class LookupThreadFactory
+        implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("jig-lookup-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
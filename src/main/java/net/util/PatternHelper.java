@@ -25,6 +25,9 @@ import java.util.regex.Pattern;
  */
 public class PatternHelper {
 
+    /** Regex characters that end a literal prefix (quantifiers are handled separately) */
+    private static final String REGEX_CHARACTERS = ".[](){}^$|";
+
     /**
      * Creates a regex pattern with/without preceding ".*" for the first value
      * in 'text' and appends a ".*" between each value within 'text'.
@@ -119,4 +122,112 @@ public class PatternHelper {
         String patternText = pattern.pattern();
         return !patternText.contains("*") && !patternText.contains("+") && !patternText.contains("\\");
     }
+
+    /**
+     * Find the literal text that every key matching 'pattern' must contain. This
+     * is the run of plain characters at the start of the pattern (after any "^"
+     * and leading ".*" wildcards) up to the first regex construct. For example:
+     *
+     * "stocks\\.stock.*" --> "stocks.stock"
+     * ".*cities.*"        --> "cities"
+     * "stocks.stock.*"    --> "stocks" (an unescaped '.' matches any character)
+     * "foo|bar"           --> ""
+     *
+     * Keys are lower cased before matching, so the prefix is lower cased for
+     * case insensitive patterns. See KeyTrie.find().
+     *
+     * @param pattern A pattern to apply across a Map key set
+     * @return The required literal text, "" if there is none, or null if the pattern cannot be analyzed
+     */
+    public static String findLiteralPrefix(Pattern pattern) {
+
+        if ( pattern == null || pattern.pattern() == null || !hasSupportedFlags(pattern) )
+        {
+            return null;
+        }
+
+        String patternText = pattern.pattern();
+        if ( patternText.indexOf('|') > -1 )
+        {
+            return "";
+        }
+
+        StringBuilder literal = new StringBuilder();
+        int i = skipLeadingAnchorAndWildcards(patternText);
+
+        while ( i < patternText.length() )
+        {
+            char c = patternText.charAt(i);
+
+            if ( c == '\\' )
+            {
+                if ( i + 1 >= patternText.length() || Character.isLetterOrDigit(patternText.charAt(i + 1)) )
+                {
+                    break;
+                }
+
+                literal.append(patternText.charAt(i + 1));
+                i += 2;
+            }
+            else if ( isQuantifier(c) )
+            {
+                // The previous character is optional or repeated
+                literal.setLength(Math.max(0, literal.length() - 1));
+                break;
+            }
+            else if ( REGEX_CHARACTERS.indexOf(c) > -1 )
+            {
+                break;
+            }
+            else
+            {
+                literal.append(c);
+                i++;
+            }
+        }
+
+        String prefix = literal.toString();
+        return (pattern.flags() & Pattern.CASE_INSENSITIVE) != 0 ? prefix.toLowerCase() : prefix;
+    }
+
+    /**
+     * A pattern is anchored when it must match from the start of a key, which
+     * lets KeyTrie start from its root instead of searching every segment. Since
+     * keys are otherwise matched with find() or matches(".*..."), that is only
+     * the case for a leading "^" (and not for patterns that use String.contains()).
+     *
+     * @param pattern A pattern to apply across a Map key set
+     * @return true if 'pattern' starts with "^" and is not followed by a wildcard
+     */
+    public static boolean isAnchored(Pattern pattern) {
+
+        if ( pattern == null || pattern.pattern() == null || useContains(pattern) )
+        {
+            return false;
+        }
+
+        String patternText = pattern.pattern();
+        return patternText.startsWith("^") && !patternText.startsWith("^.*");
+    }
+
+    private static boolean isQuantifier(char c) {
+        return c == '?' || c == '*' || c == '+' || c == '{';
+    }
+
+    /** Only flags that do not change which literal text is required */
+    private static boolean hasSupportedFlags(Pattern pattern) {
+        return (pattern.flags() & ~(Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL)) == 0;
+    }
+
+    /** Skip any "^" and leading ".*" wildcards */
+    private static int skipLeadingAnchorAndWildcards(String patternText) {
+
+        int i = patternText.startsWith("^") ? 1 : 0;
+        while ( patternText.startsWith(".*", i) )
+        {
+            i += 2;
+        }
+
+        return i;
+    }
 }
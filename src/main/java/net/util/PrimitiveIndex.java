@@ -0,0 +1,328 @@
+package net.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The config values that are numbers or booleans, parsed once when the config
+ * is loaded and kept in primitive arrays. A lookup is an open addressing probe
+ * on the key's (cached) String hash code, so reading a number does not allocate
+ * or box anything.
+ *
+ * Whole numbers are available as a long (and as an int when they fit) and as a
+ * double. Decimal values (digits, sign, '.', exponent, "NaN", "Infinity") are
+ * doubles. Booleans are "true" or "false" in any case. Anything else is not
+ * indexed and returns the caller's default value.
+ *
+ * The index is built once per config load and is read-only afterwards, so it
+ * is safe to share across threads.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class PrimitiveIndex {
+
+    public static final PrimitiveIndex EMPTY = new PrimitiveIndex(Collections.<String, String>emptyMap());
+
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 8;
+
+    private final String[] _keys;
+    /** The long value, or 1/0 for a boolean */
+    private final long[] _longs;
+    private final double[] _doubles;
+    private final byte[] _types;
+    private final int _mask;
+    private final int _size;
+
+    /**
+     * @param keyValues Every key-value to check (see ConfigMap.buildGlobalIndex())
+     */
+    public PrimitiveIndex(Map<String, String> keyValues) {
+
+        String[] keys = new String[keyValues.size()];
+        long[] longs = new long[keys.length];
+        double[] doubles = new double[keys.length];
+        byte[] types = new byte[keys.length];
+        int count = 0;
+
+        for ( Map.Entry<String, String> entry : keyValues.entrySet() )
+        {
+            String value = entry.getValue();
+            if ( entry.getKey() == null || value == null || value.isEmpty() )
+            {
+                continue;
+            }
+
+            byte type = parse(value, longs, doubles, count);
+            if ( type != 0 )
+            {
+                keys[count] = entry.getKey();
+                types[count] = type;
+                count++;
+            }
+        }
+
+        // At most half full, so a probe is short and always reaches an empty slot
+        int capacity = Integer.highestOneBit(Math.max(count, 1) * 2) << 1;
+        _keys = new String[capacity];
+        _longs = new long[capacity];
+        _doubles = new double[capacity];
+        _types = new byte[capacity];
+        _mask = capacity - 1;
+        _size = count;
+
+        for ( int i = 0; i < count; i++ )
+        {
+            int slot = spread(keys[i].hashCode()) & _mask;
+            while ( _keys[slot] != null )
+            {
+                slot = (slot + 1) & _mask;
+            }
+
+            _keys[slot] = keys[i];
+            _longs[slot] = longs[i];
+            _doubles[slot] = doubles[i];
+            _types[slot] = types[i];
+        }
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not an int
+     * @return The int value for 'key', otherwise 'defaultValue'
+     */
+    public int getInt(String key, int defaultValue) {
+
+        int slot = find(key);
+        return slot >= 0 && (_types[slot] & INT) != 0 ? (int) _longs[slot] : defaultValue;
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not a long
+     * @return The long value for 'key', otherwise 'defaultValue'
+     */
+    public long getLong(String key, long defaultValue) {
+
+        int slot = find(key);
+        return slot >= 0 && (_types[slot] & LONG) != 0 ? _longs[slot] : defaultValue;
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not a number
+     * @return The double value for 'key', otherwise 'defaultValue'
+     */
+    public double getDouble(String key, double defaultValue) {
+
+        int slot = find(key);
+        return slot >= 0 && (_types[slot] & DOUBLE) != 0 ? _doubles[slot] : defaultValue;
+    }
+
+    /**
+     * @param key An exact key name
+     * @param defaultValue Returned if 'key' does not exist or is not "true" or "false"
+     * @return The boolean value for 'key', otherwise 'defaultValue'
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+
+        int slot = find(key);
+        return slot >= 0 && (_types[slot] & BOOLEAN) != 0 ? _longs[slot] != 0 : defaultValue;
+    }
+
+    /**
+     * @return The number of indexed keys
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * The same parsing as the index, on each call, for config maps that are too
+     * large to index (see ConfigSnapshot).
+     *
+     * @param value A config value, or null
+     * @param defaultValue Returned if 'value' is not an int
+     * @return The int value of 'value', otherwise 'defaultValue'
+     */
+    public static int parseInt(String value, int defaultValue) {
+
+        long longValue = parseLong(value, Long.MIN_VALUE);
+        return longValue == (int) longValue ? (int) longValue : defaultValue;
+    }
+
+    public static long parseLong(String value, long defaultValue) {
+
+        if ( value == null || value.isEmpty() || !isWholeNumber(value) )
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Long.parseLong(value);
+        }
+        catch ( NumberFormatException nfe )
+        {
+            return defaultValue;
+        }
+    }
+
+    public static double parseDouble(String value, double defaultValue) {
+
+        if ( value == null || value.isEmpty() || !(isWholeNumber(value) || isDecimalNumber(value)) )
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch ( NumberFormatException nfe )
+        {
+            return defaultValue;
+        }
+    }
+
+    public static boolean parseBoolean(String value, boolean defaultValue) {
+
+        if ( "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value) )
+        {
+            return "true".equalsIgnoreCase(value);
+        }
+
+        return defaultValue;
+    }
+
+    private int find(String key) {
+
+        if ( key == null )
+        {
+            return -1;
+        }
+
+        int slot = spread(key.hashCode()) & _mask;
+        String slotKey;
+        while ( (slotKey = _keys[slot]) != null )
+        {
+            if ( slotKey == key || slotKey.equals(key) )
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & _mask;
+        }
+
+        return -1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Store the primitive values of 'value' at 'index'.
+     *
+     * @return The types that 'value' has, 0 if none
+     */
+    private static byte parse(String value, long[] longs, double[] doubles, int index) {
+
+        if ( "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value) )
+        {
+            longs[index] = "true".equalsIgnoreCase(value) ? 1 : 0;
+            return BOOLEAN;
+        }
+
+        if ( isWholeNumber(value) )
+        {
+            try
+            {
+                long longValue = Long.parseLong(value);
+                longs[index] = longValue;
+                doubles[index] = Double.parseDouble(value);
+                return (byte) (LONG | DOUBLE | (longValue == (int) longValue ? INT : 0));
+            }
+            catch ( NumberFormatException nfe )
+            {
+                // Too big for a long, but still a double
+            }
+        }
+
+        if ( isDecimalNumber(value) )
+        {
+            try
+            {
+                doubles[index] = Double.parseDouble(value);
+                return DOUBLE;
+            }
+            catch ( NumberFormatException nfe )
+            {
+                return 0;
+            }
+        }
+
+        return 0;
+    }
+
+    /** An optional sign followed by digits, checked before parsing to avoid exceptions */
+    private static boolean isWholeNumber(String value) {
+
+        int start = value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0;
+        if ( start == value.length() )
+        {
+            return false;
+        }
+
+        for ( int i = start; i < value.length(); i++ )
+        {
+            char c = value.charAt(i);
+            if ( c < '0' || c > '9' )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDecimalNumber(String value) {
+
+        String unsigned = value.charAt(0) == '-' || value.charAt(0) == '+' ? value.substring(1) : value;
+        if ( "NaN".equals(unsigned) || "Infinity".equals(unsigned) )
+        {
+            return true;
+        }
+
+        boolean digit = false;
+        for ( int i = 0; i < unsigned.length(); i++ )
+        {
+            char c = unsigned.charAt(i);
+            if ( c >= '0' && c <= '9' )
+            {
+                digit = true;
+            }
+            else if ( c != '.' && c != 'e' && c != 'E' && c != '-' && c != '+' )
+            {
+                return false;
+            }
+        }
+
+        return digit;
+    }
+}
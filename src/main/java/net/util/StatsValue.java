@@ -1,8 +1,9 @@
 package net.util;
 
-import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Tracking the following stats each time a Key is accessed:
@@ -11,10 +12,13 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * 3) average latency
  * 4) last accessed
  * 5) associated patterns
+ * 6) latency percentiles (see LatencyHistogram)
+ * 7) batch lookup count (see ConfigStatistics.addBatchLookup())
  *
- * A ReentrantReadWriteLock is used to ensure thread safe updates for:
- * write lock: _count and _totalLatency
- * read lock:  _averageLatency
+ * Updates never lock: _count and _totalLatency are LongAdders and _lastAccessed
+ * is a max LongAccumulator, which spread concurrent updates across cells instead
+ * of contending on one field. The associated patterns are a concurrent set. Reads
+ * sum the cells, so a count read during updates may not include them all yet.
  *
  * If there is a single associated pattern and it is equal() to the _key, then this is a 1:1
  * property style lookup.
@@ -36,11 +40,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  */
 public class StatsValue {
 
-    /**
-     * Used to protect updates for _count(write), _totalLatency(write), and _averageLatency (read)
-     */
-    private final ReentrantReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
-
     /**
      * The key for a specific value in the config map
      */
@@ -52,45 +51,68 @@ public class StatsValue {
     private final Set<String> _associatedPatterns;
 
     /** How many times the key has been accessed */
-    private long _count;
-    /** Average execution time to retrieve in nano seconds */
-    private double _averageLatency;
-    /** The total time for '_count' executions */
-    private long _totalLatency;
+    private final LongAdder _count = new LongAdder();
+    /** How many times the key was read by a batch lookup, these have no latency of their own */
+    private final LongAdder _batchCount = new LongAdder();
+    /** The total time for '_count' executions in nano seconds */
+    private final LongAdder _totalLatency = new LongAdder();
     /** Last time key was accessed in nano seconds */
-    private long _lastAccessed;
+    private final LongAccumulator _lastAccessed = new LongAccumulator(Math::max, 0L);
+    /** Latency distribution for p50/p90/p99/p999/max, not striped to keep each key at ~2.5KB */
+    private final LatencyHistogram _latencyHistogram = new LatencyHistogram(false);
 
     public StatsValue(String key) {
 
         _key = key;
-        _associatedPatterns = new HashSet<>();
+        _associatedPatterns = ConcurrentHashMap.newKeySet();
     }
 
     /**
-     * Updates with a ReentrantReadWriteLock.writeLock:
-     * _count
-     * _totalLatency
+     * Lock free updates for the count, total latency, latency histogram, last
+     * access time and associated patterns.
      *
      * @param latency The execution time for this key lookup.
      * @param pattern The associated pattern for this lookup.
      */
     public void updateStats(long latency, String pattern) {
+        updateStats(latency, pattern, 1);
+    }
 
-        _readWriteLock.writeLock().lock();
-        try
-        {
-            _count++;
-            _totalLatency += latency;
-        }
-        finally
+    /**
+     * A sampled lookup stands in for 'weight' lookups, so the count and total
+     * latency are extrapolated while the average and percentiles are unchanged.
+     *
+     * @param latency The execution time for this key lookup.
+     * @param pattern The associated pattern for this lookup.
+     * @param weight How many lookups this one represents (see ConfigStatistics.sample())
+     */
+    public void updateStats(long latency, String pattern, int weight) {
+
+        _count.add(weight);
+        _totalLatency.add(latency * weight);
+        _latencyHistogram.record(latency, weight);
+        _lastAccessed.accumulate(System.nanoTime());
+
+        // Patterns repeat, so avoid the write for ones already associated
+        if ( pattern != null && !_associatedPatterns.contains(pattern) )
         {
-            _readWriteLock.writeLock().unlock();
+            _associatedPatterns.add(pattern);
         }
+    }
 
-        // Just concerned with tracking the latest access -- stepping on it is not a big deal.
-        _lastAccessed = System.nanoTime();
+    /**
+     * A key read by a batch lookup (see ConfigStatistics.addBatchLookup()) has no latency
+     * of its own, so only its batch count and last access time are updated.
+     *
+     * @param pattern The batch lookup pattern
+     * @param weight How many lookups this one represents (see ConfigStatistics.sample())
+     */
+    public void addBatchLookup(String pattern, int weight) {
+
+        _batchCount.add(weight);
+        _lastAccessed.accumulate(System.nanoTime());
 
-        if ( pattern != null )
+        if ( pattern != null && !_associatedPatterns.contains(pattern) )
         {
             _associatedPatterns.add(pattern);
         }
@@ -105,34 +127,32 @@ public class StatsValue {
     }
 
     public long getCount() {
-        return _count;
+        return _count.sum();
+    }
+
+    public long getBatchCount() {
+        return _batchCount.sum();
     }
 
-    /** Read Lock access */
     public double getAverageLatency() {
 
-        try
-        {
-            _readWriteLock.readLock().lock();
-            if (_count == 0)
-            {
-                _averageLatency = _totalLatency;
-            }
-            else
-            {
-                _averageLatency = _totalLatency / _count;
-            }
-        }
-        finally
+        long count = _count.sum();
+        long totalLatency = _totalLatency.sum();
+
+        if (count == 0)
         {
-            _readWriteLock.readLock().unlock();
+            return totalLatency;
         }
 
-        return _averageLatency;
+        return totalLatency / count;
     }
 
     public long getLastAccessed() {
-        return _lastAccessed;
+        return _lastAccessed.get();
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return _latencyHistogram;
     }
 
     @Override
@@ -150,17 +170,17 @@ public class StatsValue {
 
         StatsValue that = (StatsValue) o;
 
-        if (Double.compare(that._averageLatency, _averageLatency) != 0)
+        if (Double.compare(that.getAverageLatency(), getAverageLatency()) != 0)
         {
             return false;
         }
 
-        if (_count != that._count)
+        if (getCount() != that.getCount())
         {
             return false;
         }
 
-        if (_lastAccessed != that._lastAccessed)
+        if (getLastAccessed() != that.getLastAccessed())
         {
             return false;
         }
@@ -178,13 +198,16 @@ public class StatsValue {
 
         int result;
         long temp;
+        long count = getCount();
+        double averageLatency = getAverageLatency();
+        long lastAccessed = getLastAccessed();
         result = _key.hashCode();
 
         result = 31 * result + _associatedPatterns.hashCode();
-        result = 31 * result + (int) (_count ^ (_count >>> 32));
-        temp = _averageLatency != +0.0d ? Double.doubleToLongBits(_averageLatency) : 0L;
+        result = 31 * result + (int) (count ^ (count >>> 32));
+        temp = averageLatency != +0.0d ? Double.doubleToLongBits(averageLatency) : 0L;
         result = 31 * result + (int) (temp ^ (temp >>> 32));
-        result = 31 * result + (int) (_lastAccessed ^ (_lastAccessed >>> 32));
+        result = 31 * result + (int) (lastAccessed ^ (lastAccessed >>> 32));
 
         return result;
     }
@@ -193,9 +216,11 @@ public class StatsValue {
     public String toString() {
         return "StatsValue{" +
                 "_key='" + _key + '\'' +
-                ", _count=" + _count +
-                ", _averageLatency=" + _averageLatency +
-                ", _lastAccessed=" + _lastAccessed +
+                ", _count=" + getCount() +
+                ", _batchCount=" + getBatchCount() +
+                ", _averageLatency=" + getAverageLatency() +
+                ", _latencyHistogram=" + _latencyHistogram +
+                ", _lastAccessed=" + getLastAccessed() +
                 ", _associatedPatterns=" + _associatedPatterns +
                 '}';
     }
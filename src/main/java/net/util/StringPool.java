@@ -0,0 +1,152 @@
+package net.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dedupes the keys and values of one config load, so a value such as 'true', '0'
+ * or 'USD' (or a key in more than one file) is one String across every file map
+ * instead of one per entry. Files load on several threads, so the pool is thread
+ * safe. The pool is cleared after the load (see clear()), only its counts remain
+ * for the memory report (see net.client.ConfigMemoryReport).
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public final class StringPool {
+
+    /** Java 9+ stores a Latin-1 String in one byte per char, Java 8 always uses a char[] */
+    static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "1.8").startsWith("1.");
+
+    private final ConcurrentHashMap<String, String> _strings = new ConcurrentHashMap<>();
+    private final LongAdder _requests = new LongAdder();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _savedBytes = new LongAdder();
+
+    /**
+     * @param text Any string, or null
+     * @return The pooled instance equal to 'text'
+     */
+    public String pool(String text) {
+
+        if ( text == null )
+        {
+            return null;
+        }
+
+        _requests.increment();
+        String pooled = _strings.get(text);
+        if ( pooled == null )
+        {
+            pooled = _strings.putIfAbsent(text, text);
+            if ( pooled == null )
+            {
+                return text;
+            }
+        }
+
+        if ( pooled != text )
+        {
+            _hits.increment();
+            _savedBytes.add(estimateBytes(text));
+        }
+
+        return pooled;
+    }
+
+    /**
+     * @param keyValues Flattened key values, or null
+     * @return A new (mutable) map with pooled keys and values, null for null
+     */
+    public Map<String, String> poolAll(Map<String, String> keyValues) {
+
+        if ( keyValues == null )
+        {
+            return null;
+        }
+
+        Map<String, String> pooled = new HashMap<>((int) (keyValues.size() / 0.75f) + 1);
+        for ( Map.Entry<String, String> entry : keyValues.entrySet() )
+        {
+            pooled.put(pool(entry.getKey()), pool(entry.getValue()));
+        }
+
+        return pooled;
+    }
+
+    /**
+     * Release the pooled strings (the config maps keep the ones they use), the counts remain.
+     */
+    public void clear() {
+        _strings.clear();
+    }
+
+    /** @return How many strings were pooled */
+    public long getRequestCount() {
+        return _requests.sum();
+    }
+
+    /** @return How many strings were replaced with an equal pooled instance */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /** @return The estimated heap bytes of the replaced strings */
+    public long getSavedBytes() {
+        return _savedBytes.sum();
+    }
+
+    /**
+     * A rough size for one String: object header and fields (24 bytes) plus its array,
+     * both 8 byte aligned. On Java 8 the array is a char[] (2 bytes per char), from
+     * Java 9 a Latin-1 string is a byte[] with one byte per char (compact strings).
+     *
+     * @param text Any string, or null
+     * @return The estimated heap bytes of 'text', 0 for null
+     */
+    public static long estimateBytes(String text) {
+
+        if ( text == null )
+        {
+            return 0;
+        }
+
+        return 24 + align(16 + (long) text.length() * bytesPerChar(text));
+    }
+
+    private static int bytesPerChar(String text) {
+
+        if ( !COMPACT_STRINGS )
+        {
+            return 2;
+        }
+
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            if ( text.charAt(i) > 0xFF )
+            {
+                return 2;
+            }
+        }
+
+        return 1;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -1,6 +1,7 @@
 package net.config
 
 import groovy.sql.Sql
+import net.common.JigProperties
 
 /**
  * Intellij and possibly Eclipse do not compile and move
@@ -84,6 +85,193 @@ class ConfigLoaderTest
         assertTrue(configMaps.containsKey("EnvironmentConfig_dev.xml"))
     }
 
+    void test__loadKeyValuesFromFiles_parallel() {
+
+        def configLoader = new ConfigLoader()
+        def configFiles = configLoader.loadConfigFilesFromOverride()
+        def property = JigProperties.JIG_LOAD_THREADS.getName()
+
+        try
+        {
+            System.setProperty(property, "1")
+            def sequential = configLoader.loadKeyValuesFromFiles(configFiles)
+
+            System.setProperty(property, "4")
+            def parallel = configLoader.loadKeyValuesFromFiles(configFiles)
+
+            assertEquals(configFiles.size(), parallel.size())
+            assertEquals(sequential, parallel)
+            configFiles.eachWithIndex { configFile, i ->
+                assertEquals(configLoader.loadKeyValuesFromFile(configFile), parallel[i])
+            }
+        }
+        finally
+        {
+            System.clearProperty(property)
+        }
+    }
+
+    void test__loadMapsFromFiles_fileLoadTimes() {
+
+        def configLoader = new ConfigLoader()
+        def configMaps = configLoader.loadMapsFromFiles()
+        def fileLoadTimes = configLoader.getFileLoadTimes()
+
+        assertEquals(configLoader.loadConfigFilesFromOverride().size(), fileLoadTimes.size())
+        assertTrue(fileLoadTimes.keySet().any { it.endsWith("ConfigOne.xml") })
+        assertTrue(fileLoadTimes.values().every { it >= 0 })
+        assertEquals(6, configMaps.size())
+    }
+
+    void test__getSnapshotSourceFiles() {
+
+        // The test configs include database connection params (DatabaseConfig.xml)
+        def configLoader = new ConfigLoader()
+        configLoader.loadMapsFromFiles()
+        assertNull(configLoader.getSnapshotSourceFiles())
+
+        def property = JigProperties.JIG_LOCATION.getName()
+        def testLocation = System.getProperty(property)
+        def configDir = File.createTempDir()
+
+        try
+        {
+            def configFile = new File(configDir, "LocalConfig.xml")
+            configFile.text = '<config><keyValues><property name="a" value="1"/></keyValues></config>'
+            System.setProperty(property, configDir.path)
+
+            configLoader = new ConfigLoader()
+            configLoader.loadMapsFromFiles()
+            assertEquals([configFile.path], configLoader.getSnapshotSourceFiles())
+            assertEquals([configDir.absolutePath], configLoader.getConfigDirectories())
+        }
+        finally
+        {
+            System.setProperty(property, testLocation)
+            configDir.deleteDir()
+        }
+    }
+
+    void test__getChangedSources() {
+
+        def property = JigProperties.JIG_LOCATION.getName()
+        def testLocation = System.getProperty(property)
+        def configDir = File.createTempDir()
+
+        try
+        {
+            def configOne = new File(configDir, "ConfigOne.xml")
+            def configTwo = new File(configDir, "ConfigTwo.json")
+            configOne.text = '<config><keyValues><property name="a" value="1"/></keyValues></config>'
+            configTwo.text = '{"config": {"b": 2}}'
+            System.setProperty(property, configDir.path)
+
+            def configLoader = new ConfigLoader()
+            def firstLoad = configLoader.loadMapsFromFiles()
+            assertEquals(2, configLoader.getChangedSources().size())
+
+            // Unchanged (or only touched) files are not parsed again
+            configTwo.setLastModified(configTwo.lastModified() - 10000)
+            def secondLoad = configLoader.loadMapsFromFiles()
+            assertTrue(configLoader.getChangedSources().isEmpty())
+            assertEquals(firstLoad, secondLoad)
+            assertSame(firstLoad.get("ConfigOne.xml"), secondLoad.get("ConfigOne.xml"))
+
+            configOne.text = '<config><keyValues><property name="a" value="2"/></keyValues></config>'
+            def thirdLoad = configLoader.loadMapsFromFiles()
+            assertEquals(1, configLoader.getChangedSources().size())
+            assertTrue(configLoader.getChangedSources()[0].endsWith("ConfigOne.xml"))
+            assertEquals("2", thirdLoad.get("ConfigOne.xml").get("a"))
+
+            assertTrue(configTwo.delete())
+            def fourthLoad = configLoader.loadMapsFromFiles()
+            assertEquals(1, configLoader.getChangedSources().size())
+            assertTrue(configLoader.getChangedSources()[0].endsWith("ConfigTwo.json"))
+            assertFalse(fourthLoad.containsKey("ConfigTwo.json"))
+        }
+        finally
+        {
+            System.setProperty(property, testLocation)
+            configDir.deleteDir()
+        }
+    }
+
+    void test__loadMapsFromFiles_changed_overrides() {
+
+        def property = JigProperties.JIG_LOCATION.getName()
+        def testLocation = System.getProperty(property)
+        def configDir = File.createTempDir()
+
+        try
+        {
+            new File(configDir, "ConfigOne.xml").text = '<config><keyValues><property name="a" value="1"/>' +
+                                                        '<property name="b" value="2"/></keyValues></config>'
+            System.setProperty(property, configDir.path)
+
+            def configLoader = new ConfigLoader()
+            configLoader.loadMapsFromFiles()
+
+            GroovyTestConfigHelper.addSystemPropertyWithSpecificValue("a", "42")
+            def overridden = configLoader.loadMapsFromFiles()
+            assertEquals("42", overridden.get("ConfigOne.xml").get("a"))
+            assertEquals("2", overridden.get("ConfigOne.xml").get("b"))
+
+            // Same file and overrides, the overridden map is reused
+            assertSame(overridden.get("ConfigOne.xml"), configLoader.loadMapsFromFiles().get("ConfigOne.xml"))
+
+            // Without the override the file value is back
+            GroovyTestConfigHelper.removeSystemPropertyWithSpecificValue("a")
+            assertEquals("1", configLoader.loadMapsFromFiles().get("ConfigOne.xml").get("a"))
+        }
+        finally
+        {
+            GroovyTestConfigHelper.removeSystemPropertyWithSpecificValue("a")
+            System.setProperty(property, testLocation)
+            configDir.deleteDir()
+        }
+    }
+
+    void test__loadMapsFromFiles_string_pool() {
+
+        def property = JigProperties.JIG_LOCATION.getName()
+        def testLocation = System.getProperty(property)
+        def configDir = File.createTempDir()
+
+        try
+        {
+            new File(configDir, "ConfigOne.xml").text = '<config><keyValues><property name="currency" value="USD"/></keyValues></config>'
+            new File(configDir, "ConfigTwo.xml").text = '<config><keyValues><property name="currency" value="USD"/>' +
+                                                        '<property name="code" value="USD"/></keyValues></config>'
+            System.setProperty(property, configDir.path)
+
+            // Off by default
+            def configLoader = new ConfigLoader()
+            configLoader.loadMapsFromFiles()
+            assertNull(configLoader.getStringPool())
+
+            System.setProperty(JigProperties.JIG_STRING_POOL.getName(), "true")
+            def configMaps = configLoader.loadMapsFromFiles()
+            def one = configMaps.get("ConfigOne.xml")
+            def two = configMaps.get("ConfigTwo.xml")
+
+            assertEquals("USD", one.get("currency"))
+            assertSame(one.get("currency"), two.get("code"))
+            assertSame(one.keySet().find { it == "currency" }, two.keySet().find { it == "currency" })
+            assertTrue(configLoader.getStringPool().getHitCount() >= 3)
+
+            System.setProperty(JigProperties.JIG_STRING_POOL.getName(), "false")
+            configMaps = configLoader.loadMapsFromFiles()
+            assertNull(configLoader.getStringPool())
+            assertEquals("USD", configMaps.get("ConfigTwo.xml").get("code"))
+        }
+        finally
+        {
+            System.clearProperty(JigProperties.JIG_STRING_POOL.getName())
+            System.setProperty(property, testLocation)
+            configDir.deleteDir()
+        }
+    }
+
     void test__loadConfigFilesFromClasspath() {
 
         def configLoader = new ConfigLoader()
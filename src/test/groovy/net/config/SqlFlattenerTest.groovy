@@ -1,6 +1,10 @@
 package net.config
 
 import groovy.mock.interceptor.MockFor
+import groovy.sql.Sql
+import net.common.JigProperties
+
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * @author dmillett
@@ -111,6 +115,182 @@ class SqlFlattenerTest
         assertTrue(subMap.containsKey("dbconfigtable.name.bar.driver"))
     }
 
+    void test__extractSubGroup_second_table() {
+
+        def map = new TreeMap(buildValidDbConfigParams2())
+        def sqlLoader = new SqlFlattener()
+
+        def subMap = sqlLoader.extractSubGroup(map.entrySet(), 5, 5)
+
+        assertEquals(5, subMap.size())
+        assertEquals("Foo22", sqlLoader.extractValue(subMap, SqlFlattener.TABLE))
+        assertEquals("someUser22", sqlLoader.extractValue(subMap, SqlFlattener.USER))
+    }
+
+    void test__groupDbConfigParamsByTable_h2() {
+
+        def url = "jdbc:h2:mem:sqlflattener;DB_CLOSE_DELAY=-1"
+        def sql = Sql.newInstance(url, "test", "", "org.h2.Driver")
+        sql.execute("create table CONFIG_ONE (id int primary key, key varchar(50), value varchar(50))")
+        sql.execute("create table CONFIG_TWO (id int primary key, name varchar(50), text varchar(50), note varchar(50))")
+        sql.execute("insert into CONFIG_ONE values (1, 'db.one', '1'), (2, 'db.shared', 'one')")
+        sql.execute("insert into CONFIG_TWO values (1, 'db.two', '2', 'x'), (2, 'db.shared', 'two', 'y')")
+
+        def dbParams = new HashMap<String, String>()
+        for ( table in ["config_one", "config_two"] )
+        {
+            dbParams.put("dbconfigtable.name.${table}.tablename".toString(), table)
+            dbParams.put("dbconfigtable.name.${table}.username".toString(), "test")
+            dbParams.put("dbconfigtable.name.${table}.userpassword".toString(), "")
+            dbParams.put("dbconfigtable.name.${table}.url".toString(), url)
+            dbParams.put("dbconfigtable.name.${table}.driver".toString(), "org.h2.Driver")
+        }
+
+        def connections = new AtomicInteger()
+        def sqlFlattener = new SqlFlattener() {
+            @Override
+            protected Sql createSqlReader(Map<String, String> sqlTableInfos) {
+                connections.incrementAndGet()
+                return super.createSqlReader(sqlTableInfos)
+            }
+        }
+
+        try
+        {
+            // Concurrent, at most one connection per table
+            def groupedMap = sqlFlattener.groupDbConfigParamsByTable(dbParams)
+            assertEquals(2, groupedMap.size())
+            assertEquals("1", groupedMap.get("config_one").get("db.one"))
+            assertEquals("two", groupedMap.get("config_two").get("db.shared"))
+            assertFalse(groupedMap.get("config_two").containsValue("x"))
+            assertTrue(connections.get() <= 2)
+
+            // One table at a time, one reused connection
+            connections.set(0)
+            System.setProperty(JigProperties.JIG_SQL_LOAD_THREADS.getName(), "1")
+            assertEquals(groupedMap, sqlFlattener.groupDbConfigParamsByTable(dbParams))
+            assertEquals(1, connections.get())
+        }
+        finally
+        {
+            System.clearProperty(JigProperties.JIG_SQL_LOAD_THREADS.getName())
+            sql.execute("drop all objects")
+            sql.close()
+        }
+    }
+
+    void test__pollChangedRows_h2() {
+
+        def url = "jdbc:h2:mem:sqlpoll;DB_CLOSE_DELAY=-1"
+        def sql = Sql.newInstance(url, "test", "", "org.h2.Driver")
+        sql.execute("create table POLLED (id int primary key, key varchar(50), value varchar(50), updated timestamp)")
+        sql.execute("create table STATIC (id int primary key, key varchar(50), value varchar(50))")
+        sql.execute("insert into POLLED values (1, 'db.one', '1', '2020-01-01 00:00:00'), (2, 'db.two', '2', '2020-01-02 00:00:00')")
+        sql.execute("insert into STATIC values (1, 'db.three', '3')")
+
+        def dbParams = new HashMap<String, String>()
+        for ( table in ["polled", "static"] )
+        {
+            dbParams.put("dbconfigtable.name.${table}.tablename".toString(), table)
+            dbParams.put("dbconfigtable.name.${table}.username".toString(), "test")
+            dbParams.put("dbconfigtable.name.${table}.userpassword".toString(), "")
+            dbParams.put("dbconfigtable.name.${table}.url".toString(), url)
+            dbParams.put("dbconfigtable.name.${table}.driver".toString(), "org.h2.Driver")
+        }
+        dbParams.put("dbconfigtable.name.polled.versioncolumn", "updated")
+
+        def configs = new HashMap<String, Map<String, String>>()
+        configs.put("DatabaseConfig.xml", dbParams)
+
+        def connections = new AtomicInteger()
+        def sqlFlattener = new SqlFlattener() {
+            @Override
+            protected Sql createSqlReader(Map<String, String> sqlTableInfos) {
+                connections.incrementAndGet()
+                return super.createSqlReader(sqlTableInfos)
+            }
+        }
+
+        try
+        {
+            def dbConfigs = sqlFlattener.buildMapFromDatabaseTables(configs)
+
+            assertEquals(2, dbConfigs.size())
+            assertEquals("2", dbConfigs.get("polled").get("db.two"))
+            assertTrue(sqlFlattener.hasPolledTables())
+            connections.set(0)
+            assertTrue(sqlFlattener.pollChangedRows().isEmpty())
+
+            sql.execute("update POLLED set value = 'two', updated = '2020-01-03 00:00:00' where id = 2")
+            sql.execute("update STATIC set value = 'three' where id = 1")
+
+            // Only the changed row of the polled table
+            assertEquals(["polled": ["db.two": "two"]], sqlFlattener.pollChangedRows())
+            assertTrue(sqlFlattener.pollChangedRows().isEmpty())
+            assertTrue(sqlFlattener.purgeAllDbConfigParams(configs).isEmpty())
+
+            // A row committed later with the same timestamp as the watermark
+            sql.execute("insert into POLLED values (3, 'db.four', '4', '2020-01-03 00:00:00')")
+            assertEquals(["polled": ["db.four": "4"]], sqlFlattener.pollChangedRows())
+            assertTrue(sqlFlattener.pollChangedRows().isEmpty())
+
+            // One connection kept across the polls, closed with the next load
+            assertEquals(1, connections.get())
+            assertEquals(1, sqlFlattener.getPollConnectionCount())
+            sqlFlattener.buildMapFromDatabaseTables(configs)
+            assertEquals(0, sqlFlattener.getPollConnectionCount())
+
+            sqlFlattener.pollChangedRows()
+            sqlFlattener.closePollConnections()
+            assertEquals(0, sqlFlattener.getPollConnectionCount())
+        }
+        finally
+        {
+            sql.execute("drop all objects")
+            sql.close()
+        }
+    }
+
+    void test__buildMapFromDatabaseTables_unchanged_table() {
+
+        def url = "jdbc:h2:mem:sqlfingerprint;DB_CLOSE_DELAY=-1"
+        def sql = Sql.newInstance(url, "test", "", "org.h2.Driver")
+        sql.execute("create table POLLED (id int primary key, key varchar(50), value varchar(50), version int)")
+        sql.execute("insert into POLLED values (1, 'db.one', '1', 1), (2, 'db.two', '2', 2)")
+
+        def dbParams = new HashMap<String, String>()
+        dbParams.put("dbconfigtable.name.polled.tablename", "polled")
+        dbParams.put("dbconfigtable.name.polled.username", "test")
+        dbParams.put("dbconfigtable.name.polled.userpassword", "")
+        dbParams.put("dbconfigtable.name.polled.url", url)
+        dbParams.put("dbconfigtable.name.polled.driver", "org.h2.Driver")
+        dbParams.put("dbconfigtable.name.polled.versioncolumn", "version")
+
+        def configs = new HashMap<String, Map<String, String>>()
+        configs.put("DatabaseConfig.xml", dbParams)
+        def sqlFlattener = new SqlFlattener()
+
+        try
+        {
+            def firstLoad = sqlFlattener.buildMapFromDatabaseTables(configs)
+            def secondLoad = sqlFlattener.buildMapFromDatabaseTables(configs)
+            assertSame(firstLoad.get("polled"), secondLoad.get("polled"))
+
+            // A delete lowers the row count
+            sql.execute("delete from POLLED where id = 1")
+            def thirdLoad = sqlFlattener.buildMapFromDatabaseTables(configs)
+            assertEquals(["db.two": "2"], thirdLoad.get("polled"))
+
+            sql.execute("update POLLED set value = 'two', version = 3 where id = 2")
+            assertEquals(["db.two": "two"], sqlFlattener.buildMapFromDatabaseTables(configs).get("polled"))
+        }
+        finally
+        {
+            sql.execute("drop all objects")
+            sql.close()
+        }
+    }
+
     void test__findNonDbConfigs() {
 
         def config = new HashMap<String, String>()
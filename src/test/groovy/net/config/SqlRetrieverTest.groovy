@@ -35,6 +35,74 @@ class SqlRetrieverTest
         if ( sql2 != null ) { sql2.close() }
     }
 
+    void test__loadFromDatabase_fetchSize() {
+
+        def sql2 = buildAndPopulateDatabase()
+        def sqlRetriever = new SqlRetriever()
+        def result = sqlRetriever.loadFromDatabaseWithSelect("config", sql2, 2)
+
+        // Only the key and value columns, as strings
+        def dbConfigs = result.get("config")
+        assertEquals(3, dbConfigs.size())
+        assertEquals("1", dbConfigs.get("db.one"))
+        assertEquals("false", dbConfigs.get("db.three"))
+
+        // A missing table is logged, not thrown
+        assertTrue(sqlRetriever.loadFromDatabaseWithSelect("missing", sql2, 2).isEmpty())
+
+        if ( sql2 != null ) { sql2.close() }
+    }
+
+    void test__loadChangedRows() {
+
+        def sql2 = Sql.newInstance("jdbc:h2:mem:", "test", "", "org.h2.Driver")
+        sql2.execute("create table VERSIONED (id int primary key, key varchar(50), value varchar(50), version int)")
+        sql2.execute("insert into VERSIONED values (1, 'db.one', '1', 1), (2, 'db.two', 'two', 2)")
+
+        def sqlRetriever = new SqlRetriever()
+        def allRows = sqlRetriever.loadChangedRows("versioned", sql2, "version", null, [:], 10)
+        assertEquals(2, allRows.keyValues.size())
+        assertEquals(2, allRows.watermark)
+
+        sql2.execute("update VERSIONED set value = 'uno', version = 3 where id = 1")
+        def changedRows = sqlRetriever.loadChangedRows("versioned", sql2, "version", allRows.watermark,
+                                                       allRows.watermarkRows, 10)
+        assertEquals(["db.one": "uno"], changedRows.keyValues)
+        assertEquals(3, changedRows.watermark)
+
+        // Nothing changed, the watermark stays
+        def unchanged = sqlRetriever.loadChangedRows("versioned", sql2, "version", changedRows.watermark,
+                                                     changedRows.watermarkRows, 10)
+        assertTrue(unchanged.keyValues.isEmpty())
+        assertEquals(3, unchanged.watermark)
+
+        // Committed after the last read with the watermark version
+        sql2.execute("insert into VERSIONED values (3, 'db.three', 'three', 3)")
+        def sameVersion = sqlRetriever.loadChangedRows("versioned", sql2, "version", unchanged.watermark,
+                                                       unchanged.watermarkRows, 10)
+        assertEquals(["db.three": "three"], sameVersion.keyValues)
+        assertEquals(["db.one": "uno", "db.three": "three"], sameVersion.watermarkRows)
+
+        assertNull(sqlRetriever.loadChangedRows("versioned", sql2, "missing", null, [:], 10))
+
+        if ( sql2 != null ) { sql2.close() }
+    }
+
+    void test__loadChangedRows_lower_case_version_column() {
+
+        // Quoted lower case, the way PostgreSQL stores unquoted names
+        def sql2 = Sql.newInstance("jdbc:h2:mem:", "test", "", "org.h2.Driver")
+        sql2.execute('create table VERSIONED (id int primary key, key varchar(50), value varchar(50), "updated" int)')
+        sql2.execute("insert into VERSIONED values (1, 'db.one', '1', 1), (2, 'db.two', 'two', 2)")
+
+        def sqlRetriever = new SqlRetriever()
+        def allRows = sqlRetriever.loadChangedRows("versioned", sql2, "Updated", null, [:], 10)
+        assertEquals(2, allRows.keyValues.size())
+        assertEquals(2, allRows.watermark)
+
+        if ( sql2 != null ) { sql2.close() }
+    }
+
     def Sql buildAndPopulateDatabase() {
 
         def sql2 = Sql.newInstance("jdbc:h2:mem:", "test", "", "org.h2.Driver")
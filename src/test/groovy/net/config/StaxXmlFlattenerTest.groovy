@@ -0,0 +1,169 @@
+package net.config
+
+import net.common.JigProperties
+
+/**
+ * The streaming flattener should produce exactly the same keys and values
+ * as XmlFlattener.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+class StaxXmlFlattenerTest
+    extends GroovyTestCase {
+
+    void test__flatten_ExampleConfig() {
+
+        def configFile = GroovyTestConfigHelper.updateSystemPropertyConfigLocation() + "/ExampleConfig.xml"
+        def keyValues = new StaxXmlFlattener().flatten(configFile)
+
+        assertEquals(new XmlFlattener().flatten(configFile), keyValues)
+        assertEquals("25.00", keyValues.get("structures.stocks.stock.amd.sell-high"))
+        assertEquals("first value", keyValues.get("key.one.string"))
+    }
+
+    void test__flatten_ConfigOne() {
+
+        def configFile = GroovyTestConfigHelper.updateSystemPropertyConfigLocation() + "/ConfigOne.xml"
+        def keyValues = new StaxXmlFlattener().flatten(configFile)
+
+        assertEquals(new XmlFlattener().flatten(configFile), keyValues)
+        assertEquals(19, keyValues.size())
+        assertEquals("Sheffields", keyValues.get("structures.cities.chicago.bars.bar"))
+        assertEquals("Nissei", keyValues.get("structures.cities.chicago.bars.bar.1"))
+        assertEquals("Wills Northwood Inn", keyValues.get("structures.cities.chicago.bars.bar.3"))
+    }
+
+    void test__flatten_AllTestConfigFiles() {
+
+        def configDir = new File(GroovyTestConfigHelper.updateSystemPropertyConfigLocation())
+        configDir.listFiles().findAll { it.name.endsWith(".xml") }.each { file ->
+            assertEquals(file.name, new XmlFlattener().flatten(file.path), new StaxXmlFlattener().flatten(file.path))
+        }
+    }
+
+    void test__flatten_DuplicateKeys() {
+
+        def xml = '''<config>
+                       <structures>
+                         <a>1</a><b>2</b><a>3</a><b>4</b><a>5</a>
+                         <group><a>6</a></group>
+                         <group><a>7</a><a>8</a></group>
+                         <group name="x"><c>9</c></group>
+                         <group><x><c>10</c></x></group>
+                         <c code="d">11</c>
+                         <c><d>12</d></c>
+                       </structures>
+                     </config>'''
+
+        assertEquivalent(xml)
+        def keyValues = flattenText(xml)
+        assertEquals("3", keyValues.get("structures.a.1"))
+        assertEquals("4", keyValues.get("structures.b.2"))
+        assertEquals("5", keyValues.get("structures.a.3"))
+        assertEquals("7", keyValues.get("structures.group.a"))
+        assertEquals("8", keyValues.get("structures.group.a.1"))
+    }
+
+    void test__flatten_ValuesAndText() {
+
+        def xml = '''<config>
+                       <structures>
+                         <empty/>
+                         <attributeOnly value="skipped"/>
+                         <both value="attribute">text</both>
+                         <comment>before<!-- comment -->after</comment>
+                         <cdata><![CDATA[a < b]]></cdata>
+                         <entity>a &amp; b</entity>
+                         <Upper Code="MixedCase">Value</Upper>
+                       </structures>
+                       <keyValues>
+                         <property name="Text">text</property>
+                         <property name="attribute" value="one"/>
+                         <property name="both" value="attribute">text</property>
+                         <property name="empty"/>
+                         <property name="nested">a<child>b</child></property>
+                         <property name="structures.upper.mixedcase" value="overwritten"/>
+                       </keyValues>
+                       <structures><second>ignored</second></structures>
+                     </config>'''
+
+        assertEquivalent(xml)
+        def keyValues = flattenText(xml)
+        assertEquals("attribute", keyValues.get("structures.both.attribute"))
+        assertEquals("beforeafter", keyValues.get("structures.comment"))
+        assertEquals("Value", keyValues.get("structures.upper.mixedcase"))
+        assertTrue(keyValues.containsKey("empty"))
+        assertNull(keyValues.get("empty"))
+        assertFalse(keyValues.containsKey("structures.second"))
+    }
+
+    void test__flatten_MixedContent() {
+
+        // XmlFlattener fails on the text node and drops every structure
+        def xml = '<config><structures><a>1</a><mixed>text<child>nested</child></mixed></structures></config>'
+        def keyValues = flattenText(xml)
+
+        assertEquals(2, keyValues.size())
+        assertEquals("1", keyValues.get("structures.a"))
+        assertEquals("nested", keyValues.get("structures.mixed.child"))
+    }
+
+    void test__flatten_InvalidConfig() {
+
+        assertEquivalent('<notConfig><structures><a>1</a></structures></notConfig>')
+        assertEquivalent('<config><other><a>1</a></other></config>')
+        assertTrue(flattenText('<config></config>').isEmpty())
+        assertNull(new StaxXmlFlattener().flatten(writeTempFile('<config><structures>')))
+    }
+
+    void test__loadFromXmlFile_StaxProperty() {
+
+        def configFile = GroovyTestConfigHelper.updateSystemPropertyConfigLocation() + "/ConfigOne.xml"
+        def property = JigProperties.JIG_XML_FLATTENER.getName()
+
+        try
+        {
+            System.setProperty(property, "stax")
+            def loader = new ConfigLoader()
+            assertTrue(loader.useStaxXmlFlattener())
+            assertEquals(new XmlFlattener().flatten(configFile), loader.loadFromXmlFile(configFile))
+        }
+        finally
+        {
+            System.clearProperty(property)
+        }
+
+        assertFalse(new ConfigLoader().useStaxXmlFlattener())
+    }
+
+    private static void assertEquivalent(String xml) {
+
+        def file = writeTempFile(xml)
+        assertEquals(new XmlFlattener().flatten(file), new StaxXmlFlattener().flatten(file))
+    }
+
+    private static Map<String, String> flattenText(String xml) {
+        return new StaxXmlFlattener().flatten(writeTempFile(xml))
+    }
+
+    private static String writeTempFile(String xml) {
+
+        def file = File.createTempFile("StaxXmlFlattenerTest", ".xml")
+        file.deleteOnExit()
+        file.text = xml
+        return file.path
+    }
+}
@@ -0,0 +1,153 @@
+package net.config
+
+import net.common.JigProperties
+
+/**
+ * The streaming flattener should produce exactly the same keys and values
+ * as JsonFlattener.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+class StreamingJsonFlattenerTest
+    extends GroovyTestCase {
+
+    void test__flatten_JsonExampleOne() {
+
+        def fileName = GroovyTestConfigHelper.updateSystemPropertyConfigLocation() + "/JsonExampleOne.json"
+        def keyValues = new StreamingJsonFlattener().flatten(fileName)
+
+        assertEquals(new JsonFlattener().flatten(fileName), keyValues)
+        assertEquals(9, keyValues.size())
+        assertEquals("Sheffields", keyValues.get("config.structures.cities.chicago.bars.bar"))
+        assertEquals("Matilda", keyValues.get("config.structures.cities.chicago.bars.bar.1"))
+    }
+
+    void test__flatten_AllTestConfigFiles() {
+
+        def configDir = new File(GroovyTestConfigHelper.updateSystemPropertyConfigLocation())
+        configDir.listFiles().findAll { it.name.endsWith(".json") }.each { file ->
+            def fileUrl = "file://" + file.path
+            assertEquals(file.name, new JsonFlattener().flatten(fileUrl), new StreamingJsonFlattener().flatten(fileUrl))
+        }
+    }
+
+    void test__flatten_Arrays() {
+
+        def json = '''{"config": {
+                         "scalars": [1, 2, 3],
+                         "Mixed": ["a", null, {"B": "c"}, {"b": "d"}, [{"b": "e"}, {"b": "f"}], "g"],
+                         "nested": [[1, 2], [{"x": 1}, {"x": 2}], []],
+                         "objects": [{"a": {"b": [1, {"c": 2}]}}, {"a": {"b": [3, {"c": 4}]}}],
+                         "empty": [],
+                         "after": {"scalars": 4}
+                       }}'''
+
+        assertEquivalent(json)
+        def keyValues = flattenText(json)
+        assertEquals("3", keyValues.get("config.scalars"))
+        assertEquals("c", keyValues.get("config.mixed.b"))
+        assertEquals("d", keyValues.get("config.mixed.b.1"))
+        assertTrue(keyValues.containsKey("config.Mixed"))
+    }
+
+    void test__flatten_Values() {
+
+        def json = '''{"config": {
+                         "string": "a \\"quoted\\" \\u0041\\n\\/",
+                         "int": 42, "negative": -7, "zero": -0, "long": 12345678901,
+                         "decimal": 1.50, "exponent": 1e5, "upperExponent": 2.5E-3,
+                         "true": true, "false": false, "null": null,
+                         "UPPER": {"Case": "Value"},
+                         "emptyObject": {}
+                       }}'''
+
+        assertEquivalent(json)
+        def keyValues = flattenText(json)
+        assertEquals('a "quoted" A\n/', keyValues.get("config.string"))
+        assertEquals("42", keyValues.get("config.int"))
+        assertEquals("Value", keyValues.get("config.upper.case"))
+        assertFalse(keyValues.containsKey("config.null"))
+    }
+
+    void test__flatten_BigInteger() {
+
+        // JsonSlurper overflows integers that do not fit in a long
+        def keyValues = flattenText('{"config": {"big": 123456789012345678901234567890}}')
+        assertEquals("123456789012345678901234567890", keyValues.get("config.big"))
+    }
+
+    void test__flatten_TrailingCommas() {
+
+        def keyValues = flattenText('{"config": {"a": [1, 2, ], "b": {"c": "d", }, }, }')
+        assertEquals("2", keyValues.get("config.a"))
+        assertEquals("d", keyValues.get("config.b.c"))
+    }
+
+    void test__flatten_InvalidConfig() {
+
+        assertTrue(flattenText('{"config": {"a": 1}, "other": {"b": 2}}').isEmpty())
+        assertTrue(flattenText('{}').isEmpty())
+        assertTrue(flattenText('"config"').isEmpty())
+        assertTrue(flattenText('{"config": {"a": 1}').isEmpty())
+        assertTrue(flattenText('{"config": {"a": tru}}').isEmpty())
+        assertTrue(new StreamingJsonFlattener().flatten("/no/such/file.json").isEmpty())
+    }
+
+    void test__flatten_Reader() {
+
+        def keyValues = new StreamingJsonFlattener().flatten(new StringReader('{"config": {"a": {"b": 1}}}'))
+        assertEquals(["config.a.b": "1"], keyValues)
+        assertNull(new StreamingJsonFlattener().flatten(new StringReader('[1, 2]')))
+    }
+
+    void test__loadFromJsonFile_StreamingProperty() {
+
+        def fileName = GroovyTestConfigHelper.updateSystemPropertyConfigLocation() + "/JsonExampleThree.json"
+        def property = JigProperties.JIG_JSON_FLATTENER.getName()
+
+        try
+        {
+            System.setProperty(property, "streaming")
+            def loader = new ConfigLoader()
+            assertTrue(loader.useStreamingJsonFlattener())
+            assertEquals(new JsonFlattener().flatten(fileName), loader.loadFromJsonFile(fileName))
+        }
+        finally
+        {
+            System.clearProperty(property)
+        }
+
+        assertFalse(new ConfigLoader().useStreamingJsonFlattener())
+    }
+
+    private static void assertEquivalent(String json) {
+
+        def fileName = writeTempFile(json)
+        assertEquals(new JsonFlattener().flatten(fileName), new StreamingJsonFlattener().flatten(fileName))
+    }
+
+    private static Map<String, String> flattenText(String json) {
+        return new StreamingJsonFlattener().flatten(writeTempFile(json))
+    }
+
+    private static String writeTempFile(String json) {
+
+        def file = File.createTempFile("StreamingJsonFlattenerTest", ".json")
+        file.deleteOnExit()
+        file.text = json
+        return "file://" + file.path
+    }
+}
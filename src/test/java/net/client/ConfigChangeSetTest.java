@@ -0,0 +1,102 @@
+package net.client;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Key differences between two configs, by file.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ConfigChangeSetTest
+    extends TestCase {
+
+    public void test__compare() {
+
+        Map<String, String> unchanged = buildMap("a", "1", "b", "2");
+        Map<String, Map<String, String>> previous = new LinkedHashMap<>();
+        previous.put("Same.xml", unchanged);
+        previous.put("ConfigOne.xml", buildMap("a", "1", "b", "2", "c", null));
+        previous.put("Removed.xml", buildMap("r", "1"));
+
+        Map<String, Map<String, String>> next = new LinkedHashMap<>();
+        next.put("Same.xml", unchanged);
+        next.put("ConfigOne.xml", buildMap("a", "1", "b", "3", "c", "4", "d", "5"));
+        next.put("Added.json", buildMap("x", "1"));
+
+        ConfigChangeSet changeSet = ConfigChangeSet.compare(previous, next, Arrays.asList("ConfigOne.xml"), 1, 2);
+
+        assertFalse(changeSet.isEmpty());
+        assertEquals(1, changeSet.getFromVersion());
+        assertEquals(2, changeSet.getToVersion());
+        assertEquals(Arrays.asList("ConfigOne.xml"), changeSet.getChangedSources());
+
+        assertEquals(Collections.singleton("d"), changeSet.getAddedKeys().get("ConfigOne.xml"));
+        assertEquals(Collections.singleton("x"), changeSet.getAddedKeys().get("Added.json"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("b", "c")), changeSet.getChangedKeys().get("ConfigOne.xml"));
+        assertEquals(Collections.singleton("r"), changeSet.getRemovedKeys().get("Removed.xml"));
+        assertFalse(changeSet.getChangedKeys().containsKey("Same.xml"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("d", "x", "r", "b", "c")), changeSet.getKeys());
+    }
+
+    public void test__compare_Unchanged() {
+
+        Map<String, Map<String, String>> previous = new LinkedHashMap<>();
+        previous.put("ConfigOne.xml", buildMap("a", "1"));
+        previous.put("Null.xml", null);
+
+        Map<String, Map<String, String>> next = new LinkedHashMap<>();
+        next.put("ConfigOne.xml", buildMap("a", "1"));
+        next.put("Null.xml", null);
+
+        ConfigChangeSet changeSet = ConfigChangeSet.compare(previous, next, Collections.<String>emptyList(), 1, 2);
+
+        assertTrue(changeSet.isEmpty());
+        assertTrue(changeSet.getKeys().isEmpty());
+        assertTrue(ConfigChangeSet.EMPTY.isEmpty());
+    }
+
+    public void test__read_only() {
+
+        Map<String, Map<String, String>> next = Collections.singletonMap("ConfigOne.xml", buildMap("a", "1"));
+        ConfigChangeSet changeSet = ConfigChangeSet.compare(Collections.<String, Map<String, String>>emptyMap(), next,
+                                                            Collections.<String>emptyList(), 0, 1);
+
+        try
+        {
+            changeSet.getAddedKeys().get("ConfigOne.xml").add("b");
+            fail("Change sets should be read-only");
+        }
+        catch (UnsupportedOperationException expected) { }
+    }
+
+    private static Map<String, String> buildMap(String... keyValues) {
+
+        Map<String, String> map = new HashMap<>();
+        for ( int i = 0; i < keyValues.length; i += 2 )
+        {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+
+        return map;
+    }
+}
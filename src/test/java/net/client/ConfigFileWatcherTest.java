@@ -0,0 +1,142 @@
+package net.client;
+
+import junit.framework.TestCase;
+import net.common.JigProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A burst of config file edits should trigger one background reload, other
+ * files should not trigger any.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ConfigFileWatcherTest
+    extends TestCase {
+
+    private static final Pattern FILE_PATTERN = Pattern.compile(".*\\.(xml|json)");
+    private static final long DELAY_MILLIS = 200;
+
+    private final AtomicInteger _reloads = new AtomicInteger();
+    private File _configDir;
+    private ConfigFileWatcher _watcher;
+
+    @Override
+    protected void setUp()
+        throws Exception {
+
+        _configDir = Files.createTempDirectory("ConfigFileWatcherTest").toFile();
+        _watcher = new ConfigFileWatcher(Collections.singletonList(_configDir.getPath()), FILE_PATTERN, DELAY_MILLIS,
+                                         new Runnable() {
+            @Override
+            public void run() {
+                _reloads.incrementAndGet();
+            }
+        });
+
+        _watcher.start();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception {
+
+        _watcher.close();
+        File[] files = _configDir.listFiles();
+        for ( File file : files == null ? new File[0] : files )
+        {
+            file.delete();
+        }
+
+        _configDir.delete();
+    }
+
+    public void test__reload_Debounced() throws Exception {
+
+        writeFile("ConfigOne.xml", "<config/>");
+        writeFile("ConfigTwo.json", "{}");
+        writeFile("ConfigOne.xml", "<config><keyValues/></config>");
+
+        waitForReloads(1);
+        Thread.sleep(DELAY_MILLIS * 3);
+        assertEquals(1, _reloads.get());
+        assertEquals(1, _watcher.getReloadCount());
+
+        assertTrue(new File(_configDir, "ConfigTwo.json").delete());
+        waitForReloads(2);
+    }
+
+    public void test__reload_OtherFilesIgnored() throws Exception {
+
+        writeFile("notes.txt", "not a config file");
+        writeFile("ConfigOne.xml.swp", "editor swap file");
+
+        Thread.sleep(DELAY_MILLIS * 5);
+        assertEquals(0, _reloads.get());
+    }
+
+    public void test__close() throws Exception {
+
+        _watcher.close();
+        writeFile("ConfigOne.xml", "<config/>");
+
+        Thread.sleep(DELAY_MILLIS * 3);
+        assertEquals(0, _reloads.get());
+    }
+
+    public void test__properties() {
+
+        assertFalse(ConfigFileWatcher.isEnabled());
+        assertEquals(500, ConfigFileWatcher.findDelayMillis());
+
+        try
+        {
+            System.setProperty(JigProperties.JIG_WATCH.getName(), "true");
+            System.setProperty(JigProperties.JIG_WATCH_DELAY.getName(), "50");
+            assertTrue(ConfigFileWatcher.isEnabled());
+            assertEquals(50, ConfigFileWatcher.findDelayMillis());
+
+            System.setProperty(JigProperties.JIG_WATCH_DELAY.getName(), "soon");
+            assertEquals(500, ConfigFileWatcher.findDelayMillis());
+        }
+        finally
+        {
+            System.clearProperty(JigProperties.JIG_WATCH.getName());
+            System.clearProperty(JigProperties.JIG_WATCH_DELAY.getName());
+        }
+    }
+
+    private void waitForReloads(int count) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( _reloads.get() < count && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep(20);
+        }
+
+        assertEquals(count, _reloads.get());
+    }
+
+    private void writeFile(String name, String text) throws IOException {
+        Files.write(new File(_configDir, name).toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+}
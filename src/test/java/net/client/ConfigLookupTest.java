@@ -1,10 +1,23 @@
 package net.client;
 
 import junit.framework.TestCase;
+import net.common.JigProperties;
 import net.config.example.JavaTestConfigHelper;
 import net.util.ConfigStatistics;
+import net.util.OffHeapConfigIndex;
+import net.util.OffHeapConfigMap;
 import net.util.PatternHelper;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -115,6 +128,209 @@ public class ConfigLookupTest
         assertEquals("first value", value);
     }
 
+    public void test__getByKey_without_file_name() {
+
+        ConfigLookup cfg = new ConfigLookup();
+
+        assertEquals("first value", cfg.getByKey("key.one.string"));
+        assertEquals(Integer.valueOf(1), cfg.getByKey("key.two.int", Integer.class));
+        assertNull(cfg.getByKey("key.does.not.exist"));
+    }
+
+    public void test__getAll() {
+
+        ConfigLookup cfg = new ConfigLookup();
+        List<String> keys = Arrays.asList("key.two.int", "key.does.not.exist", null, "key.one.string", "key.two.int");
+
+        Map<String, String> values = cfg.getAll(keys);
+        assertEquals(2, values.size());
+        assertEquals(Arrays.asList("key.two.int", "key.one.string"), new ArrayList<>(values.keySet()));
+        assertEquals(cfg.getByKey("key.one.string"), values.get("key.one.string"));
+        assertFalse(values.containsKey("key.does.not.exist"));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("key.one.string", "first value");
+        expected.put("key.two.int", "1");
+        assertEquals(expected, values);
+
+        Map<String, Integer> ints = cfg.getAll(keys, Integer.class);
+        assertEquals(Collections.singletonMap("key.two.int", 1), ints);
+        assertTrue(cfg.getAll(Collections.<String>emptyList()).isEmpty());
+
+        try
+        {
+            values.put("key.three", "3");
+            fail("getAll() results should be read-only");
+        }
+        catch ( UnsupportedOperationException uoe ) { }
+    }
+
+    public void test__getByKey_typed_values_once_per_snapshot() {
+
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        configMaps.put("Base.xml", Collections.singletonMap("stocks", "amd,ibm"));
+        configMaps.put("Override.xml", Collections.singletonMap("count", "x"));
+        ConfigSnapshot snapshot = ConfigMap.buildSnapshot(configMaps, 1, ConfigSnapshot.EMPTY);
+
+        List<String> stocks = snapshot.getValue(null, "stocks", List.class);
+        assertEquals(Arrays.asList("amd", "ibm"), stocks);
+        assertEquals(stocks, snapshot.getValue("Base.xml", "stocks", List.class));
+        assertSame(stocks, snapshot.getValue(null, "stocks", List.class));
+        assertNull(snapshot.getValue(null, "count", Integer.class));
+        assertNull(snapshot.getValue("Missing.xml", "count", Integer.class));
+
+        try
+        {
+            stocks.add("msft");
+            fail("Shared lists are read-only");
+        }
+        catch ( UnsupportedOperationException expected ) { }
+
+        // A reload converts again
+        ConfigSnapshot reloaded = ConfigMap.buildSnapshot(configMaps, 2, snapshot);
+        assertNotSame(stocks, reloaded.getValue(null, "stocks", List.class));
+        assertEquals(stocks, reloaded.getValue(null, "stocks", List.class));
+    }
+
+    public void test__typed_values_only_cache_existing_keys() {
+
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        configMaps.put("Base.xml", Collections.singletonMap("count", "x"));
+        ConfigSnapshot snapshot = ConfigMap.buildSnapshot(configMaps, 1, ConfigSnapshot.EMPTY);
+        TypedValues typedValues = new TypedValues();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertNull(typedValues.get(snapshot, null, "key.missing." + i, Integer.class));
+            assertNull(typedValues.get(snapshot, "Missing" + i + ".xml", "count", Integer.class));
+        }
+
+        assertEquals(0, typedValues.getCachedCount());
+
+        // A failed conversion of an existing key is cached, once per file
+        assertNull(typedValues.get(snapshot, null, "count", Integer.class));
+        assertNull(typedValues.get(snapshot, "Base.xml", "count", Integer.class));
+        assertNull(typedValues.get(snapshot, "Base.xml", "count", Integer.class));
+        assertEquals(2, typedValues.getCachedCount());
+    }
+
+    public void test__getInt_and_defaults() {
+
+        ConfigLookup cfg = new ConfigLookup();
+
+        assertEquals(1, cfg.getInt("key.two.int", -1));
+        assertEquals(1L, cfg.getLong("key.two.int", -1));
+        assertEquals(1.0, cfg.getDouble("key.two.int", -1));
+        assertEquals(-1, cfg.getInt("key.one.string", -1));
+        assertEquals(-1, cfg.getInt("key.does.not.exist", -1));
+        assertTrue(cfg.getBoolean("key.does.not.exist", true));
+        assertEquals(-1, cfg.getInt(null, -1));
+    }
+
+    public void test__buildGlobalIndex_last_file_wins() {
+
+        Map<String, String> classpathFile = new HashMap<>();
+        classpathFile.put("key.one", "classpath");
+        classpathFile.put("key.two", "classpath");
+
+        Map<String, String> overrideFile = new HashMap<>();
+        overrideFile.put("key.one", "override");
+
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        configMaps.put("Classpath.xml", classpathFile);
+        configMaps.put("Override.xml", overrideFile);
+
+        Map<String, String> index = ConfigMap.buildGlobalIndex(configMaps);
+
+        assertEquals(2, index.size());
+        assertEquals("override", index.get("key.one"));
+        assertEquals("classpath", index.get("key.two"));
+    }
+
+    public void test__buildSnapshot_offheap_storage() {
+
+        Map<String, String> classpathFile = new HashMap<>();
+        classpathFile.put("stocks.amd", "AMD");
+        classpathFile.put("stocks.ibm", "IBM");
+        classpathFile.put("stocks.amd.shares", "100");
+        classpathFile.put("stocks.amd.price", "8.32");
+        classpathFile.put("stocks.amd.listed", "TRUE");
+
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        configMaps.put("Classpath.xml", OffHeapConfigMap.store(classpathFile, OffHeapConfigMap.Storage.OFFHEAP));
+        configMaps.put("Override.xml", Collections.singletonMap("stocks.amd", "override"));
+
+        System.setProperty(JigProperties.JIG_STORAGE.getName(), "offheap");
+        try
+        {
+            ConfigSnapshot snapshot = ConfigMap.buildSnapshot(configMaps, 1, ConfigSnapshot.EMPTY);
+
+            assertTrue(ConfigMap.buildGlobalIndex(configMaps) instanceof OffHeapConfigIndex);
+            assertEquals("override", snapshot.getValue("stocks.amd"));
+            assertEquals("IBM", snapshot.getValue("stocks.ibm"));
+            assertNull(snapshot.getKeyTrie("Classpath.xml", configMaps.get("Classpath.xml")));
+            assertNotNull(snapshot.getKeyTrie("Override.xml", configMaps.get("Override.xml")));
+
+            // Not indexed, parsed on access
+            assertEquals(100, snapshot.getInt("stocks.amd.shares", -1));
+            assertEquals(100L, snapshot.getLong("stocks.amd.shares", -1));
+            assertEquals(8.32, snapshot.getDouble("stocks.amd.price", -1));
+            assertEquals(-1, snapshot.getInt("stocks.amd.price", -1));
+            assertTrue(snapshot.getBoolean("stocks.amd.listed", false));
+            assertEquals(-1, snapshot.getInt("stocks.missing", -1));
+        }
+        finally
+        {
+            System.clearProperty(JigProperties.JIG_STORAGE.getName());
+        }
+    }
+
+    public void test__buildSnapshot_compact_storage_memory_report() {
+
+        Map<String, String> classpathFile = new HashMap<>();
+        classpathFile.put("structures.stocks.stock.amd.ticker", "AMD");
+        classpathFile.put("structures.stocks.stock.amd.currency", "USD");
+        classpathFile.put("structures.stocks.stock.ibm.currency", "USD");
+
+        Map<String, Map<String, String>> heapMaps = new LinkedHashMap<>();
+        heapMaps.put("Classpath.xml", classpathFile);
+        heapMaps.put("Override.xml", Collections.singletonMap("structures.stocks.stock.amd.ticker", "override"));
+
+        ConfigMemoryReport heapReport = ConfigMemoryReport.build(ConfigMap.buildSnapshot(heapMaps, 1, ConfigSnapshot.EMPTY), null);
+        assertEquals(3, heapReport.getKeyCount());
+        assertEquals(4, heapReport.getFileEntryCount());
+        // 3 keys, 'AMD', 'USD' and 'override' are shared between the file maps and the global index
+        assertEquals(6, heapReport.getDistinctStrings());
+
+        Map<String, Map<String, String>> compactMaps = new LinkedHashMap<>();
+        for ( Map.Entry<String, Map<String, String>> fileEntry : heapMaps.entrySet() )
+        {
+            compactMaps.put(fileEntry.getKey(), OffHeapConfigMap.store(fileEntry.getValue(), OffHeapConfigMap.Storage.COMPACT));
+        }
+
+        System.setProperty(JigProperties.JIG_STORAGE.getName(), "compact");
+        try
+        {
+            ConfigSnapshot snapshot = ConfigMap.buildSnapshot(compactMaps, 1, ConfigSnapshot.EMPTY);
+
+            assertEquals("override", snapshot.getValue("structures.stocks.stock.amd.ticker"));
+            assertEquals("USD", snapshot.getValue("structures.stocks.stock.ibm.currency"));
+            assertNull(snapshot.getValue("structures.stocks.stock.amd"));
+            assertNull(snapshot.getKeyTrie("Classpath.xml", compactMaps.get("Classpath.xml")));
+
+            ConfigMemoryReport report = ConfigMemoryReport.build(snapshot, null);
+            assertEquals(OffHeapConfigMap.Storage.COMPACT, report.getStorage());
+            assertEquals(3, report.getKeyCount());
+            assertEquals(3, report.getDistinctStrings());
+            assertEquals(0, report.getOffHeapBytes());
+            assertTrue(report.getMapBytes() > 0);
+        }
+        finally
+        {
+            System.clearProperty(JigProperties.JIG_STORAGE.getName());
+        }
+    }
+
     public void test__getByKey_with_pattern() {
 
         ConfigLookup cfg = new ConfigLookup();
@@ -125,6 +341,204 @@ public class ConfigLookupTest
         assertEquals(5, amdConfigs.size());
     }
 
+    public void test__get_with_key_trie_matches_full_scan() {
+
+        ConfigLookup cfg = new ConfigLookup();
+        Map<String, String> configOne = new ConfigMap().getConfig().get("ConfigOne.xml");
+
+        Pattern[] patterns = {
+            PatternHelper.buildPattern("amd"),
+            PatternHelper.buildPattern(true, "stock.amd"),
+            PatternHelper.buildPattern("stocks", "shares"),
+            Pattern.compile("^structures\\.stocks.*"),
+            Pattern.compile("[a-z]+\\.name.*"),
+            Pattern.compile("amd|intc")
+        };
+
+        for ( Pattern pattern : patterns )
+        {
+            assertEquals(pattern.pattern(), cfg.findMatches(configOne, pattern), cfg.get("ConfigOne.xml", pattern));
+        }
+    }
+    public void test__get_cached_until_reload() {
+
+        ConfigLookup cfg = new ConfigLookup();
+        Pattern pattern = PatternHelper.buildPattern("stock.amd");
+
+        Map<String, String> first = cfg.get(pattern);
+        assertSame(first, cfg.get(pattern));
+        assertNotSame(first, cfg.get("ConfigOne.xml", pattern));
+
+        try
+        {
+            first.clear();
+            fail("Cached results should be read-only");
+        }
+        catch (UnsupportedOperationException expected) { }
+
+        cfg.getConfigMap().reloadConfigFiles();
+        Map<String, String> reloaded = cfg.get(pattern);
+
+        assertNotSame(first, reloaded);
+        assertEquals(first, reloaded);
+    }
+
+    public void test__get_parallel_same_as_sequential() {
+
+        ConfigLookup cfg = new ConfigLookup();
+        Pattern[] patterns = { PatternHelper.buildPattern("stock"), PatternHelper.buildPattern("key"),
+                               Pattern.compile(".*"), PatternHelper.buildPattern("shares") };
+
+        Map<Pattern, Map<String, String>> sequential = new HashMap<>();
+        for ( Pattern pattern : patterns )
+        {
+            sequential.put(pattern, new HashMap<>(cfg.get(pattern, "amd")));
+        }
+
+        int threshold = cfg.getParallelLookup().getThreshold();
+        try
+        {
+            cfg.getParallelLookup().setThreshold(1);
+            cfg.getLookupCache().clear();
+
+            for ( Pattern pattern : patterns )
+            {
+                assertEquals(pattern.pattern(), sequential.get(pattern), cfg.get(pattern, "amd"));
+            }
+        }
+        finally
+        {
+            cfg.getParallelLookup().setThreshold(threshold);
+            cfg.getLookupCache().clear();
+        }
+    }
+
+    public void test__snapshot_reload_and_revert() {
+
+        ConfigMap configMap = new ConfigLookup().getConfigMap();
+        ConfigSnapshot before = configMap.getSnapshot();
+
+        configMap.reloadConfigFiles();
+        ConfigSnapshot reloaded = configMap.getSnapshot();
+
+        assertNotSame(before, reloaded);
+        assertTrue(reloaded.getVersion() > before.getVersion());
+        assertEquals("first value", before.getValue("key.one.string"));
+        assertEquals(before.getConfig().keySet(), reloaded.getConfig().keySet());
+
+        configMap.revertConfig();
+        ConfigSnapshot reverted = configMap.getSnapshot();
+
+        assertTrue(reverted.getVersion() > reloaded.getVersion());
+        assertSame(before.getConfig(), reverted.getConfig());
+    }
+
+    public void test__getHandle_resolves_per_snapshot() {
+
+        ConfigLookup cfg = new ConfigLookup();
+        ConfigHandle<List> handle = cfg.getHandle("key.five.list", List.class);
+        ConfigHandle<Integer> fileHandle = cfg.getHandle("ConfigOne.xml", "key.two.int", Integer.class);
+
+        List values = handle.get();
+        assertEquals(4, values.size());
+        assertSame(values, handle.get());
+        assertEquals(Integer.valueOf(1), fileHandle.get());
+        assertEquals("x", cfg.getHandle("key.does.not.exist", String.class).get("x"));
+
+        // Converted again from the reloaded snapshot
+        cfg.getConfigMap().reloadConfigFiles();
+        assertNotSame(values, handle.get());
+        assertEquals(values, handle.get());
+
+        try
+        {
+            cfg.getHandle(null, Integer.class);
+            fail("A key is required");
+        }
+        catch ( IllegalArgumentException expected ) { }
+    }
+
+    public void test__reload_change_set() {
+
+        ConfigMap configMap = new ConfigLookup().getConfigMap();
+        ConfigSnapshot before = configMap.getSnapshot();
+
+        ConfigChangeSet changeSet = configMap.reloadConfigFiles();
+        ConfigSnapshot reloaded = configMap.getSnapshot();
+
+        assertTrue(changeSet.isEmpty());
+        assertSame(changeSet, configMap.getLastChangeSet());
+        assertEquals(reloaded.getVersion(), changeSet.getToVersion());
+        assertSame(before.getConfig().get("ConfigOne.xml"), reloaded.getConfig().get("ConfigOne.xml"));
+
+        configMap.revertConfig();
+        assertTrue(configMap.getLastChangeSet().isEmpty());
+    }
+
+    public void test__reload_drops_removed_source() throws IOException {
+
+        ConfigMap configMap = new ConfigLookup().getConfigMap();
+        String property = JigProperties.JIG_LOCATION.getName();
+        String testLocation = System.getProperty(property);
+        File configDir = Files.createTempDirectory("ConfigLookupTest").toFile();
+        File removedFile = new File(configDir, "RemovedSource.xml");
+
+        try
+        {
+            Files.write(removedFile.toPath(),
+                        "<config><keyValues><property name=\"removed.source.key\" value=\"1\"/></keyValues></config>"
+                            .getBytes(StandardCharsets.UTF_8));
+            System.setProperty(property, configDir.getPath());
+
+            configMap.reloadConfigFiles();
+            assertEquals("1", configMap.getValue("removed.source.key"));
+            assertTrue(configMap.getConfig().containsKey("RemovedSource.xml"));
+
+            assertTrue(removedFile.delete());
+            ConfigChangeSet changeSet = configMap.reloadConfigFiles();
+
+            assertNull(configMap.getValue("removed.source.key"));
+            assertFalse(configMap.getConfig().containsKey("RemovedSource.xml"));
+            assertEquals(Collections.singleton("removed.source.key"),
+                         changeSet.getRemovedKeys().get("RemovedSource.xml"));
+        }
+        finally
+        {
+            System.setProperty(property, testLocation);
+            removedFile.delete();
+            configDir.delete();
+            configMap.reloadConfigFiles();
+        }
+    }
+
+    public void test__pollDatabaseConfigs_without_version_columns() {
+
+        ConfigMap configMap = new ConfigLookup().getConfigMap();
+        ConfigSnapshot before = configMap.getSnapshot();
+
+        // The test database table has no version column
+        assertTrue(configMap.pollDatabaseConfigs().isEmpty());
+        assertSame(before, configMap.getSnapshot());
+    }
+
+    public void test__snapshot_read_only() {
+
+        Map<String, Map<String, String>> config = new ConfigLookup().getConfigMap().getConfig();
+
+        try
+        {
+            config.get("ConfigOne.xml").put("key.one.string", "changed");
+            fail("Config snapshots should be read-only");
+        }
+        catch (UnsupportedOperationException expected) { }
+
+        try
+        {
+            config.remove("ConfigOne.xml");
+            fail("Config snapshots should be read-only");
+        }
+        catch (UnsupportedOperationException expected) { }
+    }
 
     private void retrievalPerformanceLoop(ConfigLookup configLookup, int iterations, Pattern pattern) {
 
@@ -0,0 +1,208 @@
+package net.client;
+
+import junit.framework.TestCase;
+import net.common.JigProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A snapshot should round trip the config and only be used while every
+ * source file, config directory and config property is unchanged.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ConfigSnapshotFileTest
+    extends TestCase {
+
+    private static final Pattern FILE_PATTERN = Pattern.compile(".*\\.(xml|json)");
+
+    private File _configDir;
+    private File _snapshotFile;
+
+    @Override
+    protected void setUp()
+        throws Exception {
+
+        _configDir = Files.createTempDirectory("ConfigSnapshotFileTest").toFile();
+        _snapshotFile = new File(_configDir, "snapshot/config.snapshot");
+        writeFile("ConfigOne.xml", "<config><keyValues><property name=\"a\" value=\"1\"/></keyValues></config>");
+        writeFile("ConfigTwo.json", "{\"config\": {\"b\": 2}}");
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception {
+
+        deleteAll(_configDir);
+    }
+
+    public void test__write_read() throws IOException {
+
+        Map<String, Map<String, String>> configMaps = buildConfigMaps();
+        writeSnapshot(configMaps);
+
+        Map<String, Map<String, String>> snapshotMaps = ConfigSnapshotFile.read(_snapshotFile);
+        assertEquals(configMaps, snapshotMaps);
+        assertEquals(Arrays.asList("ConfigOne.xml", "ConfigTwo.json", "Empty.xml", "Missing.xml"),
+                     Arrays.asList(snapshotMaps.keySet().toArray()));
+        assertTrue(snapshotMaps.get("ConfigOne.xml").containsKey("null.value"));
+        assertNull(snapshotMaps.get("Missing.xml"));
+        assertEquals("caf\u00e9 \u2603", snapshotMaps.get("ConfigTwo.json").get("unicode"));
+    }
+
+    public void test__read_ChangedSourceFile() throws IOException {
+
+        writeSnapshot(buildConfigMaps());
+        writeFile("ConfigOne.xml", "<config><keyValues><property name=\"a\" value=\"2\"/></keyValues></config>");
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+
+        // Same size, different content
+        writeSnapshot(buildConfigMaps());
+        writeFile("ConfigOne.xml", "<config><keyValues><property name=\"a\" value=\"3\"/></keyValues></config>");
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+
+        writeSnapshot(buildConfigMaps());
+        assertTrue(new File(_configDir, "ConfigTwo.json").delete());
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+    }
+
+    public void test__read_AddedConfigFile() throws IOException {
+
+        writeSnapshot(buildConfigMaps());
+        writeFile("notes.txt", "not a config file");
+        assertNotNull(ConfigSnapshotFile.read(_snapshotFile));
+
+        writeFile("ConfigThree.xml", "<config/>");
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+    }
+
+    public void test__read_ChangedProperties() throws IOException {
+
+        String property = JigProperties.JIG_COMMAND_LINE_PROP.getName() + ".snapshot.test";
+        writeSnapshot(buildConfigMaps());
+
+        try
+        {
+            System.setProperty(property, "override");
+            assertNull(ConfigSnapshotFile.read(_snapshotFile));
+
+            writeSnapshot(buildConfigMaps());
+            assertNotNull(ConfigSnapshotFile.read(_snapshotFile));
+        }
+        finally
+        {
+            System.clearProperty(property);
+        }
+
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+    }
+
+    public void test__read_InvalidSnapshot() throws IOException {
+
+        assertNull(ConfigSnapshotFile.read(null));
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+
+        writeSnapshot(buildConfigMaps());
+        try ( RandomAccessFile snapshot = new RandomAccessFile(_snapshotFile, "rw") )
+        {
+            snapshot.seek(snapshot.length() / 2);
+            int value = snapshot.read();
+            snapshot.seek(snapshot.length() / 2);
+            snapshot.write(value ^ 0xFF);
+        }
+
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+
+        Files.write(_snapshotFile.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertNull(ConfigSnapshotFile.read(_snapshotFile));
+    }
+
+    public void test__findSnapshotFile() {
+
+        String property = JigProperties.JIG_SNAPSHOT_FILE.getName();
+        assertNull(ConfigSnapshotFile.findSnapshotFile());
+
+        try
+        {
+            System.setProperty(property, " " + _snapshotFile.getPath() + " ");
+            assertEquals(_snapshotFile, ConfigSnapshotFile.findSnapshotFile());
+        }
+        finally
+        {
+            System.clearProperty(property);
+        }
+    }
+
+    private Map<String, Map<String, String>> buildConfigMaps() {
+
+        Map<String, String> configOne = new HashMap<>();
+        configOne.put("a", "1");
+        configOne.put("shared", "one");
+        configOne.put("null.value", null);
+
+        Map<String, String> configTwo = new HashMap<>();
+        configTwo.put("b", "2");
+        configTwo.put("shared", "one");
+        configTwo.put("unicode", "caf\u00e9 \u2603");
+
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        configMaps.put("ConfigOne.xml", configOne);
+        configMaps.put("ConfigTwo.json", configTwo);
+        configMaps.put("Empty.xml", Collections.<String, String>emptyMap());
+        configMaps.put("Missing.xml", null);
+
+        return configMaps;
+    }
+
+    private void writeSnapshot(Map<String, Map<String, String>> configMaps) throws IOException {
+
+        List<String> sourceFiles = Arrays.asList(new File(_configDir, "ConfigOne.xml").getPath(),
+                                                 new File(_configDir, "ConfigTwo.json").getPath());
+        List<String> sourceDirectories = Collections.singletonList(_configDir.getPath());
+
+        ConfigSnapshotFile.write(_snapshotFile, configMaps, sourceFiles, sourceDirectories, FILE_PATTERN);
+        assertTrue(_snapshotFile.isFile());
+    }
+
+    private void writeFile(String name, String text) throws IOException {
+        Files.write(new File(_configDir, name).toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void deleteAll(File file) {
+
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                deleteAll(child);
+            }
+        }
+
+        file.delete();
+    }
+}
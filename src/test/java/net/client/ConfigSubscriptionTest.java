@@ -0,0 +1,200 @@
+package net.client;
+
+import junit.framework.TestCase;
+import net.util.PatternHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Subscriptions should only see the changed entries they match, in version
+ * order, without blocking the publishing thread.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ConfigSubscriptionTest
+    extends TestCase {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final ConfigSubscriptions _subscriptions = new ConfigSubscriptions();
+    private final List<ConfigChangeEvent> _events = Collections.synchronizedList(new ArrayList<ConfigChangeEvent>());
+    private final ConfigChangeListener _listener = new ConfigChangeListener() {
+        @Override
+        public void configChanged(ConfigChangeEvent event) {
+            _events.add(event);
+        }
+    };
+
+    private ConfigSnapshot _current = snapshot(1, "Base.xml", "stock.amd.buy", "1", "stock.amd.sell", "2",
+                                               "stock.ibm.buy", "3", "shared", "base");
+
+    public void test__subscribe_Pattern() {
+
+        _subscriptions.subscribe(null, null, PatternHelper.buildPattern("stock.amd"), _listener, SAME_THREAD);
+        publish(snapshot(2, "Base.xml", "stock.amd.buy", "10", "stock.amd.hold", "5", "stock.ibm.buy", "30",
+                         "shared", "base"));
+
+        assertEquals(1, _events.size());
+        ConfigChangeEvent event = _events.get(0);
+        assertNull(event.getFileName());
+        assertEquals(2, event.getVersion());
+        assertEquals(buildMap("stock.amd.buy", "10", "stock.amd.hold", "5"), event.getChangedEntries());
+        assertEquals(Collections.singleton("stock.amd.sell"), event.getRemovedKeys());
+
+        // Nothing that matches changed
+        publish(snapshot(3, "Base.xml", "stock.amd.buy", "10", "stock.amd.hold", "5", "stock.ibm.buy", "31",
+                         "shared", "base"));
+        assertEquals(1, _events.size());
+    }
+
+    public void test__subscribe_Key_Precedence() {
+
+        _subscriptions.subscribe(null, "shared", null, _listener, SAME_THREAD);
+
+        // The override file hides the change to 'Base.xml'
+        Map<String, Map<String, String>> configMaps = new LinkedHashMap<>();
+        configMaps.put("Base.xml", buildMap("shared", "base"));
+        configMaps.put("Override.xml", buildMap("shared", "override"));
+        publish(ConfigMap.buildSnapshot(configMaps, 2, ConfigSnapshot.EMPTY));
+        assertEquals(buildMap("shared", "override"), _events.get(0).getChangedEntries());
+
+        configMaps = new LinkedHashMap<>(configMaps);
+        configMaps.put("Base.xml", buildMap("shared", "changed"));
+        publish(ConfigMap.buildSnapshot(configMaps, 3, ConfigSnapshot.EMPTY));
+        assertEquals(1, _events.size());
+    }
+
+    public void test__subscribe_File() {
+
+        _subscriptions.subscribe("Base.xml", null, Pattern.compile("stock\\..*\\.buy"), _listener, SAME_THREAD);
+        _subscriptions.subscribe("Other.xml", null, Pattern.compile("stock\\..*\\.buy"), _listener, SAME_THREAD);
+        publish(snapshot(2, "Base.xml", "stock.amd.buy", "10", "stock.amd.sell", "2", "shared", "base"));
+
+        assertEquals(1, _events.size());
+        assertEquals("Base.xml", _events.get(0).getFileName());
+        assertEquals(buildMap("stock.amd.buy", "10"), _events.get(0).getChangedEntries());
+        assertEquals(Collections.singleton("stock.ibm.buy"), _events.get(0).getRemovedKeys());
+    }
+
+    public void test__cancel_and_listener_failure() {
+
+        ConfigSubscription failing = _subscriptions.subscribe(null, null, PatternHelper.buildPattern("stock"),
+                                                              new ConfigChangeListener() {
+            @Override
+            public void configChanged(ConfigChangeEvent event) {
+                throw new IllegalStateException("listener failure");
+            }
+        }, SAME_THREAD);
+
+        ConfigSubscription subscription = _subscriptions.subscribe(null, "stock.amd.buy", null, _listener, SAME_THREAD);
+        assertEquals(2, _subscriptions.size());
+
+        publish(snapshot(2, "Base.xml", "stock.amd.buy", "10"));
+        assertEquals(1, _events.size());
+
+        subscription.cancel();
+        failing.cancel();
+        assertTrue(subscription.isCancelled());
+        assertEquals(0, _subscriptions.size());
+
+        publish(snapshot(3, "Base.xml", "stock.amd.buy", "20"));
+        assertEquals(1, _events.size());
+    }
+
+    public void test__slow_listener_does_not_block_publishing() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(3);
+        final List<Long> versions = Collections.synchronizedList(new ArrayList<Long>());
+
+        _subscriptions.subscribe(null, null, PatternHelper.buildPattern("stock"), new ConfigChangeListener() {
+            @Override
+            public void configChanged(ConfigChangeEvent event) {
+
+                try
+                {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                versions.add(event.getVersion());
+                delivered.countDown();
+            }
+        }, null);
+
+        publish(snapshot(2, "Base.xml", "stock.amd.buy", "10"));
+        publish(snapshot(3, "Base.xml", "stock.amd.buy", "20"));
+        publish(snapshot(4, "Base.xml", "stock.amd.buy", "30"));
+        assertTrue(versions.isEmpty());
+
+        release.countDown();
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(2L, 3L, 4L), versions);
+    }
+
+    public void test__subscribe_Invalid() {
+
+        try
+        {
+            _subscriptions.subscribe(null, null, null, _listener, null);
+            fail("A key or pattern is required");
+        }
+        catch ( IllegalArgumentException expected ) { }
+    }
+
+    private void publish(ConfigSnapshot next) {
+
+        ConfigChangeSet changeSet = ConfigChangeSet.compare(_current.getConfig(), next.getConfig(),
+                                                            Collections.<String>emptyList(), _current.getVersion(),
+                                                            next.getVersion());
+        _subscriptions.publish(_current, next, changeSet);
+        _current = next;
+    }
+
+    private static ConfigSnapshot snapshot(long version, String fileName, String... keyValues) {
+        return ConfigMap.buildSnapshot(Collections.singletonMap(fileName, buildMap(keyValues)), version,
+                                       ConfigSnapshot.EMPTY);
+    }
+
+    private static Map<String, String> buildMap(String... keyValues) {
+
+        Map<String, String> map = new HashMap<>();
+        for ( int i = 0; i < keyValues.length; i += 2 )
+        {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+
+        return map;
+    }
+}
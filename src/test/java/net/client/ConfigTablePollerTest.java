@@ -0,0 +1,110 @@
+package net.client;
+
+import junit.framework.TestCase;
+import net.common.JigProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The poller should keep polling after a failed poll and stop when closed.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ConfigTablePollerTest
+    extends TestCase {
+
+    private static final long INTERVAL_MILLIS = 20;
+
+    public void test__poll_after_failure_until_closed() throws Exception {
+
+        final AtomicInteger polls = new AtomicInteger();
+        ConfigTablePoller poller = new ConfigTablePoller(INTERVAL_MILLIS, new Runnable() {
+            @Override
+            public void run() {
+
+                if ( polls.incrementAndGet() == 1 )
+                {
+                    throw new IllegalStateException("database down");
+                }
+            }
+        });
+
+        poller.start();
+        waitForPolls(polls, 3);
+        assertTrue(poller.getPollCount() >= 3);
+
+        poller.close();
+        Thread.sleep(INTERVAL_MILLIS * 3);
+        int closedPolls = polls.get();
+        Thread.sleep(INTERVAL_MILLIS * 5);
+        assertEquals(closedPolls, polls.get());
+    }
+
+    public void test__close_runs_onClose_once() throws Exception {
+
+        final AtomicInteger polls = new AtomicInteger();
+        final AtomicInteger closes = new AtomicInteger();
+        ConfigTablePoller poller = new ConfigTablePoller(INTERVAL_MILLIS, new Runnable() {
+            @Override
+            public void run() {
+                polls.incrementAndGet();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                closes.incrementAndGet();
+            }
+        });
+
+        poller.start();
+        waitForPolls(polls, 1);
+
+        poller.close();
+        poller.close();
+        waitForPolls(closes, 1);
+        Thread.sleep(INTERVAL_MILLIS * 3);
+        assertEquals(1, closes.get());
+    }
+
+    public void test__findIntervalMillis() {
+
+        assertEquals(0, ConfigTablePoller.findIntervalMillis());
+
+        try
+        {
+            System.setProperty(JigProperties.JIG_SQL_POLL_INTERVAL.getName(), "5000");
+            assertEquals(5000, ConfigTablePoller.findIntervalMillis());
+
+            System.setProperty(JigProperties.JIG_SQL_POLL_INTERVAL.getName(), "often");
+            assertEquals(0, ConfigTablePoller.findIntervalMillis());
+        }
+        finally
+        {
+            System.clearProperty(JigProperties.JIG_SQL_POLL_INTERVAL.getName());
+        }
+    }
+
+    private void waitForPolls(AtomicInteger polls, int count) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( polls.get() < count && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep(10);
+        }
+
+        assertTrue(polls.get() >= count);
+    }
+}
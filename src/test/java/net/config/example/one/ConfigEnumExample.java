@@ -1,5 +1,6 @@
 package net.config.example.one;
 
+import net.client.ConfigHandle;
 import net.client.ConfigLookup;
 import net.util.ConfigStatistics;
 import net.util.GenericsHelper;
@@ -53,6 +54,8 @@ public enum ConfigEnumExample {
     private final Pattern _pattern;
     private final Class _clazz;
     private final String _configFileName;
+    /** Resolved once per config load for the key:value constants */
+    private final ConfigHandle _handle;
 
     private final static GenericsHelper _helper = new GenericsHelper();
     private static final ConfigLookup _configLookup = new ConfigLookup();
@@ -62,6 +65,7 @@ public enum ConfigEnumExample {
         _pattern = Pattern.compile(regex);
         _clazz = clazz;
         _configFileName = configFileName;
+        _handle = new ConfigLookup().getHandle(configFileName, regex, clazz);
     }
 
     private ConfigEnumExample(String regex, Class clazz) {
@@ -69,6 +73,7 @@ public enum ConfigEnumExample {
         _pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
         _clazz = clazz;
         _configFileName = null;
+        _handle = new ConfigLookup().getHandle(regex, clazz);
     }
 
     private ConfigEnumExample(String regex, String configFileName) {
@@ -76,6 +81,7 @@ public enum ConfigEnumExample {
         _pattern = Pattern.compile(".*" + regex);
         _configFileName = configFileName;
         _clazz = null;
+        _handle = null;
     }
 
     private ConfigEnumExample(String regex) {
@@ -83,6 +89,7 @@ public enum ConfigEnumExample {
         _pattern = Pattern.compile(".*" + regex);
         _clazz = null;
         _configFileName = null;
+        _handle = null;
     }
 
 
@@ -100,14 +107,13 @@ public enum ConfigEnumExample {
 
     public <T> T get(Class<T> clazz) {
 
-        String value = _configLookup.getByKey(getPattern().pattern());
         if ( !clazz.equals(getClazz()) )
         {
             //LOG.warn("Class Type Mismatch For Key Lookup! Returning 'null'");
-            return (T) value;
+            return (T) _configLookup.getByKey(getPattern().pattern());
         }
 
-        return _helper.get(value, clazz);
+        return (T) _handle.get();
     }
 
     public <T> T getByFile(Class<T> clazz) {
@@ -0,0 +1,86 @@
+package net.jmx;
+
+import junit.framework.TestCase;
+import net.config.example.JavaTestConfigHelper;
+import net.client.ConfigLookup;
+import net.util.PatternHelper;
+
+import java.util.regex.Pattern;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class JConfigTest
+    extends TestCase {
+
+    @Override
+    protected void setUp()
+        throws Exception {
+
+        JavaTestConfigHelper.updatePropertiesWithTestConfigPath();
+    }
+
+    public void test__lookup_cache_counts() {
+
+        ConfigLookup configLookup = new ConfigLookup();
+        JConfig jConfig = new JConfig(configLookup);
+        Pattern pattern = PatternHelper.buildPattern("jconfig", "cache");
+
+        long hits = jConfig.getLookupCacheHits();
+        long misses = jConfig.getLookupCacheMisses();
+
+        configLookup.get(pattern);
+        configLookup.get(pattern);
+
+        assertEquals(hits + 1, jConfig.getLookupCacheHits());
+        assertEquals(misses + 1, jConfig.getLookupCacheMisses());
+        assertTrue(jConfig.getLookupCacheSize() > 0);
+
+        jConfig.clearLookupCache();
+        assertEquals(0, jConfig.getLookupCacheSize());
+    }
+
+    public void test__getFileLoadTimes() {
+
+        JConfig jConfig = new JConfig();
+        jConfig.getCurrentConfig();
+
+        assertFalse(jConfig.getFileLoadTimes().isEmpty());
+    }
+
+    public void test__getLastChanges() {
+
+        JConfig jConfig = new JConfig();
+        jConfig.reloadConfig();
+
+        assertTrue(jConfig.getLastChanges().startsWith("ConfigChangeSet{"));
+    }
+
+    public void test__reportMemory() {
+
+        JConfig jConfig = new JConfig();
+        jConfig.reloadConfig();
+
+        assertTrue(jConfig.reportMemory().startsWith("ConfigMemoryReport{storage=HEAP"));
+    }
+
+    public void test__getCurrentConfig() {
+
+        JConfig jConfig = new JConfig();
+        assertEquals("first value", jConfig.getCurrentConfig().get("ConfigOne.xml").get("key.one.string"));
+    }
+}
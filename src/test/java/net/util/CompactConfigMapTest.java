@@ -0,0 +1,110 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class CompactConfigMapTest
+    extends TestCase {
+
+    private Map<String, String> buildConfigMap() {
+
+        Map<String, String> configMap = new HashMap<>();
+        configMap.put("structures.stocks.stock.name.AMD.shares", "100");
+        configMap.put("structures.stocks.stock.name.INTC.shares", "200");
+        configMap.put("structures.stocks.stock.name", "prefix and key");
+        configMap.put("amd.ticker", "AMD");
+        configMap.put("key.null", null);
+        configMap.put("key..empty.segment.", "");
+        configMap.put("", "empty key");
+
+        return configMap;
+    }
+
+    public void test__copyOf_same_as_heap() {
+
+        Map<String, String> configMap = buildConfigMap();
+        CompactConfigMap compactMap = CompactConfigMap.copyOf(configMap);
+
+        assertEquals(configMap, compactMap);
+        assertEquals(configMap.hashCode(), compactMap.hashCode());
+        assertEquals(configMap.keySet(), compactMap.keySet());
+        assertEquals("200", compactMap.get("structures.stocks.stock.name.INTC.shares"));
+        assertEquals("prefix and key", compactMap.get("structures.stocks.stock.name"));
+        assertEquals("", compactMap.get("key..empty.segment."));
+        assertEquals("empty key", compactMap.get(""));
+        assertTrue(compactMap.containsKey("key.null"));
+        assertNull(compactMap.get("key.null"));
+
+        // Prefix nodes are not keys
+        assertFalse(compactMap.containsKey("structures.stocks"));
+        assertFalse(compactMap.containsKey("structures.stocks.stock.name.AMD.shares.more"));
+        assertFalse(compactMap.containsKey("amd.tick"));
+        assertNull(compactMap.get(42));
+        assertNull(CompactConfigMap.copyOf(null));
+
+        try
+        {
+            compactMap.put("key.new", "value");
+            fail("Compact config maps should be read-only");
+        }
+        catch ( UnsupportedOperationException expected ) { }
+    }
+
+    public void test__shared_prefix_segments() {
+
+        Map<String, String> configMap = new HashMap<>();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            configMap.put("structures.stocks.stock.name.S" + i + ".shares", String.valueOf(i));
+        }
+
+        CompactConfigMap compactMap = CompactConfigMap.copyOf(configMap);
+
+        // 'structures.stocks.stock.name' once, then one 'S<i>' and one 'shares' node per key
+        assertEquals(4 + 2000, compactMap.getNodeCount());
+        assertEquals(configMap, compactMap);
+        assertEquals("999", compactMap.get("structures.stocks.stock.name.S999.shares"));
+        assertTrue(compactMap.estimateKeyBytes() > 0);
+    }
+
+    public void test__merge_later_maps_win() {
+
+        Map<String, String> classpathFile = new HashMap<>();
+        classpathFile.put("key.one", "classpath");
+        classpathFile.put("key.two", "classpath");
+
+        Map<String, String> overrideFile = new HashMap<>();
+        overrideFile.put("key.one", "override");
+        overrideFile.put("key.three", "override");
+
+        List<Map<String, String>> configMaps = Arrays.asList(CompactConfigMap.copyOf(classpathFile), null, overrideFile);
+        CompactConfigMap merged = CompactConfigMap.merge(configMaps);
+
+        assertEquals(3, merged.size());
+        assertEquals("override", merged.get("key.one"));
+        assertEquals("classpath", merged.get("key.two"));
+        assertEquals("override", merged.get("key.three"));
+        assertEquals(4, merged.getNodeCount());
+    }
+}
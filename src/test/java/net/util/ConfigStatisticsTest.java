@@ -5,6 +5,8 @@ import net.config.example.JavaTestConfigHelper;
 import net.config.example.one.ConfigEnumExample;
 import net.config.example.two.PojoConfigExample;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -112,4 +114,127 @@ public class ConfigStatisticsTest
 
         assertTrue(countGreaterThanOne);
     }
+
+    public void test__pattern_latencies() {
+
+        PojoConfigExample pojo = new PojoConfigExample();
+        ConfigStatistics statistics = pojo.getConfigLookup().getConfigStatistics();
+        statistics.clearStatistics();
+        statistics.enableStatsCollection();
+
+        pojo.findAllStocks();
+        pojo.findAllStocks();
+
+        statistics.disableStatsCollection();
+
+        Map<String, LatencyHistogram> patternLatencies = statistics.getPatternLatencies();
+        assertEquals(1, patternLatencies.size());
+
+        LatencyHistogram histogram = patternLatencies.values().iterator().next();
+        assertEquals(2, histogram.getCount());
+        assertTrue(histogram.getMax() > 0);
+
+        for ( StatsValue value : statistics.getStats().values() )
+        {
+            assertEquals(2, value.getLatencyHistogram().getCount());
+        }
+    }
+
+    public void test__batch_lookups() {
+
+        ConfigStatistics statistics = new ConfigStatistics();
+        statistics.clearStatistics();
+        statistics.addBatchLookup(Arrays.asList("batch.one", "batch.two"), 500, 1);
+        statistics.addBatchLookup(Collections.singletonList("batch.one"), 300, 1);
+
+        // One latency per call, not per key
+        assertEquals(2, statistics.getPatternLatencyFor(ConfigStatistics.BATCH_PATTERN).getCount());
+
+        StatsValue value = statistics.getStatsFor("batch.one");
+        assertEquals(2, value.getBatchCount());
+        assertEquals(0, value.getCount());
+        assertEquals(0, value.getLatencyHistogram().getCount());
+        assertEquals(1, statistics.getStatsFor("batch.two").getBatchCount());
+
+        statistics.clearStatistics();
+    }
+
+    public void test__sampling() {
+
+        ConfigStatistics statistics = new ConfigStatistics();
+        assertEquals(1, statistics.getSampleRate());
+        assertEquals(0, statistics.sample());
+
+        statistics.enableStatsCollection();
+        try
+        {
+            assertEquals(1, statistics.sample());
+
+            statistics.setSampleRate(10);
+            long extrapolated = 0;
+            for ( int i = 0; i < 100000; i++ )
+            {
+                int weight = statistics.sample();
+                assertTrue(weight == 0 || weight == 10);
+                extrapolated += weight;
+            }
+
+            // Roughly every lookup is accounted for
+            assertTrue(String.valueOf(extrapolated), extrapolated > 90000 && extrapolated < 110000);
+
+            statistics.setSampleRate(0);
+            assertEquals(1, statistics.getSampleRate());
+        }
+        finally
+        {
+            statistics.setSampleRate(1);
+            statistics.disableStatsCollection();
+        }
+    }
+
+    public void test__sampled_updates_are_extrapolated() {
+
+        StatsValue value = new StatsValue("sampled.key");
+        value.updateStats(100, "pattern", 8);
+        value.updateStats(300, "pattern", 8);
+
+        assertEquals(16, value.getCount());
+        assertEquals(200.0, value.getAverageLatency());
+        assertEquals(16, value.getLatencyHistogram().getCount());
+    }
+
+    public void test__concurrent_updates() throws Exception {
+
+        final StatsValue value = new StatsValue("concurrent.key");
+        final int threadCount = 8;
+        final int updates = 10000;
+        Thread[] threads = new Thread[threadCount];
+
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final String pattern = "pattern" + (i % 2);
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+
+                    for ( int j = 0; j < updates; j++ )
+                    {
+                        value.updateStats(2, pattern);
+                    }
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals(threadCount * updates, value.getCount());
+        assertEquals(2.0, value.getAverageLatency());
+        assertEquals(2, value.getAssociatedPatterns().size());
+        assertTrue(value.getLastAccessed() > 0);
+    }
 }
@@ -2,6 +2,11 @@ package net.util;
 
 import junit.framework.TestCase;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * @author dmillett
  *
@@ -35,5 +40,14 @@ public class GenericsHelperTest
         assertNull(value);
     }
 
+    public void test__get_BigDecimal_and_Set() {
+
+        GenericsHelper helper = new GenericsHelper();
+        assertEquals(new BigDecimal("10.25"), helper.get("10.25", BigDecimal.class));
+
+        Set<String> values = helper.get("a,b,a", Set.class);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b")), values);
+    }
+
     // The others are tested in ConfigEnumKeyValueExample
 }
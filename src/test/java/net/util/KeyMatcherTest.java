@@ -0,0 +1,89 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Each strategy should match the same keys as the lookup did before with
+ * contains/find/matches on the lower cased key.
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class KeyMatcherTest
+    extends TestCase {
+
+    private static final List<String> KEYS = Arrays.asList("stocks.amd", "stocks.amd.shares", "Stocks.IBM.Shares",
+                                                           "commissions.stocks", "stocks", "", "stocksXamd");
+
+    public void test__compile_Strategy() {
+
+        assertStrategy(KeyMatcher.Strategy.EXACT, "^stocks\\.amd$");
+        assertStrategy(KeyMatcher.Strategy.PREFIX, "^stocks\\.amd");
+        assertStrategy(KeyMatcher.Strategy.SUFFIX, ".*\\.shares");
+        assertStrategy(KeyMatcher.Strategy.SUFFIX, "shares$");
+        assertStrategy(KeyMatcher.Strategy.CONTAINS, "stocks");
+        assertStrategy(KeyMatcher.Strategy.CONTAINS, ".*stocks.*");
+        assertStrategy(KeyMatcher.Strategy.CONTAINS, "stocks.*");
+        assertStrategy(KeyMatcher.Strategy.NONE, "Stocks");
+        assertStrategy(KeyMatcher.Strategy.FIND, "stocks.amd");
+        assertStrategy(KeyMatcher.Strategy.FIND, "stocks.*amd");
+        assertStrategy(KeyMatcher.Strategy.MATCH, ".*stocks\\..*\\.shares");
+        assertStrategy(KeyMatcher.Strategy.FIND, "amd|ibm");
+    }
+
+    public void test__matches_same_as_regex() {
+
+        String[] patterns = { "^stocks\\.amd$", "^stocks\\.amd", ".*\\.shares", "shares$", "stocks", ".*stocks.*",
+                              "stocks.*", "Stocks", "stocks.amd", "stocks.*amd", ".*stocks\\..*\\.shares",
+                              "amd|ibm", "^", ".*", "amd\\$" };
+
+        for ( String patternText : patterns )
+        {
+            assertSameMatches(Pattern.compile(patternText));
+        }
+
+        assertSameMatches(Pattern.compile("STOCKS\\.AMD", Pattern.CASE_INSENSITIVE));
+        assertSameMatches(Pattern.compile("stocks.amd", Pattern.LITERAL));
+    }
+
+    public void test__toLowerCase() {
+
+        String lowerCase = "stocks.amd";
+        assertSame(lowerCase, KeyMatcher.toLowerCase(lowerCase));
+        assertEquals("stocks.ibm", KeyMatcher.toLowerCase("Stocks.IBM"));
+    }
+
+    private static void assertStrategy(KeyMatcher.Strategy expected, String patternText) {
+        assertEquals(patternText, expected, KeyMatcher.compile(Pattern.compile(patternText)).getStrategy());
+    }
+
+    /** The lookup before KeyMatcher: find() unless the pattern starts with ".*" */
+    private static void assertSameMatches(Pattern pattern) {
+
+        KeyMatcher keyMatcher = KeyMatcher.compile(pattern);
+        for ( String key : KEYS )
+        {
+            String lowerCaseKey = key.toLowerCase();
+            boolean expected = PatternHelper.useFind(pattern) ? pattern.matcher(lowerCaseKey).find()
+                                                              : pattern.matcher(lowerCaseKey).matches();
+
+            assertEquals(pattern + " : " + key, expected, keyMatcher.matches(key));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class KeyTrieTest
+    extends TestCase {
+
+    private Map<String, String> buildConfigMap() {
+
+        Map<String, String> configMap = new HashMap<>();
+        configMap.put("structures.stocks.stock.name.AMD.shares", "100");
+        configMap.put("structures.stocks.stock.name.INTC.shares", "200");
+        configMap.put("structures.cities.city.name.chicago.state", "IL");
+        configMap.put("amd.ticker", "AMD");
+        configMap.put("key.one", "first value");
+
+        return configMap;
+    }
+
+    private Set<String> findKeys(KeyTrie keyTrie, String literal, boolean anchored) {
+
+        Set<String> keys = new HashSet<>();
+        List<KeyTrie.Entry> entries = keyTrie.find(literal, anchored);
+
+        for ( KeyTrie.Entry entry : entries )
+        {
+            keys.add(entry.getKey());
+        }
+
+        return keys;
+    }
+
+    public void test__find_empty() {
+
+        KeyTrie keyTrie = new KeyTrie(buildConfigMap());
+
+        assertEquals(5, keyTrie.getEntries().size());
+        assertEquals(5, keyTrie.find(null, false).size());
+        assertEquals(5, keyTrie.find("", true).size());
+        assertTrue(keyTrie.find("nope", false).isEmpty());
+    }
+
+    public void test__find_within_segment() {
+
+        KeyTrie keyTrie = new KeyTrie(buildConfigMap());
+
+        Set<String> amd = findKeys(keyTrie, "amd", false);
+        assertEquals(2, amd.size());
+        assertTrue(amd.contains("structures.stocks.stock.name.AMD.shares"));
+        assertTrue(amd.contains("amd.ticker"));
+
+        assertEquals(2, findKeys(keyTrie, "tock", false).size());
+        assertEquals(1, findKeys(keyTrie, "amd", true).size());
+    }
+
+    public void test__find_across_segments() {
+
+        KeyTrie keyTrie = new KeyTrie(buildConfigMap());
+
+        assertEquals(2, findKeys(keyTrie, "stock.name", false).size());
+        assertEquals(2, findKeys(keyTrie, "ock.name.", false).size());
+        assertEquals(1, findKeys(keyTrie, "stock.name.am", false).size());
+        assertEquals(3, findKeys(keyTrie, "structures.", true).size());
+        assertEquals(0, findKeys(keyTrie, "stocks.stock", true).size());
+        assertEquals(1, findKeys(keyTrie, "key.one", true).size());
+    }
+
+    public void test__isIndexFor() {
+
+        Map<String, String> configMap = buildConfigMap();
+        KeyTrie keyTrie = new KeyTrie(configMap);
+
+        assertTrue(keyTrie.isIndexFor(configMap));
+        assertFalse(keyTrie.isIndexFor(buildConfigMap()));
+    }
+}
@@ -0,0 +1,119 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class LatencyHistogramTest
+    extends TestCase {
+
+    public void test__empty() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getP99());
+    }
+
+    public void test__bucket_bounds() {
+
+        for ( long value : new long[] {0, 7, 8, 15, 16, 17, 1000, 123456789L, 1L << 40, (1L << 41) - 1} )
+        {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+
+            assertTrue(value + " <= " + upperBound, value <= upperBound);
+            assertTrue(value + " within 12.5%", upperBound - value <= value / 8);
+
+            if ( upperBound < (1L << 41) - 1 )
+            {
+                assertEquals(index + 1, LatencyHistogram.bucketIndex(upperBound + 1));
+            }
+        }
+
+        // Too large for the histogram, so they share the last bucket
+        assertEquals(LatencyHistogram.bucketIndex((1L << 41) - 1), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    public void test__percentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for ( int i = 1; i <= 1000; i++ )
+        {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000L, histogram.getMax());
+
+        assertWithinPrecision(500000L, histogram.getP50());
+        assertWithinPrecision(900000L, histogram.getP90());
+        assertWithinPrecision(990000L, histogram.getP99());
+        assertWithinPrecision(999000L, histogram.getP999());
+        assertEquals(1000000L, histogram.getValueAtPercentile(100.0));
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+    }
+
+    public void test__record_concurrently() throws InterruptedException {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LatencyHistogram unstriped = new LatencyHistogram(false);
+        Thread[] threads = new Thread[8];
+
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for ( int j = 0; j < 10000; j++ )
+                    {
+                        histogram.record(100L, 2);
+                        unstriped.record(100L);
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        // Every stripe is counted, whether or not recording was contended
+        assertEquals(160000, histogram.getCount());
+        assertTrue(histogram.getStripeCount() >= 1);
+        assertWithinPrecision(100L, histogram.getP99());
+
+        // Contended records share the one set of buckets
+        assertEquals(80000, unstriped.getCount());
+        assertEquals(1, unstriped.getStripeCount());
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+    }
+
+    private void assertWithinPrecision(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual - expected <= expected / 8);
+    }
+}
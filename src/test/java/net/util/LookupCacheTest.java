@@ -0,0 +1,107 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class LookupCacheTest
+    extends TestCase {
+
+    private Map<String, String> buildMatches() {
+
+        Map<String, String> matches = new HashMap<>();
+        matches.put("stocks.stock.amd.shares", "100");
+        return matches;
+    }
+
+    public void test__get_put() {
+
+        LookupCache cache = new LookupCache(10);
+        Pattern pattern = PatternHelper.buildPattern("stock");
+
+        assertNull(cache.get(1, null, pattern, "amd"));
+        Map<String, String> cached = cache.put(1, null, pattern, buildMatches(), "amd");
+
+        assertSame(cached, cache.get(1, null, pattern, "amd"));
+        assertNull(cache.get(1, null, pattern, "intc"));
+        assertNull(cache.get(1, "ConfigOne.xml", pattern, "amd"));
+        assertNull(cache.get(1, null, Pattern.compile("stock.*", Pattern.CASE_INSENSITIVE), "amd"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    public void test__read_only() {
+
+        LookupCache cache = new LookupCache(10);
+        Map<String, String> cached = cache.put(1, null, PatternHelper.buildPattern("stock"), buildMatches());
+
+        try
+        {
+            cached.put("foo", "bar");
+            fail("Cached results should be read-only");
+        }
+        catch (UnsupportedOperationException expected) { }
+    }
+
+    public void test__new_version_invalidates() {
+
+        LookupCache cache = new LookupCache(10);
+        Pattern pattern = PatternHelper.buildPattern("stock");
+
+        cache.put(1, null, pattern, buildMatches());
+        assertNotNull(cache.get(1, null, pattern));
+
+        assertNull(cache.get(2, null, pattern));
+        assertEquals(0, cache.size());
+
+        // A lookup that started before the reload is not cached
+        cache.put(1, null, pattern, buildMatches());
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1, null, pattern));
+    }
+
+    public void test__eviction() {
+
+        LookupCache cache = new LookupCache(2);
+
+        cache.put(1, null, PatternHelper.buildPattern("one"), buildMatches());
+        cache.put(1, null, PatternHelper.buildPattern("two"), buildMatches());
+        cache.put(1, null, PatternHelper.buildPattern("three"), buildMatches());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    public void test__disabled() {
+
+        LookupCache cache = new LookupCache(0);
+        Pattern pattern = PatternHelper.buildPattern("stock");
+
+        assertEquals(1, cache.put(1, null, pattern, buildMatches()).size());
+        assertNull(cache.get(1, null, pattern));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,104 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class OffHeapConfigIndexTest
+    extends TestCase {
+
+    public void test__build_later_maps_win() {
+
+        Map<String, String> classpathFile = new HashMap<>();
+        classpathFile.put("key.one", "classpath");
+        classpathFile.put("key.two", "classpath");
+        classpathFile.put("city.name.z\u00fcrich", "Z\u00fcrich");
+
+        Map<String, String> overrideFile = new HashMap<>();
+        overrideFile.put("key.one", "override");
+        overrideFile.put("key.three", null);
+
+        // The heap map is copied off-heap for the index
+        Map<String, String> commandLine = Collections.singletonMap("key.two", "command line");
+
+        List<Map<String, String>> configMaps = Arrays.asList(
+            OffHeapConfigMap.store(classpathFile, OffHeapConfigMap.Storage.OFFHEAP), null,
+            OffHeapConfigMap.store(overrideFile, OffHeapConfigMap.Storage.OFFHEAP), commandLine);
+        OffHeapConfigIndex index = OffHeapConfigIndex.build(configMaps, OffHeapConfigMap.Storage.OFFHEAP);
+
+        Map<String, String> expected = new HashMap<>();
+        expected.putAll(classpathFile);
+        expected.putAll(overrideFile);
+        expected.putAll(commandLine);
+
+        assertEquals(4, index.size());
+        assertEquals(expected, index);
+        assertEquals(expected, new HashMap<>(index));
+        assertEquals("override", index.get("key.one"));
+        assertEquals("command line", index.get("key.two"));
+        assertEquals("Z\u00fcrich", index.get("city.name.z\u00fcrich"));
+        assertTrue(index.containsKey("key.three"));
+        assertNull(index.get("key.three"));
+        assertFalse(index.containsKey("key.four"));
+        assertNull(index.get(null));
+    }
+
+    public void test__build_stores_entries_once() {
+
+        List<Map<String, String>> configMaps = new ArrayList<>();
+        for ( int file = 0; file < 3; file++ )
+        {
+            Map<String, String> configMap = new HashMap<>();
+            for ( int i = 0; i < 5000; i++ )
+            {
+                configMap.put("structures.stocks.stock.name.ticker" + i + ".shares", file + "." + i);
+            }
+
+            configMaps.add(OffHeapConfigMap.store(configMap, OffHeapConfigMap.Storage.MMAP));
+        }
+
+        OffHeapConfigIndex index = OffHeapConfigIndex.build(configMaps, OffHeapConfigMap.Storage.MMAP);
+        OffHeapConfigMap merged = OffHeapConfigMap.merge(configMaps, OffHeapConfigMap.Storage.MMAP);
+
+        assertEquals(5000, index.size());
+        assertEquals("2.4321", index.get("structures.stocks.stock.name.ticker4321.shares"));
+        assertEquals(merged, index);
+        // Only the slots, no second copy of the keys and values
+        assertTrue(index.getOffHeapBytes() < merged.getOffHeapBytes() / 2);
+    }
+
+    public void test__findCapacity() {
+
+        assertEquals(4, OffHeapConfigMap.findCapacity(0, 8));
+        assertEquals(4096, OffHeapConfigMap.findCapacity(1500, 12));
+
+        try
+        {
+            OffHeapConfigMap.findCapacity(100000000L, 12);
+            fail("An index over 2GB should not overflow");
+        }
+        catch ( IllegalArgumentException expected ) { }
+    }
+}
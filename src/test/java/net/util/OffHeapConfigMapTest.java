@@ -0,0 +1,137 @@
+package net.util;
+
+import junit.framework.TestCase;
+import net.common.JigProperties;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class OffHeapConfigMapTest
+    extends TestCase {
+
+    private Map<String, String> buildConfigMap() {
+
+        Map<String, String> configMap = new HashMap<>();
+        configMap.put("structures.stocks.stock.name.AMD.shares", "100");
+        configMap.put("amd.ticker", "AMD");
+        configMap.put("key.empty", "");
+        configMap.put("key.null", null);
+        configMap.put("city.name.z\u00fcrich", "Z\u00fcrich");
+        configMap.put("key.symbol", "\u20ac \ud83d\ude00");
+
+        return configMap;
+    }
+
+    public void test__store_offheap_same_as_heap() {
+
+        Map<String, String> configMap = buildConfigMap();
+        Map<String, String> offHeapMap = OffHeapConfigMap.store(configMap, OffHeapConfigMap.Storage.OFFHEAP);
+
+        assertTrue(offHeapMap instanceof OffHeapConfigMap);
+        assertEquals(configMap, offHeapMap);
+        assertEquals(configMap.hashCode(), offHeapMap.hashCode());
+        assertEquals("Z\u00fcrich", offHeapMap.get("city.name.z\u00fcrich"));
+        assertEquals("", offHeapMap.get("key.empty"));
+        assertTrue(offHeapMap.containsKey("key.null"));
+        assertNull(offHeapMap.get("key.null"));
+        assertFalse(offHeapMap.containsKey("amd.tick"));
+        assertFalse(offHeapMap.containsKey("amd.tickers"));
+        assertNull(offHeapMap.get(null));
+        assertNull(offHeapMap.get(42));
+        assertTrue(((OffHeapConfigMap) offHeapMap).getOffHeapBytes() > 0);
+    }
+
+    public void test__store_mmap_and_many_keys() {
+
+        Map<String, String> configMap = new HashMap<>();
+        for ( int i = 0; i < 5000; i++ )
+        {
+            configMap.put("key." + i, "value." + i);
+        }
+
+        Map<String, String> mappedMap = OffHeapConfigMap.store(configMap, OffHeapConfigMap.Storage.MMAP);
+
+        assertEquals(5000, mappedMap.size());
+        assertEquals("value.4321", mappedMap.get("key.4321"));
+        assertEquals(configMap, mappedMap);
+        assertNull(mappedMap.get("key.5000"));
+    }
+
+    public void test__store_heap_and_read_only() {
+
+        Map<String, String> configMap = buildConfigMap();
+        Map<String, String> heapMap = OffHeapConfigMap.store(configMap, OffHeapConfigMap.Storage.HEAP);
+        Map<String, String> offHeapMap = OffHeapConfigMap.store(configMap, OffHeapConfigMap.Storage.OFFHEAP);
+
+        assertFalse(heapMap instanceof OffHeapConfigMap);
+        assertNull(OffHeapConfigMap.store(null, OffHeapConfigMap.Storage.OFFHEAP));
+
+        for ( Map<String, String> readOnly : Arrays.asList(heapMap, offHeapMap) )
+        {
+            try
+            {
+                readOnly.put("key.new", "value");
+                fail("Stored config maps should be read-only");
+            }
+            catch ( UnsupportedOperationException expected ) { }
+        }
+    }
+
+    public void test__merge_later_maps_win() {
+
+        Map<String, String> classpathFile = new HashMap<>();
+        classpathFile.put("key.one", "classpath");
+        classpathFile.put("key.two", "classpath");
+
+        Map<String, String> overrideFile = new HashMap<>();
+        overrideFile.put("key.one", "override");
+
+        OffHeapConfigMap merged = OffHeapConfigMap.merge(Arrays.asList(classpathFile, null, overrideFile),
+                                                         OffHeapConfigMap.Storage.OFFHEAP);
+
+        assertEquals(2, merged.size());
+        assertEquals(2, merged.entrySet().size());
+        assertEquals("override", merged.get("key.one"));
+        assertEquals("classpath", merged.get("key.two"));
+    }
+
+    public void test__findStorage() {
+
+        String name = JigProperties.JIG_STORAGE.getName();
+        try
+        {
+            assertEquals(OffHeapConfigMap.Storage.HEAP, OffHeapConfigMap.findStorage());
+
+            System.setProperty(name, " mmap ");
+            assertEquals(OffHeapConfigMap.Storage.MMAP, OffHeapConfigMap.findStorage());
+
+            System.setProperty(name, "offheap");
+            assertEquals(OffHeapConfigMap.Storage.OFFHEAP, OffHeapConfigMap.findStorage());
+
+            System.setProperty(name, "disk");
+            assertEquals(OffHeapConfigMap.Storage.HEAP, OffHeapConfigMap.findStorage());
+        }
+        finally
+        {
+            System.clearProperty(name);
+        }
+    }
+}
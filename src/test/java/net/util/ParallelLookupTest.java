@@ -0,0 +1,87 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class ParallelLookupTest
+    extends TestCase {
+
+    public void test__isParallel_threshold() {
+
+        ParallelLookup disabled = new ParallelLookup(0, 2);
+        assertFalse(disabled.isParallel(1000000));
+
+        ParallelLookup parallelLookup = new ParallelLookup(1000, 2);
+        assertEquals(2, parallelLookup.getParallelism());
+        assertFalse(parallelLookup.isParallel(999));
+        assertTrue(parallelLookup.isParallel(1000));
+
+        parallelLookup.setThreshold(-1);
+        assertEquals(0, parallelLookup.getThreshold());
+        assertFalse(parallelLookup.isParallel(1000));
+    }
+
+    public void test__getChunkSize() {
+
+        ParallelLookup parallelLookup = new ParallelLookup(1, 2);
+
+        assertEquals(ParallelLookup.MIN_CHUNK_SIZE, parallelLookup.getChunkSize(10));
+        assertEquals(125000, parallelLookup.getChunkSize(1000000));
+    }
+
+    public void test__invokeAll_in_order() {
+
+        ParallelLookup parallelLookup = new ParallelLookup(1, 2);
+        List<Callable<String>> tasks = new ArrayList<>();
+
+        for ( final String value : Arrays.asList("a", "b", "c", "d") )
+        {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    return value;
+                }
+            });
+        }
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), parallelLookup.invokeAll(tasks));
+
+        tasks.add(new Callable<String>() {
+            @Override
+            public String call() {
+                throw new IllegalArgumentException("bad pattern");
+            }
+        });
+
+        try
+        {
+            parallelLookup.invokeAll(tasks);
+            fail("A failed task should fail the lookup");
+        }
+        catch ( IllegalStateException expected )
+        {
+            assertTrue(expected.getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
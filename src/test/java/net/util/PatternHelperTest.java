@@ -93,4 +93,30 @@ public class PatternHelperTest
         Pattern p1 = Pattern.compile("foo");
         assertTrue(PatternHelper.useContains(p1));
     }
+
+    public void test__findLiteralPrefix() {
+
+        assertNull(PatternHelper.findLiteralPrefix(null));
+        assertNull(PatternHelper.findLiteralPrefix(Pattern.compile("foo", Pattern.COMMENTS)));
+
+        assertEquals("stock.amd", PatternHelper.findLiteralPrefix(PatternHelper.buildPattern("stock.amd")));
+        assertEquals("stock.amd", PatternHelper.findLiteralPrefix(PatternHelper.buildPattern(true, "stock.amd")));
+        assertEquals("stock", PatternHelper.findLiteralPrefix(PatternHelper.buildPattern("stock", "amd")));
+        assertEquals("stock", PatternHelper.findLiteralPrefix(Pattern.compile("^stock.amd")));
+        assertEquals("foo", PatternHelper.findLiteralPrefix(Pattern.compile("foo")));
+        assertEquals("fo", PatternHelper.findLiteralPrefix(Pattern.compile("foo+")));
+        assertEquals("foo", PatternHelper.findLiteralPrefix(Pattern.compile("Foo.*", Pattern.CASE_INSENSITIVE)));
+        assertEquals("", PatternHelper.findLiteralPrefix(Pattern.compile("foo|bar")));
+        assertEquals("", PatternHelper.findLiteralPrefix(Pattern.compile("[a-z]oo")));
+        assertEquals("", PatternHelper.findLiteralPrefix(Pattern.compile("\\dfoo")));
+    }
+
+    public void test__isAnchored() {
+
+        assertFalse(PatternHelper.isAnchored(null));
+        assertFalse(PatternHelper.isAnchored(Pattern.compile("foo")));
+        assertFalse(PatternHelper.isAnchored(Pattern.compile("foo.*")));
+        assertFalse(PatternHelper.isAnchored(Pattern.compile("^.*foo.*")));
+        assertTrue(PatternHelper.isAnchored(Pattern.compile("^foo.*")));
+    }
 }
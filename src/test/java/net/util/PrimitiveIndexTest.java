@@ -0,0 +1,112 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class PrimitiveIndexTest
+    extends TestCase {
+
+    public void test__numbers() {
+
+        Map<String, String> keyValues = new HashMap<>();
+        keyValues.put("int", "-42");
+        keyValues.put("long", "9000000000");
+        keyValues.put("double", "8.32");
+        keyValues.put("exponent", "1.5e3");
+        keyValues.put("text", "eee");
+
+        PrimitiveIndex index = new PrimitiveIndex(keyValues);
+        assertEquals(4, index.size());
+
+        assertEquals(-42, index.getInt("int", 0));
+        assertEquals(-42L, index.getLong("int", 0));
+        assertEquals(-42.0, index.getDouble("int", 0));
+
+        // Too big for an int
+        assertEquals(-1, index.getInt("long", -1));
+        assertEquals(9000000000L, index.getLong("long", -1));
+
+        assertEquals(8.32, index.getDouble("double", 0));
+        assertEquals(-1L, index.getLong("double", -1));
+        assertEquals(1500.0, index.getDouble("exponent", 0));
+
+        assertEquals(7, index.getInt("text", 7));
+        assertEquals(7.0, index.getDouble("text", 7));
+        assertEquals(7, index.getInt("missing", 7));
+        assertEquals(7, index.getInt(null, 7));
+    }
+
+    public void test__booleans() {
+
+        Map<String, String> keyValues = new HashMap<>();
+        keyValues.put("on", "TRUE");
+        keyValues.put("off", "false");
+        keyValues.put("yes", "yes");
+        keyValues.put("one", "1");
+
+        PrimitiveIndex index = new PrimitiveIndex(keyValues);
+
+        assertTrue(index.getBoolean("on", false));
+        assertFalse(index.getBoolean("off", true));
+        assertTrue(index.getBoolean("yes", true));
+        assertTrue(index.getBoolean("one", true));
+        assertFalse(index.getBoolean("missing", false));
+    }
+
+    public void test__parse_same_as_index() {
+
+        String[] values = { "-42", "9000000000", "99999999999999999999", "8.32", "1.5e3", "1e", "NaN", "TRUE",
+                            "false", "yes", "", "-", null };
+        Map<String, String> keyValues = new HashMap<>();
+        for ( String value : values )
+        {
+            keyValues.put("key." + value, value);
+        }
+
+        PrimitiveIndex index = new PrimitiveIndex(keyValues);
+        for ( String value : values )
+        {
+            String key = "key." + value;
+            assertEquals(value, index.getInt(key, 7), PrimitiveIndex.parseInt(value, 7));
+            assertEquals(value, index.getLong(key, 7), PrimitiveIndex.parseLong(value, 7));
+            assertEquals(value, index.getDouble(key, 7), PrimitiveIndex.parseDouble(value, 7));
+            assertEquals(value, index.getBoolean(key, true), PrimitiveIndex.parseBoolean(value, true));
+        }
+    }
+
+    public void test__many_keys() {
+
+        Map<String, String> keyValues = new HashMap<>();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            keyValues.put("key." + i, String.valueOf(i));
+        }
+
+        PrimitiveIndex index = new PrimitiveIndex(keyValues);
+        for ( int i = 0; i < 10000; i++ )
+        {
+            assertEquals(i, index.getInt("key." + i, -1));
+        }
+
+        assertEquals(0, PrimitiveIndex.EMPTY.size());
+        assertEquals(-1, PrimitiveIndex.EMPTY.getInt("key.1", -1));
+    }
+}
@@ -0,0 +1,78 @@
+package net.util;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author dmillett
+ *
+ * Copyright 2011 David Millett
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+public class StringPoolTest
+    extends TestCase {
+
+    public void test__pool() {
+
+        StringPool stringPool = new StringPool();
+        String first = new String("USD");
+        String second = new String("USD");
+
+        assertSame(first, stringPool.pool(first));
+        assertSame(first, stringPool.pool(second));
+        assertSame(first, stringPool.pool(first));
+        assertNull(stringPool.pool(null));
+
+        assertEquals(3, stringPool.getRequestCount());
+        assertEquals(1, stringPool.getHitCount());
+        assertEquals(StringPool.estimateBytes("USD"), stringPool.getSavedBytes());
+    }
+
+    public void test__poolAll_and_clear() {
+
+        StringPool stringPool = new StringPool();
+        Map<String, String> one = new HashMap<>();
+        one.put(new String("key.currency"), new String("USD"));
+        Map<String, String> two = new HashMap<>();
+        two.put(new String("key.currency"), new String("USD"));
+        two.put("key.enabled", null);
+
+        Map<String, String> pooledOne = stringPool.poolAll(one);
+        Map<String, String> pooledTwo = stringPool.poolAll(two);
+
+        assertEquals(two, pooledTwo);
+        assertSame(pooledOne.get("key.currency"), pooledTwo.get("key.currency"));
+        assertSame(pooledOne.keySet().iterator().next(), pooledTwo.keySet().iterator().next());
+        assertNull(stringPool.poolAll(null));
+
+        // The counts remain after the pooled strings are released
+        long hits = stringPool.getHitCount();
+        stringPool.clear();
+        assertEquals(hits, stringPool.getHitCount());
+        String third = new String("USD");
+        assertSame(third, stringPool.pool(third));
+    }
+
+    public void test__estimateBytes() {
+
+        assertEquals(0, StringPool.estimateBytes(null));
+        assertEquals(40, StringPool.estimateBytes(""));
+        assertEquals(StringPool.COMPACT_STRINGS ? 56 : 64, StringPool.estimateBytes("structures"));
+
+        // Two bytes per char either way
+        assertEquals(48, StringPool.estimateBytes("\u20ac"));
+    }
+}